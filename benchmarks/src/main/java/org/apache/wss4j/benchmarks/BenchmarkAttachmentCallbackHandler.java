@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+import org.apache.wss4j.common.ext.Attachment;
+import org.apache.wss4j.common.ext.AttachmentRequestCallback;
+import org.apache.wss4j.common.ext.AttachmentResultCallback;
+
+/**
+ * A CallbackHandler that supplies the attachments of the message that is currently processed, and
+ * collects the attachments that result from signing/encrypting or verifying/decrypting them.
+ * The attachment streams can only be read once, so it is reset for every benchmark invocation.
+ */
+public class BenchmarkAttachmentCallbackHandler implements CallbackHandler {
+
+    private List<Attachment> attachments = new ArrayList<>();
+    private final List<Attachment> resultAttachments = new ArrayList<>();
+
+    public void reset(List<Attachment> attachments) {
+        this.attachments = attachments;
+        resultAttachments.clear();
+    }
+
+    @Override
+    public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+        for (Callback callback : callbacks) {
+            if (callback instanceof AttachmentRequestCallback) {
+                AttachmentRequestCallback attachmentRequestCallback = (AttachmentRequestCallback) callback;
+                String id = attachmentRequestCallback.getAttachmentId();
+                List<Attachment> requested = new ArrayList<>();
+                for (Attachment attachment : attachments) {
+                    if (id == null || id.equals(attachment.getId())) {
+                        requested.add(attachment);
+                    }
+                }
+                if (requested.isEmpty()) {
+                    // e.g. "Attachments" refers to all of the attachments
+                    requested.addAll(attachments);
+                }
+                attachmentRequestCallback.setAttachments(requested);
+            } else if (callback instanceof AttachmentResultCallback) {
+                resultAttachments.add(((AttachmentResultCallback) callback).getAttachment());
+            } else {
+                throw new UnsupportedCallbackException(callback, "Unrecognized Callback");
+            }
+        }
+    }
+
+    public List<Attachment> getResultAttachments() {
+        return resultAttachments;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.HandlerAction;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandler;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.w3c.dom.Document;
+
+/**
+ * A WSHandler that takes its configuration from a Map, in the same way as e.g. the CXF
+ * WSS4JInInterceptor/WSS4JOutInterceptor do. The Crypto instances are cached by the WSHandler,
+ * so they are only loaded once per benchmark trial.
+ */
+public class BenchmarkHandler extends WSHandler {
+
+    private final Map<String, Object> config;
+    private final WSSConfig wssConfig = WSSConfig.getNewInstance();
+    private final WSSecurityEngine secEngine = new WSSecurityEngine();
+
+    public BenchmarkHandler(Map<String, Object> config) {
+        this.config = config;
+        secEngine.setWssConfig(wssConfig);
+    }
+
+    public void send(Document doc, CallbackHandler attachmentCallbackHandler) throws WSSecurityException {
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(config);
+        reqData.setWssConfig(wssConfig);
+        reqData.setUsername((String) config.get(ConfigurationConstants.USER));
+        reqData.setAttachmentCallbackHandler(attachmentCallbackHandler);
+
+        List<HandlerAction> actions =
+            WSSecurityUtil.decodeHandlerAction((String) config.get(ConfigurationConstants.ACTION), wssConfig);
+        doSenderAction(doc, reqData, actions, true);
+    }
+
+    public WSHandlerResult receive(Document doc, CallbackHandler attachmentCallbackHandler)
+        throws WSSecurityException {
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(config);
+        reqData.setWssConfig(wssConfig);
+        reqData.setAttachmentCallbackHandler(attachmentCallbackHandler);
+
+        List<Integer> actions = WSSecurityUtil.decodeAction((String) config.get(ConfigurationConstants.ACTION));
+        doReceiverAction(actions, reqData);
+
+        WSHandlerResult results = secEngine.processSecurityHeader(doc, reqData);
+        if (results == null || !checkReceiverResultsAnyOrder(results.getResults(), actions)) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
+        }
+        return results;
+    }
+
+    @Override
+    public Object getOption(String key) {
+        return config.get(key);
+    }
+
+    @Override
+    public Object getProperty(Object msgContext, String key) {
+        return ((Map<?, ?>) msgContext).get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setProperty(Object msgContext, String key, Object value) {
+        ((Map<String, Object>) msgContext).put(key, value);
+    }
+
+    @Override
+    public String getPassword(Object msgContext) {
+        return null;
+    }
+
+    @Override
+    public void setPassword(Object msgContext, String password) {
+        // not needed
+    }
+}
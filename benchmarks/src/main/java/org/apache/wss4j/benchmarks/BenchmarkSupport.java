@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.wss4j.common.ext.Attachment;
+import org.apache.wss4j.common.util.AttachmentUtils;
+import org.w3c.dom.Document;
+
+/**
+ * Some utility methods to create the (unsecured) messages and attachments that are benchmarked.
+ */
+public final class BenchmarkSupport {
+
+    private static final String ITEM =
+        "<ns1:item><ns1:name>benchmark</ns1:name><ns1:value>0123456789abcdef</ns1:value></ns1:item>";
+
+    private static final TransformerFactory TRANSFORMER_FACTORY;
+
+    static {
+        TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+        try {
+            TRANSFORMER_FACTORY.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (javax.xml.transform.TransformerConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private BenchmarkSupport() {
+        // complete
+    }
+
+    /**
+     * Create a SOAP 1.1 message whose Body has (approximately) the given size in KB.
+     */
+    public static byte[] createMessage(int sizeInKB) {
+        int size = sizeInKB * 1024;
+        StringBuilder sb = new StringBuilder(size + 512);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        sb.append("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">");
+        sb.append("<soapenv:Header/>");
+        sb.append("<soapenv:Body>");
+        sb.append("<ns1:echo xmlns:ns1=\"urn:wss4j:benchmark\">");
+        int start = sb.length();
+        while (sb.length() - start < size) {
+            sb.append(ITEM);
+        }
+        sb.append("</ns1:echo>");
+        sb.append("</soapenv:Body>");
+        sb.append("</soapenv:Envelope>");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Create a single attachment of the given size in KB.
+     */
+    public static List<StoredAttachment> createAttachments(int sizeInKB) {
+        byte[] content = new byte[sizeInKB * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_DESCRIPTION, "Attachment");
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_DISPOSITION, "attachment; filename=\"fname.ext\"");
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_ID, "<attachment=c29a37cc-7e26-4a0d-b6c4-2ee5e6ba4e10>");
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_LOCATION, "http://ws.apache.org");
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_TYPE, "text/plain; charset=UTF-8");
+
+        return Collections.singletonList(
+            new StoredAttachment("c29a37cc-7e26-4a0d-b6c4-2ee5e6ba4e10", "text/plain", headers, content)
+        );
+    }
+
+    /**
+     * Read the (signed/encrypted or verified/decrypted) attachments that resulted from processing
+     * a message. Reading them is part of the work, as e.g. decryption is done while streaming.
+     */
+    public static List<StoredAttachment> readAttachments(List<Attachment> attachments) throws IOException {
+        List<StoredAttachment> storedAttachments = new ArrayList<>(attachments.size());
+        for (Attachment attachment : attachments) {
+            storedAttachments.add(
+                new StoredAttachment(attachment.getId(), attachment.getMimeType(),
+                                     attachment.getHeaders(), readFully(attachment.getSourceStream()))
+            );
+        }
+        return storedAttachments;
+    }
+
+    public static List<Attachment> toAttachments(List<StoredAttachment> storedAttachments) {
+        List<Attachment> attachments = new ArrayList<>(storedAttachments.size());
+        for (StoredAttachment storedAttachment : storedAttachments) {
+            attachments.add(storedAttachment.toAttachment());
+        }
+        return attachments;
+    }
+
+    public static byte[] serialize(Document document) throws TransformerException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        TRANSFORMER_FACTORY.newTransformer().transform(new DOMSource(document), new StreamResult(baos));
+        return baos.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int numBytes;
+        try (InputStream in = inputStream) {
+            while ((numBytes = in.read(buf)) != -1) {
+                baos.write(buf, 0, numBytes);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * The content of an attachment, from which a new (unread) Attachment can be created for every
+     * benchmark invocation.
+     */
+    public static final class StoredAttachment {
+        private final String id;
+        private final String mimeType;
+        private final Map<String, String> headers;
+        private final byte[] content;
+
+        StoredAttachment(String id, String mimeType, Map<String, String> headers, byte[] content) {
+            this.id = id;
+            this.mimeType = mimeType;
+            this.headers = headers;
+            this.content = content;
+        }
+
+        public Attachment toAttachment() {
+            Attachment attachment = new Attachment();
+            attachment.setId(id);
+            attachment.setMimeType(mimeType);
+            attachment.addHeaders(headers);
+            attachment.setSourceStream(new ByteArrayInputStream(content));
+            return attachment;
+        }
+
+        public int getSize() {
+            return content.length;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmarks.BenchmarkSupport.StoredAttachment;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.xml.security.utils.XMLUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+
+/**
+ * Benchmarks the DOM code (WSHandler + WSSecurityEngine) for securing a message on the sender side,
+ * and processing the secured message on the receiver side. Parsing and serializing the message
+ * is included, as it is part of the cost of the DOM approach.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DOMBenchmark {
+
+    @Param
+    public Scenario scenario;
+
+    @Param({"1", "100", "1000"})
+    public int sizeInKB;
+
+    private byte[] message;
+    private List<StoredAttachment> attachments = Collections.emptyList();
+    private byte[] securedMessage;
+    private List<StoredAttachment> securedAttachments = Collections.emptyList();
+
+    private BenchmarkHandler senderHandler;
+    private BenchmarkHandler receiverHandler;
+    private final BenchmarkAttachmentCallbackHandler attachmentCallbackHandler =
+        new BenchmarkAttachmentCallbackHandler();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        WSSConfig.init();
+        senderHandler = new BenchmarkHandler(scenario.getSenderConfig());
+        receiverHandler = new BenchmarkHandler(scenario.getReceiverConfig());
+
+        if (scenario.hasAttachments()) {
+            // the SOAP Body is kept small, so that the attachment size dominates
+            message = BenchmarkSupport.createMessage(1);
+            attachments = BenchmarkSupport.createAttachments(sizeInKB);
+        } else {
+            message = BenchmarkSupport.createMessage(sizeInKB);
+        }
+
+        Document doc = secure();
+        securedMessage = BenchmarkSupport.serialize(doc);
+        securedAttachments =
+            BenchmarkSupport.readAttachments(attachmentCallbackHandler.getResultAttachments());
+
+        // Make sure that the secured message can be processed before benchmarking anything
+        verify();
+    }
+
+    @Benchmark
+    public byte[] send(Blackhole blackhole) throws Exception {
+        Document doc = secure();
+        consumeAttachments(blackhole);
+        return BenchmarkSupport.serialize(doc);
+    }
+
+    @Benchmark
+    public WSHandlerResult receive(Blackhole blackhole) throws Exception {
+        WSHandlerResult result = verify();
+        consumeAttachments(blackhole);
+        return result;
+    }
+
+    private Document secure() throws Exception {
+        attachmentCallbackHandler.reset(BenchmarkSupport.toAttachments(attachments));
+        Document doc = XMLUtils.read(new ByteArrayInputStream(message), false);
+        senderHandler.send(doc, attachmentCallbackHandler);
+        return doc;
+    }
+
+    private WSHandlerResult verify() throws Exception {
+        attachmentCallbackHandler.reset(BenchmarkSupport.toAttachments(securedAttachments));
+        Document doc = XMLUtils.read(new ByteArrayInputStream(securedMessage), false);
+        return receiverHandler.receive(doc, attachmentCallbackHandler);
+    }
+
+    // The attachments are signed/encrypted (or verified/decrypted) while they are read
+    private void consumeAttachments(Blackhole blackhole) throws Exception {
+        if (scenario.hasAttachments()) {
+            blackhole.consume(BenchmarkSupport.readAttachments(attachmentCallbackHandler.getResultAttachments()));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.WSS4JConstants;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.bean.Version;
+import org.apache.wss4j.common.saml.builder.SAML2Constants;
+import org.apache.wss4j.stax.test.CallbackHandlerImpl;
+import org.apache.wss4j.stax.test.saml.SAMLCallbackHandlerImpl;
+
+/**
+ * The security scenarios that are benchmarked. Each scenario is described by a sender and a
+ * receiver configuration Map, using the same ConfigurationConstants as WSHandler (DOM) and
+ * ConfigurationConverter (StAX), so that both stacks process exactly the same policy.
+ */
+public enum Scenario {
+
+    TIMESTAMP_SIGNATURE(
+        ConfigurationConstants.TIMESTAMP + " " + ConfigurationConstants.SIGNATURE,
+        ConfigurationConstants.TIMESTAMP + " " + ConfigurationConstants.SIGNATURE
+    ),
+
+    SIGNATURE_ENCRYPTION(
+        ConfigurationConstants.TIMESTAMP + " " + ConfigurationConstants.SIGNATURE + " " + ConfigurationConstants.ENCRYPT,
+        ConfigurationConstants.TIMESTAMP + " " + ConfigurationConstants.SIGNATURE + " " + ConfigurationConstants.ENCRYPT
+    ),
+
+    USERNAME_TOKEN(
+        ConfigurationConstants.USERNAME_TOKEN,
+        ConfigurationConstants.USERNAME_TOKEN
+    ) {
+        @Override
+        void configureSender(Map<String, Object> config) {
+            config.put(ConfigurationConstants.PASSWORD_TYPE, WSS4JConstants.PW_DIGEST);
+            config.put(ConfigurationConstants.ADD_USERNAMETOKEN_NONCE, "true");
+            config.put(ConfigurationConstants.ADD_USERNAMETOKEN_CREATED, "true");
+        }
+    },
+
+    SAML_HOLDER_OF_KEY(
+        ConfigurationConstants.SAML_TOKEN_SIGNED,
+        ConfigurationConstants.SIGNATURE + " " + ConfigurationConstants.SAML_TOKEN_SIGNED
+    ) {
+        @Override
+        void configureSender(Map<String, Object> config) throws WSSecurityException {
+            SAMLCallbackHandlerImpl samlCallbackHandler = new SAMLCallbackHandlerImpl();
+            samlCallbackHandler.setSamlVersion(Version.SAML_20);
+            samlCallbackHandler.setStatement(SAMLCallbackHandlerImpl.Statement.AUTHN);
+            samlCallbackHandler.setConfirmationMethod(SAML2Constants.CONF_HOLDER_KEY);
+            samlCallbackHandler.setIssuer("www.example.com");
+
+            Crypto crypto = CryptoFactory.getInstance(SENDER_CRYPTO);
+            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+            cryptoType.setAlias(SENDER_USER);
+            samlCallbackHandler.setCerts(crypto.getX509Certificates(cryptoType));
+            config.put(ConfigurationConstants.SAML_CALLBACK_REF, samlCallbackHandler);
+        }
+    },
+
+    SWA_SIGNATURE_ENCRYPTION(
+        ConfigurationConstants.TIMESTAMP + " " + ConfigurationConstants.SIGNATURE + " " + ConfigurationConstants.ENCRYPT,
+        ConfigurationConstants.TIMESTAMP + " " + ConfigurationConstants.SIGNATURE + " " + ConfigurationConstants.ENCRYPT
+    ) {
+        @Override
+        void configureSender(Map<String, Object> config) {
+            config.put(ConfigurationConstants.SIGNATURE_PARTS,
+                       "{Element}{" + WSS4JConstants.URI_SOAP11_ENV + "}Body;{Content}cid:Attachments");
+            config.put(ConfigurationConstants.ENCRYPTION_PARTS,
+                       "{Content}{" + WSS4JConstants.URI_SOAP11_ENV + "}Body;{Content}cid:Attachments");
+        }
+
+        @Override
+        public boolean hasAttachments() {
+            return true;
+        }
+    },
+
+    DERIVED_KEY(
+        ConfigurationConstants.SIGNATURE_DERIVED + " " + ConfigurationConstants.ENCRYPT_DERIVED,
+        ConfigurationConstants.SIGNATURE + " " + ConfigurationConstants.ENCRYPT
+    ) {
+        @Override
+        void configureSender(Map<String, Object> config) {
+            // The EncryptedKey the keys are derived from is encrypted for the "user"
+            config.put(ConfigurationConstants.USER, RECEIVER_USER);
+            config.put(ConfigurationConstants.DERIVED_TOKEN_REFERENCE, "EncryptedKey");
+        }
+    },
+
+    SECURE_CONVERSATION_DERIVED_KEY(
+        ConfigurationConstants.SIGNATURE_DERIVED + " " + ConfigurationConstants.ENCRYPT_DERIVED,
+        ConfigurationConstants.SIGNATURE + " " + ConfigurationConstants.ENCRYPT
+    ) {
+        @Override
+        void configureSender(Map<String, Object> config) {
+            // The keys are derived from the secret of a SecurityContextToken that both sides know
+            config.put(ConfigurationConstants.PW_CALLBACK_REF, new CallbackHandlerImpl(SECURE_CONVERSATION_SECRET));
+            config.put(ConfigurationConstants.DERIVED_TOKEN_REFERENCE, "SecurityContextToken");
+        }
+
+        @Override
+        void configureReceiver(Map<String, Object> config) {
+            config.put(ConfigurationConstants.PW_CALLBACK_REF, new CallbackHandlerImpl(SECURE_CONVERSATION_SECRET));
+        }
+    };
+
+    static final String SENDER_USER = "transmitter";
+    static final String RECEIVER_USER = "receiver";
+    static final String SENDER_CRYPTO = "transmitter-crypto.properties";
+    static final String RECEIVER_CRYPTO = "receiver-crypto.properties";
+
+    // The secret of the SecurityContextToken, as it would be established via WS-SecureConversation
+    private static final byte[] SECURE_CONVERSATION_SECRET = createSecret(16);
+
+    // Messages are secured once per trial, so they must not expire during a benchmark run
+    private static final String TTL = Integer.toString(24 * 60 * 60);
+
+    private final String senderAction;
+    private final String receiverAction;
+
+    Scenario(String senderAction, String receiverAction) {
+        this.senderAction = senderAction;
+        this.receiverAction = receiverAction;
+    }
+
+    public String getSenderAction() {
+        return senderAction;
+    }
+
+    public String getReceiverAction() {
+        return receiverAction;
+    }
+
+    public boolean hasAttachments() {
+        return false;
+    }
+
+    public Map<String, Object> getSenderConfig() throws WSSecurityException {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigurationConstants.ACTION, senderAction);
+        config.put(ConfigurationConstants.USER, SENDER_USER);
+        config.put(ConfigurationConstants.ENCRYPTION_USER, RECEIVER_USER);
+        config.put(ConfigurationConstants.PW_CALLBACK_REF, new CallbackHandlerImpl());
+        config.put(ConfigurationConstants.SIG_PROP_FILE, SENDER_CRYPTO);
+        config.put(ConfigurationConstants.ENC_PROP_FILE, SENDER_CRYPTO);
+        config.put(ConfigurationConstants.TTL_TIMESTAMP, TTL);
+        configureSender(config);
+        return config;
+    }
+
+    public Map<String, Object> getReceiverConfig() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConfigurationConstants.ACTION, receiverAction);
+        config.put(ConfigurationConstants.PW_CALLBACK_REF, new CallbackHandlerImpl());
+        config.put(ConfigurationConstants.SIG_VER_PROP_FILE, RECEIVER_CRYPTO);
+        config.put(ConfigurationConstants.DEC_PROP_FILE, RECEIVER_CRYPTO);
+        config.put(ConfigurationConstants.TTL_TIMESTAMP, TTL);
+        config.put(ConfigurationConstants.TTL_USERNAMETOKEN, TTL);
+        configureReceiver(config);
+        return config;
+    }
+
+    void configureSender(Map<String, Object> config) throws WSSecurityException {
+        // no additional configuration by default
+    }
+
+    void configureReceiver(Map<String, Object> config) {
+        // no additional configuration by default
+    }
+
+    private static byte[] createSecret(int length) {
+        byte[] secret = new byte[length];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.wss4j.benchmarks.BenchmarkSupport.StoredAttachment;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.ConfigurationConverter;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.OutboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.wss4j.stax.test.utils.XmlReaderToWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the streaming code (OutboundWSSec + InboundWSSec) for securing a message on the sender
+ * side, and processing the secured message on the receiver side. The configuration is converted
+ * via the ConfigurationConverter once per trial, as e.g. the CXF interceptors do per endpoint.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StAXBenchmark {
+
+    @Param
+    public Scenario scenario;
+
+    @Param({"1", "100", "1000"})
+    public int sizeInKB;
+
+    private final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    private byte[] message;
+    private List<StoredAttachment> attachments = Collections.emptyList();
+    private byte[] securedMessage;
+    private List<StoredAttachment> securedAttachments = Collections.emptyList();
+
+    private OutboundWSSec outboundWSSec;
+    private InboundWSSec inboundWSSec;
+    private final BenchmarkAttachmentCallbackHandler attachmentCallbackHandler =
+        new BenchmarkAttachmentCallbackHandler();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        WSSec.init();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        WSSSecurityProperties outboundProperties = ConfigurationConverter.convert(scenario.getSenderConfig());
+        outboundProperties.setAttachmentCallbackHandler(attachmentCallbackHandler);
+        outboundWSSec = WSSec.getOutboundWSSec(outboundProperties);
+
+        WSSSecurityProperties inboundProperties = ConfigurationConverter.convert(scenario.getReceiverConfig());
+        inboundProperties.setAttachmentCallbackHandler(attachmentCallbackHandler);
+        inboundWSSec = WSSec.getInboundWSSec(inboundProperties);
+
+        if (scenario.hasAttachments()) {
+            // the SOAP Body is kept small, so that the attachment size dominates
+            message = BenchmarkSupport.createMessage(1);
+            attachments = BenchmarkSupport.createAttachments(sizeInKB);
+        } else {
+            message = BenchmarkSupport.createMessage(sizeInKB);
+        }
+
+        securedMessage = secure();
+        securedAttachments =
+            BenchmarkSupport.readAttachments(attachmentCallbackHandler.getResultAttachments());
+
+        // Make sure that the secured message can be processed before benchmarking anything
+        verify(null);
+    }
+
+    @Benchmark
+    public byte[] send(Blackhole blackhole) throws Exception {
+        byte[] bytes = secure();
+        consumeAttachments(blackhole);
+        return bytes;
+    }
+
+    @Benchmark
+    public void receive(Blackhole blackhole) throws Exception {
+        verify(blackhole);
+        consumeAttachments(blackhole);
+    }
+
+    private byte[] secure() throws Exception {
+        attachmentCallbackHandler.reset(BenchmarkSupport.toAttachments(attachments));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(message.length * 2);
+        XMLStreamWriter xmlStreamWriter =
+            outboundWSSec.processOutMessage(baos, StandardCharsets.UTF_8.name(), new ArrayList<>());
+        XMLStreamReader xmlStreamReader =
+            xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(message));
+        XmlReaderToWriter.writeAll(xmlStreamReader, xmlStreamWriter);
+        xmlStreamWriter.close();
+        xmlStreamReader.close();
+        return baos.toByteArray();
+    }
+
+    // The message is only verified/decrypted as it is read, so the complete message has to be read
+    private void verify(Blackhole blackhole) throws Exception {
+        attachmentCallbackHandler.reset(BenchmarkSupport.toAttachments(securedAttachments));
+        XMLStreamReader xmlStreamReader = inboundWSSec.processInMessage(
+            xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(securedMessage)));
+        while (xmlStreamReader.hasNext()) {
+            int event = xmlStreamReader.next();
+            if (blackhole != null) {
+                blackhole.consume(event);
+            }
+        }
+        xmlStreamReader.close();
+    }
+
+    // The attachments are signed/encrypted (or verified/decrypted) while they are read
+    private void consumeAttachments(Blackhole blackhole) throws Exception {
+        if (scenario.hasAttachments()) {
+            blackhole.consume(BenchmarkSupport.readAttachments(attachmentCallbackHandler.getResultAttachments()));
+        }
+    }
+}
@@ -459,6 +459,13 @@ public class ConfigurationConstants {
      */
     public static final String REQUIRE_TIMESTAMP_EXPIRES = "requireTimestampExpires";
 
+    /**
+     * Whether to decrypt EncryptedData elements on the thread which processes the message,
+     * instead of starting a decryption thread for each EncryptedData element. This only
+     * applies to the streaming (StAX) code. The default is "false".
+     */
+    public static final String SYNCHRONOUS_DECRYPTION = "synchronousDecryption";
+
     /**
      * Defines whether to encrypt the symmetric encryption key or not. If true
      * (the default), the symmetric key used for encryption is encrypted in turn,
@@ -888,6 +895,30 @@ public class ConfigurationConstants {
      */
     public static final String SAML_ONE_TIME_USE_CACHE_INSTANCE = "samlOneTimeUseCacheInstance";
 
+    /**
+     * This holds a reference to an EncryptedKeyCache instance used to cache the symmetric keys
+     * of decrypted EncryptedKeys, keyed by their EncryptedKeySHA1 identifier. This allows a
+     * sender to reuse an EncryptedKey across messages without incurring a private key operation
+     * per message. There is no default instance, i.e. decrypted EncryptedKeys are not cached.
+     */
+    public static final String ENCRYPTED_KEY_CACHE_INSTANCE = "encryptedKeyCacheInstance";
+
+    /**
+     * This holds a reference to an OutboundEncryptedKeyCache instance, which is used on the
+     * outbound side to reuse a symmetric session key, and the EncryptedKey that wraps it, for
+     * subsequent messages to the same recipient. A key is reused for a bounded lifetime and number
+     * of messages. There is no default instance, i.e. a new key is generated for every message.
+     */
+    public static final String OUTBOUND_ENCRYPTED_KEY_CACHE_INSTANCE = "outboundEncryptedKeyCacheInstance";
+
+    /**
+     * This holds a reference to a SamlAssertionCache instance used to cache signed SAML Assertions
+     * whose signature and signing key have been verified. A client that reuses the same Assertion
+     * for a number of requests then only incurs the signature and trust validation once. There is
+     * no default instance, i.e. the signature of every Assertion is verified.
+     */
+    public static final String SAML_ASSERTION_CACHE_INSTANCE = "samlAssertionCacheInstance";
+
     /**
      * This holds a reference to a PasswordEncryptor instance, which is used to encrypt or
      * decrypt passwords in the Merlin Crypto implementation (or any custom Crypto implementations).
@@ -927,6 +958,16 @@ public class ConfigurationConstants {
      */
     public static final String DERIVED_ENCRYPTION_KEY_LENGTH = "derivedEncryptionKeyLength";
 
+    /**
+     * The number of events that the outbound (streaming) signature and encryption processors buffer
+     * in memory until the security header is written. Any further events are serialized to a compact
+     * form that is spilled to a temporary file for large messages. The default is "0", which means
+     * that all events are buffered in memory. Note that the temporary file (in the "java.io.tmpdir"
+     * directory) holds the plaintext of the message until the message is written. This is only used
+     * by the StAX code.
+     */
+    public static final String OUTBOUND_EVENT_BUFFER_THRESHOLD = "outboundEventBufferThreshold";
+
 
 }
 
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.security.auth.Subject;
+
+/**
+ * A bounded cache of successful UsernameToken authentications, so that e.g. a JAAS login (which
+ * might involve an LDAP bind), or a password CallbackHandler, does not have to be invoked for every
+ * message. Only tokens with a plaintext password can be cached. An entry is keyed by the username
+ * together with a salted SHA-256 hash of the presented password, so the passwords themselves are
+ * not stored. The salt is chosen randomly for each cache instance.
+ *
+ * An entry expires after a configurable time-to-live. As a changed or revoked password is only
+ * picked up when the entry expires, the entries of a user can be removed via
+ * {@link #invalidate(String)}, and all entries via {@link #clear()}.
+ */
+public class AuthenticationCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL = 5L * 60L;
+
+    private final BoundedExpiringMap<ByteBuffer, Entry> cache;
+    private final byte[] salt = new byte[16];
+
+    public AuthenticationCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize the maximum number of authentications to cache
+     * @param ttl the time in seconds for which an authentication is cached
+     */
+    public AuthenticationCache(int maxSize, long ttl) {
+        cache = new BoundedExpiringMap<>(maxSize, ttl, "cached authentications");
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * @return true if a successful authentication of the given username and password is cached
+     */
+    public boolean isAuthenticated(String username, String password) {
+        return getEntry(username, password) != null;
+    }
+
+    /**
+     * @return the Subject of a cached successful authentication of the given username and password,
+     *         or null if there is none (or if no Subject was cached)
+     */
+    public Subject getSubject(String username, String password) {
+        Entry entry = getEntry(username, password);
+        return entry != null ? entry.subject : null;
+    }
+
+    /**
+     * Cache a successful authentication of the given username and password
+     * @param subject the Subject that resulted from the authentication. It can be null.
+     */
+    public void add(String username, String password, Subject subject) {
+        if (username == null || password == null) {
+            return;
+        }
+        cache.put(createKey(username, password), new Entry(username, subject));
+    }
+
+    /**
+     * Remove the cached authentications of the given user, e.g. after the password of the user
+     * has been changed.
+     */
+    public void invalidate(String username) {
+        cache.removeIf(entry -> entry.username.equals(username));
+    }
+
+    /**
+     * Remove all cached authentications
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getTtl() {
+        return cache.getTtl();
+    }
+
+    private Entry getEntry(String username, String password) {
+        if (username == null || password == null) {
+            return null;
+        }
+        return cache.get(createKey(username, password));
+    }
+
+    private ByteBuffer createKey(String username, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            // Prefix the username with its length, to separate it from the password
+            byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(4).putInt(usernameBytes.length).array());
+            digest.update(usernameBytes);
+            digest.update(password.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entry {
+        private final String username;
+        private final Subject subject;
+
+        Entry(String username, Subject subject) {
+            this.username = username;
+            this.subject = subject;
+        }
+    }
+}
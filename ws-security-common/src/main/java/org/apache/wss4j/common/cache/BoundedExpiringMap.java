@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe map with a bounded size, whose entries expire after a time-to-live. It is the
+ * storage shared by the (in-memory) caches of WSS4J, such as the AuthenticationCache, the
+ * EncryptedKeyCache or the PrivateKeyCache, which only add what they cache and how it is keyed.
+ *
+ * An expired entry is removed when it is looked up. When the map is full, the expired entries are
+ * removed first, and then arbitrary entries until there is room for the new one. It is not meant
+ * to be used outside of WSS4J.
+ */
+public final class BoundedExpiringMap<K, V> {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(BoundedExpiringMap.class);
+
+    private final Map<K, Entry<V>> cache = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttl;
+    private final Clock clock;
+    private final String description;
+
+    /**
+     * @param maxSize the maximum number of entries
+     * @param ttl the time in seconds after which an entry expires
+     * @param description a description of the entries, for logging
+     */
+    public BoundedExpiringMap(int maxSize, long ttl, String description) {
+        this(maxSize, ttl, Clock.systemUTC(), description);
+    }
+
+    /**
+     * @param maxSize the maximum number of entries
+     * @param ttl the time in seconds after which an entry expires
+     * @param clock the clock against which the entries expire
+     * @param description a description of the entries, for logging
+     */
+    public BoundedExpiringMap(int maxSize, long ttl, Clock clock, String description) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.description = description;
+    }
+
+    /**
+     * @return the value of the given key, or null if there is none or if it has expired
+     */
+    public V get(K key) {
+        return get(key, value -> true);
+    }
+
+    /**
+     * @param valid a check whether a value is (still) valid. An invalid value is removed.
+     * @return the value of the given key, or null if there is none, or if it has expired or is not valid
+     */
+    public V get(K key, Predicate<? super V> valid) {
+        Entry<V> entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiry.isBefore(clock.instant()) || !valid.test(entry.value)) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Add a value, which expires after the time-to-live
+     */
+    public void put(K key, V value) {
+        put(key, value, null);
+    }
+
+    /**
+     * Add a value, which expires after the time-to-live, or at the given time if it is earlier
+     * @param notAfter the time at which the value expires at the latest. It can be null.
+     */
+    public void put(K key, V value, Instant notAfter) {
+        Instant expiry = clock.instant().plusSeconds(ttl);
+        if (notAfter != null && notAfter.isBefore(expiry)) {
+            expiry = notAfter;
+        }
+        if (cache.size() >= maxSize) {
+            evict();
+        }
+        cache.put(key, new Entry<>(value, expiry));
+    }
+
+    /**
+     * Remove the given key, if it (still) has the given value
+     */
+    public void remove(K key, V value) {
+        cache.computeIfPresent(key, (k, entry) -> entry.value == value ? null : entry);
+    }
+
+    /**
+     * Remove all values that match the given filter
+     */
+    public void removeIf(Predicate<? super V> filter) {
+        cache.values().removeIf(entry -> filter.test(entry.value));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    private void evict() {
+        Instant now = clock.instant();
+        cache.values().removeIf(entry -> entry.expiry.isBefore(now));
+
+        Iterator<K> iterator = cache.keySet().iterator();
+        while (cache.size() >= maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        LOG.debug("Evicted {}, {} remaining", description, cache.size());
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final Instant expiry;
+
+        Entry(V value, Instant expiry) {
+            this.value = value;
+            this.expiry = expiry;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory implementation of the ReplayCache interface, which is designed for concurrent
+ * access. The default TTL is 5 minutes and the max TTL is 1 hour.
+ *
+ * Identifiers are stored in a ConcurrentHashMap, so that lookups and adds do not contend on a
+ * single lock. Expired identifiers are not removed on the read path. Instead the identifiers
+ * are also filed into buckets of one second by their expiry time, and the expired buckets are
+ * swept at most once a second by a thread that adds an identifier. The number of identifiers
+ * is capped - if the cap is reached after the expired identifiers have been swept, then new
+ * identifiers are rejected rather than evicting live identifiers, as an evicted identifier could
+ * be replayed. In particular addIfAbsent returns false, so that the message is rejected.
+ */
+public class ConcurrentMemoryReplayCache implements ReplayCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ConcurrentMemoryReplayCache.class);
+    private static final long SWEEP_INTERVAL = 1000L;
+
+    private final ConcurrentMap<String, Long> ids = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Queue<String>> buckets = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextSweep = new AtomicLong();
+    private final int maxEntries;
+
+    public ConcurrentMemoryReplayCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries the maximum number of identifiers to cache
+     */
+    public ConcurrentMemoryReplayCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, Instant.now().plusSeconds(DEFAULT_TTL));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier
+     */
+    public void add(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiryTime = getExpiryTime(expiry, now);
+
+        if (!ids.containsKey(identifier) && isFull(now)) {
+            LOG.warn("The replay cache has reached its maximum size of {} entries, "
+                     + "the identifier is not cached", maxEntries);
+            return;
+        }
+        ids.put(identifier, expiryTime);
+        addToBucket(identifier, expiryTime);
+        sweep(now, false);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is
+     * already contained in the cache. The check and the add are performed atomically.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default
+     *               amount of time
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    @Override
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        long expiryTime = getExpiryTime(expiry, now);
+
+        Long existing = ids.get(identifier);
+        if (existing != null && existing >= now) {
+            return false;
+        }
+        if (existing == null && isFull(now)) {
+            LOG.warn("The replay cache has reached its maximum size of {} entries, "
+                     + "rejecting the identifier", maxEntries);
+            return false;
+        }
+
+        existing = ids.putIfAbsent(identifier, expiryTime);
+        while (existing != null) {
+            if (existing >= now) {
+                return false;
+            }
+            // The identifier has expired but has not been swept yet, so replace it
+            if (ids.replace(identifier, existing, expiryTime)) {
+                break;
+            }
+            existing = ids.putIfAbsent(identifier, expiryTime);
+        }
+        addToBucket(identifier, expiryTime);
+        sweep(now, false);
+        return true;
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier != null && !"".equals(identifier)) {
+            Long expiryTime = ids.get(identifier);
+            return expiryTime != null && expiryTime >= System.currentTimeMillis();
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of identifiers in the cache, including expired identifiers that have
+     *         not been swept yet
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private static long getExpiryTime(Instant expiry, long now) {
+        long maxTTL = now + MAX_TTL * 1000L;
+        long expiryTime = expiry == null ? 0L : expiry.toEpochMilli();
+        if (expiryTime < now || expiryTime > maxTTL) {
+            expiryTime = now + DEFAULT_TTL * 1000L;
+        }
+        return expiryTime;
+    }
+
+    private void addToBucket(String identifier, long expiryTime) {
+        // Buckets hold the identifiers that expire within the second before the bucket key
+        Long bucketKey = (expiryTime + 999L) / 1000L;
+        while (true) {
+            Queue<String> bucket =
+                buckets.computeIfAbsent(bucketKey, k -> new ConcurrentLinkedQueue<>());
+            bucket.add(identifier);
+            // Retry if the bucket was concurrently swept before the identifier was added to it
+            if (buckets.get(bucketKey) == bucket) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the cache is full, once the expired identifiers have been swept. The cap
+     *         is not enforced atomically, so concurrent adds may exceed it slightly.
+     */
+    private boolean isFull(long now) {
+        if (ids.size() < maxEntries) {
+            return false;
+        }
+        sweep(now, true);
+        return ids.size() >= maxEntries;
+    }
+
+    private void sweep(long now, boolean force) {
+        long next = nextSweep.get();
+        if (now < next && !force || !nextSweep.compareAndSet(next, now + SWEEP_INTERVAL)) {
+            return;
+        }
+
+        Map.Entry<Long, Queue<String>> bucket = buckets.firstEntry();
+        while (bucket != null && bucket.getKey() * 1000L < now) {
+            removeBucket(bucket);
+            bucket = buckets.firstEntry();
+        }
+    }
+
+    private void removeBucket(Map.Entry<Long, Queue<String>> bucket) {
+        if (buckets.remove(bucket.getKey(), bucket.getValue())) {
+            for (String id : bucket.getValue()) {
+                Long expiryTime = ids.get(id);
+                // Only remove the identifier if it was not re-added with a later expiry
+                if (expiryTime != null && (expiryTime + 999L) / 1000L <= bucket.getKey()) {
+                    ids.remove(id, expiryTime);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        ids.clear();
+        buckets.clear();
+    }
+}
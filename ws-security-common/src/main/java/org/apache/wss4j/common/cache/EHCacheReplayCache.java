@@ -114,6 +114,36 @@ public class EHCacheReplayCache implements ReplayCache {
             return;
         }
 
+        cache.put(createElement(identifier, expiry));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is
+     * already contained in the cache. The check and the add are performed atomically.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default
+     *               amount of time
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    @Override
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        Element cacheElement = createElement(identifier, expiry);
+        Element existingElement = cache.putIfAbsent(cacheElement);
+        if (existingElement == null) {
+            return true;
+        }
+        // The existing element may have expired without having been evicted yet
+        return cache.isExpired(existingElement) && cache.replace(existingElement, cacheElement);
+    }
+
+    private Element createElement(String identifier, Instant expiry) {
+        if (expiry == null) {
+            expiry = Instant.now().plusSeconds(DEFAULT_TTL);
+        }
         int parsedTTL = (int)(expiry.getEpochSecond() - Instant.now().getEpochSecond());
         if (parsedTTL < 0 || parsedTTL > MAX_TTL) {
             // Default to configured value
@@ -126,7 +156,7 @@ public class EHCacheReplayCache implements ReplayCache {
 
         Element cacheElement = new Element(identifier, identifier, parsedTTL, parsedTTL);
         cacheElement.resetAccessStatistics();
-        cache.put(cacheElement);
+        return cacheElement;
     }
 
     /**
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * A bounded cache of decrypted (unwrapped) EncryptedKeys. An entry maps the SHA-1 digest of the
+ * wrapped key bytes (i.e. the EncryptedKeySHA1 of the EncryptedKey) to the symmetric key that was
+ * unwrapped from it. This means that a sender which reuses an EncryptedKey across a number of
+ * messages (either by including the same EncryptedKey again, or by referring to it via an
+ * EncryptedKeySHA1 KeyIdentifier) only costs a private key operation for the first message.
+ *
+ * Only successfully unwrapped keys should be added to the cache - in particular, the random key
+ * that is used when the unwrapping fails (to prevent a Bleichenbacher attack) must never be cached.
+ * An entry expires after a configurable time-to-live. Anyone who can read the cache can decrypt
+ * messages that were encrypted with the cached keys, so an instance should not be shared between
+ * endpoints with different decryption keys.
+ */
+public class EncryptedKeyCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL = 5L * 60L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EncryptedKeyCache.class);
+
+    private final BoundedExpiringMap<ByteBuffer, Entry> cache;
+
+    public EncryptedKeyCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize the maximum number of keys to cache
+     * @param ttl the time in seconds for which a key is cached
+     */
+    public EncryptedKeyCache(int maxSize, long ttl) {
+        cache = new BoundedExpiringMap<>(maxSize, ttl, "cached EncryptedKeys");
+    }
+
+    /**
+     * Get the cached symmetric key that was unwrapped from the given wrapped key bytes.
+     * @param encryptedKey the wrapped key bytes (the CipherValue of the EncryptedKey)
+     * @param algorithm the key transport algorithm (and parameters) that are used to unwrap the key.
+     *        This must match the algorithm the cached key was unwrapped with.
+     * @param publicKey the public key corresponding to the private key that is used to unwrap the key.
+     *        This must match the public key the cached key was unwrapped with.
+     * @return the symmetric key, or null if it is not cached
+     */
+    public byte[] getSecretKey(byte[] encryptedKey, String algorithm, PublicKey publicKey) {
+        if (encryptedKey == null) {
+            return null;
+        }
+        Entry entry = cache.get(digest(encryptedKey));
+        if (entry != null && Objects.equals(algorithm, entry.algorithm)
+            && Objects.equals(publicKey, entry.publicKey)) {
+            return entry.secretKey.clone();
+        }
+        return null;
+    }
+
+    /**
+     * Get the cached symmetric key of the EncryptedKey with the given EncryptedKeySHA1 identifier.
+     * @param encryptedKeySHA1 the Base64 encoded SHA-1 digest of the wrapped key bytes
+     * @return the symmetric key, or null if it is not cached
+     */
+    public byte[] getSecretKey(String encryptedKeySHA1) {
+        ByteBuffer key = decode(encryptedKeySHA1);
+        if (key == null) {
+            return null;
+        }
+        Entry entry = cache.get(key);
+        return entry != null ? entry.secretKey.clone() : null;
+    }
+
+    /**
+     * Cache the symmetric key that was successfully unwrapped from the given wrapped key bytes
+     * @param encryptedKey the wrapped key bytes (the CipherValue of the EncryptedKey)
+     * @param algorithm the key transport algorithm (and parameters) that were used to unwrap the key
+     * @param publicKey the public key corresponding to the private key that was used to unwrap the key.
+     *        It can be null if it is not known.
+     * @param secretKey the unwrapped symmetric key
+     */
+    public void add(byte[] encryptedKey, String algorithm, PublicKey publicKey, byte[] secretKey) {
+        if (encryptedKey == null || secretKey == null) {
+            return;
+        }
+        cache.put(digest(encryptedKey), new Entry(secretKey.clone(), algorithm, publicKey));
+    }
+
+    /**
+     * Cache the symmetric key that was successfully unwrapped from the EncryptedKey with the given
+     * EncryptedKeySHA1 identifier, if the wrapped key bytes themselves are not available. Such an
+     * entry can only be retrieved via {@link #getSecretKey(String)}.
+     * @param encryptedKeySHA1 the Base64 encoded SHA-1 digest of the wrapped key bytes
+     * @param secretKey the unwrapped symmetric key
+     */
+    public void add(String encryptedKeySHA1, byte[] secretKey) {
+        ByteBuffer key = decode(encryptedKeySHA1);
+        if (key == null || secretKey == null) {
+            return;
+        }
+        cache.put(key, new Entry(secretKey.clone(), null, null));
+    }
+
+    /**
+     * Remove all cached keys
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getTtl() {
+        return cache.getTtl();
+    }
+
+    private static ByteBuffer digest(byte[] encryptedKey) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-1").digest(encryptedKey));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ByteBuffer decode(String encryptedKeySHA1) {
+        if (encryptedKeySHA1 == null) {
+            return null;
+        }
+        try {
+            return ByteBuffer.wrap(Base64.getMimeDecoder().decode(encryptedKeySHA1));
+        } catch (IllegalArgumentException ex) {
+            LOG.debug("Invalid EncryptedKeySHA1 identifier: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] secretKey;
+        private final String algorithm;
+        private final PublicKey publicKey;
+
+        Entry(byte[] secretKey, String algorithm, PublicKey publicKey) {
+            this.secretKey = secretKey;
+            this.algorithm = algorithm;
+            this.publicKey = publicKey;
+        }
+    }
+}
@@ -90,6 +90,30 @@ public class MemoryReplayCache implements ReplayCache {
         return false;
     }
 
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is
+     * already contained in the cache. The check and the add are performed atomically.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default
+     *               amount of time
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    @Override
+    public boolean addIfAbsent(String identifier, Instant expiry) {
+        processTokenExpiry();
+
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+        synchronized (cache) {
+            if (ids.contains(identifier)) {
+                return false;
+            }
+            add(identifier, expiry);
+        }
+        return true;
+    }
+
     protected void processTokenExpiry() {
         Instant current = Instant.now();
         synchronized (cache) {
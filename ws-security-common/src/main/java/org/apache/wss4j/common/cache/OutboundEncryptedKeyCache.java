@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.cache;
+
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded cache of outbound EncryptedKeys, for senders which send a high volume of encrypted
+ * messages to the same recipients. An entry maps a recipient public key (and the symmetric and key
+ * transport algorithms) to a symmetric session key, and to the session key wrapped with the public
+ * key of the recipient. Subsequent messages to the same recipient reuse the session key and the
+ * wrapped key bytes, which saves the cost of generating a new key and of the public key operation.
+ * As the same EncryptedKey is sent again, the receiver can also avoid the private key operation if
+ * it caches decrypted EncryptedKeys (see {@link EncryptedKeyCache}).
+ *
+ * An entry is only reused for a bounded lifetime and a bounded number of messages, after which a new
+ * session key is generated. Anyone who can read the cache can decrypt the messages that were encrypted
+ * with the cached keys, so this cache is disabled by default.
+ */
+public class OutboundEncryptedKeyCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL = 5L * 60L;
+    public static final int DEFAULT_MAX_MESSAGES = 1000;
+
+    private final BoundedExpiringMap<List<Object>, Entry> cache;
+    private final int maxMessages;
+
+    public OutboundEncryptedKeyCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL, DEFAULT_MAX_MESSAGES);
+    }
+
+    /**
+     * @param maxSize the maximum number of recipients to cache a key for
+     * @param ttl the time in seconds for which a key is reused
+     * @param maxMessages the maximum number of messages a key is used for
+     */
+    public OutboundEncryptedKeyCache(int maxSize, long ttl, int maxMessages) {
+        this.cache = new BoundedExpiringMap<>(maxSize, ttl, "cached outbound EncryptedKeys");
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Create the identifier of the algorithms under which a key is cached. All of the parameters
+     * that affect the wrapped key bytes (and the EncryptionMethod of the EncryptedKey) are included,
+     * so that a key is never reused with a different EncryptionMethod.
+     * @param symEncAlgo the symmetric encryption algorithm
+     * @param keyTransportAlgo the key transport algorithm
+     * @param digestAlgo the RSA-OAEP digest algorithm, if any
+     * @param mgfAlgo the RSA-OAEP MGF algorithm, if any
+     * @param oaepParams the RSA-OAEP OAEPparams, if any
+     * @return the identifier of the algorithms
+     */
+    public static String getAlgorithms(
+        String symEncAlgo, String keyTransportAlgo, String digestAlgo, String mgfAlgo, byte[] oaepParams
+    ) {
+        return symEncAlgo + ":" + keyTransportAlgo + ":" + digestAlgo + ":" + mgfAlgo
+            + ":" + (oaepParams != null ? Base64.getEncoder().encodeToString(oaepParams) : null);
+    }
+
+    /**
+     * Get a cached symmetric session key, together with the wrapped key bytes of it, for the given
+     * recipient, and count a message it is used for.
+     * @param publicKey the public key of the recipient
+     * @param algorithms an identifier of the symmetric and the key transport algorithms (and parameters)
+     * @return the cached key, or null if no key is cached, or if it can't be reused any more
+     */
+    public CachedKey get(PublicKey publicKey, String algorithms) {
+        List<Object> key = createKey(publicKey, algorithms);
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        int remainingMessages = entry.remainingMessages.getAndDecrement();
+        if (remainingMessages <= 1) {
+            // This is the last message the key may be used for (if any)
+            cache.remove(key, entry);
+        }
+        return remainingMessages > 0 ? entry.cachedKey : null;
+    }
+
+    /**
+     * Cache a newly generated symmetric session key, which has been wrapped for the given recipient,
+     * for reuse in subsequent messages. The message the key has been generated for counts as the first
+     * message. A key that was obtained via {@link #get} must not be added again, as that would extend
+     * the lifetime and the number of messages it is used for.
+     * @param publicKey the public key of the recipient
+     * @param algorithms an identifier of the symmetric and the key transport algorithms (and parameters)
+     * @param symmetricKey the symmetric session key
+     * @param encryptedKey the wrapped key bytes (the CipherValue of the EncryptedKey)
+     */
+    public void add(PublicKey publicKey, String algorithms, byte[] symmetricKey, byte[] encryptedKey) {
+        if (publicKey == null || symmetricKey == null || encryptedKey == null) {
+            return;
+        }
+        cache.put(createKey(publicKey, algorithms),
+                  new Entry(new CachedKey(symmetricKey.clone(), encryptedKey.clone()), maxMessages - 1));
+    }
+
+    /**
+     * Remove all cached keys
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getTtl() {
+        return cache.getTtl();
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    private static List<Object> createKey(PublicKey publicKey, String algorithms) {
+        return Arrays.asList(publicKey, algorithms);
+    }
+
+    /**
+     * A cached symmetric session key, together with the session key wrapped with the public key of
+     * the recipient.
+     */
+    public static final class CachedKey {
+        private final byte[] symmetricKey;
+        private final byte[] encryptedKey;
+
+        CachedKey(byte[] symmetricKey, byte[] encryptedKey) {
+            this.symmetricKey = symmetricKey;
+            this.encryptedKey = encryptedKey;
+        }
+
+        /**
+         * @return the symmetric session key
+         */
+        public byte[] getSymmetricKey() {
+            return symmetricKey.clone();
+        }
+
+        /**
+         * @return the wrapped key bytes (the CipherValue of the EncryptedKey)
+         */
+        public byte[] getEncryptedKey() {
+            return encryptedKey.clone();
+        }
+
+        /**
+         * @return true if this is the cached key of the given symmetric session key
+         */
+        public boolean isKeyOf(byte[] key) {
+            return MessageDigest.isEqual(symmetricKey, key);
+        }
+    }
+
+    private static final class Entry {
+        private final CachedKey cachedKey;
+        private final AtomicInteger remainingMessages;
+
+        Entry(CachedKey cachedKey, int remainingMessages) {
+            this.cachedKey = cachedKey;
+            this.remainingMessages = new AtomicInteger(remainingMessages);
+        }
+    }
+}
@@ -47,4 +47,25 @@ public interface ReplayCache extends Closeable {
      */
     boolean contains(String identifier);
 
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is
+     * already contained in the cache. Implementations should perform the check and the add as a
+     * single atomic operation - the default implementation is not atomic.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default
+     *               amount of time
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    default boolean addIfAbsent(String identifier, Instant expiry) {
+        if (contains(identifier)) {
+            return false;
+        }
+        if (expiry == null) {
+            add(identifier);
+        } else {
+            add(identifier, expiry);
+        }
+        return true;
+    }
+
 }
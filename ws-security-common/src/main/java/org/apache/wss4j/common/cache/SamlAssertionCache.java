@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+
+import javax.xml.crypto.MarshalException;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureException;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.util.JCAPool;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.utils.XMLUtils;
+import org.opensaml.saml.common.SAMLVersion;
+import org.opensaml.xmlsec.signature.Signature;
+import org.w3c.dom.Element;
+
+/**
+ * A bounded cache of signed SAML Assertions whose signature, and the trust in the signing key, have
+ * already been verified. This is useful when clients reuse the same (e.g. STS-issued) Assertion for
+ * a number of requests, as it saves a signature verification and a trust validation per request.
+ *
+ * An entry is keyed on the ID of the Assertion, the canonicalized SignedInfo and the SignatureValue.
+ * On a lookup, the References of the signature are still validated against the received Assertion,
+ * so that a hit is only returned for exactly the content that was verified before. An entry expires
+ * at the NotOnOrAfter time of the Assertion, or after the configured time-to-live, whichever is
+ * earlier. Note that only the signature and the trust checks are skipped for a cached Assertion - the
+ * Conditions, audience restrictions and OneTimeUse checks are still performed for every request.
+ *
+ * As the trust in the signing key is cached, an instance should not be shared between endpoints
+ * with a different trust configuration.
+ */
+public class SamlAssertionCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL = 30L * 60L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SamlAssertionCache.class);
+
+    private final BoundedExpiringMap<ByteBuffer, SAMLKeyInfo> cache;
+
+    public SamlAssertionCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize the maximum number of Assertions to cache
+     * @param ttl the maximum time in seconds for which an Assertion is cached
+     */
+    public SamlAssertionCache(int maxSize, long ttl) {
+        cache = new BoundedExpiringMap<>(maxSize, ttl, "cached SAML Assertions");
+    }
+
+    /**
+     * Get the SAMLKeyInfo that was used to verify the signature of the given Assertion, if an
+     * identical Assertion was previously verified and cached.
+     * @param samlAssertion the received (signed) Assertion
+     * @return the SAMLKeyInfo of the verified signature, or null if the Assertion is not cached
+     */
+    public SAMLKeyInfo get(SamlAssertionWrapper samlAssertion) {
+        ByteBuffer key = getKey(samlAssertion);
+        if (key == null) {
+            return null;
+        }
+        SAMLKeyInfo samlKeyInfo = cache.get(key);
+        if (samlKeyInfo == null) {
+            return null;
+        }
+        if (!validateReferences(samlAssertion, samlKeyInfo)) {
+            LOG.debug("The References of the cached SAML Assertion {} do not validate", samlAssertion.getId());
+            return null;
+        }
+        return samlKeyInfo;
+    }
+
+    /**
+     * Cache a signed Assertion, once both the signature and the trust in the signing key have been
+     * successfully verified.
+     * @param samlAssertion the verified Assertion
+     * @param samlKeyInfo the SAMLKeyInfo that was used to verify the signature
+     */
+    public void add(SamlAssertionWrapper samlAssertion, SAMLKeyInfo samlKeyInfo) {
+        if (samlKeyInfo == null || getPublicKey(samlKeyInfo) == null) {
+            return;
+        }
+        Instant notOnOrAfter = samlAssertion.getNotOnOrAfter();
+        if (notOnOrAfter != null && !notOnOrAfter.isAfter(Instant.now())) {
+            return;
+        }
+        ByteBuffer key = getKey(samlAssertion);
+        if (key == null) {
+            return;
+        }
+        cache.put(key, samlKeyInfo, notOnOrAfter);
+    }
+
+    /**
+     * Remove all cached Assertions
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getTtl() {
+        return cache.getTtl();
+    }
+
+    private static ByteBuffer getKey(SamlAssertionWrapper samlAssertion) {
+        String id = samlAssertion.getId();
+        Element signedInfo = null;
+        Element signatureValue = null;
+        try {
+            Signature signature = samlAssertion.getSignature();
+            if (id == null || signature == null || signature.getDOM() == null) {
+                return null;
+            }
+            signedInfo = XMLUtils.getNextElement(signature.getDOM().getFirstChild());
+            if (signedInfo != null) {
+                signatureValue = XMLUtils.getNextElement(signedInfo.getNextSibling());
+            }
+            if (signatureValue == null) {
+                return null;
+            }
+
+            // Inclusive canonicalization covers all of the namespaces in scope of the SignedInfo
+            Canonicalizer canon = Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS);
+            byte[] canonicalizedSignedInfo = canon.canonicalizeSubtree(signedInfo);
+
+            MessageDigest digest = JCAPool.getMessageDigest("SHA-256");
+            try {
+                digest.update(id.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(canonicalizedSignedInfo);
+                digest.update((byte) 0);
+                digest.update(XMLUtils.getFullTextChildrenFromNode(signatureValue).trim()
+                                  .getBytes(StandardCharsets.UTF_8));
+                return ByteBuffer.wrap(digest.digest());
+            } finally {
+                JCAPool.release(digest);
+            }
+        } catch (XMLSecurityException | NoSuchAlgorithmException ex) {
+            LOG.debug("Error computing the cache key of a SAML Assertion: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean validateReferences(SamlAssertionWrapper samlAssertion, SAMLKeyInfo samlKeyInfo) {
+        try {
+            Element assertionElement = samlAssertion.getElement();
+            Element signatureElement = samlAssertion.getSignature().getDOM();
+            DOMValidateContext context = new DOMValidateContext(getPublicKey(samlKeyInfo), signatureElement);
+            context.setProperty("org.apache.jcp.xml.dsig.secureValidation", Boolean.TRUE);
+            context.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.TRUE);
+            String idAttribute =
+                SAMLVersion.VERSION_11.equals(samlAssertion.getSamlVersion()) ? "AssertionID" : "ID";
+            if (assertionElement != null && assertionElement.hasAttributeNS(null, idAttribute)) {
+                context.setIdAttributeNS(assertionElement, null, idAttribute);
+            }
+
+            XMLSignature xmlSignature =
+                JCAPool.getXMLSignatureFactory(null).unmarshalXMLSignature(context);
+            for (Object reference : xmlSignature.getSignedInfo().getReferences()) {
+                if (!((Reference) reference).validate(context)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (WSSecurityException | MarshalException | XMLSignatureException ex) {
+            LOG.debug("Error validating the References of a SAML Assertion: {}", ex.getMessage());
+            return false;
+        }
+    }
+
+    private static Key getPublicKey(SAMLKeyInfo samlKeyInfo) {
+        if (samlKeyInfo.getCerts() != null && samlKeyInfo.getCerts().length > 0
+            && samlKeyInfo.getCerts()[0] != null) {
+            return samlKeyInfo.getCerts()[0].getPublicKey();
+        }
+        return samlKeyInfo.getPublicKey();
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.cache.BoundedExpiringMap;
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A bounded cache of the results of successful certificate path validations. An entry is keyed
+ * by the SHA-256 fingerprint of the certificate chain, together with whether revocation was
+ * enabled and the Subject/Issuer DN constraints that were checked. It expires after a
+ * configurable time-to-live, or when a certificate of the chain expires, whichever is first.
+ *
+ * Each entry also records the "generation" of the trust material (keystore, truststore and CRL
+ * CertStore) against which the chain was validated, and is ignored if the trust material has
+ * changed since. The cache can be flushed explicitly via {@link #clear()}.
+ */
+public class CertificateValidationCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL = 60L * 60L;
+
+    // Maps the key of a validated certificate chain to the generation of the trust material
+    private final BoundedExpiringMap<ByteBuffer, Object> cache;
+
+    public CertificateValidationCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize the maximum number of validation results to cache
+     * @param ttl the time in seconds for which a validation result is cached
+     */
+    public CertificateValidationCache(int maxSize, long ttl) {
+        this(maxSize, ttl, Clock.systemUTC());
+    }
+
+    // Separated out to allow tests to control the time against which entries expire
+    CertificateValidationCache(int maxSize, long ttl, Clock clock) {
+        cache = new BoundedExpiringMap<>(maxSize, ttl, clock, "certificate validation results");
+    }
+
+    /**
+     * Create the key under which the validation result of the given arguments is cached.
+     */
+    ByteBuffer createKey(
+        X509Certificate[] certs,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints,
+        Collection<Pattern> issuerCertConstraints
+    ) throws WSSecurityException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (X509Certificate cert : certs) {
+                digest.update(cert.getEncoded());
+            }
+            digest.update(enableRevocation ? (byte)1 : (byte)0);
+            updateDigest(digest, subjectCertConstraints);
+            updateDigest(digest, issuerCertConstraints);
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        } catch (CertificateEncodingException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "encodeError"
+            );
+        }
+    }
+
+    private static void updateDigest(MessageDigest digest, Collection<Pattern> patterns) {
+        // Separate the subject from the issuer constraints
+        digest.update((byte)0);
+        if (patterns != null) {
+            for (Pattern pattern : patterns) {
+                digest.update(pattern.pattern().getBytes(StandardCharsets.UTF_8));
+                digest.update(ByteBuffer.allocate(5).put((byte)0).putInt(pattern.flags()).array());
+            }
+        }
+    }
+
+    /**
+     * @return true if a successful validation result is cached for the given key and generation
+     *         of the trust material
+     */
+    boolean contains(ByteBuffer key, Object generation) {
+        return cache.get(key, cachedGeneration -> cachedGeneration == generation) != null;
+    }
+
+    /**
+     * Cache a successful validation result of the given certificate chain.
+     */
+    void add(ByteBuffer key, Object generation, X509Certificate[] certs) {
+        Instant expiry = null;
+        for (X509Certificate cert : certs) {
+            Instant notAfter = cert.getNotAfter().toInstant();
+            if (expiry == null || notAfter.isBefore(expiry)) {
+                expiry = notAfter;
+            }
+        }
+        cache.put(key, generation, expiry);
+    }
+
+    /**
+     * Remove all cached validation results, for example after the CRLs have been reloaded.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getTtl() {
+        return cache.getTtl();
+    }
+}
@@ -225,4 +225,14 @@ public interface Crypto {
      */
     void verifyTrust(PublicKey publicKey) throws WSSecurityException;
 
+    /**
+     * Return whether the PrivateKeys returned by this Crypto instance are cached, and so are shared
+     * with other callers. A caller must not destroy such a PrivateKey after use.
+     *
+     * @return whether the PrivateKeys returned by this Crypto instance are cached. The default is false.
+     */
+    default boolean isPrivateKeyCacheEnabled() {
+        return false;
+    }
+
 }
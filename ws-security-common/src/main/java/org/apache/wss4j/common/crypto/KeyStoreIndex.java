@@ -0,0 +1,212 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * An immutable index over the entries of a KeyStore. It maps the issuer name + serial number,
+ * SubjectKeyIdentifier, SHA-1 thumbprint, subject name, certificate and public key of the
+ * (first) certificate of each alias to the alias and its certificate chain, so that lookups
+ * do not have to enumerate all of the aliases of the KeyStore.
+ *
+ * The index is a snapshot of the KeyStore at the time it was built. It records the KeyStore
+ * instance and its size, so that a caller can detect (via {@link #isStale(KeyStore)}) that the
+ * KeyStore was replaced or that entries were added or removed, and rebuild it. An entry that is
+ * changed in place is not detected, Merlin drops its indexes in {@link Merlin#keyStoresChanged()}
+ * for that case.
+ */
+final class KeyStoreIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KeyStoreIndex.class);
+
+    private final KeyStore keyStore;
+    private final int size;
+
+    private final Map<IssuerSerial, Certificate[]> issuerSerialMap = new HashMap<>();
+    private final Map<ByteBuffer, Certificate[]> thumbprintMap = new HashMap<>();
+    private final Map<ByteBuffer, Certificate[]> skiMap = new HashMap<>();
+    private final Map<Object, List<Certificate[]>> subjectMap = new HashMap<>();
+    private final Map<Certificate, String> certificateMap = new HashMap<>();
+    private final Map<ByteBuffer, String> publicKeyMap = new HashMap<>();
+
+    /**
+     * Build an index over the given KeyStore.
+     * @param keyStore the KeyStore to index
+     * @param crypto the CryptoBase instance used to normalise names and to compute SKI bytes
+     * @throws WSSecurityException if the KeyStore could not be read
+     */
+    KeyStoreIndex(KeyStore keyStore, CryptoBase crypto) throws WSSecurityException {
+        this.keyStore = keyStore;
+        MessageDigest sha = null;
+        try {
+            sha = MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+
+        try {
+            this.size = keyStore.size();
+            for (Enumeration<String> e = keyStore.aliases(); e.hasMoreElements();) {
+                String alias = e.nextElement();
+                Certificate[] certs = keyStore.getCertificateChain(alias);
+                if (certs == null || certs.length == 0) {
+                    // no cert chain, so lets check if getCertificate gives us a result.
+                    Certificate cert = keyStore.getCertificate(alias);
+                    if (cert != null) {
+                        certs = new Certificate[]{cert};
+                    }
+                }
+                if (certs == null || certs.length == 0 || certs[0] == null) {
+                    continue;
+                }
+
+                // The first alias wins for each key, which matches the enumeration order
+                // that was used when the KeyStore was searched directly
+                certificateMap.putIfAbsent(certs[0], alias);
+                PublicKey publicKey = certs[0].getPublicKey();
+                if (publicKey != null && publicKey.getEncoded() != null) {
+                    publicKeyMap.putIfAbsent(ByteBuffer.wrap(publicKey.getEncoded()), alias);
+                }
+
+                if (certs[0] instanceof X509Certificate) {
+                    index(alias, certs, (X509Certificate)certs[0], crypto, sha);
+                }
+            }
+        } catch (KeyStoreException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
+            );
+        }
+        LOG.debug("Indexed {} KeyStore entries", size);
+    }
+
+    private void index(
+        String alias, Certificate[] certs, X509Certificate x509cert, CryptoBase crypto, MessageDigest sha
+    ) throws WSSecurityException {
+        Object issuerName = crypto.createBCX509Name(x509cert.getIssuerX500Principal().getName());
+        issuerSerialMap.putIfAbsent(new IssuerSerial(issuerName, x509cert.getSerialNumber()), certs);
+
+        Object subjectName = crypto.createBCX509Name(x509cert.getSubjectX500Principal().getName());
+        subjectMap.computeIfAbsent(subjectName, k -> new ArrayList<>(1)).add(certs);
+
+        try {
+            sha.reset();
+            thumbprintMap.putIfAbsent(ByteBuffer.wrap(sha.digest(x509cert.getEncoded())), certs);
+        } catch (CertificateEncodingException ex) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
+            );
+        }
+
+        try {
+            skiMap.putIfAbsent(ByteBuffer.wrap(crypto.getSKIBytesFromCert(x509cert)), certs);
+        } catch (WSSecurityException ex) {
+            LOG.debug("No SKI could be computed for the certificate with alias {}", alias, ex);
+        }
+    }
+
+    /**
+     * @return true if the given KeyStore is not the one this index was built for, or if the
+     *         number of entries of the KeyStore has changed since the index was built
+     */
+    boolean isStale(KeyStore store) throws KeyStoreException {
+        return store != keyStore || store.size() != size;
+    }
+
+    Certificate[] getByIssuerSerial(Object issuerName, BigInteger serialNumber) {
+        return issuerSerialMap.get(new IssuerSerial(issuerName, serialNumber));
+    }
+
+    Certificate[] getByThumbprint(byte[] thumbprint) {
+        return thumbprintMap.get(ByteBuffer.wrap(thumbprint));
+    }
+
+    Certificate[] getBySKI(byte[] skiBytes) {
+        return skiMap.get(ByteBuffer.wrap(skiBytes));
+    }
+
+    List<Certificate[]> getBySubject(Object subjectName) {
+        List<Certificate[]> certs = subjectMap.get(subjectName);
+        if (certs == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(certs);
+    }
+
+    String getAlias(Certificate cert) {
+        return certificateMap.get(cert);
+    }
+
+    String getAlias(PublicKey publicKey) {
+        byte[] encoded = publicKey.getEncoded();
+        if (encoded == null) {
+            return null;
+        }
+        return publicKeyMap.get(ByteBuffer.wrap(encoded));
+    }
+
+    private static final class IssuerSerial {
+        private final Object issuerName;
+        private final BigInteger serialNumber;
+
+        IssuerSerial(Object issuerName, BigInteger serialNumber) {
+            this.issuerName = issuerName;
+            this.serialNumber = serialNumber;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * issuerName.hashCode() + serialNumber.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof IssuerSerial)) {
+                return false;
+            }
+            IssuerSerial other = (IssuerSerial)obj;
+            return serialNumber.equals(other.serialNumber) && issuerName.equals(other.issuerName);
+        }
+    }
+}
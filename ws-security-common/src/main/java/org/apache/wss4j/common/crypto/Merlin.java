@@ -22,6 +22,7 @@ package org.apache.wss4j.common.crypto;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
@@ -29,7 +30,6 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
@@ -39,7 +39,6 @@ import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertStore;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
@@ -55,6 +54,7 @@ import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -116,6 +116,20 @@ public class Merlin extends CryptoBase {
      */
     public static final String X509_CRL_FILE = "x509crl.file";
 
+    /*
+     * Certificate path validation cache configuration
+     */
+    public static final String CERT_VALIDATION_CACHE = "cert.validation.cache";
+    public static final String CERT_VALIDATION_CACHE_SIZE = "cert.validation.cache.size";
+    public static final String CERT_VALIDATION_CACHE_TTL = "cert.validation.cache.ttl";
+
+    /*
+     * Private key cache configuration
+     */
+    public static final String PRIVATE_KEY_CACHE = "private.key.cache";
+    public static final String PRIVATE_KEY_CACHE_SIZE = "private.key.cache.size";
+    public static final String PRIVATE_KEY_CACHE_TTL = "private.key.cache.ttl";
+
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(Merlin.class);
     private static final String COMMA_SEPARATOR = ",";
@@ -127,9 +141,15 @@ public class Merlin extends CryptoBase {
     protected boolean loadCACerts;
     protected boolean privatePasswordSet;
     protected PasswordEncryptor passwordEncryptor;
+    protected CertificateValidationCache certificateValidationCache;
+    protected PrivateKeyCache privateKeyCache;
 
     private boolean certProviderHandlesNameConstraints = false;
 
+    private volatile KeyStoreIndex keystoreIndex;
+    private volatile KeyStoreIndex truststoreIndex;
+    private volatile TrustState trustState;
+
     public Merlin() {
         // default constructor
     }
@@ -338,6 +358,72 @@ public class Merlin extends CryptoBase {
             }
             LOG.debug("The CRL files {} have been loaded", crlLocations);
         }
+
+        loadCertificateValidationCache(properties, prefix);
+
+        loadPrivateKeyCache(properties, prefix);
+
+        //
+        // Index the KeyStore and TrustStore up front, rather than on the first request
+        //
+        if (keystore != null) {
+            getKeyStoreIndex(keystore, false);
+        }
+        if (truststore != null) {
+            getKeyStoreIndex(truststore, true);
+        }
+    }
+
+    /**
+     * Configure the certificate path validation cache
+     */
+    private void loadCertificateValidationCache(Properties properties, String prefix) throws WSSecurityException {
+        String validationCache = properties.getProperty(prefix + CERT_VALIDATION_CACHE, "false");
+        if (Boolean.valueOf(validationCache.trim())) {
+            int cacheSize = CertificateValidationCache.DEFAULT_MAX_SIZE;
+            long cacheTTL = CertificateValidationCache.DEFAULT_TTL;
+            try {
+                String size = properties.getProperty(prefix + CERT_VALIDATION_CACHE_SIZE);
+                if (size != null) {
+                    cacheSize = Integer.parseInt(size.trim());
+                }
+                String ttl = properties.getProperty(prefix + CERT_VALIDATION_CACHE_TTL);
+                if (ttl != null) {
+                    cacheTTL = Long.parseLong(ttl.trim());
+                }
+            } catch (NumberFormatException e) {
+                LOG.debug(e.getMessage(), e);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+            }
+            certificateValidationCache = new CertificateValidationCache(cacheSize, cacheTTL);
+            LOG.debug("Certificate path validation results will be cached");
+        }
+    }
+
+    /**
+     * Configure the private key cache
+     */
+    private void loadPrivateKeyCache(Properties properties, String prefix) throws WSSecurityException {
+        String keyCache = properties.getProperty(prefix + PRIVATE_KEY_CACHE, "false");
+        if (Boolean.valueOf(keyCache.trim())) {
+            int cacheSize = PrivateKeyCache.DEFAULT_MAX_SIZE;
+            long cacheTTL = PrivateKeyCache.DEFAULT_TTL;
+            try {
+                String size = properties.getProperty(prefix + PRIVATE_KEY_CACHE_SIZE);
+                if (size != null) {
+                    cacheSize = Integer.parseInt(size.trim());
+                }
+                String ttl = properties.getProperty(prefix + PRIVATE_KEY_CACHE_TTL);
+                if (ttl != null) {
+                    cacheTTL = Long.parseLong(ttl.trim());
+                }
+            } catch (NumberFormatException e) {
+                LOG.debug(e.getMessage(), e);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+            }
+            privateKeyCache = new PrivateKeyCache(cacheSize, cacheTTL);
+            LOG.debug("Private keys will be cached");
+        }
     }
 
     /**
@@ -396,6 +482,7 @@ public class Merlin extends CryptoBase {
      */
     public void setKeyStore(KeyStore keyStore) {
         keystore = keyStore;
+        keyStoresChanged();
     }
 
     /**
@@ -414,6 +501,28 @@ public class Merlin extends CryptoBase {
      */
     public void setTrustStore(KeyStore trustStore) {
         truststore = trustStore;
+        keyStoresChanged();
+    }
+
+    /**
+     * Notify this Crypto instance that the keystore or truststore has changed. The indexes
+     * built over the keystore and truststore, the trust anchors built from them, and the
+     * cached certificate path validation results and private keys are discarded.
+     *
+     * This is done automatically by setKeyStore and setTrustStore. The indexes also detect that
+     * entries were added or removed, but not that an entry was changed in place (e.g. the
+     * certificate of an alias was replaced), so this method must be called in that case.
+     */
+    public void keyStoresChanged() {
+        keystoreIndex = null;
+        truststoreIndex = null;
+        trustState = null;
+        if (certificateValidationCache != null) {
+            certificateValidationCache.clear();
+        }
+        if (privateKeyCache != null) {
+            privateKeyCache.clear();
+        }
     }
 
     /**
@@ -424,6 +533,10 @@ public class Merlin extends CryptoBase {
      */
     public void setCRLCertStore(CertStore crlCertStore) {
         this.crlCertStore = crlCertStore;
+        trustState = null;
+        if (certificateValidationCache != null) {
+            certificateValidationCache.clear();
+        }
     }
 
     /**
@@ -436,6 +549,45 @@ public class Merlin extends CryptoBase {
         return crlCertStore;
     }
 
+    /**
+     * Set the cache of successful certificate path validation results. If it is null (the
+     * default), then certificate paths are validated every time.
+     * @param certificateValidationCache the cache of certificate path validation results
+     */
+    public void setCertificateValidationCache(CertificateValidationCache certificateValidationCache) {
+        this.certificateValidationCache = certificateValidationCache;
+    }
+
+    /**
+     * Get the cache of successful certificate path validation results
+     * @return the cache of certificate path validation results (can be null)
+     */
+    public CertificateValidationCache getCertificateValidationCache() {
+        return certificateValidationCache;
+    }
+
+    /**
+     * Set the cache of the private keys recovered from the keystore. If it is null (the
+     * default), then a private key is recovered from the keystore every time it is requested.
+     * @param privateKeyCache the cache of private keys
+     */
+    public void setPrivateKeyCache(PrivateKeyCache privateKeyCache) {
+        this.privateKeyCache = privateKeyCache;
+    }
+
+    /**
+     * Get the cache of the private keys recovered from the keystore
+     * @return the cache of private keys (can be null)
+     */
+    public PrivateKeyCache getPrivateKeyCache() {
+        return privateKeyCache;
+    }
+
+    @Override
+    public boolean isPrivateKeyCacheEnabled() {
+        return getPrivateKeyCache() != null;
+    }
+
     /**
      * Singleton certificate factory for this Crypto instance.
      * <p/>
@@ -585,11 +737,11 @@ public class Merlin extends CryptoBase {
         String identifier = null;
 
         if (keystore != null) {
-            identifier = getIdentifier(cert, keystore);
+            identifier = getIdentifier(cert, keystore, false);
         }
 
         if (identifier == null && truststore != null) {
-            identifier = getIdentifier(cert, truststore);
+            identifier = getIdentifier(cert, truststore, true);
         }
 
         return identifier;
@@ -615,7 +767,7 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
-        String identifier = getIdentifier(certificate, keystore);
+        String identifier = getIdentifier(certificate, keystore, false);
         if (identifier == null) {
             try {
                 String msg = "Cannot find key for certificate";
@@ -654,7 +806,7 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
-        String identifier = getIdentifier(publicKey, keystore);
+        String identifier = getIdentifier(publicKey, keystore, false);
         if (identifier == null) {
             try {
                 String msg = "Cannot find key for corresponding public key";
@@ -707,6 +859,20 @@ public class Merlin extends CryptoBase {
                     pwd = decryptPassword(pwd, passwordEncryptor);
                 }
             }
+
+            PrivateKeyCache cache = privateKeyCache;
+            ByteBuffer cacheKey = null;
+            Certificate certificate = null;
+            if (cache != null) {
+                cacheKey = cache.createKey(identifier, pwd);
+                certificate = keystore.getCertificate(identifier);
+                PrivateKey privateKey = cache.get(cacheKey, keystore, certificate);
+                if (privateKey != null) {
+                    LOG.debug("Cached private key for alias {}", identifier);
+                    return privateKey;
+                }
+            }
+
             Key keyTmp = keystore.getKey(identifier, pwd == null
                                          ? new char[]{} : pwd.toCharArray());
             if (!(keyTmp instanceof PrivateKey)) {
@@ -716,6 +882,10 @@ public class Merlin extends CryptoBase {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
             }
+
+            if (cacheKey != null) {
+                cache.add(cacheKey, keystore, certificate, (PrivateKey) keyTmp);
+            }
             return (PrivateKey) keyTmp;
         } catch (KeyStoreException | UnrecoverableKeyException | NoSuchAlgorithmException ex) {
             throw new WSSecurityException(
@@ -809,30 +979,9 @@ public class Merlin extends CryptoBase {
         );
 
         try {
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                addTrustAnchors(set, truststore);
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                addTrustAnchors(set, keystore);
-            }
-
-            // Verify the trust path using the above settings
-            String provider = getCryptoProvider();
-            CertPathValidator validator = null;
-            if (provider == null || provider.length() == 0) {
-                validator = CertPathValidator.getInstance("PKIX");
-            } else {
-                validator = CertPathValidator.getInstance("PKIX", provider);
-            }
-
-            PKIXParameters param = createPKIXParameters(set, enableRevocation);
+            // Verify the trust path using the cached trust anchors of the current stores
+            CertPathValidator validator = getCertPathValidator();
+            PKIXParameters param = getPKIXParameters(enableRevocation);
 
             // Generate cert path
             if (foundIssuingCertChains != null && !foundIssuingCertChains.isEmpty()) {
@@ -884,13 +1033,138 @@ public class Merlin extends CryptoBase {
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
                             Collection<Pattern> subjectCertConstraints,
                             Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
+        CertificateValidationCache cache = certificateValidationCache;
+        Object generation = null;
+        ByteBuffer cacheKey = null;
+        if (cache != null && certs != null && certs.length > 0) {
+            generation = getTrustGeneration();
+            if (generation != null) {
+                cacheKey =
+                    cache.createKey(certs, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+                if (cache.contains(cacheKey, generation)) {
+                    LOG.debug(
+                        "Cached trust for certificate with {}", certs[0].getSubjectX500Principal().getName()
+                    );
+                    // The cert constraints are always enforced
+                    if (!matchesSubjectDnPattern(certs[0], subjectCertConstraints)
+                        || !matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
+                        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+                    }
+                    return;
+                }
+            }
+        }
+
         verifyTrust(certs, enableRevocation, subjectCertConstraints);
         if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
+
+        if (cacheKey != null) {
+            cache.add(cacheKey, generation, certs);
+        }
     }
 
-    // Separated out to allow subclasses to override it
+    /**
+     * @return an object identifying the current trust material (keystore, truststore and CRL
+     *         CertStore), or null if it could not be determined
+     */
+    private Object getTrustGeneration() {
+        try {
+            return getTrustState();
+        } catch (WSSecurityException | KeyStoreException | InvalidAlgorithmParameterException e) {
+            LOG.debug("The certificate path validation cache can not be used: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Get the PKIXParameters with which to validate a certificate path. The set of trust
+     * anchors and the PKIXParameters are only built once for the current keystore, truststore,
+     * CRL CertStore and crypto provider, and are rebuilt if any of these change. As
+     * PKIXParameters are mutable, a copy of the cached instance is returned.
+     *
+     * @param enableRevocation whether to enable CRL verification or not
+     * @return the PKIXParameters with which to validate a certificate path
+     */
+    protected PKIXParameters getPKIXParameters(boolean enableRevocation)
+        throws WSSecurityException, KeyStoreException, InvalidAlgorithmParameterException {
+        TrustState state = getTrustState();
+        if (enableRevocation) {
+            return (PKIXParameters)state.revocationParameters.clone();
+        }
+        return (PKIXParameters)state.parameters.clone();
+    }
+
+    /**
+     * Get a PKIX CertPathValidator for the configured crypto provider. CertPathValidator
+     * instances are not guaranteed to be thread-safe, so one instance is kept per thread.
+     *
+     * @return a PKIX CertPathValidator
+     */
+    protected CertPathValidator getCertPathValidator()
+        throws WSSecurityException, KeyStoreException, InvalidAlgorithmParameterException,
+        NoSuchAlgorithmException, NoSuchProviderException {
+        ThreadLocal<CertPathValidator> validators = getTrustState().validators;
+        CertPathValidator validator = validators.get();
+        if (validator == null) {
+            String provider = getCryptoProvider();
+            if (provider == null || provider.length() == 0) {
+                validator = CertPathValidator.getInstance("PKIX");
+            } else {
+                validator = CertPathValidator.getInstance("PKIX", provider);
+            }
+            validators.set(validator);
+        }
+        return validator;
+    }
+
+    private TrustState getTrustState()
+        throws WSSecurityException, KeyStoreException, InvalidAlgorithmParameterException {
+        KeyStoreIndex trustIndex = null;
+        if (truststore != null) {
+            trustIndex = getKeyStoreIndex(truststore, true);
+        }
+        //
+        // Add certificates from the keystore - only if there is no TrustStore, apart from
+        // the case that the truststore is the JDK CA certs. This behaviour is preserved
+        // for backwards compatibility reasons
+        //
+        KeyStoreIndex keyIndex = null;
+        if (keystore != null && (truststore == null || loadCACerts)) {
+            keyIndex = getKeyStoreIndex(keystore, false);
+        }
+        String provider = getCryptoProvider();
+
+        TrustState state = trustState;
+        if (state == null || !state.isCurrent(keyIndex, trustIndex, crlCertStore, provider)) {
+            Set<TrustAnchor> set = new HashSet<>();
+            if (trustIndex != null) {
+                addTrustAnchors(set, truststore);
+            }
+            if (keyIndex != null) {
+                addTrustAnchors(set, keystore);
+            }
+            LOG.debug("Building the PKIX parameters for {} trust anchors", set.size());
+            state = new TrustState(keyIndex, trustIndex, crlCertStore, provider,
+                                   createPKIXParameters(set, false), createPKIXParameters(set, true));
+            trustState = state;
+        }
+        return state;
+    }
+
+    /**
+     * Create the PKIXParameters with which to validate a certificate path. This is separated
+     * out to allow subclasses to override it. Note that it is not called for every
+     * validation: the result is cached and only rebuilt when the keystore, truststore, CRL
+     * CertStore or crypto provider change, and every validation then gets a copy of it. A
+     * subclass that needs to adjust the parameters for each validation (e.g. to set the
+     * validation time) should override getPKIXParameters instead.
+     *
+     * @param trustAnchors the trust anchors built from the keystore and truststore
+     * @param enableRevocation whether to enable CRL verification or not
+     * @return the PKIXParameters with which to validate a certificate path
+     */
     protected PKIXParameters createPKIXParameters(
         Set<TrustAnchor> trustAnchors, boolean enableRevocation
     ) throws InvalidAlgorithmParameterException {
@@ -989,36 +1263,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert with issuer {} and serial {}", keystore, issuerRDN, serialNumber);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    LOG.debug("Keystore alias {} has issuer {} and serial {}", alias,
-                              x509cert.getIssuerX500Principal().getName(), x509cert.getSerialNumber());
-                    if (x509cert.getSerialNumber().compareTo(serialNumber) == 0) {
-                        Object certName =
-                            createBCX509Name(x509cert.getIssuerX500Principal().getName());
-                        if (certName.equals(issuerRDN)) {
-                            LOG.debug("Issuer Serial match found using keystore alias {}", alias);
-                            return certs;
-                        }
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        Certificate[] certs = getKeyStoreIndex(store, truststore).getByIssuerSerial(issuerRDN, serialNumber);
+        if (certs != null) {
+            LOG.debug("Issuer Serial match found in {}", keystore);
+            return certs;
         }
 
         LOG.debug("No issuer serial match found in {}", keystore);
@@ -1033,23 +1281,14 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException if problems during keystore handling or wrong certificate
      */
     private X509Certificate[] getX509Certificates(byte[] thumbprint) throws WSSecurityException {
-        MessageDigest sha = null;
-
-        try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
-            );
-        }
         Certificate[] certs = null;
         if (keystore != null) {
-            certs = getCertificates(thumbprint, keystore, sha, false);
+            certs = getCertificatesByThumbprint(thumbprint, keystore, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
         if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(thumbprint, truststore, sha, true);
+            certs = getCertificatesByThumbprint(thumbprint, truststore, true);
         }
 
         if (certs == null || certs.length == 0) {
@@ -1060,16 +1299,15 @@ public class Merlin extends CryptoBase {
     }
 
     /**
-     * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
+     * Get an X509 Certificate (chain) of the thumbprint argument in the supplied KeyStore
      * @param thumbprint
      * @param store The KeyStore
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
-    private Certificate[] getCertificates(
+    private Certificate[] getCertificatesByThumbprint(
         byte[] thumbprint,
         KeyStore store,
-        MessageDigest sha,
         boolean truststore
     ) throws WSSecurityException {
         String keystore = "keystore";
@@ -1077,39 +1315,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert using a SHA-1 thumbprint", keystore);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    try {
-                        sha.update(x509cert.getEncoded());
-                    } catch (CertificateEncodingException ex) {
-                        throw new WSSecurityException(
-                            WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
-                        );
-                    }
-                    byte[] data = sha.digest();
-
-                    if (Arrays.equals(data, thumbprint)) {
-                        LOG.debug("Thumbprint match found using keystore alias {}", alias);
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        Certificate[] certs = getKeyStoreIndex(store, truststore).getByThumbprint(thumbprint);
+        if (certs != null) {
+            LOG.debug("Thumbprint match found in {}", keystore);
+            return certs;
         }
 
         LOG.debug("No thumbprint match found in {}", keystore);
@@ -1157,31 +1366,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert using Subject Key Identifier bytes", keystore);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    byte[] data = getSKIBytesFromCert(x509cert);
-                    if (data.length == skiBytes.length && Arrays.equals(data, skiBytes)) {
-                        LOG.debug("SKI match found using keystore alias {}", alias);
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        Certificate[] certs = getKeyStoreIndex(store, truststore).getBySKI(skiBytes);
+        if (certs != null) {
+            LOG.debug("SKI match found in {}", keystore);
+            return certs;
         }
 
         LOG.debug("No SKI match found in {}", keystore);
@@ -1295,24 +1483,11 @@ public class Merlin extends CryptoBase {
         }
         LOG.debug("Searching {} for public key {}", keystore, publicKey);
         try {
-            for (Enumeration<String> e = keyStoreToSearch.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = keyStoreToSearch.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = keyStoreToSearch.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate
-                    && publicKey.equals(((X509Certificate)certs[0]).getPublicKey())) {
-                    LOG.debug("PublicKey match found using keystore alias {}", alias);
-                    return true;
-                }
+            if (getKeyStoreIndex(keyStoreToSearch, truststore).getAlias(publicKey) != null) {
+                LOG.debug("PublicKey match found in {}", keystore);
+                return true;
             }
-        } catch (KeyStoreException e) {
+        } catch (WSSecurityException e) {
             return false;
         }
 
@@ -1335,36 +1510,11 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert with Subject {}", keystore, subjectRDN);
-        List<Certificate[]> foundCerts = new ArrayList<>();
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X500Principal foundRDN = ((X509Certificate)certs[0]).getSubjectX500Principal();
-                    Object certName = createBCX509Name(foundRDN.getName());
-
-                    if (subjectRDN.equals(certName)) {
-                        LOG.debug("Subject certificate match found using keystore alias {}", alias);
-                        foundCerts.add(certs);
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
-        }
-
+        List<Certificate[]> foundCerts = getKeyStoreIndex(store, truststore).getBySubject(subjectRDN);
         if (foundCerts.isEmpty()) {
             LOG.debug("No Subject match found in {}", keystore);
+        } else {
+            LOG.debug("Subject certificate match found in {}", keystore);
         }
         return foundCerts;
     }
@@ -1430,54 +1580,40 @@ public class Merlin extends CryptoBase {
      * @param store The KeyStore to search
      * @return An implementation-specific identifier that corresponds to the X509Certificate
      */
-    private String getIdentifier(X509Certificate cert, KeyStore store)
+    private String getIdentifier(X509Certificate cert, KeyStore store, boolean truststore)
         throws WSSecurityException {
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a  result.
-                    Certificate retrievedCert = store.getCertificate(alias);
-                    if (retrievedCert != null) {
-                        certs = new Certificate[]{retrievedCert};
-                    }
-                }
+        return getKeyStoreIndex(store, truststore).getAlias(cert);
+    }
 
-                if (certs != null && certs.length > 0 && certs[0].equals(cert)) {
-                    return alias;
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
-        }
-        return null;
+    private String getIdentifier(PublicKey publicKey, KeyStore store, boolean truststore)
+        throws WSSecurityException {
+        return getKeyStoreIndex(store, truststore).getAlias(publicKey);
     }
 
-    private String getIdentifier(PublicKey publicKey, KeyStore store)
+    /**
+     * Get the index of the certificates of the supplied KeyStore, (re)building it if it does
+     * not exist yet, or if the KeyStore has changed since it was built.
+     * @param store The KeyStore
+     * @param truststore whether the KeyStore is the truststore or the keystore
+     * @return the index of the certificates of the KeyStore
+     * @throws WSSecurityException
+     */
+    private KeyStoreIndex getKeyStoreIndex(KeyStore store, boolean truststore)
         throws WSSecurityException {
+        KeyStoreIndex index = truststore ? truststoreIndex : keystoreIndex;
         try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a  result.
-                    Certificate retrievedCert = store.getCertificate(alias);
-                    if (retrievedCert != null) {
-                        certs = new Certificate[]{retrievedCert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0].getPublicKey().equals(publicKey)) {
-                    return alias;
+            if (index == null || index.isStale(store)) {
+                index = new KeyStoreIndex(store, this);
+                if (truststore) {
+                    truststoreIndex = index;
+                } else {
+                    keystoreIndex = index;
                 }
             }
         } catch (KeyStoreException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
         }
-        return null;
+        return index;
     }
 
     /**
@@ -1525,4 +1661,46 @@ public class Merlin extends CryptoBase {
     public void setPasswordEncryptor(PasswordEncryptor passwordEncryptor) {
         this.passwordEncryptor = passwordEncryptor;
     }
+
+    /**
+     * The trust anchors (in the form of the PKIXParameters built from them) for a given
+     * generation of the keystore, truststore and CRL CertStore.
+     */
+    private static final class TrustState {
+        private final KeyStoreIndex keystoreIndex;
+        private final KeyStoreIndex truststoreIndex;
+        private final CertStore crlCertStore;
+        private final String provider;
+        private final PKIXParameters parameters;
+        private final PKIXParameters revocationParameters;
+        private final ThreadLocal<CertPathValidator> validators = new ThreadLocal<>();
+
+        TrustState(
+            KeyStoreIndex keystoreIndex,
+            KeyStoreIndex truststoreIndex,
+            CertStore crlCertStore,
+            String provider,
+            PKIXParameters parameters,
+            PKIXParameters revocationParameters
+        ) {
+            this.keystoreIndex = keystoreIndex;
+            this.truststoreIndex = truststoreIndex;
+            this.crlCertStore = crlCertStore;
+            this.provider = provider;
+            this.parameters = parameters;
+            this.revocationParameters = revocationParameters;
+        }
+
+        boolean isCurrent(
+            KeyStoreIndex currentKeystoreIndex,
+            KeyStoreIndex currentTruststoreIndex,
+            CertStore currentCrlCertStore,
+            String currentProvider
+        ) {
+            return keystoreIndex == currentKeystoreIndex
+                && truststoreIndex == currentTruststoreIndex
+                && crlCertStore == currentCrlCertStore
+                && Objects.equals(provider, currentProvider);
+        }
+    }
 }
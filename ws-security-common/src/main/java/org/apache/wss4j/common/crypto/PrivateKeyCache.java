@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.util.Objects;
+
+import org.apache.wss4j.common.cache.BoundedExpiringMap;
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A bounded cache of the PrivateKeys recovered from a KeyStore, so that the (potentially
+ * expensive) decryption of a key entry is not repeated for every signing or decryption
+ * operation. An entry is keyed by a salted SHA-256 fingerprint of the alias and the password
+ * used to recover the key, so a key is only returned for the password it was recovered with.
+ * It expires after a configurable time-to-live.
+ *
+ * Each entry also records the KeyStore and the certificate of the alias at the time the key was
+ * recovered, and is ignored if the KeyStore has been replaced or the key entry has changed
+ * since. The cache can be flushed explicitly via {@link #clear()}.
+ *
+ * A cached PrivateKey is shared by every caller that recovers it, and so must not be destroyed
+ * by them - see {@link Crypto#isPrivateKeyCacheEnabled()}. A key that has been destroyed anyway
+ * is treated as a cache miss, and is recovered from the KeyStore again.
+ */
+public class PrivateKeyCache {
+
+    public static final int DEFAULT_MAX_SIZE = 100;
+    public static final long DEFAULT_TTL = 60L * 60L;
+
+    private final BoundedExpiringMap<ByteBuffer, Entry> cache;
+    private final byte[] salt = new byte[16];
+
+    public PrivateKeyCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxSize the maximum number of private keys to cache
+     * @param ttl the time in seconds for which a private key is cached
+     */
+    public PrivateKeyCache(int maxSize, long ttl) {
+        cache = new BoundedExpiringMap<>(maxSize, ttl, "private keys");
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Create the key under which the private key of the given alias and password is cached.
+     */
+    ByteBuffer createKey(String alias, String password) throws WSSecurityException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            digest.update(alias.getBytes(StandardCharsets.UTF_8));
+            // Separate the alias from the password, and a null password from an empty one
+            if (password == null) {
+                digest.update((byte)0);
+            } else {
+                digest.update((byte)1);
+                digest.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+    }
+
+    /**
+     * @return the private key cached for the given key, if it was recovered from the given
+     *         KeyStore and the certificate of its alias is (still) the given certificate
+     */
+    PrivateKey get(ByteBuffer key, KeyStore keyStore, Certificate certificate) {
+        Entry entry =
+            cache.get(key, cached -> cached.keyStore == keyStore && Objects.equals(cached.certificate, certificate)
+                                     && !cached.privateKey.isDestroyed());
+        return entry != null ? entry.privateKey : null;
+    }
+
+    /**
+     * Cache a private key recovered from the given KeyStore.
+     */
+    void add(ByteBuffer key, KeyStore keyStore, Certificate certificate, PrivateKey privateKey) {
+        cache.put(key, new Entry(keyStore, certificate, privateKey));
+    }
+
+    /**
+     * Remove all cached private keys, for example after the key passwords have been rotated.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    public long getTtl() {
+        return cache.getTtl();
+    }
+
+    private static final class Entry {
+        private final KeyStore keyStore;
+        private final Certificate certificate;
+        private final PrivateKey privateKey;
+
+        Entry(KeyStore keyStore, Certificate certificate, PrivateKey privateKey) {
+            this.keyStore = keyStore;
+            this.certificate = certificate;
+            this.privateKey = privateKey;
+        }
+    }
+}
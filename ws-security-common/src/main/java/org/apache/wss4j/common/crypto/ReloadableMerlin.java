@@ -0,0 +1,501 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertStore;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+
+/**
+ * A Merlin Crypto implementation that reloads its keystore, truststore and CRL files when they
+ * change on the file system, without a restart and without creating a new Crypto instance.
+ *
+ * The files are polled for changes every "reload.interval" seconds (60 by default, a value of 0
+ * disables polling, in which case {@link #reload()} can be called explicitly). When a change is
+ * detected, a new Merlin instance is loaded from the configuration properties on a background
+ * thread, including the KeyStore indexes and trust anchors, and is then swapped in atomically.
+ * Each call on this Crypto is served by a single Merlin instance, so an in-flight call never sees
+ * a mix of old and new key material, and request threads never wait for a reload. If a reload
+ * fails (for example because a file is only partially written), the previous key material is
+ * kept and the reload is retried on the next poll.
+ *
+ * Only files on the file system are watched. Values set via the setter methods of this class
+ * (for example an explicit KeyStore or a private key cache) override the configuration
+ * properties: they are applied to the current key material, and are re-applied to the key
+ * material loaded by every subsequent reload.
+ */
+public class ReloadableMerlin extends Merlin implements Closeable {
+
+    public static final String RELOAD_INTERVAL = "reload.interval";
+    public static final long DEFAULT_RELOAD_INTERVAL = 60L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ReloadableMerlin.class);
+
+    private volatile Merlin current = new Merlin();
+    private ClassLoader loader;
+    private Map<Path, FileState> fileStates = Collections.emptyMap();
+    private ScheduledFuture<?> reloadTask;
+    private final Map<String, Consumer<Merlin>> overrides = new LinkedHashMap<>();
+
+    public ReloadableMerlin(Properties properties, ClassLoader loader, PasswordEncryptor passwordEncryptor)
+        throws WSSecurityException, IOException {
+        super();
+        loadProperties(properties, loader, passwordEncryptor);
+    }
+
+    @Override
+    public synchronized void loadProperties(
+        Properties properties,
+        ClassLoader loader,
+        PasswordEncryptor passwordEncryptor
+    ) throws WSSecurityException, IOException {
+        if (properties == null) {
+            return;
+        }
+        this.properties = properties;
+        this.loader = loader;
+        this.passwordEncryptor = passwordEncryptor;
+
+        Map<Path, FileState> states = getFileStates();
+        current = createMerlin();
+        fileStates = states;
+
+        long interval = DEFAULT_RELOAD_INTERVAL;
+        String reloadInterval = getProperty(RELOAD_INTERVAL);
+        if (reloadInterval != null) {
+            try {
+                interval = Long.parseLong(reloadInterval.trim());
+            } catch (NumberFormatException e) {
+                LOG.debug(e.getMessage(), e);
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+            }
+        }
+        if (reloadTask != null) {
+            reloadTask.cancel(false);
+            reloadTask = null;
+        }
+        if (interval > 0 && !states.isEmpty()) {
+            reloadTask = ReloadTask.schedule(this, interval);
+            LOG.debug("Polling {} for changes every {} seconds", states.keySet(), interval);
+        }
+    }
+
+    /**
+     * Reload the keystore, truststore and CRL files now, whether they have changed or not. The
+     * current key material is kept if the reload fails.
+     *
+     * @throws WSSecurityException if the key material could not be reloaded
+     */
+    public synchronized void reload() throws WSSecurityException {
+        Map<Path, FileState> states = getFileStates();
+        try {
+            current = createMerlin();
+        } catch (IOException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "ioError00");
+        }
+        fileStates = states;
+        LOG.debug("The key material of {} has been reloaded", states.keySet());
+    }
+
+    /**
+     * Reload the key material if one of the watched files has changed since it was last loaded.
+     */
+    synchronized void checkForChanges() {
+        try {
+            if (!getFileStates().equals(fileStates)) {
+                reload();
+            }
+        } catch (Exception e) {
+            LOG.warn("The key material could not be reloaded, the previous one is kept: " + e.getMessage());
+            LOG.debug(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stop polling the keystore, truststore and CRL files for changes.
+     */
+    @Override
+    public synchronized void close() {
+        if (reloadTask != null) {
+            reloadTask.cancel(false);
+            reloadTask = null;
+        }
+    }
+
+    /**
+     * Load a new Merlin instance from the configuration properties. The KeyStore indexes and
+     * the trust anchors are built here, so that the first request served by the new instance
+     * does not have to wait for them.
+     */
+    protected Merlin createMerlin() throws WSSecurityException, IOException {
+        Merlin merlin = new Merlin(properties, loader, passwordEncryptor);
+        if (!overrides.isEmpty()) {
+            for (Consumer<Merlin> override : overrides.values()) {
+                override.accept(merlin);
+            }
+            // Discard anything that a carried over cache holds for the previous key material
+            merlin.keyStoresChanged();
+        }
+        try {
+            merlin.getPKIXParameters(false);
+        } catch (WSSecurityException | KeyStoreException | InvalidAlgorithmParameterException e) {
+            LOG.debug("The trust anchors will be built on the first request: {}", e.getMessage());
+        }
+        return merlin;
+    }
+
+    /**
+     * @return the Merlin instance that currently serves the calls on this Crypto
+     */
+    public Merlin getCurrent() {
+        return current;
+    }
+
+    /**
+     * Apply a value set via a setter method to the current Merlin instance, and record it so
+     * that it is applied to the instance loaded by every subsequent reload.
+     */
+    private synchronized void override(String name, Consumer<Merlin> override) {
+        overrides.put(name, override);
+        override.accept(current);
+    }
+
+    private Map<Path, FileState> getFileStates() {
+        Map<Path, FileState> states = new LinkedHashMap<>();
+        addFileState(states, getProperty(KEYSTORE_FILE));
+        addFileState(states, getProperty(OLD_KEYSTORE_FILE));
+        addFileState(states, getProperty(TRUSTSTORE_FILE));
+        String crlLocations = getProperty(X509_CRL_FILE);
+        if (crlLocations != null) {
+            for (String crlLocation : crlLocations.split(",")) {
+                addFileState(states, crlLocation);
+            }
+        }
+        return states;
+    }
+
+    private void addFileState(Map<Path, FileState> states, String location) {
+        Path path = getPath(location);
+        if (path != null) {
+            FileState state = null;
+            try {
+                state = new FileState(Files.getLastModifiedTime(path).toMillis(), Files.size(path));
+            } catch (IOException e) {
+                LOG.debug(e.getMessage(), e);
+            }
+            states.put(path, state);
+        }
+    }
+
+    /**
+     * @return the file system Path of the given keystore, truststore or CRL location, or null if
+     *         it is not a file on the file system
+     */
+    private Path getPath(String location) {
+        if (location == null) {
+            return null;
+        }
+        String trimmedLocation = location.trim();
+        try {
+            URL url;
+            try {
+                url = new URL(trimmedLocation);
+            } catch (MalformedURLException ex) {
+                url = Loader.getResource(loader, trimmedLocation);
+            }
+            if (url != null) {
+                if ("file".equals(url.getProtocol())) {
+                    return Paths.get(url.toURI());
+                }
+                LOG.debug("{} is not a file and will not be reloaded", trimmedLocation);
+                return null;
+            }
+            Path path = Paths.get(trimmedLocation);
+            return Files.exists(path) ? path : null;
+        } catch (URISyntaxException | InvalidPathException e) {
+            LOG.debug(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private String getProperty(String name) {
+        String value = properties.getProperty(PREFIX + name);
+        if (value == null) {
+            value = properties.getProperty(OLD_PREFIX + name);
+        }
+        return value;
+    }
+
+    //
+    // Crypto methods, delegated to the current Merlin instance
+    //
+
+    @Override
+    public String getCryptoProvider() {
+        return current.getCryptoProvider();
+    }
+
+    @Override
+    public void setCryptoProvider(String provider) {
+        override("cryptoProvider", merlin -> merlin.setCryptoProvider(provider));
+    }
+
+    @Override
+    public String getTrustProvider() {
+        return current.getTrustProvider();
+    }
+
+    @Override
+    public void setTrustProvider(String provider) {
+        override("trustProvider", merlin -> merlin.setTrustProvider(provider));
+    }
+
+    @Override
+    public String getDefaultX509Identifier() throws WSSecurityException {
+        return current.getDefaultX509Identifier();
+    }
+
+    @Override
+    public void setDefaultX509Identifier(String identifier) {
+        override("defaultX509Identifier", merlin -> merlin.setDefaultX509Identifier(identifier));
+    }
+
+    @Override
+    public CertificateFactory getCertificateFactory() throws WSSecurityException {
+        return current.getCertificateFactory();
+    }
+
+    @Override
+    public void setCertificateFactory(CertificateFactory certFactory) {
+        override("certificateFactory", merlin -> merlin.setCertificateFactory(certFactory));
+    }
+
+    @Override
+    public KeyStore getKeyStore() {
+        return current.getKeyStore();
+    }
+
+    @Override
+    public void setKeyStore(KeyStore keyStore) {
+        override("keyStore", merlin -> merlin.setKeyStore(keyStore));
+    }
+
+    @Override
+    public KeyStore getTrustStore() {
+        return current.getTrustStore();
+    }
+
+    @Override
+    public void setTrustStore(KeyStore trustStore) {
+        override("trustStore", merlin -> merlin.setTrustStore(trustStore));
+    }
+
+    @Override
+    public void keyStoresChanged() {
+        current.keyStoresChanged();
+    }
+
+    @Override
+    public CertStore getCRLCertStore() {
+        return current.getCRLCertStore();
+    }
+
+    @Override
+    public void setCRLCertStore(CertStore crlCertStore) {
+        override("crlCertStore", merlin -> merlin.setCRLCertStore(crlCertStore));
+    }
+
+    @Override
+    public CertificateValidationCache getCertificateValidationCache() {
+        return current.getCertificateValidationCache();
+    }
+
+    @Override
+    public void setCertificateValidationCache(CertificateValidationCache certificateValidationCache) {
+        override("certificateValidationCache", merlin -> merlin.setCertificateValidationCache(certificateValidationCache));
+    }
+
+    @Override
+    public PrivateKeyCache getPrivateKeyCache() {
+        return current.getPrivateKeyCache();
+    }
+
+    @Override
+    public void setPrivateKeyCache(PrivateKeyCache privateKeyCache) {
+        override("privateKeyCache", merlin -> merlin.setPrivateKeyCache(privateKeyCache));
+    }
+
+    @Override
+    public synchronized void setPasswordEncryptor(PasswordEncryptor passwordEncryptor) {
+        this.passwordEncryptor = passwordEncryptor;
+        current.setPasswordEncryptor(passwordEncryptor);
+    }
+
+    @Override
+    public X509Certificate[] getX509Certificates(CryptoType cryptoType) throws WSSecurityException {
+        return current.getX509Certificates(cryptoType);
+    }
+
+    @Override
+    public String getX509Identifier(X509Certificate cert) throws WSSecurityException {
+        return current.getX509Identifier(cert);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(
+        X509Certificate certificate,
+        CallbackHandler callbackHandler
+    ) throws WSSecurityException {
+        return current.getPrivateKey(certificate, callbackHandler);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(
+        PublicKey publicKey,
+        CallbackHandler callbackHandler
+    ) throws WSSecurityException {
+        return current.getPrivateKey(publicKey, callbackHandler);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String identifier, String password) throws WSSecurityException {
+        return current.getPrivateKey(identifier, password);
+    }
+
+    @Override
+    protected void verifyTrust(
+        X509Certificate[] certs,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints
+    ) throws WSSecurityException {
+        current.verifyTrust(certs, enableRevocation, subjectCertConstraints);
+    }
+
+    @Override
+    public void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
+                            Collection<Pattern> subjectCertConstraints,
+                            Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
+        current.verifyTrust(certs, enableRevocation, subjectCertConstraints, issuerCertConstraints);
+    }
+
+    @Override
+    public void verifyTrust(PublicKey publicKey) throws WSSecurityException {
+        current.verifyTrust(publicKey);
+    }
+
+    /**
+     * The last modification time and size of a watched file.
+     */
+    private static final class FileState {
+        private final long lastModified;
+        private final long size;
+
+        FileState(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileState)) {
+                return false;
+            }
+            FileState other = (FileState)obj;
+            return lastModified == other.lastModified && size == other.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(lastModified) + Long.hashCode(size);
+        }
+    }
+
+    /**
+     * Polls the files of a ReloadableMerlin instance for changes on a shared daemon thread. The
+     * task only holds a weak reference to the instance, and cancels itself once the instance has
+     * been garbage collected.
+     */
+    private static final class ReloadTask implements Runnable {
+        private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wss4j-crypto-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        private final WeakReference<ReloadableMerlin> crypto;
+        private volatile ScheduledFuture<?> future;
+
+        private ReloadTask(ReloadableMerlin crypto) {
+            this.crypto = new WeakReference<>(crypto);
+        }
+
+        static ScheduledFuture<?> schedule(ReloadableMerlin crypto, long interval) {
+            ReloadTask task = new ReloadTask(crypto);
+            task.future = SCHEDULER.scheduleWithFixedDelay(task, interval, interval, TimeUnit.SECONDS);
+            return task.future;
+        }
+
+        @Override
+        public void run() {
+            ReloadableMerlin reloadableMerlin = crypto.get();
+            if (reloadableMerlin == null) {
+                ScheduledFuture<?> scheduledFuture = future;
+                if (scheduledFuture != null) {
+                    scheduledFuture.cancel(false);
+                }
+            } else {
+                reloadableMerlin.checkForChanges();
+            }
+        }
+    }
+}
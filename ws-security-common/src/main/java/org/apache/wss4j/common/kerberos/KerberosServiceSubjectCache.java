@@ -0,0 +1,266 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+/**
+ * A cache of the service Subjects that are used to accept (validate) received Kerberos tokens. A
+ * Subject is obtained via a JAAS login for a given JAAS login context name and service name, and is
+ * reused until the (earliest expiring) Kerberos ticket in its private credentials is about to
+ * expire, so that the keytab does not have to be read, or the KDC contacted, for every request.
+ * A Subject obtained from a keytab without a TGT does not expire.
+ *
+ * If a token cannot be accepted with a cached Subject, {@link #relogin} can be used to replace it,
+ * for example because the service key has been changed in the keytab.
+ */
+public class KerberosServiceSubjectCache {
+
+    /**
+     * By default a Subject is refreshed 5 minutes before its ticket expires
+     */
+    public static final long DEFAULT_REFRESH_WINDOW = 5L * 60L;
+
+    /**
+     * By default a Subject is only replaced by {@link #relogin} once it is at least 30 seconds old
+     */
+    public static final long DEFAULT_MIN_RELOGIN_INTERVAL = 30L;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KerberosServiceSubjectCache.class);
+
+    private final ConcurrentMap<Key, Holder> subjects = new ConcurrentHashMap<>();
+    private final Duration refreshWindow;
+    private final Duration minReloginInterval;
+
+    public KerberosServiceSubjectCache() {
+        this(DEFAULT_REFRESH_WINDOW, DEFAULT_MIN_RELOGIN_INTERVAL);
+    }
+
+    /**
+     * @param refreshWindow the time in seconds before the expiry of its ticket that a Subject is
+     *        refreshed. It is capped to half of the lifetime of the ticket.
+     * @param minReloginInterval the minimum age in seconds of a Subject before it is replaced by
+     *        {@link #relogin}, so that invalid tokens cannot cause a login for every request
+     */
+    public KerberosServiceSubjectCache(long refreshWindow, long minReloginInterval) {
+        this.refreshWindow = Duration.ofSeconds(refreshWindow);
+        this.minReloginInterval = Duration.ofSeconds(minReloginInterval);
+    }
+
+    /**
+     * Get the (cached) Subject for the given JAAS login context name and service name. A new
+     * Subject is logged in if none is cached, or if the cached Subject is about to expire.
+     *
+     * @param contextName the JAAS login context name
+     * @param serviceName the service name. It is only part of the cache key and can be null.
+     * @param callbackHandler the CallbackHandler to use with the LoginContext. It can be null.
+     * @return the Subject
+     * @throws LoginException if the login fails
+     */
+    public Subject getSubject(
+        String contextName, String serviceName, CallbackHandler callbackHandler
+    ) throws LoginException {
+        Holder holder = subjects.computeIfAbsent(new Key(contextName, serviceName), k -> new Holder());
+        CachedSubject cachedSubject = holder.cachedSubject;
+        if (cachedSubject != null && !cachedSubject.needsRefresh(Instant.now())) {
+            return cachedSubject.subject;
+        }
+        return holder.refresh(contextName, callbackHandler, cachedSubject, false);
+    }
+
+    /**
+     * Replace the given Subject, with which a token could not be accepted, by logging in again.
+     *
+     * @param contextName the JAAS login context name
+     * @param serviceName the service name. It is only part of the cache key and can be null.
+     * @param callbackHandler the CallbackHandler to use with the LoginContext. It can be null.
+     * @param failedSubject the Subject with which a token could not be accepted
+     * @return the new Subject, or null if the failed Subject was logged in too recently to suspect
+     *         its credentials of being stale
+     * @throws LoginException if the login fails
+     */
+    public Subject relogin(
+        String contextName, String serviceName, CallbackHandler callbackHandler, Subject failedSubject
+    ) throws LoginException {
+        Holder holder = subjects.computeIfAbsent(new Key(contextName, serviceName), k -> new Holder());
+        CachedSubject cachedSubject = holder.cachedSubject;
+        if (cachedSubject != null && cachedSubject.subject != failedSubject) {
+            // Another thread has replaced the Subject already
+            return cachedSubject.subject;
+        }
+        if (cachedSubject != null
+            && cachedSubject.loginTime.plus(minReloginInterval).isAfter(Instant.now())) {
+            return null;
+        }
+        return holder.refresh(contextName, callbackHandler, cachedSubject, true);
+    }
+
+    /**
+     * Remove all cached Subjects
+     */
+    public void clear() {
+        subjects.clear();
+    }
+
+    public int size() {
+        return subjects.size();
+    }
+
+    /**
+     * Login to the JAAS login context with the given name, and return the resulting Subject
+     */
+    protected Subject login(String contextName, CallbackHandler callbackHandler) throws LoginException {
+        LoginContext loginContext = null;
+        if (callbackHandler != null) {
+            loginContext = new LoginContext(contextName, callbackHandler);
+        } else {
+            loginContext = new LoginContext(contextName);
+        }
+        loginContext.login();
+        return loginContext.getSubject();
+    }
+
+    /**
+     * Get the time at which a Subject should be refreshed, or null if it does not expire
+     */
+    private Instant getRefreshTime(Subject subject) {
+        Instant refreshTime = null;
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            if (ticket.getEndTime() == null) {
+                continue;
+            }
+            Instant endTime = ticket.getEndTime().toInstant();
+            Duration window = refreshWindow;
+            if (ticket.getStartTime() != null) {
+                Duration halfLifetime =
+                    Duration.between(ticket.getStartTime().toInstant(), endTime).dividedBy(2);
+                if (halfLifetime.compareTo(window) < 0) {
+                    window = halfLifetime;
+                }
+            }
+            Instant ticketRefreshTime = endTime.minus(window);
+            if (refreshTime == null || ticketRefreshTime.isBefore(refreshTime)) {
+                refreshTime = ticketRefreshTime;
+            }
+        }
+        return refreshTime;
+    }
+
+    private final class Holder {
+        private volatile CachedSubject cachedSubject;
+
+        synchronized Subject refresh(
+            String contextName, CallbackHandler callbackHandler, CachedSubject staleSubject, boolean force
+        ) throws LoginException {
+            // Check whether another thread has refreshed the Subject in the meantime
+            CachedSubject current = cachedSubject;
+            if (current != null && current != staleSubject) {
+                return current.subject;
+            }
+            Instant now = Instant.now();
+            if (current != null && !force && !current.needsRefresh(now)) {
+                return current.subject;
+            }
+
+            Subject subject = null;
+            try {
+                subject = login(contextName, callbackHandler);
+            } catch (LoginException ex) {
+                // Keep using the current Subject if it has not expired yet
+                if (current != null && !force && current.isValid(now)) {
+                    LOG.warn("Error refreshing the Kerberos service Subject for {}: {}",
+                             contextName, ex.getMessage());
+                    return current.subject;
+                }
+                cachedSubject = null;
+                throw ex;
+            }
+
+            cachedSubject = new CachedSubject(subject, now, getRefreshTime(subject));
+            LOG.debug("Logged in to JAAS login context {}", contextName);
+            return subject;
+        }
+    }
+
+    private static final class CachedSubject {
+        private final Subject subject;
+        private final Instant loginTime;
+        private final Instant refreshTime;
+
+        CachedSubject(Subject subject, Instant loginTime, Instant refreshTime) {
+            this.subject = subject;
+            this.loginTime = loginTime;
+            this.refreshTime = refreshTime;
+        }
+
+        boolean needsRefresh(Instant now) {
+            return refreshTime != null && !now.isBefore(refreshTime);
+        }
+
+        boolean isValid(Instant now) {
+            for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+                if (ticket.isDestroyed()
+                    || ticket.getEndTime() != null && !now.isBefore(ticket.getEndTime().toInstant())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Key {
+        private final String contextName;
+        private final String serviceName;
+
+        Key(String contextName, String serviceName) {
+            this.contextName = contextName;
+            this.serviceName = serviceName;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return Objects.equals(contextName, other.contextName)
+                && Objects.equals(serviceName, other.serviceName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(contextName, serviceName);
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.apache.wss4j.common.saml.builder.SAML1ComponentBuilder;
 import org.apache.wss4j.common.saml.builder.SAML2ComponentBuilder;
 import org.apache.wss4j.common.util.DOM2Writer;
 import org.apache.wss4j.common.util.InetAddressUtils;
+import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.utils.XMLUtils;
 import org.joda.time.DateTime;
@@ -102,6 +103,12 @@ public class SamlAssertionWrapper {
      */
     private SAMLKeyInfo signatureKeyInfo;
 
+    /**
+     * Whether the signature (and the trust in the signing key) was verified for an identical
+     * Assertion in an earlier request
+     */
+    private boolean signatureVerifiedFromCache;
+
     /**
      * Default Canonicalization algorithm used for signing.
      */
@@ -594,11 +601,9 @@ public class SamlAssertionWrapper {
         // add the signature to the assertion
         setSignature(signature, signatureDigestAlgorithm);
 
-        // Clean the private key from memory
-        try {
-            privateKey.destroy();
-        } catch (javax.security.auth.DestroyFailedException ex) {
-            LOG.debug("Error destroying private key: {}", ex.getMessage());
+        // Clean the private key from memory, unless it is cached
+        if (!issuerCrypto.isPrivateKeyCacheEnabled()) {
+            KeyUtils.destroyKey(privateKey);
         }
     }
 
@@ -755,6 +760,24 @@ public class SamlAssertionWrapper {
         return signatureKeyInfo;
     }
 
+    /**
+     * Set the SAMLKeyInfo of the signature of an identical Assertion, which was verified (and
+     * trusted) in an earlier request. The signature of this Assertion is then not verified again.
+     * @param samlKeyInfo the SAMLKeyInfo associated with the verified signature
+     */
+    public void setCachedSignatureKeyInfo(SAMLKeyInfo samlKeyInfo) {
+        signatureKeyInfo = samlKeyInfo;
+        signatureVerifiedFromCache = true;
+    }
+
+    /**
+     * @return whether the signature was verified, and the signing key trusted, for an identical
+     *         Assertion in an earlier request
+     */
+    public boolean isSignatureVerifiedFromCache() {
+        return signatureVerifiedFromCache;
+    }
+
     /**
      * Get the SAMLKeyInfo associated with the Subject KeyInfo
      * @return the SAMLKeyInfo associated with the Subject KeyInfo
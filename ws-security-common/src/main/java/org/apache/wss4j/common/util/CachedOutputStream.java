@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An OutputStream that caches the bytes written to it, so that they can be read again via
+ * {@link #getInputStream()}. The bytes are kept in memory up to a threshold, beyond which
+ * all of the bytes are spilled to a temporary file. The temporary file is deleted when the
+ * InputStream returned by {@link #getInputStream()} is closed, or when {@link #destroy()}
+ * is called. As a safety net, the temporary file of a stream that is garbage collected without
+ * either of these (for example because the processing of a message was abandoned) is deleted
+ * the next time that any CachedOutputStream spills to a temporary file.
+ *
+ * The temporary file is created in the "java.io.tmpdir" directory, with the default permissions
+ * of Files.createTempFile (readable by the owner only on POSIX file systems). Note that it holds
+ * the cached bytes as they were written, which may be plaintext or unsigned content.
+ */
+public class CachedOutputStream extends OutputStream {
+
+    public static final int DEFAULT_THRESHOLD = 128 * 1024;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CachedOutputStream.class);
+
+    private static final ReferenceQueue<CachedOutputStream> COLLECTED = new ReferenceQueue<>();
+    private static final Set<TempFileReference> TEMP_FILES =
+        Collections.newSetFromMap(new ConcurrentHashMap<TempFileReference, Boolean>());
+
+    private final int threshold;
+    private MemoryOutputStream memoryOutputStream = new MemoryOutputStream();
+    private Path tempFile;
+    private TempFileReference tempFileReference;
+    private OutputStream fileOutputStream;
+    private long size;
+    private boolean closed;
+
+    public CachedOutputStream() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold the number of bytes that are cached in memory before spilling to a
+     *        temporary file
+     */
+    public CachedOutputStream(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        getOutputStream(1).write(b);
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        getOutputStream(len).write(b, off, len);
+        size += len;
+    }
+
+    private OutputStream getOutputStream(int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (memoryOutputStream != null) {
+            if (size + len <= threshold) {
+                return memoryOutputStream;
+            }
+            deleteCollectedTempFiles();
+            tempFile = Files.createTempFile("wss4j", ".tmp");
+            tempFileReference = new TempFileReference(this, tempFile);
+            TEMP_FILES.add(tempFileReference);
+            LOG.debug("Spilling more than {} bytes to {}", threshold, tempFile);
+            fileOutputStream = new BufferedOutputStream(Files.newOutputStream(tempFile));
+            memoryOutputStream.writeTo(fileOutputStream);
+            memoryOutputStream = null;
+        }
+        return fileOutputStream;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (fileOutputStream != null) {
+            fileOutputStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            if (fileOutputStream != null) {
+                fileOutputStream.close();
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes written to this stream
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if the bytes written to this stream were spilled to a temporary file
+     */
+    public boolean isSpilled() {
+        return tempFile != null;
+    }
+
+    /**
+     * Close this stream and return an InputStream over the bytes that were written to it. The
+     * temporary file (if any) is deleted when the returned InputStream is closed.
+     */
+    public InputStream getInputStream() throws IOException {
+        close();
+        if (tempFile == null) {
+            return memoryOutputStream.toInputStream();
+        }
+        return new FilterInputStream(Files.newInputStream(tempFile)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    destroy();
+                }
+            }
+        };
+    }
+
+    /**
+     * Close this stream and discard the bytes that were written to it.
+     */
+    public void destroy() {
+        try {
+            close();
+        } catch (IOException e) {
+            LOG.debug(e.getMessage(), e);
+        }
+        memoryOutputStream = null;
+        if (tempFile != null) {
+            TEMP_FILES.remove(tempFileReference);
+            deleteTempFile(tempFile);
+        }
+    }
+
+    /**
+     * Delete the temporary files of the streams that were garbage collected without being destroyed.
+     */
+    private static void deleteCollectedTempFiles() {
+        Reference<? extends CachedOutputStream> reference;
+        while ((reference = COLLECTED.poll()) != null) {
+            if (TEMP_FILES.remove(reference)) {
+                Path path = ((TempFileReference)reference).path;
+                LOG.debug("Deleting temporary file {} of an abandoned stream", path);
+                deleteTempFile(path);
+            }
+        }
+    }
+
+    private static void deleteTempFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Error deleting temporary file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static final class TempFileReference extends PhantomReference<CachedOutputStream> {
+        private final Path path;
+
+        TempFileReference(CachedOutputStream cachedOutputStream, Path path) {
+            super(cachedOutputStream, COLLECTED);
+            this.path = path;
+        }
+    }
+
+    private static final class MemoryOutputStream extends ByteArrayOutputStream {
+
+        // Avoid copying the cached bytes
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
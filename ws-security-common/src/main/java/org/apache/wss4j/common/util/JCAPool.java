@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+
+/**
+ * A shared pool of JCA primitives (Cipher, Mac and MessageDigest instances), which avoids the
+ * provider lookup (and the synchronization) of the getInstance methods on hot paths. An instance
+ * is borrowed via one of the "get" methods, and should be handed back via the corresponding
+ * "release" method once it is no longer used. An instance that is not released is simply garbage
+ * collected. The pool is lock-free, and only keeps a bounded number of idle instances per algorithm.
+ *
+ * Cipher instances are pooled per transformation, provider and key type, as a Cipher that is
+ * obtained without a provider selects a provider when it is initialized with the first key (e.g.
+ * a different provider for a PKCS#11 key than for a software key).
+ *
+ * A pooled instance must not keep a reference to the key it was used with. A released Cipher
+ * that was initialized with a SecretKey, and a released Mac, are re-initialized with a throwaway
+ * key before they are pooled. A Cipher that was initialized with a PrivateKey (or an unknown key)
+ * is not pooled at all.
+ */
+public final class JCAPool {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(JCAPool.class);
+
+    private static final int MAX_IDLE_INSTANCES = 32;
+    private static final byte[] THROWAWAY_KEY = new byte[20];
+
+    private static final Map<String, Pool<Cipher>> CIPHERS = new ConcurrentHashMap<>();
+    private static final Map<String, Pool<Mac>> MACS = new ConcurrentHashMap<>();
+    private static final Map<String, Pool<MessageDigest>> DIGESTS = new ConcurrentHashMap<>();
+
+    private static volatile XMLSignatureFactory defaultSignatureFactory;
+
+    private JCAPool() {
+        // complete
+    }
+
+    /**
+     * Get a Cipher instance for the given transformation and provider, which is to be initialized
+     * with the given key.
+     * @param transformation the JCE transformation
+     * @param provider the provider name, or null to use the default provider(s)
+     * @param key the key the Cipher is to be initialized with. It can be null, if it is not known.
+     */
+    public static Cipher getCipher(String transformation, String provider, Key key)
+        throws NoSuchAlgorithmException, NoSuchPaddingException, NoSuchProviderException {
+        Pool<Cipher> pool = CIPHERS.get(getCipherKey(transformation, provider, key));
+        Cipher cipher = pool != null ? pool.poll() : null;
+        if (cipher == null) {
+            if (provider == null) {
+                cipher = Cipher.getInstance(transformation);
+            } else {
+                cipher = Cipher.getInstance(transformation, provider);
+            }
+        }
+        return cipher;
+    }
+
+    /**
+     * Hand back a Cipher instance that was obtained via getCipher, with the same provider and key.
+     * The Cipher must not be used after it has been released.
+     */
+    public static void release(Cipher cipher, String provider, Key key) {
+        if (cipher != null && clearKey(cipher, key)) {
+            CIPHERS.computeIfAbsent(getCipherKey(cipher.getAlgorithm(), provider, key), k -> new Pool<>())
+                .offer(cipher);
+        }
+    }
+
+    /**
+     * Get a Mac instance for the given algorithm from the default provider(s)
+     */
+    public static Mac getMac(String algorithm) throws NoSuchAlgorithmException {
+        Pool<Mac> pool = MACS.get(algorithm);
+        Mac mac = pool != null ? pool.poll() : null;
+        return mac != null ? mac : Mac.getInstance(algorithm);
+    }
+
+    /**
+     * Hand back a Mac instance that was obtained via getMac. The Mac must not be used after
+     * it has been released.
+     */
+    public static void release(Mac mac) {
+        if (mac != null) {
+            try {
+                // Replace the key of the Mac, which also resets it
+                mac.init(new SecretKeySpec(THROWAWAY_KEY, mac.getAlgorithm()));
+            } catch (InvalidKeyException | RuntimeException e) {
+                LOG.debug("A {} Mac is not pooled: {}", mac.getAlgorithm(), e.getMessage());
+                return;
+            }
+            MACS.computeIfAbsent(mac.getAlgorithm(), k -> new Pool<>()).offer(mac);
+        }
+    }
+
+    /**
+     * Get a MessageDigest instance for the given algorithm from the default provider(s)
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        Pool<MessageDigest> pool = DIGESTS.get(algorithm);
+        MessageDigest digest = pool != null ? pool.poll() : null;
+        return digest != null ? digest : MessageDigest.getInstance(algorithm);
+    }
+
+    /**
+     * Hand back a MessageDigest instance that was obtained via getMessageDigest. The MessageDigest
+     * must not be used after it has been released.
+     */
+    public static void release(MessageDigest digest) {
+        if (digest != null) {
+            digest.reset();
+            DIGESTS.computeIfAbsent(digest.getAlgorithm(), k -> new Pool<>()).offer(digest);
+        }
+    }
+
+    /**
+     * Get a "DOM" XMLSignatureFactory for the given provider. If no provider is given, then the
+     * Santuario provider is used, falling back to the JDK provider if it is not available. This
+     * default factory is created once and shared, as it does not hold any state. A factory for a
+     * given provider is not shared.
+     */
+    public static XMLSignatureFactory getXMLSignatureFactory(Provider provider) {
+        if (provider != null) {
+            return XMLSignatureFactory.getInstance("DOM", provider);
+        }
+        XMLSignatureFactory signatureFactory = defaultSignatureFactory;
+        if (signatureFactory == null) {
+            // Try to install the Santuario Provider - fall back to the JDK provider if this does
+            // not work
+            try {
+                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
+            } catch (NoSuchProviderException ex) {
+                signatureFactory = XMLSignatureFactory.getInstance("DOM");
+            }
+            defaultSignatureFactory = signatureFactory;
+        }
+        return signatureFactory;
+    }
+
+    /**
+     * Replace the key a Cipher was initialized with by a throwaway key, if it is a SecretKey.
+     * @return true if the Cipher can be pooled
+     */
+    private static boolean clearKey(Cipher cipher, Key key) {
+        if (key instanceof PublicKey) {
+            return true;
+        }
+        if (!(key instanceof SecretKey)) {
+            return false;
+        }
+        byte[] encoded = key.getEncoded();
+        if (encoded == null) {
+            return false;
+        }
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(new byte[encoded.length], key.getAlgorithm()));
+            return true;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            LOG.debug("A {} Cipher is not pooled: {}", cipher.getAlgorithm(), e.getMessage());
+            return false;
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    private static String getCipherKey(String transformation, String provider, Key key) {
+        return transformation + "|" + provider + "|" + (key != null ? key.getClass().getName() : null);
+    }
+
+    /**
+     * A bounded, lock-free pool of idle instances
+     */
+    private static final class Pool<T> {
+        private final Queue<T> instances = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        T poll() {
+            T instance = instances.poll();
+            if (instance != null) {
+                size.decrementAndGet();
+            }
+            return instance;
+        }
+
+        void offer(T instance) {
+            if (size.incrementAndGet() <= MAX_IDLE_INSTANCES) {
+                instances.offer(instance);
+            } else {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
@@ -30,6 +30,9 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+import java.security.Key;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -44,11 +47,6 @@ public final class KeyUtils {
 
     public static final String RSA_ECB_OAEPWITH_SHA1_AND_MGF1_PADDING = "RSA/ECB/OAEPWithSHA1AndMGF1Padding";
 
-    /**
-     * A cached MessageDigest object
-     */
-    private static MessageDigest digest;
-
     static {
         DEFAULT_DERIVED_KEY_LENGTHS.put(XMLSignature.ALGO_ID_MAC_HMAC_NOT_RECOMMENDED_MD5, 128);
         DEFAULT_DERIVED_KEY_LENGTHS.put(XMLSignature.ALGO_ID_MAC_HMAC_RIPEMD160, 160);
@@ -163,6 +161,21 @@ public final class KeyUtils {
      */
     public static Cipher getCipherInstance(String cipherAlgo, String provider)
             throws WSSecurityException {
+        return getCipherInstance(cipherAlgo, provider, null);
+    }
+
+    /**
+     * Translate the "cipherAlgo" URI to a JCE ID, and get a javax.crypto.Cipher instance
+     * of this type from the given provider, which is to be initialized with the given key.
+     * The instance is taken from the JCAPool, and should be handed back via
+     * releaseCipherInstance once it is no longer used.
+     *
+     * @param cipherAlgo The cipher in it's WSS URI form, ref. https://www.w3.org/TR/xmlenc-core1/#sec-Algorithms
+     * @param provider   The provider which shall instantiate the cipher.
+     * @param key        The key the cipher is to be initialized with.
+     */
+    public static Cipher getCipherInstance(String cipherAlgo, String provider, Key key)
+            throws WSSecurityException {
         String keyAlgorithm = JCEMapper.translateURItoJCEID(cipherAlgo);
         if (keyAlgorithm == null) {
             throw new WSSecurityException(
@@ -177,21 +190,13 @@ public final class KeyUtils {
         }
 
         try {
-            if (provider == null) {
-                return Cipher.getInstance(keyAlgorithm);
-            } else {
-                return Cipher.getInstance(keyAlgorithm, provider);
-            }
+            return JCAPool.getCipher(keyAlgorithm, provider, key);
         } catch (NoSuchPaddingException | NoSuchAlgorithmException e) {
             if (XMLCipher.RSA_OAEP.equals(cipherAlgo)) {
                 // Check to see if an RSA OAEP MGF-1 with SHA-1 algorithm was requested
                 // Some JCE implementations don't support RSA/ECB/OAEPPadding (e.g. nCipherKM of Thales)
                 try {
-                    if (provider == null) {
-                        return Cipher.getInstance(RSA_ECB_OAEPWITH_SHA1_AND_MGF1_PADDING);
-                    } else {
-                        return Cipher.getInstance(RSA_ECB_OAEPWITH_SHA1_AND_MGF1_PADDING, provider);
-                    }
+                    return JCAPool.getCipher(RSA_ECB_OAEPWITH_SHA1_AND_MGF1_PADDING, provider, key);
                 } catch (NoSuchProviderException ex1) {
                     throw new WSSecurityException(
                         WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, ex1, "unsupportedKeyTransp",
@@ -226,23 +231,50 @@ public final class KeyUtils {
         }
     }
 
+    /**
+     * Hand back a javax.crypto.Cipher instance that was obtained via
+     * getCipherInstance(String, String, Key), with the same provider and key.
+     */
+    public static void releaseCipherInstance(Cipher cipher, String provider, Key key) {
+        if (provider == null) {
+            provider = JCEMapper.getProviderId();
+        }
+        JCAPool.release(cipher, provider, key);
+    }
+
     /**
      * Generate a (SHA1) digest of the input bytes. The MessageDigest instance that backs this
-     * method is cached for efficiency.
+     * method is taken from the JCAPool for efficiency.
      * @param inputBytes the bytes to digest
      * @return the digest of the input bytes
      * @throws WSSecurityException
      */
-    public static synchronized byte[] generateDigest(byte[] inputBytes) throws WSSecurityException {
+    public static byte[] generateDigest(byte[] inputBytes) throws WSSecurityException {
+        MessageDigest digest = null;
         try {
-            if (digest == null) {
-                digest = MessageDigest.getInstance("SHA-1");
-            }
+            digest = JCAPool.getMessageDigest("SHA-1");
             return digest.digest(inputBytes);
         } catch (Exception e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "empty",
                                           new Object[] {"Error in generating digest"}
             );
+        } finally {
+            JCAPool.release(digest);
+        }
+    }
+
+    /**
+     * Destroy the given key, to clean it from memory.
+     *
+     * @param key the key to destroy
+     */
+    public static void destroyKey(Key key) {
+        if (key instanceof Destroyable) {
+            try {
+                ((Destroyable)key).destroy();
+            } catch (DestroyFailedException ex) {
+                LOG.debug("Error destroying key: {}", ex.getMessage());
+            }
         }
     }
 }
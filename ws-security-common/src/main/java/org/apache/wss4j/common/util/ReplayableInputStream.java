@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that can be read once (e.g. to digest an attachment), and then replayed from the
+ * start via {@link #replay()} (e.g. to pass the attachment on in an AttachmentResultCallback).
+ *
+ * If the underlying InputStream is a ByteArrayInputStream then it is reset, as its content is in
+ * memory anyway. Otherwise the bytes that are read are copied to a {@link CachedOutputStream}, so
+ * that at most a bounded amount of the content is held in memory, rather than buffering it all in
+ * a BufferedInputStream (or in the mark buffer of the underlying InputStream). If the content is
+ * not replayed, or the replayed InputStream is not closed, then {@link #destroy()} must be called
+ * to delete the temporary file.
+ */
+public class ReplayableInputStream extends FilterInputStream {
+
+    private final CachedOutputStream cachedOutputStream;
+
+    public ReplayableInputStream(InputStream in) {
+        this(in, CachedOutputStream.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param in the InputStream to read
+     * @param threshold the number of bytes that are cached in memory before spilling to a
+     *        temporary file, if the InputStream is not a ByteArrayInputStream
+     */
+    public ReplayableInputStream(InputStream in, int threshold) {
+        super(in);
+        if (in instanceof ByteArrayInputStream) {
+            in.mark(Integer.MAX_VALUE);
+            cachedOutputStream = null;
+        } else {
+            cachedOutputStream = new CachedOutputStream(threshold);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1 && cachedOutputStream != null) {
+            cachedOutputStream.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int numBytes = in.read(b, off, len);
+        if (numBytes > 0 && cachedOutputStream != null) {
+            cachedOutputStream.write(b, off, numBytes);
+        }
+        return numBytes;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (cachedOutputStream == null) {
+            return in.skip(n);
+        }
+        // The skipped bytes must be cached as well
+        byte[] buf = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int numBytes = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+            if (numBytes == -1) {
+                break;
+            }
+            skipped += numBytes;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // mark is not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Return an InputStream over the complete content of the underlying InputStream. Any content
+     * that has not been read yet is read (and cached) first.
+     */
+    public InputStream replay() throws IOException {
+        if (cachedOutputStream == null) {
+            in.reset();
+            return in;
+        }
+        // Read the remaining content into the cache
+        byte[] buf = new byte[8192];
+        int numBytes = read(buf, 0, buf.length);
+        while (numBytes != -1) {
+            numBytes = read(buf, 0, buf.length);
+        }
+        return cachedOutputStream.getInputStream();
+    }
+
+    /**
+     * Discard the cached content, and delete the temporary file (if any). This must be called if
+     * the content is not replayed, e.g. because processing it failed, or if the ownership of the
+     * replayed InputStream was not passed on.
+     */
+    public void destroy() {
+        if (cachedOutputStream != null) {
+            cachedOutputStream.destroy();
+        }
+    }
+}
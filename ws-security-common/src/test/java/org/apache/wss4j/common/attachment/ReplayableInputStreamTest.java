@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.attachment;
+
+import org.apache.wss4j.common.util.CachedOutputStream;
+import org.apache.wss4j.common.util.ReplayableInputStream;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReplayableInputStreamTest {
+
+    @Test
+    public void testCachedOutputStreamInMemory() throws Exception {
+        byte[] bytes = createBytes(1000);
+        CachedOutputStream cachedOutputStream = new CachedOutputStream(1024);
+        cachedOutputStream.write(bytes);
+
+        assertFalse(cachedOutputStream.isSpilled());
+        assertEquals(bytes.length, cachedOutputStream.size());
+        assertArrayEquals(bytes, readFully(cachedOutputStream.getInputStream()));
+    }
+
+    @Test
+    public void testCachedOutputStreamSpilled() throws Exception {
+        byte[] bytes = createBytes(10000);
+        CachedOutputStream cachedOutputStream = new CachedOutputStream(1024);
+        cachedOutputStream.write(bytes, 0, 1000);
+        assertFalse(cachedOutputStream.isSpilled());
+        cachedOutputStream.write(bytes, 1000, bytes.length - 1000);
+
+        assertTrue(cachedOutputStream.isSpilled());
+        assertEquals(bytes.length, cachedOutputStream.size());
+        assertArrayEquals(bytes, readFully(cachedOutputStream.getInputStream()));
+    }
+
+    @Test
+    public void testReplayWithoutMarkSupport() throws Exception {
+        byte[] bytes = createBytes(10000);
+        InputStream inputStream = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+        ReplayableInputStream replayableInputStream = new ReplayableInputStream(inputStream, 1024);
+
+        // Only read part of the content before replaying it
+        byte[] buf = new byte[3000];
+        assertEquals(buf.length, replayableInputStream.read(buf));
+        assertEquals(100, replayableInputStream.skip(100));
+
+        assertArrayEquals(bytes, readFully(replayableInputStream.replay()));
+    }
+
+    @Test
+    public void testReplayWithMarkSupport() throws Exception {
+        byte[] bytes = createBytes(10000);
+        ReplayableInputStream replayableInputStream =
+            new ReplayableInputStream(new ByteArrayInputStream(bytes), 1024);
+
+        assertArrayEquals(bytes, readFully(replayableInputStream));
+        assertArrayEquals(bytes, readFully(replayableInputStream.replay()));
+    }
+
+    @Test
+    public void testReplayBufferedInputStream() throws Exception {
+        // A BufferedInputStream supports mark/reset, but the content is cached rather than
+        // buffered completely in the mark buffer
+        byte[] bytes = createBytes(10000);
+        ReplayableInputStream replayableInputStream =
+            new ReplayableInputStream(new BufferedInputStream(new ByteArrayInputStream(bytes), 512), 1024);
+
+        byte[] buf = new byte[bytes.length];
+        new DataInputStream(replayableInputStream).readFully(buf);
+        assertArrayEquals(bytes, buf);
+        assertArrayEquals(bytes, readFully(replayableInputStream.replay()));
+    }
+
+    @Test
+    public void testDestroy() throws Exception {
+        byte[] bytes = createBytes(10000);
+        ReplayableInputStream replayableInputStream =
+            new ReplayableInputStream(new BufferedInputStream(new ByteArrayInputStream(bytes)), 1024);
+        new DataInputStream(replayableInputStream).readFully(new byte[bytes.length]);
+
+        // The temporary file is deleted, so the content can not be replayed any more
+        replayableInputStream.destroy();
+        try {
+            replayableInputStream.replay();
+            fail("Failure expected on replaying destroyed content");
+        } catch (IOException ex) {
+            assertTrue(ex instanceof NoSuchFileException);
+        }
+    }
+
+    private static byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int numBytes;
+        while ((numBytes = inputStream.read(buf)) != -1) {
+            baos.write(buf, 0, numBytes);
+        }
+        inputStream.close();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import javax.security.auth.Subject;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AuthenticationCacheTest {
+
+    @Test
+    public void testAuthentication() throws Exception {
+        AuthenticationCache cache = new AuthenticationCache();
+        Subject subject = new Subject();
+        cache.add("alice", "password", subject);
+        cache.add("bob", "security", null);
+
+        assertTrue(cache.isAuthenticated("alice", "password"));
+        assertSame(subject, cache.getSubject("alice", "password"));
+        assertTrue(cache.isAuthenticated("bob", "security"));
+        assertNull(cache.getSubject("bob", "security"));
+
+        // The password must match
+        assertFalse(cache.isAuthenticated("alice", "Password"));
+        assertFalse(cache.isAuthenticated("bob", "password"));
+        assertFalse(cache.isAuthenticated("alice", null));
+    }
+
+    @Test
+    public void testUsernameAndPasswordAreSeparated() throws Exception {
+        AuthenticationCache cache = new AuthenticationCache();
+        cache.add("alice", "password", null);
+
+        assertFalse(cache.isAuthenticated("alic", "epassword"));
+        assertFalse(cache.isAuthenticated("alicep", "assword"));
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        AuthenticationCache cache = new AuthenticationCache();
+        cache.add("alice", "password", null);
+        cache.add("alice", "oldpassword", null);
+        cache.add("bob", "security", null);
+
+        cache.invalidate("alice");
+        assertFalse(cache.isAuthenticated("alice", "password"));
+        assertFalse(cache.isAuthenticated("alice", "oldpassword"));
+        assertTrue(cache.isAuthenticated("bob", "security"));
+
+        cache.clear();
+        assertFalse(cache.isAuthenticated("bob", "security"));
+    }
+}
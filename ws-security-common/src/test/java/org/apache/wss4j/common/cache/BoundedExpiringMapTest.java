@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedExpiringMapTest {
+
+    private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+    @Test
+    public void testGet() throws Exception {
+        BoundedExpiringMap<String, String> map = new BoundedExpiringMap<>(10, 60L, "test entries");
+        assertNull(map.get("alice"));
+        map.put("alice", "a");
+        map.put("bob", "b");
+        assertEquals("a", map.get("alice"));
+        assertEquals("b", map.get("bob"));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertNull(map.get("alice"));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        TestClock clock = new TestClock(NOW);
+        BoundedExpiringMap<String, String> map = new BoundedExpiringMap<>(10, 60L, clock, "test entries");
+        map.put("alice", "a");
+        map.put("bob", "b", NOW.plusSeconds(30L));
+        map.put("carol", "c", NOW.plusSeconds(120L));
+
+        clock.instant = NOW.plusSeconds(45L);
+        assertEquals("a", map.get("alice"));
+        assertNull(map.get("bob"));
+        assertEquals(2, map.size());
+
+        // The time-to-live is not extended by a later expiry time
+        clock.instant = NOW.plusSeconds(90L);
+        assertNull(map.get("alice"));
+        assertNull(map.get("carol"));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testNegativeTtl() throws Exception {
+        BoundedExpiringMap<String, String> map = new BoundedExpiringMap<>(10, -1L, "test entries");
+        map.put("alice", "a");
+        assertNull(map.get("alice"));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        BoundedExpiringMap<Integer, String> map = new BoundedExpiringMap<>(10, 60L, "test entries");
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "value" + i);
+        }
+        assertTrue(map.size() <= 10);
+        assertEquals("value99", map.get(99));
+    }
+
+    @Test
+    public void testExpiredEntriesEvictedFirst() throws Exception {
+        TestClock clock = new TestClock(NOW);
+        BoundedExpiringMap<Integer, String> map = new BoundedExpiringMap<>(10, 60L, clock, "test entries");
+        map.put(0, "value0");
+        for (int i = 1; i < 10; i++) {
+            map.put(i, "value" + i, NOW.plusSeconds(1L));
+        }
+        clock.instant = NOW.plusSeconds(2L);
+
+        map.put(10, "value10");
+        assertEquals(2, map.size());
+        assertEquals("value0", map.get(0));
+        assertEquals("value10", map.get(10));
+    }
+
+    @Test
+    public void testInvalidValueRemoved() throws Exception {
+        BoundedExpiringMap<String, String> map = new BoundedExpiringMap<>(10, 60L, "test entries");
+        map.put("alice", "a");
+        assertEquals("a", map.get("alice", "a"::equals));
+        assertNull(map.get("alice", "b"::equals));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        BoundedExpiringMap<String, String> map = new BoundedExpiringMap<>(10, 60L, "test entries");
+        map.put("alice", "a");
+        map.put("bob", "b");
+        map.put("carol", "c");
+
+        // The key is only removed if it still has the given value
+        map.remove("alice", "b");
+        assertEquals("a", map.get("alice"));
+        map.remove("alice", map.get("alice"));
+        assertNull(map.get("alice"));
+
+        map.removeIf("b"::equals);
+        assertNull(map.get("bob"));
+        assertEquals("c", map.get("carol"));
+        assertEquals(1, map.size());
+    }
+
+    private static class TestClock extends Clock {
+
+        private Instant instant;
+
+        TestClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
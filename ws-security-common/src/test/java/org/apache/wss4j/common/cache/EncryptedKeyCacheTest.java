@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class EncryptedKeyCacheTest {
+
+    private static final String RSA_OAEP = "http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p";
+    private static final String RSA_15 = "http://www.w3.org/2001/04/xmlenc#rsa-1_5";
+
+    @Test
+    public void testGetSecretKey() throws Exception {
+        KeyPair keyPair = createKeyPair();
+        byte[] encryptedKey = createBytes(256);
+        byte[] secretKey = createBytes(16);
+
+        EncryptedKeyCache cache = new EncryptedKeyCache();
+        cache.add(encryptedKey, RSA_OAEP, keyPair.getPublic(), secretKey);
+
+        assertArrayEquals(secretKey, cache.getSecretKey(encryptedKey, RSA_OAEP, keyPair.getPublic()));
+
+        // The algorithm and the public key must match
+        assertNull(cache.getSecretKey(encryptedKey, RSA_15, keyPair.getPublic()));
+        assertNull(cache.getSecretKey(encryptedKey, RSA_OAEP, createKeyPair().getPublic()));
+        assertNull(cache.getSecretKey(createBytes(256), RSA_OAEP, keyPair.getPublic()));
+    }
+
+    @Test
+    public void testGetSecretKeyByEncryptedKeySHA1() throws Exception {
+        byte[] encryptedKey = createBytes(256);
+        byte[] secretKey = createBytes(16);
+
+        EncryptedKeyCache cache = new EncryptedKeyCache();
+        cache.add(encryptedKey, RSA_OAEP, null, secretKey);
+
+        String encryptedKeySHA1 =
+            Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1").digest(encryptedKey));
+        assertArrayEquals(secretKey, cache.getSecretKey(encryptedKeySHA1));
+
+        assertNull(cache.getSecretKey(Base64.getEncoder().encodeToString(createBytes(20))));
+        assertNull(cache.getSecretKey("not base64!"));
+    }
+
+    @Test
+    public void testAddByEncryptedKeySHA1() throws Exception {
+        byte[] encryptedKey = createBytes(256);
+        byte[] secretKey = createBytes(16);
+        String encryptedKeySHA1 =
+            Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1").digest(encryptedKey));
+
+        EncryptedKeyCache cache = new EncryptedKeyCache();
+        cache.add(encryptedKeySHA1, secretKey);
+        assertArrayEquals(secretKey, cache.getSecretKey(encryptedKeySHA1));
+
+        // The algorithm and the public key of the entry are not known
+        assertNull(cache.getSecretKey(encryptedKey, RSA_OAEP, null));
+    }
+
+    @Test
+    public void testCachedKeyIsCopied() throws Exception {
+        byte[] encryptedKey = createBytes(256);
+        byte[] secretKey = createBytes(16);
+        byte[] original = secretKey.clone();
+
+        EncryptedKeyCache cache = new EncryptedKeyCache();
+        cache.add(encryptedKey, RSA_OAEP, null, secretKey);
+        secretKey[0]++;
+        cache.getSecretKey(encryptedKey, RSA_OAEP, null)[1]++;
+
+        assertArrayEquals(original, cache.getSecretKey(encryptedKey, RSA_OAEP, null));
+    }
+
+    private static KeyPair createKeyPair() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    private static byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.cache;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutboundEncryptedKeyCacheTest {
+
+    private static final String AES_128_RSA_OAEP =
+        "http://www.w3.org/2001/04/xmlenc#aes128-cbc:http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p";
+    private static final String AES_256_RSA_OAEP =
+        "http://www.w3.org/2001/04/xmlenc#aes256-cbc:http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p";
+
+    @Test
+    public void testReuseKey() throws Exception {
+        PublicKey publicKey = createPublicKey();
+        byte[] symmetricKey = createBytes(16);
+        byte[] encryptedKey = createBytes(128);
+
+        OutboundEncryptedKeyCache cache = new OutboundEncryptedKeyCache();
+        assertNull(cache.get(publicKey, AES_128_RSA_OAEP));
+        cache.add(publicKey, AES_128_RSA_OAEP, symmetricKey, encryptedKey);
+
+        // The symmetric key and the wrapped key bytes are returned together
+        OutboundEncryptedKeyCache.CachedKey cachedKey = cache.get(publicKey, AES_128_RSA_OAEP);
+        assertArrayEquals(symmetricKey, cachedKey.getSymmetricKey());
+        assertArrayEquals(encryptedKey, cachedKey.getEncryptedKey());
+        assertTrue(cachedKey.isKeyOf(symmetricKey));
+        assertFalse(cachedKey.isKeyOf(createBytes(16)));
+
+        // The recipient and the algorithms must match
+        assertNull(cache.get(createPublicKey(), AES_128_RSA_OAEP));
+        assertNull(cache.get(publicKey, AES_256_RSA_OAEP));
+    }
+
+    @Test
+    public void testMaxMessages() throws Exception {
+        PublicKey publicKey = createPublicKey();
+        byte[] symmetricKey = createBytes(16);
+
+        OutboundEncryptedKeyCache cache =
+            new OutboundEncryptedKeyCache(OutboundEncryptedKeyCache.DEFAULT_MAX_SIZE, OutboundEncryptedKeyCache.DEFAULT_TTL, 3);
+        cache.add(publicKey, AES_128_RSA_OAEP, symmetricKey, createBytes(128));
+
+        // The message the key was generated for counts as the first message
+        assertArrayEquals(symmetricKey, cache.get(publicKey, AES_128_RSA_OAEP).getSymmetricKey());
+        assertArrayEquals(symmetricKey, cache.get(publicKey, AES_128_RSA_OAEP).getSymmetricKey());
+        assertNull(cache.get(publicKey, AES_128_RSA_OAEP));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testAlgorithms() throws Exception {
+        String aes128 = "http://www.w3.org/2001/04/xmlenc#aes128-cbc";
+        String rsaOaep = "http://www.w3.org/2009/xmlenc11#rsa-oaep";
+        String sha256 = "http://www.w3.org/2001/04/xmlenc#sha256";
+        String mgf1sha256 = "http://www.w3.org/2009/xmlenc11#mgf1sha256";
+
+        String algorithms = OutboundEncryptedKeyCache.getAlgorithms(aes128, rsaOaep, sha256, mgf1sha256, null);
+        assertEquals(algorithms,
+                     OutboundEncryptedKeyCache.getAlgorithms(aes128, rsaOaep, sha256, mgf1sha256, null));
+        assertFalse(algorithms.equals(
+            OutboundEncryptedKeyCache.getAlgorithms(aes128, rsaOaep, null, mgf1sha256, null)));
+        assertFalse(algorithms.equals(
+            OutboundEncryptedKeyCache.getAlgorithms(aes128, rsaOaep, sha256, null, null)));
+        assertFalse(algorithms.equals(
+            OutboundEncryptedKeyCache.getAlgorithms(aes128, rsaOaep, sha256, mgf1sha256, new byte[] {1})));
+    }
+
+    private static PublicKey createPublicKey() throws Exception {
+        KeyPair keyPair = createKeyPairGenerator().generateKeyPair();
+        return keyPair.getPublic();
+    }
+
+    private static KeyPairGenerator createKeyPairGenerator() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        return keyPairGenerator;
+    }
+
+    private static byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random().nextBytes(bytes);
+        return bytes;
+    }
+}
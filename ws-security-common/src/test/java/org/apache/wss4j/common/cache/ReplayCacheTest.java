@@ -26,6 +26,7 @@ import java.util.UUID;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -52,6 +53,70 @@ public class ReplayCacheTest {
         replayCache.close();
     }
 
+    @Test
+    public void testConcurrentMemoryReplayCache() throws InterruptedException, IOException {
+        ReplayCache replayCache = new ConcurrentMemoryReplayCache();
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testConcurrentMemoryReplayCacheAddIfAbsent() throws InterruptedException, IOException {
+        ConcurrentMemoryReplayCache replayCache = new ConcurrentMemoryReplayCache();
+
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, Instant.now().plusSeconds(1L)));
+        assertFalse(replayCache.addIfAbsent(id, Instant.now().plusSeconds(100L)));
+        assertTrue(replayCache.contains(id));
+
+        // An expired identifier can be added again
+        Thread.sleep(1250L);
+        assertTrue(replayCache.addIfAbsent(id, Instant.now().plusSeconds(100L)));
+        assertTrue(replayCache.contains(id));
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testConcurrentMemoryReplayCacheMaxEntries() throws IOException {
+        ConcurrentMemoryReplayCache replayCache = new ConcurrentMemoryReplayCache(100);
+
+        for (int i = 0; i < 1000; i++) {
+            replayCache.add(UUID.randomUUID().toString(), Instant.now().plusSeconds(10L + i));
+        }
+        assertTrue(replayCache.size() <= 100);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testConcurrentMemoryReplayCacheReplayDetectedWhenFull() throws InterruptedException, IOException {
+        ConcurrentMemoryReplayCache replayCache = new ConcurrentMemoryReplayCache(100);
+
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, Instant.now().plusSeconds(100L)));
+        for (int i = 0; i < 99; i++) {
+            assertTrue(replayCache.addIfAbsent(UUID.randomUUID().toString(), Instant.now().plusSeconds(1L)));
+        }
+
+        // The cache is full, so new identifiers are rejected and no live identifier is evicted
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(replayCache.addIfAbsent(UUID.randomUUID().toString(), Instant.now().plusSeconds(100L)));
+        }
+        assertEquals(100, replayCache.size());
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.addIfAbsent(id, Instant.now().plusSeconds(100L)));
+
+        // Once identifiers have expired, there is room for new identifiers again
+        Thread.sleep(2250L);
+        assertTrue(replayCache.addIfAbsent(UUID.randomUUID().toString(), Instant.now().plusSeconds(100L)));
+        assertFalse(replayCache.addIfAbsent(id, Instant.now().plusSeconds(100L)));
+
+        replayCache.close();
+    }
+
     private void testReplayCacheInstance(ReplayCache replayCache) throws InterruptedException, IOException {
 
         // Test default TTL caches OK
@@ -70,5 +135,11 @@ public class ReplayCacheTest {
         Thread.sleep(1250L);
         assertFalse(replayCache.contains(id));
 
+        // Test atomic check-and-insert
+        id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, null));
+        assertFalse(replayCache.addIfAbsent(id, Instant.now().plusSeconds(100L)));
+        assertTrue(replayCache.contains(id));
+
     }
 }
\ No newline at end of file
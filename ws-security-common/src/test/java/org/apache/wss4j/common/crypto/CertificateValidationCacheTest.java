@@ -0,0 +1,273 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.cert.CertStore;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the caching of certificate path validation results by Merlin. The test certificates are
+ * only valid for a limited period, so the certificate paths are validated, and the cache entries
+ * expire, against a fixed time.
+ */
+public class CertificateValidationCacheTest {
+
+    private static final Instant VALIDATION_TIME = Instant.parse("2018-01-01T00:00:00Z");
+
+    @Test
+    public void testCacheHit() throws Exception {
+        CountingMerlin crypto = createCrypto(new TestClock(VALIDATION_TIME), 60L);
+        X509Certificate[] certs = getCertificates("keys/wss40.jks", "wss40");
+
+        crypto.verifyTrust(certs, false, null, null);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, crypto.validations);
+        assertEquals(1, crypto.getCertificateValidationCache().size());
+
+        // A different revocation setting is validated separately
+        crypto.setCRLCertStore(loadCRLCertStore("keys/wss40CACRL.pem"));
+        crypto.verifyTrust(certs, false, null, null);
+        crypto.verifyTrust(certs, true, null, null);
+        crypto.verifyTrust(certs, true, null, null);
+        assertEquals(3, crypto.validations);
+        assertEquals(2, crypto.getCertificateValidationCache().size());
+    }
+
+    @Test
+    public void testCertConstraintsEnforcedOnHit() throws Exception {
+        CountingMerlin crypto = createCrypto(new TestClock(VALIDATION_TIME), 60L);
+        X509Certificate[] certs = getCertificates("keys/wss40.jks", "wss40");
+        Collection<Pattern> subjectConstraints = Collections.singletonList(Pattern.compile(".*CN=Colm.*"));
+        Collection<Pattern> issuerConstraints = Collections.singletonList(Pattern.compile(".*CN=Werner.*"));
+
+        crypto.verifyTrust(certs, false, subjectConstraints, issuerConstraints);
+        crypto.verifyTrust(certs, false, subjectConstraints, issuerConstraints);
+        assertEquals(1, crypto.validations);
+
+        Collection<Pattern> otherConstraints = Collections.singletonList(Pattern.compile(".*CN=Bob.*"));
+        try {
+            crypto.verifyTrust(certs, false, otherConstraints, issuerConstraints);
+            fail("Failure expected on a Subject DN mismatch");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+        try {
+            crypto.verifyTrust(certs, false, subjectConstraints, otherConstraints);
+            fail("Failure expected on an Issuer DN mismatch");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+
+        // Only successful validations are cached
+        assertEquals(1, crypto.getCertificateValidationCache().size());
+        crypto.verifyTrust(certs, false, subjectConstraints, issuerConstraints);
+        assertEquals(3, crypto.validations);
+    }
+
+    @Test
+    public void testCacheExpiry() throws Exception {
+        TestClock clock = new TestClock(VALIDATION_TIME);
+        CountingMerlin crypto = createCrypto(clock, 60L);
+        X509Certificate[] certs = getCertificates("keys/wss40.jks", "wss40");
+
+        crypto.verifyTrust(certs, false, null, null);
+        clock.instant = VALIDATION_TIME.plusSeconds(59L);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, crypto.validations);
+
+        // The time-to-live has elapsed
+        clock.instant = VALIDATION_TIME.plusSeconds(61L);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(2, crypto.validations);
+
+        // An entry does not outlive the certificate
+        Instant notAfter = certs[0].getNotAfter().toInstant();
+        clock.instant = notAfter.minusSeconds(10L);
+        crypto.getCertificateValidationCache().clear();
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(3, crypto.validations);
+
+        clock.instant = notAfter.plusSeconds(1L);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(4, crypto.validations);
+    }
+
+    @Test
+    public void testCacheFlushed() throws Exception {
+        CountingMerlin crypto = createCrypto(new TestClock(VALIDATION_TIME), 60L);
+        CertificateValidationCache cache = crypto.getCertificateValidationCache();
+        X509Certificate[] certs = getCertificates("keys/wss40.jks", "wss40");
+
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, cache.size());
+        crypto.setCRLCertStore(loadCRLCertStore("keys/wss40CACRL.pem"));
+        assertEquals(0, cache.size());
+
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, cache.size());
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks"));
+        assertEquals(0, cache.size());
+
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, cache.size());
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks"));
+        assertEquals(0, cache.size());
+
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, cache.size());
+        crypto.keyStoresChanged();
+        assertEquals(0, cache.size());
+
+        assertEquals(4, crypto.validations);
+    }
+
+    @Test
+    public void testRevocationNotBypassed() throws Exception {
+        CountingMerlin crypto = createCrypto(new TestClock(VALIDATION_TIME), 60L);
+        X509Certificate[] certs = getCertificates("keys/wss40rev.jks", "wss40rev");
+
+        // The certificate is trusted as long as revocation is not checked
+        crypto.verifyTrust(certs, false, null, null);
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, crypto.validations);
+
+        crypto.setCRLCertStore(loadCRLCertStore("keys/wss40CACRL.pem"));
+        try {
+            crypto.verifyTrust(certs, true, null, null);
+            fail("Failure expected on a revoked certificate");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+        try {
+            crypto.verifyTrust(certs, true, null, null);
+            fail("Failure expected on a revoked certificate");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+        assertEquals(3, crypto.validations);
+        assertEquals(0, crypto.getCertificateValidationCache().size());
+    }
+
+    private static CountingMerlin createCrypto(Clock clock, long ttl) throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks"));
+        crypto.setCertificateValidationCache(
+            new CertificateValidationCache(CertificateValidationCache.DEFAULT_MAX_SIZE, ttl, clock)
+        );
+        return crypto;
+    }
+
+    private static X509Certificate[] getCertificates(String location, String alias) throws Exception {
+        KeyStore keyStore = loadKeyStore(location);
+        return new X509Certificate[] {(X509Certificate)keyStore.getCertificate(alias)};
+    }
+
+    private static KeyStore loadKeyStore(String location) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(CertificateValidationCacheTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        return keyStore;
+    }
+
+    private static CertStore loadCRLCertStore(String location) throws Exception {
+        ClassLoader loader = Loader.getClassLoader(CertificateValidationCacheTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            X509CRL crl = (X509CRL)CertificateFactory.getInstance("X.509").generateCRL(input);
+            return CertStore.getInstance(
+                "Collection", new CollectionCertStoreParameters(Collections.singletonList(crl))
+            );
+        }
+    }
+
+    /**
+     * A Merlin that counts the certificate path validations, and validates against a fixed time.
+     */
+    private static class CountingMerlin extends Merlin {
+
+        private int validations;
+
+        @Override
+        protected void verifyTrust(
+            X509Certificate[] certs, boolean enableRevocation, Collection<Pattern> subjectCertConstraints
+        ) throws WSSecurityException {
+            validations++;
+            super.verifyTrust(certs, enableRevocation, subjectCertConstraints);
+        }
+
+        @Override
+        protected PKIXParameters createPKIXParameters(
+            Set<TrustAnchor> trustAnchors, boolean enableRevocation
+        ) throws InvalidAlgorithmParameterException {
+            PKIXParameters param = super.createPKIXParameters(trustAnchors, enableRevocation);
+            param.setDate(Date.from(VALIDATION_TIME));
+            return param;
+        }
+    }
+
+    private static class TestClock extends Clock {
+
+        private volatile Instant instant;
+
+        TestClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+
+import org.apache.wss4j.common.util.Loader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test the indexed certificate lookups of Merlin.
+ */
+public class KeyStoreIndexTest {
+
+    @Test
+    public void testLookups() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks"));
+
+        X509Certificate cert = getCertificate(crypto, "wss40_server");
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(cert.getIssuerX500Principal().getName(), cert.getSerialNumber());
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.THUMBPRINT_SHA1);
+        cryptoType.setBytes(MessageDigest.getInstance("SHA1").digest(cert.getEncoded()));
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SKI_BYTES);
+        cryptoType.setBytes(crypto.getSKIBytesFromCert(cert));
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+        cryptoType.setSubjectDN(cert.getSubjectX500Principal().getName());
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        assertEquals("wss40_server", crypto.getX509Identifier(cert));
+        crypto.verifyTrust(cert.getPublicKey());
+    }
+
+    @Test
+    public void testIndexRebuiltOnSetKeyStore() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks"));
+        X509Certificate serverCert = getCertificate(crypto, "wss40_server");
+        assertEquals("wss40_server", crypto.getX509Identifier(serverCert));
+
+        crypto.setKeyStore(loadKeyStore("keys/wss40.jks"));
+        X509Certificate cert = getCertificate(crypto, "wss40");
+        assertNotNull(cert);
+
+        assertNull(crypto.getX509Identifier(serverCert));
+        assertEquals("wss40", crypto.getX509Identifier(cert));
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(
+            serverCert.getIssuerX500Principal().getName(), serverCert.getSerialNumber()
+        );
+        assertNull(crypto.getX509Certificates(cryptoType));
+    }
+
+    @Test
+    public void testIndexRebuiltOnKeyStoresChanged() throws Exception {
+        KeyStore keyStore = loadKeyStore("keys/wss40_server.jks");
+        X509Certificate serverCert = (X509Certificate)keyStore.getCertificate("wss40_server");
+        X509Certificate otherCert = (X509Certificate)loadKeyStore("keys/wss40.jks").getCertificate("wss40");
+        keyStore.setCertificateEntry("replaced", serverCert);
+
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(keyStore);
+        assertNull(crypto.getX509Identifier(otherCert));
+
+        // Replace the certificate of an alias in place, the size of the KeyStore is unchanged
+        keyStore.setCertificateEntry("replaced", otherCert);
+        crypto.keyStoresChanged();
+
+        assertEquals("replaced", crypto.getX509Identifier(otherCert));
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(otherCert.getIssuerX500Principal().getName(), otherCert.getSerialNumber());
+        assertEquals(otherCert, crypto.getX509Certificates(cryptoType)[0]);
+    }
+
+    private static X509Certificate getCertificate(Crypto crypto, String alias) throws Exception {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(alias);
+        return crypto.getX509Certificates(cryptoType)[0];
+    }
+
+    private static KeyStore loadKeyStore(String location) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(KeyStoreIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        return keyStore;
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.cert.CertStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test that Merlin builds the trust anchors and PKIXParameters once per generation of the
+ * keystore, truststore and CRL CertStore, and that the cached PKIXParameters can't be changed
+ * by a caller. The test certificates are only valid for a limited period, so the certificate
+ * paths are validated against a fixed time.
+ */
+public class MerlinTrustStateTest {
+
+    private static final Instant VALIDATION_TIME = Instant.parse("2018-01-01T00:00:00Z");
+
+    @Test
+    public void testTrustAnchorsRebuiltOnSetTrustStore() throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        KeyStore truststore = loadKeyStore("keys/wss40CA.jks");
+        crypto.setTrustStore(truststore);
+
+        assertEquals(getCertificates(truststore), getTrustedCertificates(crypto.getPKIXParameters(false)));
+        assertEquals(getCertificates(truststore), getTrustedCertificates(crypto.getPKIXParameters(true)));
+        assertEquals(1, crypto.builds);
+
+        KeyStore otherTruststore = loadKeyStore("keys/wss40badcatrust.jks");
+        crypto.setTrustStore(otherTruststore);
+        assertEquals(getCertificates(otherTruststore), getTrustedCertificates(crypto.getPKIXParameters(false)));
+        assertEquals(2, crypto.builds);
+    }
+
+    @Test
+    public void testTrustAnchorsRebuiltOnSetKeyStore() throws Exception {
+        // Without a truststore, the trust anchors are taken from the keystore
+        CountingMerlin crypto = new CountingMerlin();
+        KeyStore keystore = loadKeyStore("keys/wss40CA.jks");
+        crypto.setKeyStore(keystore);
+
+        assertEquals(getCertificates(keystore), getTrustedCertificates(crypto.getPKIXParameters(false)));
+        crypto.getPKIXParameters(false);
+        assertEquals(1, crypto.builds);
+
+        KeyStore otherKeystore = loadKeyStore("keys/wss40_server.jks");
+        crypto.setKeyStore(otherKeystore);
+        assertEquals(getCertificates(otherKeystore), getTrustedCertificates(crypto.getPKIXParameters(false)));
+        assertEquals(2, crypto.builds);
+    }
+
+    @Test
+    public void testParametersRebuiltOnSetCRLCertStore() throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks"));
+
+        assertTrue(crypto.getPKIXParameters(true).getCertStores().isEmpty());
+        assertEquals(1, crypto.builds);
+
+        CertStore crlCertStore = loadCRLCertStore("keys/wss40CACRL.pem");
+        crypto.setCRLCertStore(crlCertStore);
+        assertEquals(Collections.singletonList(crlCertStore), crypto.getPKIXParameters(true).getCertStores());
+        assertTrue(crypto.getPKIXParameters(false).getCertStores().isEmpty());
+        assertEquals(2, crypto.builds);
+    }
+
+    @Test
+    public void testReturnedParametersAreCopies() throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks"));
+        X509Certificate[] certs = getCertificates("keys/wss40.jks", "wss40");
+
+        PKIXParameters param = crypto.getPKIXParameters(false);
+        assertNotSame(param, crypto.getPKIXParameters(false));
+
+        // Changing the returned copy must not affect the next validation
+        KeyStore otherTruststore = loadKeyStore("keys/wss40badcatrust.jks");
+        param.setTrustAnchors(getTrustAnchors(otherTruststore));
+        param.setDate(Date.from(VALIDATION_TIME.plusSeconds(100L * 365L * 24L * 60L * 60L)));
+        param.setRevocationEnabled(true);
+        param.addCertStore(loadCRLCertStore("keys/wss40CACRL.pem"));
+
+        PKIXParameters next = crypto.getPKIXParameters(false);
+        assertEquals(getCertificates(loadKeyStore("keys/wss40CA.jks")), getTrustedCertificates(next));
+        assertEquals(Date.from(VALIDATION_TIME), next.getDate());
+        assertFalse(next.isRevocationEnabled());
+        assertTrue(next.getCertStores().isEmpty());
+
+        crypto.verifyTrust(certs, false, null, null);
+        assertEquals(1, crypto.builds);
+    }
+
+    @Test
+    public void testRevokedCertificateRejected() throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks"));
+        crypto.setCRLCertStore(loadCRLCertStore("keys/wss40CACRL.pem"));
+        X509Certificate[] revokedCerts = getCertificates("keys/wss40rev.jks", "wss40rev");
+        X509Certificate[] certs = getCertificates("keys/wss40.jks", "wss40");
+
+        crypto.verifyTrust(revokedCerts, false, null, null);
+        crypto.verifyTrust(certs, true, null, null);
+        for (int i = 0; i < 2; i++) {
+            try {
+                crypto.verifyTrust(revokedCerts, true, null, null);
+                fail("Failure expected on a revoked certificate");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+            }
+        }
+        assertEquals(1, crypto.builds);
+
+        // The revocation check survives rebuilding the trust anchors
+        crypto.setTrustStore(loadKeyStore("keys/wss40CA.jks"));
+        try {
+            crypto.verifyTrust(revokedCerts, true, null, null);
+            fail("Failure expected on a revoked certificate");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+        crypto.verifyTrust(certs, true, null, null);
+        assertEquals(2, crypto.builds);
+    }
+
+    private static Set<Certificate> getTrustedCertificates(PKIXParameters param) {
+        Set<Certificate> certs = new HashSet<>();
+        for (TrustAnchor trustAnchor : param.getTrustAnchors()) {
+            certs.add(trustAnchor.getTrustedCert());
+        }
+        return certs;
+    }
+
+    private static Set<TrustAnchor> getTrustAnchors(KeyStore keyStore) throws Exception {
+        Set<TrustAnchor> trustAnchors = new HashSet<>();
+        for (Certificate cert : getCertificates(keyStore)) {
+            trustAnchors.add(new TrustAnchor((X509Certificate)cert, null));
+        }
+        return trustAnchors;
+    }
+
+    private static Set<Certificate> getCertificates(KeyStore keyStore) throws Exception {
+        Set<Certificate> certs = new HashSet<>();
+        Enumeration<String> aliases = keyStore.aliases();
+        while (aliases.hasMoreElements()) {
+            Certificate cert = keyStore.getCertificate(aliases.nextElement());
+            if (cert != null) {
+                certs.add(cert);
+            }
+        }
+        return certs;
+    }
+
+    private static X509Certificate[] getCertificates(String location, String alias) throws Exception {
+        KeyStore keyStore = loadKeyStore(location);
+        return new X509Certificate[] {(X509Certificate)keyStore.getCertificate(alias)};
+    }
+
+    private static KeyStore loadKeyStore(String location) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(MerlinTrustStateTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        return keyStore;
+    }
+
+    private static CertStore loadCRLCertStore(String location) throws Exception {
+        ClassLoader loader = Loader.getClassLoader(MerlinTrustStateTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            X509CRL crl = (X509CRL)CertificateFactory.getInstance("X.509").generateCRL(input);
+            return CertStore.getInstance(
+                "Collection", new CollectionCertStoreParameters(Collections.singletonList(crl))
+            );
+        }
+    }
+
+    /**
+     * A Merlin that counts how often the trust anchors are built, and validates against a
+     * fixed time.
+     */
+    private static class CountingMerlin extends Merlin {
+
+        private int builds;
+
+        @Override
+        protected PKIXParameters createPKIXParameters(
+            Set<TrustAnchor> trustAnchors, boolean enableRevocation
+        ) throws InvalidAlgorithmParameterException {
+            // The parameters with and without revocation are built together
+            if (!enableRevocation) {
+                builds++;
+            }
+            PKIXParameters param = super.createPKIXParameters(trustAnchors, enableRevocation);
+            param.setDate(Date.from(VALIDATION_TIME));
+            return param;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.util.Properties;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the caching of the private keys recovered by Merlin.
+ */
+public class PrivateKeyCacheTest {
+
+    @Test
+    public void testCachedPrivateKey() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks"));
+        crypto.setPrivateKeyCache(new PrivateKeyCache());
+
+        PrivateKey privateKey = crypto.getPrivateKey("wss40_server", "security");
+        assertNotNull(privateKey);
+        assertEquals(1, crypto.getPrivateKeyCache().size());
+        assertSame(privateKey, crypto.getPrivateKey("wss40_server", "security"));
+    }
+
+    /**
+     * The cached key is not returned for a different password
+     */
+    @Test(expected = WSSecurityException.class)
+    public void testCachedPrivateKeyWrongPassword() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks"));
+        crypto.setPrivateKeyCache(new PrivateKeyCache());
+
+        assertNotNull(crypto.getPrivateKey("wss40_server", "security"));
+        crypto.getPrivateKey("wss40_server", "insecurity");
+    }
+
+    @Test
+    public void testCacheClearedOnSetKeyStore() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks"));
+        crypto.setPrivateKeyCache(new PrivateKeyCache());
+
+        PrivateKey privateKey = crypto.getPrivateKey("wss40_server", "security");
+        crypto.setKeyStore(loadKeyStore("keys/wss40_server.jks"));
+        assertEquals(0, crypto.getPrivateKeyCache().size());
+        assertNotSame(privateKey, crypto.getPrivateKey("wss40_server", "security"));
+    }
+
+    @Test
+    public void testKeyEntryReplaced() throws Exception {
+        KeyStore keyStore = loadKeyStore("keys/wss40_server.jks");
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(keyStore);
+        crypto.setPrivateKeyCache(new PrivateKeyCache());
+
+        PrivateKey privateKey = crypto.getPrivateKey("wss40_server", "security");
+
+        // Replace the key entry in place with the entry of another keystore
+        KeyStore otherKeyStore = loadKeyStore("keys/wss40.jks");
+        keyStore.setKeyEntry(
+            "wss40_server", otherKeyStore.getKey("wss40", "security".toCharArray()),
+            "security".toCharArray(), otherKeyStore.getCertificateChain("wss40")
+        );
+
+        PrivateKey newPrivateKey = crypto.getPrivateKey("wss40_server", "security");
+        assertNotSame(privateKey, newPrivateKey);
+        assertEquals(otherKeyStore.getKey("wss40", "security".toCharArray()), newPrivateKey);
+    }
+
+    @Test
+    public void testDestroyedPrivateKey() throws Exception {
+        KeyStore keyStore = loadKeyStore("keys/wss40_server.jks");
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(keyStore);
+        PrivateKeyCache cache = new PrivateKeyCache();
+        crypto.setPrivateKeyCache(cache);
+
+        DestroyablePrivateKey destroyableKey = new DestroyablePrivateKey();
+        ByteBuffer cacheKey = cache.createKey("wss40_server", "security");
+        cache.add(cacheKey, keyStore, keyStore.getCertificate("wss40_server"), destroyableKey);
+
+        PrivateKey privateKey = crypto.getPrivateKey("wss40_server", "security");
+        assertSame(destroyableKey, privateKey);
+        assertTrue(crypto.isPrivateKeyCacheEnabled());
+        assertSame(destroyableKey, crypto.getPrivateKey("wss40_server", "security"));
+
+        // A key that is destroyed anyway is a cache miss, and is evicted
+        KeyUtils.destroyKey(privateKey);
+        assertTrue(destroyableKey.isDestroyed());
+        PrivateKey newPrivateKey = crypto.getPrivateKey("wss40_server", "security");
+        assertNotSame(destroyableKey, newPrivateKey);
+        assertEquals(keyStore.getKey("wss40_server", "security".toCharArray()), newPrivateKey);
+        assertEquals(1, cache.size());
+
+        crypto.setPrivateKeyCache(null);
+        assertFalse(crypto.isPrivateKeyCacheEnabled());
+    }
+
+    @Test
+    public void testCacheConfiguration() throws Exception {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", "org.apache.wss4j.common.crypto.Merlin");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", "keys/wss40_server.jks");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+
+        Merlin crypto = (Merlin)CryptoFactory.getInstance(properties);
+        assertFalse(crypto.isPrivateKeyCacheEnabled());
+
+        properties.put("org.apache.wss4j.crypto.merlin.private.key.cache", "true");
+        properties.put("org.apache.wss4j.crypto.merlin.private.key.cache.size", "10");
+        properties.put("org.apache.wss4j.crypto.merlin.private.key.cache.ttl", "60");
+        crypto = (Merlin)CryptoFactory.getInstance(properties);
+        assertEquals(10, crypto.getPrivateKeyCache().getMaxSize());
+        assertEquals(60L, crypto.getPrivateKeyCache().getTtl());
+    }
+
+    private static final class DestroyablePrivateKey implements PrivateKey {
+        private static final long serialVersionUID = 1L;
+
+        private boolean destroyed;
+
+        @Override
+        public String getAlgorithm() {
+            return "RSA";
+        }
+
+        @Override
+        public String getFormat() {
+            return null;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return null;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return destroyed;
+        }
+    }
+
+    private static KeyStore loadKeyStore(String location) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(PrivateKeyCacheTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        return keyStore;
+    }
+}
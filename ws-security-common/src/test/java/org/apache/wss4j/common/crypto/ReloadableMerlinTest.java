@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+import org.apache.wss4j.common.util.Loader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the reloading of the key material of a ReloadableMerlin instance.
+ */
+public class ReloadableMerlinTest {
+
+    private Path keyStoreFile;
+
+    @Before
+    public void setUp() throws Exception {
+        keyStoreFile = Files.createTempFile("keystore", ".jks");
+        copyKeyStore("keys/wss40_server.jks");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(keyStoreFile);
+    }
+
+    @Test
+    public void testReloadOnChange() throws Exception {
+        ReloadableMerlin crypto = createCrypto();
+        assertTrue(crypto.getKeyStore().containsAlias("wss40_server"));
+        Merlin before = crypto.getCurrent();
+
+        // Nothing has changed yet
+        crypto.checkForChanges();
+        assertSame(before, crypto.getCurrent());
+
+        copyKeyStore("keys/wss40.jks");
+        crypto.checkForChanges();
+        assertNotSame(before, crypto.getCurrent());
+        assertTrue(crypto.getKeyStore().containsAlias("wss40"));
+        assertNotNull(crypto.getPrivateKey("wss40", "security"));
+        assertNull(crypto.getX509Certificates(getAliasType("wss40_server")));
+
+        // The previous key material is unchanged for anyone still using it
+        assertNotNull(before.getX509Certificates(getAliasType("wss40_server")));
+        crypto.close();
+    }
+
+    @Test
+    public void testFailedReloadKeepsKeyMaterial() throws Exception {
+        ReloadableMerlin crypto = createCrypto();
+        Merlin before = crypto.getCurrent();
+
+        Files.write(keyStoreFile, "not a keystore".getBytes(StandardCharsets.UTF_8));
+        touch();
+        crypto.checkForChanges();
+        assertSame(before, crypto.getCurrent());
+        assertNotNull(crypto.getPrivateKey("wss40_server", "security"));
+
+        // The reload is retried once the file is complete
+        copyKeyStore("keys/wss40.jks");
+        crypto.checkForChanges();
+        assertTrue(crypto.getKeyStore().containsAlias("wss40"));
+        crypto.close();
+    }
+
+    @Test
+    public void testOverridesSurviveReload() throws Exception {
+        ReloadableMerlin crypto = createCrypto();
+        PrivateKeyCache privateKeyCache = new PrivateKeyCache();
+        crypto.setPrivateKeyCache(privateKeyCache);
+        crypto.setDefaultX509Identifier("wss40");
+        crypto.setTrustStore(crypto.getKeyStore());
+        assertNotNull(crypto.getPrivateKey("wss40_server", "security"));
+        assertEquals(1, privateKeyCache.size());
+
+        copyKeyStore("keys/wss40.jks");
+        crypto.checkForChanges();
+        assertTrue(crypto.getKeyStore().containsAlias("wss40"));
+
+        // The values set explicitly are applied to the reloaded key material
+        assertSame(privateKeyCache, crypto.getPrivateKeyCache());
+        assertEquals(0, privateKeyCache.size());
+        assertEquals("wss40", crypto.getDefaultX509Identifier());
+        assertTrue(crypto.getTrustStore().containsAlias("wss40_server"));
+        assertNotNull(crypto.getPrivateKey("wss40", "security"));
+        assertEquals(1, privateKeyCache.size());
+
+        // keyStoresChanged is passed on to the current key material
+        crypto.keyStoresChanged();
+        assertEquals(0, privateKeyCache.size());
+        crypto.close();
+    }
+
+    @Test
+    public void testCryptoFactory() throws Exception {
+        Properties properties = getProperties();
+        properties.put("org.apache.wss4j.crypto.provider", ReloadableMerlin.class.getName());
+        Crypto crypto = CryptoFactory.getInstance(properties);
+        assertTrue(crypto instanceof ReloadableMerlin);
+        assertEquals("wss40_server", crypto.getDefaultX509Identifier());
+        ((ReloadableMerlin)crypto).close();
+    }
+
+    private ReloadableMerlin createCrypto() throws Exception {
+        return new ReloadableMerlin(getProperties(), Loader.getClassLoader(ReloadableMerlinTest.class), null);
+    }
+
+    private Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", keyStoreFile.toString());
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.alias", "wss40_server");
+        // Changes are checked explicitly by the tests
+        properties.put("org.apache.wss4j.crypto.merlin.reload.interval", "0");
+        return properties;
+    }
+
+    private void copyKeyStore(String location) throws Exception {
+        ClassLoader loader = Loader.getClassLoader(ReloadableMerlinTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, location)) {
+            Files.copy(input, keyStoreFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        touch();
+    }
+
+    private void touch() throws Exception {
+        // Make sure that the modification is detected on file systems with a coarse timestamp
+        long lastModified = Files.getLastModifiedTime(keyStoreFile).toMillis();
+        Files.setLastModifiedTime(keyStoreFile, FileTime.fromMillis(lastModified + 2000L));
+    }
+
+    private static CryptoType getAliasType(String alias) {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias(alias);
+        return cryptoType;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.kerberos;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class KerberosServiceSubjectCacheTest {
+
+    @Test
+    public void testSubjectIsCached() throws Exception {
+        TestSubjectCache cache = new TestSubjectCache(3600L);
+
+        Subject subject = cache.getSubject("bob", "bob@service.ws.apache.org", null);
+        assertSame(subject, cache.getSubject("bob", "bob@service.ws.apache.org", null));
+        assertEquals(1, cache.logins.get());
+
+        // A different service is cached separately
+        assertNotSame(subject, cache.getSubject("bob", "alice@service.ws.apache.org", null));
+        assertEquals(2, cache.logins.get());
+    }
+
+    @Test
+    public void testSubjectWithoutTicketIsCached() throws Exception {
+        TestSubjectCache cache = new TestSubjectCache(-1L);
+
+        Subject subject = cache.getSubject("bob", null, null);
+        assertSame(subject, cache.getSubject("bob", null, null));
+        assertEquals(1, cache.logins.get());
+    }
+
+    @Test
+    public void testSubjectIsRefreshedBeforeExpiry() throws Exception {
+        // The ticket expires within the refresh window
+        TestSubjectCache cache = new TestSubjectCache(60L);
+
+        Subject subject = cache.getSubject("bob", null, null);
+        assertNotSame(subject, cache.getSubject("bob", null, null));
+        assertEquals(2, cache.logins.get());
+    }
+
+    @Test
+    public void testCurrentSubjectIsKeptIfRefreshFails() throws Exception {
+        TestSubjectCache cache = new TestSubjectCache(60L);
+
+        Subject subject = cache.getSubject("bob", null, null);
+        cache.fail = true;
+        assertSame(subject, cache.getSubject("bob", null, null));
+    }
+
+    @Test
+    public void testRelogin() throws Exception {
+        TestSubjectCache cache = new TestSubjectCache(KerberosServiceSubjectCache.DEFAULT_REFRESH_WINDOW, 0L, 3600L);
+
+        Subject subject = cache.getSubject("bob", null, null);
+        Subject newSubject = cache.relogin("bob", null, null, subject);
+        assertNotSame(subject, newSubject);
+        assertSame(newSubject, cache.getSubject("bob", null, null));
+
+        // Another thread has already replaced the failed Subject
+        assertSame(newSubject, cache.relogin("bob", null, null, subject));
+        assertEquals(2, cache.logins.get());
+    }
+
+    @Test
+    public void testReloginTooSoon() throws Exception {
+        TestSubjectCache cache = new TestSubjectCache(3600L);
+
+        Subject subject = cache.getSubject("bob", null, null);
+        assertNull(cache.relogin("bob", null, null, subject));
+        assertSame(subject, cache.getSubject("bob", null, null));
+        assertEquals(1, cache.logins.get());
+    }
+
+    private static final class TestSubjectCache extends KerberosServiceSubjectCache {
+        private final AtomicInteger logins = new AtomicInteger();
+        private final long ticketLifetime;
+        private volatile boolean fail;
+
+        TestSubjectCache(long ticketLifetime) {
+            this(DEFAULT_REFRESH_WINDOW, DEFAULT_MIN_RELOGIN_INTERVAL, ticketLifetime);
+        }
+
+        TestSubjectCache(long refreshWindow, long minReloginInterval, long ticketLifetime) {
+            super(refreshWindow, minReloginInterval);
+            this.ticketLifetime = ticketLifetime;
+        }
+
+        @Override
+        protected Subject login(String contextName, CallbackHandler callbackHandler) throws LoginException {
+            if (fail) {
+                throw new LoginException("KDC unavailable");
+            }
+            logins.incrementAndGet();
+
+            Subject subject = new Subject();
+            KerberosPrincipal principal = new KerberosPrincipal(contextName + "@WS.APACHE.ORG");
+            subject.getPrincipals().add(principal);
+            if (ticketLifetime > 0) {
+                // The ticket was obtained an hour ago
+                Instant startTime = Instant.now().minusSeconds(3600L);
+                Instant endTime = Instant.now().plusSeconds(ticketLifetime);
+                KerberosTicket ticket =
+                    new KerberosTicket(new byte[] {1}, principal,
+                                       new KerberosPrincipal("krbtgt/WS.APACHE.ORG@WS.APACHE.ORG"),
+                                       new byte[16], 17, new boolean[32], Date.from(startTime),
+                                       Date.from(startTime), Date.from(endTime), null, null);
+                subject.getPrivateCredentials().add(ticket);
+            }
+            return subject;
+        }
+    }
+}
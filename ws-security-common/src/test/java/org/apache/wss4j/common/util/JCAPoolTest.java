@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class JCAPoolTest {
+
+    @Test
+    public void testCipher() throws Exception {
+        SecretKeySpec key = new SecretKeySpec(new byte[16], "AES");
+        Cipher cipher = JCAPool.getCipher("AES/ECB/NoPadding", null, key);
+        JCAPool.release(cipher, null, key);
+
+        assertSame(cipher, JCAPool.getCipher("AES/ECB/NoPadding", null, key));
+        // A borrowed instance is not handed out again until it is released
+        assertNotSame(cipher, JCAPool.getCipher("AES/ECB/NoPadding", null, key));
+        // Instances are pooled per provider
+        assertNotSame(cipher, JCAPool.getCipher("AES/ECB/NoPadding", "SunJCE", key));
+    }
+
+    @Test
+    public void testCipherKeyCleared() throws Exception {
+        byte[] data = new byte[16];
+        byte[] keyBytes = new byte[16];
+        Arrays.fill(keyBytes, (byte) 1);
+        SecretKeySpec key = new SecretKeySpec(keyBytes, "AES");
+        Cipher cipher = JCAPool.getCipher("AES/CBC/NoPadding", null, key);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(new byte[16]));
+        byte[] encrypted = cipher.doFinal(data);
+        JCAPool.release(cipher, null, key);
+
+        // A released instance does not use the key any more
+        Cipher pooledCipher = JCAPool.getCipher("AES/CBC/NoPadding", null, key);
+        assertSame(cipher, pooledCipher);
+        assertFalse(Arrays.equals(encrypted, pooledCipher.doFinal(data)));
+    }
+
+    @Test
+    public void testPrivateKeyCipherNotPooled() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        PrivateKey privateKey = keyPairGenerator.generateKeyPair().getPrivate();
+
+        Cipher cipher = JCAPool.getCipher("RSA/ECB/PKCS1Padding", null, privateKey);
+        cipher.init(Cipher.DECRYPT_MODE, privateKey);
+        JCAPool.release(cipher, null, privateKey);
+
+        assertNotSame(cipher, JCAPool.getCipher("RSA/ECB/PKCS1Padding", null, privateKey));
+    }
+
+    @Test
+    public void testMac() throws Exception {
+        byte[] data = "some data".getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = new byte[20];
+        Arrays.fill(keyBytes, (byte) 1);
+        SecretKeySpec key = new SecretKeySpec(keyBytes, "HmacSHA1");
+        Mac mac = JCAPool.getMac("HmacSHA1");
+        mac.init(key);
+        byte[] expected = mac.doFinal(data);
+        mac.init(key);
+        mac.update(data);
+        JCAPool.release(mac);
+
+        // A released instance does not use the key any more, and is reset
+        Mac pooledMac = JCAPool.getMac("HmacSHA1");
+        assertSame(mac, pooledMac);
+        assertFalse(Arrays.equals(expected, pooledMac.doFinal(data)));
+        pooledMac.init(key);
+        assertArrayEquals(expected, pooledMac.doFinal(data));
+    }
+
+    @Test
+    public void testMessageDigest() throws Exception {
+        byte[] data = "some data".getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = JCAPool.getMessageDigest("SHA-256");
+        digest.update(data);
+        JCAPool.release(digest);
+
+        // A released instance is reset
+        MessageDigest pooledDigest = JCAPool.getMessageDigest("SHA-256");
+        assertSame(digest, pooledDigest);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(data), pooledDigest.digest(data));
+    }
+
+    @Test
+    public void testXMLSignatureFactory() throws Exception {
+        assertSame(JCAPool.getXMLSignatureFactory(null), JCAPool.getXMLSignatureFactory(null));
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An index of the Elements of a Document by their (wsu) Id, and by their SAML ID/AssertionID
+ * attributes. The index is built in a single depth-first pass, and answers the same queries as
+ * XMLUtils.findElementById and XMLUtils.findSAMLAssertionElementById, including the detection
+ * of multiple Elements with the same Id.
+ *
+ * Elements that are removed from the Document (or whose Id changes) are dropped lazily when
+ * they are looked up. Elements that are inserted into the Document (e.g. by decryption) must be
+ * added to the index via {@link #add(Node)}.
+ */
+class ElementIdIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ElementIdIndex.class);
+
+    private final Element root;
+    private final Map<String, List<Element>> ids = new HashMap<>();
+    private final Map<String, List<Element>> samlIds = new HashMap<>();
+
+    ElementIdIndex(Element root) {
+        this.root = root;
+        add(root);
+    }
+
+    /**
+     * Add the given Node and all of its descendants to the index. Elements that are already
+     * indexed are ignored.
+     */
+    void add(Node node) {
+        Node current = node;
+        while (current != null) {
+            if (current.getNodeType() == Node.ELEMENT_NODE) {
+                index((Element) current);
+            }
+
+            Node next = current.getFirstChild();
+            // no child, so continue with the next sibling, or with the next sibling of the
+            // closest ancestor that has one, without leaving the subtree of the given node
+            while (next == null && current != node) {
+                next = current.getNextSibling();
+                if (next == null) {
+                    current = current.getParentNode();
+                }
+            }
+            current = next;
+        }
+    }
+
+    private void index(Element element) {
+        String wsuId = element.getAttributeNS(WSConstants.WSU_NS, "Id");
+        if (!"".equals(wsuId)) {
+            put(ids, wsuId, element);
+        }
+        String id = element.getAttributeNS(null, "Id");
+        if (!"".equals(id)) {
+            put(ids, id, element);
+        }
+
+        if (element.hasAttributeNS(null, "ID")) {
+            put(samlIds, element.getAttributeNS(null, "ID"), element);
+        }
+        if (element.hasAttributeNS(null, "AssertionID")) {
+            put(samlIds, element.getAttributeNS(null, "AssertionID"), element);
+        }
+    }
+
+    private static void put(Map<String, List<Element>> map, String id, Element element) {
+        List<Element> elements = map.get(id);
+        if (elements == null) {
+            elements = new ArrayList<>(1);
+            map.put(id, elements);
+        } else {
+            for (Element indexedElement : elements) {
+                if (indexedElement == element) {
+                    return;
+                }
+            }
+        }
+        elements.add(element);
+    }
+
+    /**
+     * Returns the single element that contains an Id (wsu:Id or Id) with the given value.
+     * @param id The Id value to search for
+     * @param checkMultipleElements If true then return null if there are multiple elements with
+     *        the same Id, otherwise return the first such element in document order
+     */
+    Element findElementById(String id, boolean checkMultipleElements) {
+        List<Element> elements = getElements(ids, id, false);
+        if (elements.isEmpty()) {
+            return null;
+        } else if (elements.size() == 1) {
+            return elements.get(0);
+        } else if (checkMultipleElements) {
+            LOG.warn("Multiple elements with the same 'Id' attribute value!");
+            return null;
+        }
+        return getFirstInDocumentOrder(elements);
+    }
+
+    /**
+     * Returns the single element that contains a SAML ID/AssertionID with the given value, or
+     * null if there are multiple elements with the same ID.
+     */
+    Element findSAMLAssertionElementById(String id) {
+        List<Element> elements = getElements(samlIds, id, true);
+        if (elements.isEmpty()) {
+            return null;
+        } else if (elements.size() == 1) {
+            return elements.get(0);
+        }
+        LOG.warn("Multiple elements with the same 'ID' attribute value!");
+        return null;
+    }
+
+    /**
+     * Get the indexed elements for the given id, dropping the elements that are no longer
+     * attached to the document or no longer have the given id.
+     */
+    private List<Element> getElements(Map<String, List<Element>> map, String id, boolean saml) {
+        List<Element> elements = map.get(id);
+        if (elements == null) {
+            return Collections.emptyList();
+        }
+        Iterator<Element> iterator = elements.iterator();
+        while (iterator.hasNext()) {
+            Element element = iterator.next();
+            if (!(saml ? hasSAMLId(element, id) : hasId(element, id)) || !isAttached(element)) {
+                iterator.remove();
+            }
+        }
+        if (elements.isEmpty()) {
+            map.remove(id);
+        }
+        return elements;
+    }
+
+    private static boolean hasId(Element element, String id) {
+        return id.equals(element.getAttributeNS(WSConstants.WSU_NS, "Id"))
+            || id.equals(element.getAttributeNS(null, "Id"));
+    }
+
+    private static boolean hasSAMLId(Element element, String id) {
+        return element.hasAttributeNS(null, "ID") && id.equals(element.getAttributeNS(null, "ID"))
+            || element.hasAttributeNS(null, "AssertionID")
+                && id.equals(element.getAttributeNS(null, "AssertionID"));
+    }
+
+    private boolean isAttached(Node node) {
+        Node parent = node;
+        while (parent != null) {
+            if (parent == root) {
+                return true;
+            }
+            parent = parent.getParentNode();
+        }
+        return false;
+    }
+
+    private static Element getFirstInDocumentOrder(List<Element> elements) {
+        Element first = elements.get(0);
+        for (int i = 1; i < elements.size(); i++) {
+            Element element = elements.get(i);
+            if ((first.compareDocumentPosition(element) & Node.DOCUMENT_POSITION_PRECEDING) != 0) {
+                first = element;
+            }
+        }
+        return first;
+    }
+
+}
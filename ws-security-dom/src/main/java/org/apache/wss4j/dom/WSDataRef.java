@@ -30,7 +30,10 @@ package org.apache.wss4j.dom;
 import java.util.List;
 
 import javax.xml.namespace.QName;
+
+import org.apache.wss4j.dom.util.EncryptionUtils;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 public class WSDataRef {
 
@@ -49,6 +52,11 @@ public class WSDataRef {
      */
     private String xpath;
 
+    /**
+     * The nodes from which the xpath is built on first access, if it has not been set directly
+     */
+    private Node[] xpathNodes;
+
     /**
      * Algorithm used to encrypt/sign the element
      */
@@ -146,6 +154,10 @@ public class WSDataRef {
      * @return the xpath
      */
     public String getXpath() {
+        if (xpath == null && xpathNodes != null) {
+            xpath = EncryptionUtils.getXPath(xpathNodes);
+            xpathNodes = null;
+        }
         return xpath;
     }
 
@@ -154,6 +166,19 @@ public class WSDataRef {
      */
     public void setXpath(String xpath) {
         this.xpath = xpath;
+        xpathNodes = null;
+    }
+
+    /**
+     * Set the node the xpath points to. The path to the node is captured now, as the node
+     * might be moved or detached later on in processing, but the xpath String is only built
+     * when it is first requested via {@link #getXpath()}.
+     *
+     * @param node the protected node
+     */
+    public void setXpathNode(Node node) {
+        xpath = null;
+        xpathNodes = EncryptionUtils.getXPathNodes(node);
     }
 
     /**
@@ -33,7 +33,6 @@ package org.apache.wss4j.dom;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -46,6 +45,7 @@ import org.apache.wss4j.dom.callback.CallbackLookup;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 public class WSDocInfo {
     private Document doc;
@@ -57,11 +57,14 @@ public class WSDocInfo {
     // creation or validation
     private final Map<String, TokenValue> tokens = new HashMap<>();
 
-    private final List<WSSecurityEngineResult> results = new LinkedList<>();
+    private final List<WSSecurityEngineResult> results = new ArrayList<>();
     private final Map<Integer, List<WSSecurityEngineResult>> actionResults = new HashMap<>();
     private CallbackLookup callbackLookup;
     private Element securityHeader;
 
+    // An index of the elements of the document by their Id, which is built lazily on the first lookup
+    private ElementIdIndex idIndex;
+
     public WSDocInfo(Document doc) {
         //
         // This is a bit of a hack. When the Document is a SAAJ SOAPPart instance, it may
@@ -83,6 +86,7 @@ public class WSDocInfo {
         doc = null;
         callbackLookup = null;
         securityHeader = null;
+        idIndex = null;
         tokens.clear();
         results.clear();
         actionResults.clear();
@@ -206,6 +210,57 @@ public class WSDocInfo {
     }
 
 
+    /**
+     * Returns the single element of the document that contains an Id (wsu:Id or Id) with the
+     * given value. This uses an index of the document, which is built on the first call.
+     * @param uri is the (relative) uri of the id
+     * @param checkMultipleElements If true then return null if there are multiple elements with
+     *        the same Id
+     * @return the element or null if nothing (or multiple elements) found
+     */
+    public Element findElementById(String uri, boolean checkMultipleElements) {
+        String id = XMLUtils.getIDFromReference(uri);
+        ElementIdIndex index = getIdIndex();
+        if (id == null || index == null) {
+            return null;
+        }
+        return index.findElementById(id, checkMultipleElements);
+    }
+
+    /**
+     * Returns the single element of the document that contains a SAML ID/AssertionID with the
+     * given value. This uses an index of the document, which is built on the first call.
+     * @param uri is the (relative) uri of the id
+     * @return the element or null if nothing (or multiple elements) found
+     */
+    public Element findSAMLAssertionElementById(String uri) {
+        String id = XMLUtils.getIDFromReference(uri);
+        ElementIdIndex index = getIdIndex();
+        if (id == null || index == null) {
+            return null;
+        }
+        return index.findSAMLAssertionElementById(id);
+    }
+
+    /**
+     * Add the Ids of the given node and its descendants to the Id index of the document. This
+     * must be called when nodes are inserted into the document after the index was built, for
+     * example by decryption. Removed nodes do not need to be reported.
+     * @param node a node that was inserted into the document
+     */
+    public void updateIdIndex(Node node) {
+        if (idIndex != null && node != null) {
+            idIndex.add(node);
+        }
+    }
+
+    private ElementIdIndex getIdIndex() {
+        if (idIndex == null && doc != null && doc.getDocumentElement() != null) {
+            idIndex = new ElementIdIndex(doc.getDocumentElement());
+        }
+        return idIndex;
+    }
+
     /**
      * Store a WSSecurityEngineResult for later retrieval.
      * @param result is the WSSecurityEngineResult to store
@@ -35,4 +35,15 @@ public interface Action {
         RequestData reqData
     ) throws WSSecurityException;
 
+    /**
+     * Return whether this Action is thread-safe, and so can be instantiated once and shared
+     * across invocations when WSSConfig is configured to share thread-safe instances. The
+     * result is only taken into account for the class that declares this method, so a subclass
+     * of a thread-safe Action is not shared unless it overrides this method itself.
+     * @return true if this Action is thread-safe. The default is false.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
 }
@@ -72,4 +72,9 @@ public class CustomTokenAction implements Action {
                     "empty", new Object[] {"Error appending custom token"});
         }
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
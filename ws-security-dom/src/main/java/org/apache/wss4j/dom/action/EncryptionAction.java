@@ -116,8 +116,13 @@ public class EncryptionAction implements Action {
         if (ephemeralKey != null) {
             symmetricKey = KeyUtils.prepareSecretKey(wsEncrypt.getSymmetricEncAlgorithm(), ephemeralKey);
         } else {
-            KeyGenerator keyGen = KeyUtils.getKeyGenerator(wsEncrypt.getSymmetricEncAlgorithm());
-            symmetricKey = keyGen.generateKey();
+            // Reuse a cached key (and EncryptedKey) for the recipient, if this is enabled
+            wsEncrypt.setEncryptedKeyCache(reqData.getOutboundEncryptedKeyCache());
+            symmetricKey = wsEncrypt.getCachedSymmetricKey(encryptionToken.getCrypto());
+            if (symmetricKey == null) {
+                KeyGenerator keyGen = KeyUtils.getKeyGenerator(wsEncrypt.getSymmetricEncAlgorithm());
+                symmetricKey = keyGen.generateKey();
+            }
         }
 
         if (encryptionToken.getTokenId() != null) {
@@ -137,4 +142,9 @@ public class EncryptionAction implements Action {
                                           new Object[] {"Error during encryption: "});
         }
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
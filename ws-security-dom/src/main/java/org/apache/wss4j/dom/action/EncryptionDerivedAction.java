@@ -191,4 +191,9 @@ public class EncryptionDerivedAction extends AbstractDerivedAction implements Ac
             return passwordCallback.getKey();
         }
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
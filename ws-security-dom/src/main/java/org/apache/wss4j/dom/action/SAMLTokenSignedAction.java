@@ -135,4 +135,9 @@ public class SAMLTokenSignedAction implements Action {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
@@ -70,4 +70,9 @@ public class SAMLTokenUnsignedAction implements Action {
         // add the SAMLAssertion Token to the SOAP Envelope
         builder.build(samlAssertion);
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -176,4 +176,9 @@ public class SignatureAction implements Action {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
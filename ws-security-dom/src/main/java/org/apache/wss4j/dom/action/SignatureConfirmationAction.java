@@ -95,4 +95,9 @@ public class SignatureConfirmationAction implements Action {
         );
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
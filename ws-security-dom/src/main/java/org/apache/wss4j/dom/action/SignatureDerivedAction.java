@@ -225,4 +225,9 @@ public class SignatureDerivedAction extends AbstractDerivedAction implements Act
             return passwordCallback.getKey();
         }
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -41,4 +41,9 @@ public class TimestampAction implements Action {
         timeStampBuilder.setExpandXopInclude(reqData.isExpandXopInclude());
         timeStampBuilder.build();
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -68,4 +68,9 @@ public class UsernameTokenAction implements Action {
 
         builder.build();
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
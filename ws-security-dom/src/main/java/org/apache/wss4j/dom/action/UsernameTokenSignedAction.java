@@ -149,4 +149,9 @@ public class UsernameTokenSignedAction implements Action {
 
         Arrays.fill(salt, (byte)0);
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
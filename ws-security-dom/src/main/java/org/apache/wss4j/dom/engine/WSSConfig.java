@@ -24,6 +24,7 @@ import java.security.PrivilegedAction;
 import java.security.Security;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
@@ -253,6 +254,19 @@ public final class WSSConfig {
      */
     private static boolean staticallyInitialized = false;
 
+    /**
+     * a static boolean flag that determines whether Action, Processor and Validator classes
+     * that declare themselves thread-safe are instantiated once and shared, instead of being
+     * instantiated per invocation.
+     */
+    private static volatile boolean shareThreadSafeInstances = false;
+
+    /**
+     * The shared instances of thread-safe Action, Processor and Validator classes, which are
+     * shared across all WSSConfig instances.
+     */
+    private static final Map<Class<?>, Object> SHARED_INSTANCES = new ConcurrentHashMap<>();
+
     /**
      * This allows the user to specify a different time than that of the current System time.
      */
@@ -423,13 +437,7 @@ public final class WSSConfig {
         final Object actionObject = actionMap.get(action);
 
         if (actionObject instanceof Class<?>) {
-            try {
-                return (Action)((Class<?>)actionObject).newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                        "unableToLoadClass", new Object[] {((Class<?>)actionObject).getName()});
-            }
+            return (Action)loadInstance((Class<?>)actionObject);
         } else if (actionObject instanceof Action) {
             return (Action)actionObject;
         }
@@ -513,13 +521,7 @@ public final class WSSConfig {
         final Object validatorObject = validatorMap.get(el);
 
         if (validatorObject instanceof Class<?>) {
-            try {
-                return (Validator)((Class<?>)validatorObject).newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                    "unableToLoadClass", new Object[] {((Class<?>)validatorObject).getName()});
-            }
+            return (Validator)loadInstance((Class<?>)validatorObject);
         } else if (validatorObject instanceof Validator) {
             return (Validator)validatorObject;
         }
@@ -537,19 +539,66 @@ public final class WSSConfig {
         final Object processorObject = processorMap.get(el);
 
         if (processorObject instanceof Class<?>) {
-            try {
-                return (Processor)((Class<?>)processorObject).newInstance();
-            } catch (Exception ex) {
-                LOG.debug(ex.getMessage(), ex);
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
-                        "unableToLoadClass", new Object[] {((Class<?>)processorObject).getName()});
-            }
+            return (Processor)loadInstance((Class<?>)processorObject);
         } else if (processorObject instanceof Processor) {
             return (Processor)processorObject;
         }
         return null;
     }
 
+    /**
+     * Instantiate the given Action, Processor or Validator class. If shareThreadSafeInstances
+     * is enabled and the class declares itself thread-safe, then the instance is cached and
+     * returned on subsequent calls.
+     */
+    private static Object loadInstance(Class<?> clazz) throws WSSecurityException {
+        if (shareThreadSafeInstances) {
+            Object sharedInstance = SHARED_INSTANCES.get(clazz);
+            if (sharedInstance != null) {
+                return sharedInstance;
+            }
+        }
+
+        Object instance = null;
+        try {
+            instance = clazz.newInstance();
+        } catch (Exception ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex,
+                    "unableToLoadClass", new Object[] {clazz.getName()});
+        }
+
+        if (shareThreadSafeInstances && isThreadSafe(instance)) {
+            Object sharedInstance = SHARED_INSTANCES.putIfAbsent(clazz, instance);
+            if (sharedInstance != null) {
+                return sharedInstance;
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * An instance is only shared if its own class declares the isThreadSafe method, so that a
+     * subclass (which may add mutable state) does not inherit the flag of its superclass.
+     */
+    private static boolean isThreadSafe(Object instance) {
+        try {
+            if (instance.getClass().getMethod("isThreadSafe").getDeclaringClass() != instance.getClass()) {
+                return false;
+            }
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+        if (instance instanceof Processor) {
+            return ((Processor)instance).isThreadSafe();
+        } else if (instance instanceof Validator) {
+            return ((Validator)instance).isThreadSafe();
+        } else if (instance instanceof Action) {
+            return ((Action)instance).isThreadSafe();
+        }
+        return false;
+    }
+
     public WSTimeSource getCurrentTime() {
         if (currentTime != null) {
             return currentTime;
@@ -570,4 +619,21 @@ public final class WSSConfig {
         WSSConfig.addJceProviders = addJceProviders;
         WSProviderConfig.setAddJceProviders(addJceProviders);
     }
+
+    public static boolean isShareThreadSafeInstances() {
+        return shareThreadSafeInstances;
+    }
+
+    /**
+     * Set whether Action, Processor and Validator classes that declare themselves thread-safe
+     * (see for example {@link Processor#isThreadSafe()}) are instantiated once and shared across
+     * all invocations and WSSConfig instances, instead of being instantiated per invocation.
+     * The default is false.
+     */
+    public static void setShareThreadSafeInstances(boolean shareThreadSafeInstances) {
+        WSSConfig.shareThreadSafeInstances = shareThreadSafeInstances;
+        if (!shareThreadSafeInstances) {
+            SHARED_INSTANCES.clear();
+        }
+    }
 }
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+
+/**
+ * An immutable, precompiled view of the static options of a WSHandler. It is built once when the
+ * handler is configured, and then shared by every message that the handler processes. The action
+ * list, the boolean options and the certificate constraint patterns are parsed up front, and option
+ * lookups are served from a private copy of the options, so that no string parsing or message
+ * context lookups are needed on the request path. WSHandler uses the precompiled actions if it is
+ * called with a null list of actions.
+ *
+ * Options that may legitimately vary from one message to another can be declared as "per-request"
+ * keys. For these keys, a value set on the message context takes precedence over the configured
+ * option. All other keys are only ever read from the configuration.
+ */
+public final class HandlerConfiguration {
+
+    private final Map<String, Object> options;
+    private final Set<String> perRequestKeys;
+    private final Map<String, Boolean> booleanOptions;
+    private final List<Integer> actions;
+    private final Collection<Pattern> subjectCertConstraints;
+    private final Collection<Pattern> issuerCertConstraints;
+
+    public HandlerConfiguration(Map<String, Object> options) throws WSSecurityException {
+        this(options, Collections.<String>emptySet(), null);
+    }
+
+    /**
+     * Create a new HandlerConfiguration.
+     *
+     * @param options the static handler options
+     * @param perRequestKeys the keys that may be overridden on the message context
+     * @param wssConfig the WSSConfig used to check custom actions, may be null
+     * @throws WSSecurityException if the action list or a certificate constraint is not valid
+     */
+    public HandlerConfiguration(
+        Map<String, Object> options,
+        Collection<String> perRequestKeys,
+        WSSConfig wssConfig
+    ) throws WSSecurityException {
+        this.options =
+            options == null ? Collections.<String, Object>emptyMap()
+                : Collections.unmodifiableMap(new HashMap<>(options));
+        this.perRequestKeys =
+            perRequestKeys == null ? Collections.<String>emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(perRequestKeys));
+
+        Map<String, Boolean> booleans = new HashMap<>();
+        for (Map.Entry<String, Object> option : this.options.entrySet()) {
+            Boolean value = decodeBoolean(option.getValue());
+            if (value != null && !isPerRequestKey(option.getKey())) {
+                booleans.put(option.getKey(), value);
+            }
+        }
+        booleanOptions = Collections.unmodifiableMap(booleans);
+
+        String action = getStaticString(WSHandlerConstants.ACTION);
+        if (action != null) {
+            WSSConfig config = wssConfig == null ? WSSConfig.getNewInstance() : wssConfig;
+            List<Integer> actionList = new ArrayList<>();
+            for (HandlerAction handlerAction : WSSecurityUtil.decodeHandlerAction(action, config)) {
+                actionList.add(handlerAction.getAction());
+            }
+            actions = Collections.unmodifiableList(actionList);
+        } else {
+            actions = null;
+        }
+
+        String separator = getStaticString(WSHandlerConstants.SIG_CERT_CONSTRAINTS_SEPARATOR);
+        if (separator == null && isPerRequestKey(WSHandlerConstants.SIG_CERT_CONSTRAINTS_SEPARATOR)) {
+            // The separator is only known per message, so the constraints can't be precompiled
+            subjectCertConstraints = null;
+            issuerCertConstraints = null;
+        } else {
+            if (separator == null || separator.isEmpty()) {
+                separator = ",";
+            }
+            subjectCertConstraints =
+                compile(getStaticString(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS), separator);
+            issuerCertConstraints =
+                compile(getStaticString(WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS), separator);
+        }
+    }
+
+    /**
+     * Get the configured option for the given key.
+     * @param key the option key
+     * @return the configured option, or null if it is not set
+     */
+    public Object getOption(String key) {
+        return options.get(key);
+    }
+
+    /**
+     * Get the configured option for the given key, if it is a String.
+     * @param key the option key
+     * @return the configured option, or null if it is not set or not a String
+     */
+    public String getStringOption(String key) {
+        Object o = options.get(key);
+        if (o instanceof String) {
+            return (String) o;
+        }
+        return null;
+    }
+
+    /**
+     * Get the configured option for the given key, if it is a boolean value ("true", "false",
+     * "1" or "0"), and the key is not a per-request key.
+     * @param key the option key
+     * @return the decoded boolean option, or null if it is not set, not a boolean value or
+     *         a per-request key
+     */
+    public Boolean getBooleanOption(String key) {
+        return booleanOptions.get(key);
+    }
+
+    /**
+     * @param key the option key
+     * @return whether a value for the key on the message context overrides the configured option
+     */
+    public boolean isPerRequestKey(String key) {
+        return perRequestKeys.contains(key);
+    }
+
+    public Set<String> getPerRequestKeys() {
+        return perRequestKeys;
+    }
+
+    /**
+     * Get a fresh list of the configured actions for the sending side. A new list is returned
+     * on each call, as the HandlerActions may be modified when the actions are performed.
+     * @return the configured sender actions, or null if the actions are not static
+     */
+    public List<HandlerAction> getSenderActions() {
+        if (actions == null) {
+            return null;
+        }
+        List<HandlerAction> handlerActions = new ArrayList<>(actions.size());
+        for (Integer action : actions) {
+            handlerActions.add(new HandlerAction(action));
+        }
+        return handlerActions;
+    }
+
+    /**
+     * @return the configured actions for the receiving side, or null if the actions are not static
+     */
+    public List<Integer> getReceiverActions() {
+        return actions;
+    }
+
+    /**
+     * @return the precompiled subject certificate constraints, or null if they are not static
+     */
+    public Collection<Pattern> getSubjectCertConstraints() {
+        return subjectCertConstraints;
+    }
+
+    /**
+     * @return the precompiled issuer certificate constraints, or null if they are not static
+     */
+    public Collection<Pattern> getIssuerCertConstraints() {
+        return issuerCertConstraints;
+    }
+
+    private String getStaticString(String key) {
+        if (isPerRequestKey(key)) {
+            return null;
+        }
+        return getStringOption(key);
+    }
+
+    private static Boolean decodeBoolean(Object value) {
+        if ("0".equals(value) || "false".equals(value)) {
+            return Boolean.FALSE;
+        }
+        if ("1".equals(value) || "true".equals(value)) {
+            return Boolean.TRUE;
+        }
+        return null;
+    }
+
+    private static Collection<Pattern> compile(
+        String certConstraints, String separator
+    ) throws WSSecurityException {
+        if (certConstraints == null) {
+            return null;
+        }
+        List<Pattern> patterns = new ArrayList<>();
+        for (String certConstraint : certConstraints.split(separator)) {
+            try {
+                patterns.add(Pattern.compile(certConstraint.trim()));
+            } catch (PatternSyntaxException ex) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+            }
+        }
+        return Collections.unmodifiableList(patterns);
+    }
+
+}
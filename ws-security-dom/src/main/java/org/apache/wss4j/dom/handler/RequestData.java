@@ -35,6 +35,9 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
@@ -74,6 +77,9 @@ public class RequestData {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private EncryptedKeyCache encryptedKeyCache;
+    private OutboundEncryptedKeyCache outboundEncryptedKeyCache;
+    private SamlAssertionCache samlAssertionCache;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
     private final List<BSPRule> ignoredBSPRules = new LinkedList<>();
@@ -444,6 +450,49 @@ public class RequestData {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the cache for the symmetric keys of decrypted EncryptedKeys
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache encryptedKeyCache) {
+        this.encryptedKeyCache = encryptedKeyCache;
+    }
+
+    /**
+     * Get the cache for the symmetric keys of decrypted EncryptedKeys
+     */
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
+    /**
+     * Set the cache for the EncryptedKeys of outbound messages, which allows to reuse a
+     * symmetric session key (and the EncryptedKey) for subsequent messages to the same recipient
+     */
+    public void setOutboundEncryptedKeyCache(OutboundEncryptedKeyCache outboundEncryptedKeyCache) {
+        this.outboundEncryptedKeyCache = outboundEncryptedKeyCache;
+    }
+
+    /**
+     * Get the cache for the EncryptedKeys of outbound messages
+     */
+    public OutboundEncryptedKeyCache getOutboundEncryptedKeyCache() {
+        return outboundEncryptedKeyCache;
+    }
+
+    /**
+     * Set the cache for signed SAML Assertions whose signature and signing key have been verified
+     */
+    public void setSamlAssertionCache(SamlAssertionCache samlAssertionCache) {
+        this.samlAssertionCache = samlAssertionCache;
+    }
+
+    /**
+     * Get the cache for signed SAML Assertions whose signature and signing key have been verified
+     */
+    public SamlAssertionCache getSamlAssertionCache() {
+        return samlAssertionCache;
+    }
+
     /**
      * Set the Signature Subject Cert Constraints
      */
@@ -44,6 +44,9 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.SignatureEncryptionActionToken;
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
@@ -65,6 +68,7 @@ public abstract class WSHandler {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSHandler.class);
     protected Map<String, Crypto> cryptos = new ConcurrentHashMap<>();
+    private HandlerConfiguration handlerConfiguration;
 
     /**
      * Performs all defined security actions to set-up the SOAP request.
@@ -73,7 +77,9 @@ public abstract class WSHandler {
      * @param reqData a data storage to pass values around between methods
      * @param actions a list holding the actions to do in the order defined
      *                in the deployment file or property, plus an optional
-     *                associated SecurityActionToken object for that Action
+     *                associated SecurityActionToken object for that Action.
+     *                If this is null, then the actions are obtained via
+     *                {@link #getSenderActions(RequestData)}
      * @throws WSSecurityException
      */
     protected void doSenderAction(
@@ -88,6 +94,9 @@ public abstract class WSHandler {
             wssConfig = WSSConfig.getNewInstance();
             reqData.setWssConfig(wssConfig);
         }
+        if (actions == null) {
+            actions = getSenderActions(reqData);
+        }
 
         if (reqData.getWsDocInfo() == null) {
             WSDocInfo wsDocInfo = new WSDocInfo(doc);
@@ -300,6 +309,9 @@ public abstract class WSHandler {
             wssConfig = WSSConfig.getNewInstance();
             reqData.setWssConfig(wssConfig);
         }
+        if (actions == null) {
+            actions = getReceiverActions(reqData);
+        }
 
         Object mc = reqData.getMsgContext();
         boolean enableSigConf =
@@ -353,6 +365,11 @@ public abstract class WSHandler {
         if (actions.contains(WSConstants.ENCR)) {
             decodeDecryptionParameter(reqData);
         }
+        if (reqData.getSamlAssertionCache() == null) {
+            reqData.setSamlAssertionCache(
+                (SamlAssertionCache) getObject(WSHandlerConstants.SAML_ASSERTION_CACHE_INSTANCE, mc)
+            );
+        }
         reqData.setRequireSignedEncryptedDataElements(
             decodeBooleanConfigValue(
                 mc, WSHandlerConstants.REQUIRE_SIGNED_ENCRYPTED_DATA_ELEMENTS, false
@@ -363,6 +380,61 @@ public abstract class WSHandler {
         );
     }
 
+    /**
+     * Get the actions to perform on the sending side. If a HandlerConfiguration is set, then
+     * these are its precompiled actions, unless the action is a per-request key. Otherwise the
+     * action option is decoded.
+     *
+     * @param reqData the RequestData object
+     * @return the actions to perform, with a fresh HandlerAction for each action
+     * @throws WSSecurityException if no action is defined, or if it is not valid
+     */
+    protected List<HandlerAction> getSenderActions(RequestData reqData) throws WSSecurityException {
+        HandlerConfiguration config = handlerConfiguration;
+        if (config != null) {
+            List<HandlerAction> actions = config.getSenderActions();
+            if (actions != null) {
+                return actions;
+            }
+        }
+        return WSSecurityUtil.decodeHandlerAction(getAction(reqData), reqData.getWssConfig());
+    }
+
+    /**
+     * Get the actions that are expected on the receiving side. If a HandlerConfiguration is set,
+     * then these are its precompiled actions, unless the action is a per-request key. Otherwise
+     * the action option is decoded.
+     *
+     * @param reqData the RequestData object
+     * @return the expected actions
+     * @throws WSSecurityException if no action is defined, or if it is not valid
+     */
+    protected List<Integer> getReceiverActions(RequestData reqData) throws WSSecurityException {
+        HandlerConfiguration config = handlerConfiguration;
+        if (config != null) {
+            List<Integer> actions = config.getReceiverActions();
+            if (actions != null) {
+                return actions;
+            }
+        }
+        List<HandlerAction> handlerActions =
+            WSSecurityUtil.decodeHandlerAction(getAction(reqData), reqData.getWssConfig());
+        List<Integer> actions = new ArrayList<>(handlerActions.size());
+        for (HandlerAction handlerAction : handlerActions) {
+            actions.add(handlerAction.getAction());
+        }
+        return actions;
+    }
+
+    private String getAction(RequestData reqData) throws WSSecurityException {
+        String action = getString(WSHandlerConstants.ACTION, reqData.getMsgContext());
+        if (action == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
+                                          new Object[] {"WSHandler: No action defined"});
+        }
+        return action;
+    }
+
     protected boolean checkReceiverResults(
         List<WSSecurityEngineResult> wsResult, List<Integer> actions
     ) {
@@ -776,6 +848,12 @@ public abstract class WSHandler {
         boolean includeToken =
             decodeBooleanConfigValue(mc, WSHandlerConstants.INCLUDE_ENCRYPTION_TOKEN, false);
         actionToken.setIncludeToken(includeToken);
+
+        if (reqData.getOutboundEncryptedKeyCache() == null) {
+            OutboundEncryptedKeyCache outboundEncryptedKeyCache =
+                (OutboundEncryptedKeyCache) getObject(WSHandlerConstants.OUTBOUND_ENCRYPTED_KEY_CACHE_INSTANCE, mc);
+            reqData.setOutboundEncryptedKeyCache(outboundEncryptedKeyCache);
+        }
     }
 
     /**
@@ -844,6 +922,14 @@ public abstract class WSHandler {
         Object messageContext, String configTag, boolean defaultToTrue
     ) throws WSSecurityException {
 
+        HandlerConfiguration config = handlerConfiguration;
+        if (config != null && !config.isPerRequestKey(configTag)) {
+            Boolean configuredValue = config.getBooleanOption(configTag);
+            if (configuredValue != null) {
+                return configuredValue;
+            }
+        }
+
         String value = getString(configTag, messageContext);
 
         if (value == null) {
@@ -1027,10 +1113,7 @@ public abstract class WSHandler {
         RequestData requestData
     ) throws WSSecurityException {
         Object mc = requestData.getMsgContext();
-        CallbackHandler cbHandler = (CallbackHandler) getOption(callbackHandlerRef);
-        if (cbHandler == null) {
-            cbHandler = (CallbackHandler) getProperty(mc, callbackHandlerRef);
-        }
+        CallbackHandler cbHandler = (CallbackHandler) getObject(callbackHandlerRef, mc);
         if (cbHandler == null) {
             String callback = getString(callbackHandlerClass, mc);
             if (callback != null) {
@@ -1098,14 +1181,8 @@ public abstract class WSHandler {
     protected PasswordEncryptor getPasswordEncryptor(RequestData requestData) {
         PasswordEncryptor passwordEncryptor = requestData.getPasswordEncryptor();
         if (passwordEncryptor == null) {
-            Object o = getOption(WSHandlerConstants.PASSWORD_ENCRYPTOR_INSTANCE);
-            if (o instanceof PasswordEncryptor) {
-                passwordEncryptor = (PasswordEncryptor) o;
-            }
-        }
-        if (passwordEncryptor == null) {
-            Object mc = requestData.getMsgContext();
-            Object o = getProperty(mc, WSHandlerConstants.PASSWORD_ENCRYPTOR_INSTANCE);
+            Object o =
+                getObject(WSHandlerConstants.PASSWORD_ENCRYPTOR_INSTANCE, requestData.getMsgContext());
             if (o instanceof PasswordEncryptor) {
                 passwordEncryptor = (PasswordEncryptor) o;
             }
@@ -1330,6 +1407,43 @@ public abstract class WSHandler {
             );
         reqData.setEnableRevocation(enableRevocation);
 
+        HandlerConfiguration config = handlerConfiguration;
+        boolean staticCertConstraints = config != null
+            && !config.isPerRequestKey(WSHandlerConstants.SIG_CERT_CONSTRAINTS_SEPARATOR);
+        if (staticCertConstraints
+            && !config.isPerRequestKey(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS)) {
+            if (config.getSubjectCertConstraints() != null) {
+                reqData.setSubjectCertConstraints(config.getSubjectCertConstraints());
+            }
+        } else {
+            decodeSubjectCertConstraints(reqData);
+        }
+        if (staticCertConstraints
+            && !config.isPerRequestKey(WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS)) {
+            if (config.getIssuerCertConstraints() != null) {
+                reqData.setIssuerDNPatterns(new ArrayList<>(config.getIssuerCertConstraints()));
+            }
+        } else {
+            decodeIssuerCertConstraints(reqData);
+        }
+
+        String value = getString(WSHandlerConstants.EXPAND_XOP_INCLUDE_FOR_SIGNATURE, reqData.getMsgContext());
+        boolean expandXOP = false;
+        if (value != null) {
+            expandXOP =
+                decodeBooleanConfigValue(
+                    reqData.getMsgContext(), WSHandlerConstants.EXPAND_XOP_INCLUDE_FOR_SIGNATURE, true
+                );
+        } else {
+            expandXOP =
+                decodeBooleanConfigValue(
+                    reqData.getMsgContext(), WSHandlerConstants.EXPAND_XOP_INCLUDE, true
+            );
+        }
+        reqData.setExpandXopInclude(expandXOP);
+    }
+
+    private void decodeSubjectCertConstraints(RequestData reqData) throws WSSecurityException {
         String certConstraints =
             getString(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS, reqData.getMsgContext());
         if (certConstraints != null) {
@@ -1341,6 +1455,9 @@ public abstract class WSHandler {
             Collection<Pattern> subjectCertConstraints = getCertConstraints(certConstraints, certConstraintsSeparator);
             reqData.setSubjectCertConstraints(subjectCertConstraints);
         }
+    }
+
+    private void decodeIssuerCertConstraints(RequestData reqData) throws WSSecurityException {
         String issuerCertConstraintsStringValue =
             getString(WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS, reqData.getMsgContext());
         if (issuerCertConstraintsStringValue != null) {
@@ -1353,21 +1470,6 @@ public abstract class WSHandler {
                 getCertConstraints(issuerCertConstraintsStringValue, certConstraintsSeparator);
             reqData.setIssuerDNPatterns(issuerCertConstraints);
         }
-
-        String value = getString(WSHandlerConstants.EXPAND_XOP_INCLUDE_FOR_SIGNATURE, reqData.getMsgContext());
-        boolean expandXOP = false;
-        if (value != null) {
-            expandXOP =
-                decodeBooleanConfigValue(
-                    reqData.getMsgContext(), WSHandlerConstants.EXPAND_XOP_INCLUDE_FOR_SIGNATURE, true
-                );
-        } else {
-            expandXOP =
-                decodeBooleanConfigValue(
-                    reqData.getMsgContext(), WSHandlerConstants.EXPAND_XOP_INCLUDE, true
-            );
-        }
-        reqData.setExpandXopInclude(expandXOP);
     }
 
     private Collection<Pattern> getCertConstraints(String certConstraints, String separator) throws WSSecurityException {
@@ -1405,11 +1507,35 @@ public abstract class WSHandler {
                 false
             );
         reqData.setAllowRSA15KeyTransportAlgorithm(allowRsa15);
+
+        if (reqData.getEncryptedKeyCache() == null) {
+            Object mc = reqData.getMsgContext();
+            EncryptedKeyCache encryptedKeyCache =
+                (EncryptedKeyCache) getObject(WSHandlerConstants.ENCRYPTED_KEY_CACHE_INSTANCE, mc);
+            reqData.setEncryptedKeyCache(encryptedKeyCache);
+        }
+    }
+
+    /**
+     * Set a precompiled HandlerConfiguration. If this is set, then options are read from the
+     * configuration rather than via {@link #getOption(String)}, and the message context is only
+     * consulted for the keys that the configuration declares as per-request keys.
+     *
+     * @param handlerConfiguration the precompiled configuration, or null to decode options per message
+     */
+    public void setHandlerConfiguration(HandlerConfiguration handlerConfiguration) {
+        this.handlerConfiguration = handlerConfiguration;
+    }
+
+    public HandlerConfiguration getHandlerConfiguration() {
+        return handlerConfiguration;
     }
 
     /**
      * Looks up key first via {@link #getOption(String)} and if not found
-     * there, via {@link #getProperty(Object, String)}
+     * there, via {@link #getProperty(Object, String)}. If a HandlerConfiguration
+     * is set, then the message context is only searched for per-request keys,
+     * in which case it takes precedence over the configured option.
      *
      * @param key the key to search for. May not be null.
      * @param mc the message context to search.
@@ -1420,6 +1546,17 @@ public abstract class WSHandler {
         if (key == null) {
             throw new IllegalArgumentException("Key cannot be null");
         }
+        HandlerConfiguration config = handlerConfiguration;
+        if (config != null) {
+            if (!config.isPerRequestKey(key)) {
+                return config.getStringOption(key);
+            }
+            Object o = mc == null ? null : getProperty(mc, key);
+            if (o instanceof String) {
+                return (String) o;
+            }
+            return config.getStringOption(key);
+        }
         String s = getStringOption(key);
         if (s != null) {
             return s;
@@ -1439,6 +1576,10 @@ public abstract class WSHandler {
      *  exists and is of type java.lang.String; otherwise null.
      */
     public String getStringOption(String key) {
+        HandlerConfiguration config = handlerConfiguration;
+        if (config != null) {
+            return config.getStringOption(key);
+        }
         Object o = getOption(key);
         if (o instanceof String) {
             return (String) o;
@@ -1447,6 +1588,27 @@ public abstract class WSHandler {
         }
     }
 
+    /**
+     * Looks up an object first via {@link #getOption(String)} and if not found
+     * there, via {@link #getProperty(Object, String)}, following the same rules
+     * as {@link #getString(String, Object)} if a HandlerConfiguration is set.
+     */
+    private Object getObject(String key, Object mc) {
+        HandlerConfiguration config = handlerConfiguration;
+        if (config != null) {
+            if (!config.isPerRequestKey(key)) {
+                return config.getOption(key);
+            }
+            Object o = mc == null ? null : getProperty(mc, key);
+            return o != null ? o : config.getOption(key);
+        }
+        Object o = getOption(key);
+        if (o == null) {
+            o = getProperty(mc, key);
+        }
+        return o;
+    }
+
     /**
      * Returns the classloader to be used for loading the callback class
      * @param msgCtx The MessageContext
@@ -19,6 +19,7 @@
 
 package org.apache.wss4j.dom.message;
 
+import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,10 +28,12 @@ import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.DestroyFailedException;
 
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.token.Reference;
 import org.apache.wss4j.common.token.SecurityTokenReference;
+import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.message.token.KerberosSecurity;
@@ -81,6 +84,14 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
      */
     private String symEncAlgo = WSConstants.AES_128;
 
+    private OutboundEncryptedKeyCache encryptedKeyCache;
+
+    /**
+     * The key that was taken from the encryptedKeyCache, and the recipient it was taken for
+     */
+    private OutboundEncryptedKeyCache.CachedKey cachedKey;
+    private PublicKey cachedKeyRecipient;
+
     public WSSecEncrypt(WSSecHeader securityHeader) {
         super(securityHeader);
     }
@@ -113,6 +124,60 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
         }
     }
 
+    /**
+     * Get a symmetric key which has already been encrypted for the recipient from the
+     * OutboundEncryptedKeyCache, so that the cached EncryptedKey can be reused for this message.
+     * The returned key must then be passed to prepare (or build).
+     *
+     * @param crypto An instance of the Crypto API to handle keystore and certificates
+     * @return the cached symmetric key, or null if no OutboundEncryptedKeyCache is set, or if it
+     *         does not contain a key for the recipient that can be reused
+     * @throws WSSecurityException
+     */
+    public SecretKey getCachedSymmetricKey(Crypto crypto) throws WSSecurityException {
+        if (encryptedKeyCache == null || !encryptSymmKey) {
+            return null;
+        }
+        PublicKey publicKey = getUseThisPublicKey();
+        if (publicKey == null) {
+            publicKey = getRemoteCert(crypto).getPublicKey();
+        }
+        cachedKey = encryptedKeyCache.get(publicKey, getKeyCacheAlgorithms());
+        if (cachedKey == null) {
+            return null;
+        }
+        cachedKeyRecipient = publicKey;
+        LOG.debug("Reusing a cached EncryptedKey");
+        return KeyUtils.prepareSecretKey(symEncAlgo, cachedKey.getSymmetricKey());
+    }
+
+    /**
+     * Encrypt the symmetric key, or reuse the cached encrypted bytes of it if it was taken from
+     * the OutboundEncryptedKeyCache. A symmetric key which is newly encrypted is added to the
+     * OutboundEncryptedKeyCache (if one is set).
+     */
+    @Override
+    protected byte[] encryptSymmetricKey(PublicKey encryptingKey, SecretKey keyToBeEncrypted)
+        throws WSSecurityException {
+        if (encryptedKeyCache == null) {
+            return super.encryptSymmetricKey(encryptingKey, keyToBeEncrypted);
+        }
+        byte[] symmetricKey = keyToBeEncrypted.getEncoded();
+        if (cachedKey != null && encryptingKey.equals(cachedKeyRecipient) && cachedKey.isKeyOf(symmetricKey)) {
+            return cachedKey.getEncryptedKey();
+        }
+        byte[] encryptedKey = super.encryptSymmetricKey(encryptingKey, keyToBeEncrypted);
+        encryptedKeyCache.add(encryptingKey, getKeyCacheAlgorithms(), symmetricKey, encryptedKey);
+        return encryptedKey;
+    }
+
+    private String getKeyCacheAlgorithms() {
+        // The key is always wrapped with the default (empty) OAEPparams
+        return OutboundEncryptedKeyCache.getAlgorithms(
+            symEncAlgo, getKeyEncAlgo(), getDigestAlgorithm(), getMGFAlgorithm(), null
+        );
+    }
+
 
     /**
      * Builds the SOAP envelope with encrypted Body and adds encrypted key.
@@ -436,6 +501,20 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
         this.encryptionSerializer = encryptionSerializer;
     }
 
+    /**
+     * Set the cache which is used to reuse a symmetric key, and the EncryptedKey that wraps it,
+     * for subsequent messages to the same recipient. The symmetric key that is passed to prepare
+     * is added to the cache (if it isn't cached already), so it must be generated for this purpose.
+     * See getCachedSymmetricKey.
+     */
+    public void setEncryptedKeyCache(OutboundEncryptedKeyCache encryptedKeyCache) {
+        this.encryptedKeyCache = encryptedKeyCache;
+    }
+
+    public OutboundEncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
     /**
      * Set the name of the symmetric encryption algorithm to use.
      *
@@ -22,7 +22,6 @@ package org.apache.wss4j.dom.message;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
-import java.security.NoSuchProviderException;
 import java.security.Provider;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
@@ -49,6 +48,7 @@ import org.apache.wss4j.common.token.DOMX509IssuerSerial;
 import org.apache.wss4j.common.token.Reference;
 import org.apache.wss4j.common.token.SecurityTokenReference;
 import org.apache.wss4j.common.token.X509Security;
+import org.apache.wss4j.common.util.JCAPool;
 import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
@@ -184,36 +184,40 @@ public class WSSecEncryptedKey extends WSSecBase {
             byte[] encryptedEphemeralKey = encryptSymmetricKey(useThisPublicKey, symmetricKey);
             addCipherValueElement(encryptedEphemeralKey);
         } else {
-            //
-            // Get the certificate that contains the public key for the public key
-            // algorithm that will encrypt the generated symmetric (session) key.
-            //
-            X509Certificate remoteCert = useThisCert;
-            if (remoteCert == null) {
-                CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
-                cryptoType.setAlias(user);
-                if (crypto == null) {
-                    throw new WSSecurityException(
-                                                  WSSecurityException.ErrorCode.FAILURE,
-                                                  "noUserCertsFound",
-                                                  new Object[] {user, "encryption"});
-                }
-                X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
-                if (certs == null || certs.length <= 0) {
-                    throw new WSSecurityException(
-                                                  WSSecurityException.ErrorCode.FAILURE,
-                                                  "noUserCertsFound",
-                                                  new Object[] {user, "encryption"});
-                }
-                remoteCert = certs[0];
-            }
-
+            X509Certificate remoteCert = getRemoteCert(crypto);
             createEncryptedKeyElement(remoteCert, crypto);
             byte[] encryptedEphemeralKey = encryptSymmetricKey(remoteCert.getPublicKey(), symmetricKey);
             addCipherValueElement(encryptedEphemeralKey);
         }
     }
 
+    /**
+     * Get the certificate that contains the public key for the public key
+     * algorithm that will encrypt the generated symmetric (session) key.
+     */
+    protected X509Certificate getRemoteCert(Crypto crypto) throws WSSecurityException {
+        X509Certificate remoteCert = useThisCert;
+        if (remoteCert == null) {
+            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+            cryptoType.setAlias(user);
+            if (crypto == null) {
+                throw new WSSecurityException(
+                                              WSSecurityException.ErrorCode.FAILURE,
+                                              "noUserCertsFound",
+                                              new Object[] {user, "encryption"});
+            }
+            X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
+            if (certs == null || certs.length <= 0) {
+                throw new WSSecurityException(
+                                              WSSecurityException.ErrorCode.FAILURE,
+                                              "noUserCertsFound",
+                                              new Object[] {user, "encryption"});
+            }
+            remoteCert = certs[0];
+        }
+        return remoteCert;
+    }
+
     /**
      * Create and add the CipherValue Element to the EncryptedKey Element.
      */
@@ -442,18 +446,7 @@ public class WSSecEncryptedKey extends WSSecBase {
                                                       new Object[] {keyIdentifierType});
                     }
                     try {
-                        XMLSignatureFactory signatureFactory;
-                        if (provider == null) {
-                            // Try to install the Santuario Provider - fall back to the JDK provider if this does
-                            // not work
-                            try {
-                                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-                            } catch (NoSuchProviderException ex) {
-                                signatureFactory = XMLSignatureFactory.getInstance("DOM");
-                            }
-                        } else {
-                            signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
-                        }
+                        XMLSignatureFactory signatureFactory = JCAPool.getXMLSignatureFactory(provider);
 
                         KeyInfoFactory keyInfoFactory = signatureFactory.getKeyInfoFactory();
                         KeyValue keyValue = keyInfoFactory.newKeyValue((PublicKey)key);
@@ -493,7 +486,16 @@ public class WSSecEncryptedKey extends WSSecBase {
 
     protected byte[] encryptSymmetricKey(PublicKey encryptingKey, SecretKey keyToBeEncrypted)
         throws WSSecurityException {
-        Cipher cipher = KeyUtils.getCipherInstance(keyEncAlgo);
+        Cipher cipher = KeyUtils.getCipherInstance(keyEncAlgo, null, encryptingKey);
+        try {
+            return encryptSymmetricKey(cipher, encryptingKey, keyToBeEncrypted);
+        } finally {
+            KeyUtils.releaseCipherInstance(cipher, null, encryptingKey);
+        }
+    }
+
+    private byte[] encryptSymmetricKey(Cipher cipher, PublicKey encryptingKey, SecretKey keyToBeEncrypted)
+        throws WSSecurityException {
         try {
             OAEPParameterSpec oaepParameterSpec = null;
             if (WSConstants.KEYTRANSPORT_RSAOAEP.equals(keyEncAlgo)
@@ -19,7 +19,6 @@
 
 package org.apache.wss4j.dom.message;
 
-import java.security.NoSuchProviderException;
 import java.security.Provider;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
@@ -27,7 +26,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import javax.security.auth.Destroyable;
 import javax.xml.crypto.MarshalException;
 import javax.xml.crypto.XMLStructure;
 import javax.xml.crypto.dom.DOMCryptoContext;
@@ -57,6 +55,7 @@ import org.apache.wss4j.common.token.PKIPathSecurity;
 import org.apache.wss4j.common.token.Reference;
 import org.apache.wss4j.common.token.SecurityTokenReference;
 import org.apache.wss4j.common.token.X509Security;
+import org.apache.wss4j.common.util.JCAPool;
 import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
@@ -126,17 +125,7 @@ public class WSSecSignature extends WSSecSignatureBase {
     }
 
     private void init(Provider provider) {
-        if (provider == null) {
-            // Try to install the Santuario Provider - fall back to the JDK provider if this does
-            // not work
-            try {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-            } catch (NoSuchProviderException ex) {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM");
-            }
-        } else {
-            signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
-        }
+        signatureFactory = JCAPool.getXMLSignatureFactory(provider);
     }
 
     /**
@@ -555,8 +544,10 @@ public class WSSecSignature extends WSSecSignatureBase {
     ) throws WSSecurityException {
         try {
             java.security.Key key;
+            boolean destroyKey = true;
             if (secretKey == null) {
                 key = crypto.getPrivateKey(user, password);
+                destroyKey = !crypto.isPrivateKeyCacheEnabled();
             } else {
                 key = KeyUtils.prepareSecretKey(sigAlgo, secretKey);
             }
@@ -610,13 +601,9 @@ public class WSSecSignature extends WSSecSignatureBase {
 
             signatureValue = sig.getSignatureValue().getValue();
 
-            // Clean the private key from memory
-            if (key instanceof Destroyable) {
-                try {
-                    ((Destroyable)key).destroy();
-                } catch (javax.security.auth.DestroyFailedException ex) {
-                    LOG.debug("Error destroying private key: {}", ex.getMessage());
-                }
+            // Clean the private key from memory, unless it is cached
+            if (destroyKey) {
+                KeyUtils.destroyKey(key);
             }
 
             cleanup();
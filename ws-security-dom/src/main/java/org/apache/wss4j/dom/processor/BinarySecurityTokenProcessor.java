@@ -181,4 +181,9 @@ public class BinarySecurityTokenProcessor implements Processor {
         return token;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
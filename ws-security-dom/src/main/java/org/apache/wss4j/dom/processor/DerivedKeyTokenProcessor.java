@@ -92,5 +92,9 @@ public class DerivedKeyTokenProcessor implements Processor {
         return Collections.singletonList(result);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 
 }
@@ -125,4 +125,9 @@ public class EncryptedAssertionProcessor implements Processor {
         return Collections.emptyList();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
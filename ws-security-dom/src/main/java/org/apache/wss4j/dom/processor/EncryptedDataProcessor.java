@@ -160,7 +160,7 @@ public class EncryptedDataProcessor implements Processor {
 
         WSDataRef dataRef = EncryptionUtils.decryptEncryptedData(
                 elem.getOwnerDocument(), encryptedDataId, elem, key, symEncAlgo,
-                data.getAttachmentCallbackHandler(), data.getEncryptionSerializer());
+                data.getAttachmentCallbackHandler(), data.getEncryptionSerializer(), data.getWsDocInfo());
 
         WSSecurityEngineResult result =
                 new WSSecurityEngineResult(WSConstants.ENCR, Collections.singletonList(dataRef));
@@ -215,4 +215,9 @@ public class EncryptedDataProcessor implements Processor {
             bspEnforcer.handleBSPRule(BSPRule.R5620);
         }
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
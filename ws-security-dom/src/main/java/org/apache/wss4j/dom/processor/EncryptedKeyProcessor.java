@@ -23,13 +23,13 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.security.spec.MGF1ParameterSpec;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 
@@ -45,12 +45,14 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.token.DOMX509IssuerSerial;
 import org.apache.wss4j.common.token.SecurityTokenReference;
+import org.apache.wss4j.common.util.JCAPool;
 import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
@@ -164,18 +166,7 @@ public class EncryptedKeyProcessor implements Processor {
             } else {
                 certs = getCertificatesFromX509Data(keyInfoChildElement, data);
                 if (certs == null) {
-                    XMLSignatureFactory signatureFactory;
-                    if (provider == null) {
-                        // Try to install the Santuario Provider - fall back to the JDK provider if this does
-                        // not work
-                        try {
-                            signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-                        } catch (NoSuchProviderException ex) {
-                            signatureFactory = XMLSignatureFactory.getInstance("DOM");
-                        }
-                    } else {
-                        signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
-                    }
+                    XMLSignatureFactory signatureFactory = JCAPool.getXMLSignatureFactory(provider);
 
                     publicKey = X509Util.parseKeyValue((Element)keyInfoChildElement.getParentNode(),
                                                        signatureFactory);
@@ -222,16 +213,32 @@ public class EncryptedKeyProcessor implements Processor {
         if (symmetricKeyWrap) {
             decryptedBytes = getSymmetricDecryptedBytes(data, data.getWsDocInfo(), keyInfoChildElement, refList);
         } else {
-            PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
-            decryptedBytes = getAsymmetricDecryptedBytes(data, data.getWsDocInfo(), encryptedKeyTransportMethod,
-                                                         encryptedEphemeralKey, refList,
-                                                         elem, privateKey);
+            EncryptedKeyCache encryptedKeyCache = data.getEncryptedKeyCache();
+            String keyTransportParameters = null;
+            if (encryptedKeyCache != null) {
+                keyTransportParameters = getKeyTransportParameters(encryptedKeyTransportMethod, elem);
+                decryptedBytes =
+                    encryptedKeyCache.getSecretKey(encryptedEphemeralKey, keyTransportParameters, publicKey);
+            }
 
-            // Clean the private key from memory
-            try {
-                privateKey.destroy();
-            } catch (javax.security.auth.DestroyFailedException ex) {
-                LOG.debug("Error destroying private key: {}", ex.getMessage());
+            if (decryptedBytes == null) {
+                PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
+                decryptedBytes = getAsymmetricDecryptedBytes(data, encryptedKeyTransportMethod,
+                                                             encryptedEphemeralKey, elem, privateKey);
+
+                // Clean the private key from memory, unless it is cached
+                if (!data.getDecCrypto().isPrivateKeyCacheEnabled()) {
+                    KeyUtils.destroyKey(privateKey);
+                }
+
+                if (decryptedBytes == null) {
+                    // Never cache the random key, so that a failed decryption is not distinguishable
+                    decryptedBytes = getRandomKey(refList, data.getWsDocInfo());
+                } else if (encryptedKeyCache != null) {
+                    encryptedKeyCache.add(encryptedEphemeralKey, keyTransportParameters, publicKey, decryptedBytes);
+                }
+            } else {
+                LOG.debug("Using the cached key of the EncryptedKey");
             }
         }
 
@@ -295,12 +302,14 @@ public class EncryptedKeyProcessor implements Processor {
         return X509Util.getSecretKey(keyInfoChildElement, algorithmURI, data.getCallbackHandler());
     }
 
+    /**
+     * Unwrap the key bytes using the given PrivateKey. This returns null if the key bytes cannot
+     * be unwrapped (rather than throwing an exception), in which case a random key should be used.
+     */
     private static byte[] getAsymmetricDecryptedBytes(
         RequestData data,
-        WSDocInfo wsDocInfo,
         String encryptedKeyTransportMethod,
         byte[] encryptedEphemeralKey,
-        Element refList,
         Element encryptedKeyElement,
         PrivateKey privateKey
     ) throws WSSecurityException {
@@ -308,7 +317,23 @@ public class EncryptedKeyProcessor implements Processor {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noDecCryptoFile");
         }
         String cryptoProvider = data.getDecCrypto().getCryptoProvider();
-        Cipher cipher = KeyUtils.getCipherInstance(encryptedKeyTransportMethod, cryptoProvider);
+        Cipher cipher = KeyUtils.getCipherInstance(encryptedKeyTransportMethod, cryptoProvider, privateKey);
+        try {
+            return getAsymmetricDecryptedBytes(
+                cipher, encryptedKeyTransportMethod, encryptedEphemeralKey, encryptedKeyElement, privateKey
+            );
+        } finally {
+            KeyUtils.releaseCipherInstance(cipher, cryptoProvider, privateKey);
+        }
+    }
+
+    private static byte[] getAsymmetricDecryptedBytes(
+        Cipher cipher,
+        String encryptedKeyTransportMethod,
+        byte[] encryptedEphemeralKey,
+        Element encryptedKeyElement,
+        PrivateKey privateKey
+    ) throws WSSecurityException {
         try {
             OAEPParameterSpec oaepParameterSpec = null;
             if (WSConstants.KEYTRANSPORT_RSAOAEP.equals(encryptedKeyTransportMethod)
@@ -361,8 +386,29 @@ public class EncryptedKeyProcessor implements Processor {
         } catch (IllegalStateException ex) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         } catch (Exception ex) {
-            return getRandomKey(refList, wsDocInfo);
+            LOG.debug(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get the key transport algorithm, together with any parameters that affect the unwrapping of
+     * the key, to make sure that a cached key is only used for an identical EncryptedKey.
+     */
+    private static String getKeyTransportParameters(
+        String encryptedKeyTransportMethod, Element encryptedKeyElement
+    ) throws WSSecurityException {
+        StringBuilder parameters = new StringBuilder(encryptedKeyTransportMethod);
+        if (WSConstants.KEYTRANSPORT_RSAOAEP.equals(encryptedKeyTransportMethod)
+            || WSConstants.KEYTRANSPORT_RSAOAEP_XENC11.equals(encryptedKeyTransportMethod)) {
+            parameters.append(' ').append(EncryptionUtils.getDigestAlgorithm(encryptedKeyElement));
+            parameters.append(' ').append(EncryptionUtils.getMGFAlgorithm(encryptedKeyElement));
+            byte[] pSourceBytes = EncryptionUtils.getPSource(encryptedKeyElement);
+            if (pSourceBytes != null) {
+                parameters.append(' ').append(Base64.getEncoder().encodeToString(pSourceBytes));
+            }
         }
+        return parameters.toString();
     }
 
     private static boolean isSymmetricKeyWrap(String transportAlgorithm) {
@@ -605,7 +651,7 @@ public class EncryptedKeyProcessor implements Processor {
 
         return EncryptionUtils.decryptEncryptedData(
             doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
-            data.getEncryptionSerializer()
+            data.getEncryptionSerializer(), docInfo
         );
     }
 
@@ -641,4 +687,9 @@ public class EncryptedKeyProcessor implements Processor {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
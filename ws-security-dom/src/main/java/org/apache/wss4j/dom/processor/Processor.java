@@ -33,4 +33,15 @@ public interface Processor {
         RequestData request
     ) throws WSSecurityException;
 
+    /**
+     * Return whether this Processor is thread-safe, and so can be instantiated once and shared
+     * across invocations when WSSConfig is configured to share thread-safe instances. The
+     * result is only taken into account for the class that declares this method, so a subclass
+     * of a thread-safe Processor is not shared unless it overrides this method itself.
+     * @return true if this Processor is thread-safe. The default is false.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
 }
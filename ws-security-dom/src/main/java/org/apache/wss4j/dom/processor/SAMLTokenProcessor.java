@@ -19,7 +19,6 @@
 
 package org.apache.wss4j.dom.processor;
 
-import java.security.NoSuchProviderException;
 import java.security.Provider;
 import java.security.PublicKey;
 import java.util.ArrayList;
@@ -34,6 +33,7 @@ import javax.xml.crypto.dsig.XMLValidateContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.namespace.QName;
 
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -42,12 +42,12 @@ import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.common.util.DOM2Writer;
+import org.apache.wss4j.common.util.JCAPool;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.saml.WSSSAMLKeyInfoProcessor;
-import org.apache.wss4j.dom.util.EncryptionUtils;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
 import org.opensaml.xmlsec.signature.KeyInfo;
@@ -68,17 +68,7 @@ public class SAMLTokenProcessor implements Processor {
     }
 
     private void init(Provider provider) {
-        if (provider == null) {
-            // Try to install the Santuario Provider - fall back to the JDK provider if this does
-            // not work
-            try {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-            } catch (NoSuchProviderException ex) {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM");
-            }
-        } else {
-            signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
-        }
+        signatureFactory = JCAPool.getXMLSignatureFactory(provider);
     }
 
     public List<WSSecurityEngineResult> handleToken(
@@ -183,10 +173,21 @@ public class SAMLTokenProcessor implements Processor {
                     new Object[] {"cannot get certificate or key"}
                 );
             }
-            SAMLKeyInfo samlKeyInfo =
-                SAMLUtil.getCredentialFromKeyInfo(
-                    keyInfo.getDOM(), new WSSSAMLKeyInfoProcessor(data), data.getSigVerCrypto()
-                );
+
+            // See if an identical Assertion was already verified in an earlier request
+            SamlAssertionCache samlAssertionCache = data.getSamlAssertionCache();
+            SAMLKeyInfo cachedKeyInfo = null;
+            if (samlAssertionCache != null) {
+                cachedKeyInfo = samlAssertionCache.get(samlAssertion);
+            }
+
+            SAMLKeyInfo samlKeyInfo = cachedKeyInfo;
+            if (samlKeyInfo == null) {
+                samlKeyInfo =
+                    SAMLUtil.getCredentialFromKeyInfo(
+                        keyInfo.getDOM(), new WSSSAMLKeyInfoProcessor(data), data.getSigVerCrypto()
+                    );
+            }
 
             PublicKey key = null;
             if (samlKeyInfo.getCerts() != null && samlKeyInfo.getCerts()[0] != null) {
@@ -230,7 +231,12 @@ public class SAMLTokenProcessor implements Processor {
                 }
             }
 
-            samlAssertion.verifySignature(samlKeyInfo);
+            if (cachedKeyInfo != null) {
+                LOG.debug("The signature of SAML Assertion {} was verified in an earlier request", samlAssertion.getId());
+                samlAssertion.setCachedSignatureKeyInfo(cachedKeyInfo);
+            } else {
+                samlAssertion.verifySignature(samlKeyInfo);
+            }
 
             return xmlSignature;
         }
@@ -271,11 +277,16 @@ public class SAMLTokenProcessor implements Processor {
                 }
                 ref.setTransformAlgorithms(transformAlgorithms);
 
-                ref.setXpath(EncryptionUtils.getXPath(token));
+                ref.setXpathNode(token);
                 protectedRefs.add(ref);
             }
         }
 
         return protectedRefs;
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
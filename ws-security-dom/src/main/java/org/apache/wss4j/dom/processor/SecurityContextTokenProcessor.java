@@ -117,4 +117,9 @@ public class SecurityContextTokenProcessor implements Processor {
         return callback.getKey();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
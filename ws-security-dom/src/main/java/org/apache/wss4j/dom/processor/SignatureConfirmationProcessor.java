@@ -53,4 +53,9 @@ public class SignatureConfirmationProcessor implements Processor {
         return java.util.Collections.singletonList(result);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
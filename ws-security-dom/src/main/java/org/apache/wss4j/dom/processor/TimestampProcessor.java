@@ -65,4 +65,9 @@ public class TimestampProcessor implements Processor {
         return java.util.Collections.singletonList(result);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
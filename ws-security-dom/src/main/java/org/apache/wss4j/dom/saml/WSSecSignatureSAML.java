@@ -23,7 +23,6 @@ import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.List;
 
-import javax.security.auth.Destroyable;
 import javax.xml.crypto.dsig.SignatureMethod;
 import javax.xml.crypto.dsig.SignedInfo;
 import javax.xml.crypto.dsig.XMLSignContext;
@@ -483,12 +482,15 @@ public class WSSecSignatureSAML extends WSSecSignature {
     ) throws WSSecurityException {
         try {
             java.security.Key key;
+            boolean destroyKey = true;
             if (senderVouches) {
                 key = issuerCrypto.getPrivateKey(issuerKeyName, issuerKeyPW);
+                destroyKey = !issuerCrypto.isPrivateKeyCacheEnabled();
             } else if (secretKey != null) {
                 key = KeyUtils.prepareSecretKey(getSignatureAlgorithm(), secretKey);
             } else {
                 key = userCrypto.getPrivateKey(user, password);
+                destroyKey = !userCrypto.isPrivateKeyCacheEnabled();
             }
             SignatureMethod signatureMethod =
                 signatureFactory.newSignatureMethod(getSignatureAlgorithm(), null);
@@ -530,13 +532,9 @@ public class WSSecSignatureSAML extends WSSecSignature {
 
             signatureValue = sig.getSignatureValue().getValue();
 
-            // Clean the private key from memory
-            if (key instanceof Destroyable) {
-                try {
-                    ((Destroyable)key).destroy();
-                } catch (javax.security.auth.DestroyFailedException ex) {
-                    LOG.debug("Error destroying private key: {}", ex.getMessage());
-                }
+            // Clean the private key from memory, unless it is cached
+            if (destroyKey) {
+                KeyUtils.destroyKey(key);
             }
         } catch (Exception ex) {
             LOG.error(ex.getMessage(), ex);
@@ -26,6 +26,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -255,7 +256,8 @@ public final class STRParserUtil {
     }
 
     /**
-     * Get the Secret Key from a CallbackHandler
+     * Get the Secret Key from a CallbackHandler. The Secret Key of an EncryptedKeySHA1 reference
+     * is taken from the EncryptedKeyCache of the RequestData instead, if it is cached there.
      * @param id The id of the element
      * @param type The type of the element (may be null)
      * @param identifier The WSPasswordCallback usage identifier
@@ -269,6 +271,15 @@ public final class STRParserUtil {
         int identifier,
         RequestData data
     ) throws WSSecurityException {
+        EncryptedKeyCache encryptedKeyCache = data.getEncryptedKeyCache();
+        if (encryptedKeyCache != null && SecurityTokenReference.ENC_KEY_SHA1_URI.equals(type)) {
+            byte[] secretKey = encryptedKeyCache.getSecretKey(id);
+            if (secretKey != null) {
+                LOG.debug("Using the cached key of EncryptedKeySHA1 {}", id);
+                return secretKey;
+            }
+        }
+
         String uri = XMLUtils.getIDFromReference(id);
         WSPasswordCallback pwcb =
             new WSPasswordCallback(uri, null, type, identifier);
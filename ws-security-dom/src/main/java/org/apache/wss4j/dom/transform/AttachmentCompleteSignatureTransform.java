@@ -18,14 +18,13 @@
  */
 package org.apache.wss4j.dom.transform;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 import org.apache.jcp.xml.dsig.internal.dom.ApacheOctetStreamData;
 import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.CachedOutputStream;
 import org.apache.wss4j.dom.WSConstants;
 
 import javax.xml.crypto.Data;
@@ -67,25 +66,29 @@ public class AttachmentCompleteSignatureTransform extends AttachmentContentSigna
             attachment = attachmentRequestCallback(context, attachmentId);
         }
 
+        CachedOutputStream cachedOutputStream = null;
         try {
             OutputStream outputStream = os;
             if (outputStream == null) {
-                outputStream = new ByteArrayOutputStream();
+                cachedOutputStream = new CachedOutputStream();
+                outputStream = cachedOutputStream;
             }
-            AttachmentUtils.canonizeMimeHeaders(os, attachment.getHeaders());
-            processAttachment(context, os, attachmentUri, attachment);
+            AttachmentUtils.canonizeMimeHeaders(outputStream, attachment.getHeaders());
+            processAttachment(context, outputStream, attachmentUri, attachment);
 
-            if (os == null) {
+            if (cachedOutputStream != null) {
                 String mimeType = attachment.getMimeType();
-                return new OctetStreamData(
-                        new ByteArrayInputStream(
-                                ((ByteArrayOutputStream)outputStream).toByteArray()
-                        ),
-                        attachmentUri, mimeType);
+                Data octetStreamData = new OctetStreamData(cachedOutputStream.getInputStream(), attachmentUri, mimeType);
+                cachedOutputStream = null;
+                return octetStreamData;
             }
             return null;
         } catch (IOException e) {
             throw new TransformException(e);
+        } finally {
+            if (cachedOutputStream != null) {
+                cachedOutputStream.destroy();
+            }
         }
     }
 
@@ -23,6 +23,8 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.util.CRLFOutputStream;
+import org.apache.wss4j.common.util.CachedOutputStream;
+import org.apache.wss4j.common.util.ReplayableInputStream;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.xml.security.c14n.CanonicalizationException;
 import org.apache.xml.security.c14n.Canonicalizer;
@@ -42,9 +44,6 @@ import javax.xml.crypto.dsig.TransformService;
 import javax.xml.crypto.dsig.spec.TransformParameterSpec;
 import javax.xml.parsers.ParserConfigurationException;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -156,14 +155,14 @@ public class AttachmentContentSignatureTransform extends TransformService {
     @SuppressWarnings("resource")
     protected Data processAttachment(XMLCryptoContext context, OutputStream os, String attachmentUri,
                                      Attachment attachment) throws TransformException {
+        //the attachment content is cached with bounded memory while it is processed, so that
+        //it can be passed on in the result callback
+        final ReplayableInputStream replayableInputStream =
+            new ReplayableInputStream(attachment.getSourceStream());
+        CachedOutputStream cachedOutputStream = null;
+        boolean handedOver = false;
         try {
-            //try to reuse the inputStream in the hope that the provided inputStream is backed by a disk storage
-            InputStream inputStream = attachment.getSourceStream();
-            if (!inputStream.markSupported()) {
-                inputStream = new BufferedInputStream(inputStream);
-            }
-            inputStream.mark(Integer.MAX_VALUE); //we can process at maximum 2G with the standard jdk streams
-            inputStream = new FilterInputStream(inputStream) {
+            InputStream inputStream = new FilterInputStream(replayableInputStream) {
                 @Override
                 public void close() throws IOException {
                     //I hate stuff which are closing _my_ streams!
@@ -172,7 +171,8 @@ public class AttachmentContentSignatureTransform extends TransformService {
 
             OutputStream outputStream = os;
             if (outputStream == null) {
-                outputStream = new ByteArrayOutputStream();
+                cachedOutputStream = new CachedOutputStream();
+                outputStream = cachedOutputStream;
             }
 
             String mimeType = attachment.getMimeType();
@@ -213,8 +213,8 @@ public class AttachmentContentSignatureTransform extends TransformService {
                 }
             }
 
-            //reset the inputStream to be able to reuse it
-            inputStream.reset();
+            //replay the inputStream to be able to reuse it
+            inputStream = replayableInputStream.replay();
 
             //create a new attachment and do the result callback
             final Attachment resultAttachment = new Attachment();
@@ -223,18 +223,25 @@ public class AttachmentContentSignatureTransform extends TransformService {
             resultAttachment.addHeaders(attachment.getHeaders());
             resultAttachment.setSourceStream(inputStream);
             attachmentResultCallback(context, resultAttachment);
+            //the result attachment owns the cached content from now on
+            handedOver = true;
 
-            if (os == null) {
-                return new OctetStreamData(
-                        new ByteArrayInputStream(
-                                ((ByteArrayOutputStream)outputStream).toByteArray()
-                        ),
-                        attachmentUri, mimeType);
+            if (cachedOutputStream != null) {
+                Data octetStreamData = new OctetStreamData(cachedOutputStream.getInputStream(), attachmentUri, mimeType);
+                cachedOutputStream = null;
+                return octetStreamData;
             }
             return null;
         } catch (IOException | InvalidCanonicalizerException | CanonicalizationException
             | ParserConfigurationException | SAXException e) {
             throw new TransformException(e);
+        } finally {
+            if (!handedOver) {
+                replayableInputStream.destroy();
+            }
+            if (cachedOutputStream != null) {
+                cachedOutputStream.destroy();
+            }
         }
     }
 
@@ -24,6 +24,7 @@ import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.JCAPool;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
@@ -53,6 +54,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
 import java.util.List;
 
 public final class EncryptionUtils {
@@ -140,6 +142,34 @@ public final class EncryptionUtils {
         CallbackHandler attachmentCallbackHandler,
         Serializer encryptionSerializer
     ) throws WSSecurityException {
+        return decryptEncryptedData(doc, dataRefURI, encData, symmetricKey,
+                                    symEncAlgo, attachmentCallbackHandler, encryptionSerializer, null);
+    }
+
+    /**
+     * Decrypt the EncryptedData argument using a SecretKey.
+     * @param doc The (document) owner of EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @param encData The EncryptedData element
+     * @param symmetricKey The SecretKey with which to decrypt EncryptedData
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     * @param attachmentCallbackHandler The CallbackHandler from which to get attachments
+     * @param encryptionSerializer The Serializer to use to deserialize the decrypted bytes
+     * @param wsDocInfo The WSDocInfo instance whose Id index is updated with the decrypted nodes
+     *        (can be null)
+     * @throws WSSecurityException
+     */
+    public static WSDataRef
+    decryptEncryptedData(
+        Document doc,
+        String dataRefURI,
+        Element encData,
+        SecretKey symmetricKey,
+        String symEncAlgo,
+        CallbackHandler attachmentCallbackHandler,
+        Serializer encryptionSerializer,
+        WSDocInfo wsDocInfo
+    ) throws WSSecurityException {
 
         // See if it is an attachment, and handle that differently
         String typeStr = encData.getAttributeNS(null, "Type");
@@ -176,6 +206,7 @@ public final class EncryptionUtils {
             encData = (Element) encData.getParentNode();
             parent = encData.getParentNode();
         }
+        Node nextSibling = encData.getNextSibling();
 
         XMLCipher xmlCipher = null;
         try {
@@ -224,22 +255,38 @@ public final class EncryptionUtils {
             soapHeader.replaceChild(decryptedHeader, parent);
 
             dataRef.setProtectedElement((Element)decryptedHeader);
-            dataRef.setXpath(getXPath(decryptedHeader));
+            dataRef.setXpathNode(decryptedHeader);
+            if (wsDocInfo != null) {
+                wsDocInfo.updateIdIndex(decryptedHeader);
+            }
         } else if (content) {
             dataRef.setProtectedElement(encData);
-            dataRef.setXpath(getXPath(encData));
+            dataRef.setXpathNode(encData);
+            if (wsDocInfo != null) {
+                wsDocInfo.updateIdIndex(encData);
+            }
         } else {
-            if (decryptedNode == null) {
-                if (previousSibling == null) {
-                    decryptedNode = parent.getFirstChild();
-                } else {
-                    decryptedNode = previousSibling.getNextSibling();
+            Node firstDecryptedNode = null;
+            if (previousSibling == null) {
+                firstDecryptedNode = parent.getFirstChild();
+            } else {
+                firstDecryptedNode = previousSibling.getNextSibling();
+            }
+            if (wsDocInfo != null) {
+                // The decrypted nodes replace EncryptedData between its previous and next siblings
+                for (Node node = firstDecryptedNode; node != null && node != nextSibling;
+                    node = node.getNextSibling()) {
+                    wsDocInfo.updateIdIndex(node);
                 }
+                wsDocInfo.updateIdIndex(decryptedNode);
+            }
+            if (decryptedNode == null) {
+                decryptedNode = firstDecryptedNode;
             }
             if (decryptedNode != null && Node.ELEMENT_NODE == decryptedNode.getNodeType()) {
                 dataRef.setProtectedElement((Element)decryptedNode);
             }
-            dataRef.setXpath(getXPath(decryptedNode));
+            dataRef.setXpathNode(decryptedNode);
         }
 
         return dataRef;
@@ -318,7 +365,8 @@ public final class EncryptionUtils {
             final String encAlgo = X509Util.getEncAlgo(encData);
             final String jceAlgorithm =
                     JCEMapper.translateURItoJCEID(encAlgo);
-            final Cipher cipher = Cipher.getInstance(jceAlgorithm);
+            // The Cipher is used by the returned (lazily decrypted) attachment stream, so it is not released
+            final Cipher cipher = JCAPool.getCipher(jceAlgorithm, null, symmetricKey);
 
             InputStream attachmentInputStream =
                     AttachmentUtils.setupAttachmentDecryptionStream(
@@ -342,7 +390,7 @@ public final class EncryptionUtils {
             attachmentCallbackHandler.handle(new Callback[]{attachmentResultCallback});
 
         } catch (UnsupportedCallbackException | IOException
-            | NoSuchAlgorithmException | NoSuchPaddingException e) {
+            | NoSuchAlgorithmException | NoSuchPaddingException | NoSuchProviderException e) {
             throw new WSSecurityException(
                     WSSecurityException.ErrorCode.FAILED_CHECK, e);
         }
@@ -359,7 +407,7 @@ public final class EncryptionUtils {
        SecretKey symmetricKey, String symEncAlgo, CallbackHandler attachmentCallbackHandler,
        String xopURI, Element encData
    ) throws WSSecurityException, IOException, UnsupportedCallbackException, NoSuchAlgorithmException,
-        NoSuchPaddingException, ParserConfigurationException, SAXException {
+        NoSuchPaddingException, NoSuchProviderException, ParserConfigurationException, SAXException {
 
         if (attachmentCallbackHandler == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
@@ -381,15 +429,19 @@ public final class EncryptionUtils {
 
         final String jceAlgorithm =
                 JCEMapper.translateURItoJCEID(symEncAlgo);
-        final Cipher cipher = Cipher.getInstance(jceAlgorithm);
-
-        InputStream attachmentInputStream =
-                AttachmentUtils.setupAttachmentDecryptionStream(
-                        symEncAlgo, cipher, symmetricKey, attachment.getSourceStream());
+        final Cipher cipher = JCAPool.getCipher(jceAlgorithm, null, symmetricKey);
 
         // For the xop:Include case, we need to replace the xop:Include Element with the
         // decrypted Element
-        byte[] bytes = JavaUtils.getBytesFromStream(attachmentInputStream);
+        byte[] bytes;
+        try {
+            InputStream attachmentInputStream =
+                    AttachmentUtils.setupAttachmentDecryptionStream(
+                            symEncAlgo, cipher, symmetricKey, attachment.getSourceStream());
+            bytes = JavaUtils.getBytesFromStream(attachmentInputStream);
+        } finally {
+            JCAPool.release(cipher, null, symmetricKey);
+        }
 
         Document document = null;
         try {
@@ -451,44 +503,77 @@ public final class EncryptionUtils {
      *        from the document. <code>null</code> otherwise
      */
     public static String getXPath(Node decryptedNode) {
-        if (decryptedNode == null) {
+        return getXPath(getXPathNodes(decryptedNode));
+    }
+
+    /**
+     * Capture the Element (and Attr) nodes on the path from the document root down to the
+     * given node. The names of these nodes do not change when the node is later moved or
+     * detached from the document, so the xpath can be built from them on demand via
+     * {@link #getXPath(Node[])}.
+     *
+     * @param node the node
+     * @return the nodes on the path from the document root down to (and including) the node
+     *        if the node is an Element or an Attr node and is not detached from the document.
+     *        <code>null</code> otherwise
+     */
+    public static Node[] getXPathNodes(Node node) {
+        if (node == null) {
             return null;
         }
 
-        String result = "";
-        if (Node.ELEMENT_NODE == decryptedNode.getNodeType()) {
-            result = decryptedNode.getNodeName();
-            result = prependFullPath(result, decryptedNode.getParentNode());
-        } else if (Node.ATTRIBUTE_NODE == decryptedNode.getNodeType()) {
-            result = "@" + decryptedNode.getNodeName();
-            result = prependFullPath(result, ((Attr)decryptedNode).getOwnerElement());
+        Node parent;
+        if (Node.ELEMENT_NODE == node.getNodeType()) {
+            parent = node.getParentNode();
+        } else if (Node.ATTRIBUTE_NODE == node.getNodeType()) {
+            parent = ((Attr)node).getOwnerElement();
         } else {
             return null;
         }
 
-        return result;
-    }
+        int depth = 1;
+        for (Node current = parent; current == null || Node.DOCUMENT_NODE != current.getNodeType();
+            current = current.getParentNode()) {
+            if (current == null) {
+                // probably a detached node... not really useful
+                return null;
+            } else if (Node.ELEMENT_NODE == current.getNodeType()) {
+                depth++;
+            }
+        }
 
+        Node[] path = new Node[depth];
+        path[--depth] = node;
+        for (Node current = parent; Node.DOCUMENT_NODE != current.getNodeType();
+            current = current.getParentNode()) {
+            if (Node.ELEMENT_NODE == current.getNodeType()) {
+                path[--depth] = current;
+            }
+        }
+        return path;
+    }
 
     /**
-     * Recursively build an absolute xpath (starting with the root &quot;/&quot;)
+     * Build an absolute xpath (starting with the root &quot;/&quot;) from the nodes returned
+     * by {@link #getXPathNodes(Node)}.
      *
-     * @param xpath the xpath expression built so far
-     * @param node the current node whose name is to be prepended
-     * @return a fully built xpath
+     * @param xpathNodes the nodes on the path from the document root down to the protected node
+     * @return a fully built xpath, or <code>null</code> if xpathNodes is <code>null</code>
      */
-    private static String prependFullPath(String xpath, Node node) {
-        if (node == null) {
-            // probably a detached node... not really useful
+    public static String getXPath(Node[] xpathNodes) {
+        if (xpathNodes == null) {
             return null;
-        } else if (Node.ELEMENT_NODE == node.getNodeType()) {
-            xpath = node.getNodeName() + "/" + xpath;
-            return prependFullPath(xpath, node.getParentNode());
-        } else if (Node.DOCUMENT_NODE == node.getNodeType()) {
-            return "/" + xpath;
-        } else {
-            return prependFullPath(xpath, node.getParentNode());
         }
+
+        StringBuilder xpath = new StringBuilder();
+        for (Node node : xpathNodes) {
+            xpath.append('/');
+            if (Node.ATTRIBUTE_NODE == node.getNodeType()) {
+                xpath.append('@');
+            }
+            xpath.append(node.getNodeName());
+        }
+        return xpath.toString();
     }
 
     public static String getDigestAlgorithm(Node encBodyData) throws WSSecurityException {
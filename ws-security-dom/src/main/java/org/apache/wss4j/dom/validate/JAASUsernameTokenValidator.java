@@ -26,6 +26,7 @@ import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.AuthenticationCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
@@ -42,6 +43,7 @@ public class JAASUsernameTokenValidator implements Validator {
         org.slf4j.LoggerFactory.getLogger(JAASUsernameTokenValidator.class);
 
     private String contextName;
+    private AuthenticationCache authenticationCache;
 
     public void setContextName(String name) {
         contextName = name;
@@ -51,6 +53,19 @@ public class JAASUsernameTokenValidator implements Validator {
         return contextName;
     }
 
+    /**
+     * Set the cache of successful authentications. If it is null (the default), then a JAAS
+     * login is performed for every UsernameToken.
+     * @param authenticationCache the cache of successful authentications
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
+    public AuthenticationCache getAuthenticationCache() {
+        return authenticationCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null UsernameToken. A
      * CallbackHandler implementation is also required to be set.
@@ -97,13 +112,24 @@ public class JAASUsernameTokenValidator implements Validator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
+        if (authenticationCache != null) {
+            Subject subject = authenticationCache.getSubject(user, password);
+            if (subject != null) {
+                LOG.debug("Using the cached authentication of user {}", user);
+                credential.setSubject(subject);
+                return credential;
+            }
+        }
+
         try {
             CallbackHandler handler = getCallbackHandler(user, password);
             LoginContext ctx = new LoginContext(getContextName(), handler);
             ctx.login();
             Subject subject = ctx.getSubject();
             credential.setSubject(subject);
-
+            if (authenticationCache != null) {
+                authenticationCache.add(user, password, subject);
+            }
         } catch (LoginException ex) {
             LOG.info("Authentication failed", ex);
             throw new WSSecurityException(
@@ -33,6 +33,7 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
+import org.apache.wss4j.common.kerberos.KerberosServiceSubjectCache;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
 import org.apache.wss4j.common.token.BinarySecurity;
@@ -52,6 +53,7 @@ public class KerberosTokenValidator implements Validator {
     private KerberosTokenDecoder kerberosTokenDecoder;
     private boolean isUsernameServiceNameForm;
     private boolean spnego;
+    private KerberosServiceSubjectCache subjectCache;
 
     /**
      * Get the JAAS Login context name to use.
@@ -121,6 +123,23 @@ public class KerberosTokenValidator implements Validator {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
 
+    /**
+     * Get the cache of service Subjects, which is used instead of logging in for every token
+     * @return the cache of service Subjects (can be null)
+     */
+    public KerberosServiceSubjectCache getSubjectCache() {
+        return subjectCache;
+    }
+
+    /**
+     * Set the cache of service Subjects. If it is null (the default), then a JAAS login is
+     * performed for every token that is validated.
+     * @param subjectCache the cache of service Subjects
+     */
+    public void setSubjectCache(KerberosServiceSubjectCache subjectCache) {
+        this.subjectCache = subjectCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null BinarySecurityToken.
      *
@@ -149,59 +168,30 @@ public class KerberosTokenValidator implements Validator {
             }
         }
 
-        // Get a TGT from the KDC using JAAS
-        LoginContext loginContext = null;
-        try {
-            if (callbackHandler != null) {
-                loginContext = new LoginContext(getContextName(), callbackHandler);
-            } else if (data.getCallbackHandler() != null) {
-                loginContext = new LoginContext(getContextName(), data.getCallbackHandler());
-            } else {
-                loginContext = new LoginContext(getContextName());
-            }
-            loginContext.login();
-        } catch (LoginException ex) {
-            LOG.debug(ex.getMessage(), ex);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, ex,
-                "kerberosLoginError",
-                new Object[] {ex.getMessage()}
-            );
-        }
+        // Get a TGT from the KDC using JAAS, or a cached service Subject
+        CallbackHandler loginCallbackHandler =
+            callbackHandler != null ? callbackHandler : data.getCallbackHandler();
+        Subject subject = getSubject(loginCallbackHandler);
         LOG.debug("Successfully authenticated to the TGT");
 
         byte[] token = binarySecurity.getToken();
 
-        // Get the service name to use - fall back on the principal
-        Subject subject = loginContext.getSubject();
-        String service = serviceName;
-        if (service == null) {
-            Set<Principal> principals = subject.getPrincipals();
-            if (principals.isEmpty()) {
-                throw new WSSecurityException(
-                    WSSecurityException.ErrorCode.FAILURE,
-                    "kerberosLoginError",
-                    new Object[] {"No Client principals found after login"});
-            }
-            service = principals.iterator().next().getName();
-        }
-
         // Validate the ticket
-        KerberosServiceExceptionAction action =
-            new KerberosServiceExceptionAction(token, service,
-                                               isUsernameServiceNameForm(), spnego);
         KerberosServiceContext krbServiceCtx = null;
         try {
-            krbServiceCtx = Subject.doAs(subject, action);
-        } catch (PrivilegedActionException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof WSSecurityException) {
-                throw (WSSecurityException) cause;
-            } else {
-                throw new WSSecurityException(
-                    ErrorCode.FAILURE, new Exception(cause), "kerberosTicketValidationError"
-                );
+            krbServiceCtx = acceptToken(subject, token);
+        } catch (WSSecurityException ex) {
+            if (subjectCache == null) {
+                throw ex;
+            }
+            // The credentials of the cached Subject might be stale, e.g. if the keytab has changed
+            Subject newSubject = relogin(loginCallbackHandler, subject);
+            if (newSubject == null) {
+                throw ex;
             }
+            LOG.debug("Retrying the ticket validation with a new service Subject");
+            subject = newSubject;
+            krbServiceCtx = acceptToken(subject, token);
         }
 
         credential.setPrincipal(krbServiceCtx.getPrincipal());
@@ -245,6 +235,76 @@ public class KerberosTokenValidator implements Validator {
         return credential;
     }
 
+    private Subject getSubject(CallbackHandler loginCallbackHandler) throws WSSecurityException {
+        try {
+            if (subjectCache != null) {
+                return subjectCache.getSubject(getContextName(), serviceName, loginCallbackHandler);
+            }
+
+            LoginContext loginContext = null;
+            if (loginCallbackHandler != null) {
+                loginContext = new LoginContext(getContextName(), loginCallbackHandler);
+            } else {
+                loginContext = new LoginContext(getContextName());
+            }
+            loginContext.login();
+            return loginContext.getSubject();
+        } catch (LoginException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, ex,
+                "kerberosLoginError",
+                new Object[] {ex.getMessage()}
+            );
+        }
+    }
+
+    private Subject relogin(
+        CallbackHandler loginCallbackHandler, Subject failedSubject
+    ) throws WSSecurityException {
+        try {
+            return subjectCache.relogin(getContextName(), serviceName, loginCallbackHandler, failedSubject);
+        } catch (LoginException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, ex,
+                "kerberosLoginError",
+                new Object[] {ex.getMessage()}
+            );
+        }
+    }
+
+    private KerberosServiceContext acceptToken(Subject subject, byte[] token) throws WSSecurityException {
+        // Get the service name to use - fall back on the principal
+        String service = serviceName;
+        if (service == null) {
+            Set<Principal> principals = subject.getPrincipals();
+            if (principals.isEmpty()) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE,
+                    "kerberosLoginError",
+                    new Object[] {"No Client principals found after login"});
+            }
+            service = principals.iterator().next().getName();
+        }
+
+        KerberosServiceExceptionAction action =
+            new KerberosServiceExceptionAction(token, service,
+                                               isUsernameServiceNameForm(), spnego);
+        try {
+            return Subject.doAs(subject, action);
+        } catch (PrivilegedActionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WSSecurityException) {
+                throw (WSSecurityException) cause;
+            } else {
+                throw new WSSecurityException(
+                    ErrorCode.FAILURE, new Exception(cause), "kerberosTicketValidationError"
+                );
+            }
+        }
+    }
+
     /**
      * SPN can be configured to be in either <b>"hostbased"</b> or <b>"username"</b> form.<br/>
      *     - <b>"hostbased"</b> - specifies that the service principal name should be interpreted as a "host-based" name as specified in GSS API Rfc, section "4.1: Host-Based Service Name Form" - The service name, as it is specified in LDAP/AD, as it is listed in the KDC.<br/>
@@ -39,4 +39,9 @@ public class NoOpValidator implements Validator {
         return credential;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
@@ -117,9 +117,12 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
         // Validate the assertion against schemas/profiles
         validateAssertion(samlAssertion);
 
-        // Verify trust on the signature
-        if (samlAssertion.isSigned()) {
+        // Verify trust on the signature, unless it was already verified for this Assertion
+        if (samlAssertion.isSigned() && !samlAssertion.isSignatureVerifiedFromCache()) {
             verifySignedAssertion(samlAssertion, data);
+            if (data.getSamlAssertionCache() != null) {
+                data.getSamlAssertionCache().add(samlAssertion, samlAssertion.getSignatureKeyInfo());
+            }
         }
         return credential;
     }
@@ -252,22 +255,17 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
             String identifier = samlAssertion.getId();
 
             ReplayCache replayCache = data.getSamlOneTimeUseReplayCache();
-            if (replayCache.contains(identifier)) {
+            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            Instant zonedExpires = null;
+            if (expires != null) {
+                zonedExpires = Instant.ofEpochMilli(expires.getMillis());
+            }
+            if (!replayCache.addIfAbsent(identifier, zonedExpires)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
                     new Object[] {"A replay attack has been detected"});
             }
-
-            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
-            if (expires != null) {
-                Instant zonedExpires = Instant.ofEpochMilli(expires.getMillis());
-                replayCache.add(identifier, zonedExpires);
-            } else {
-                replayCache.add(identifier);
-            }
-
-            replayCache.add(identifier);
         }
     }
 
@@ -122,4 +122,9 @@ public class SignatureTrustValidator implements Validator {
         crypto.verifyTrust(publicKey);
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
 }
@@ -76,6 +76,9 @@ public class TimestampValidator implements Validator {
         return credential;
     }
 
-
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 
 }
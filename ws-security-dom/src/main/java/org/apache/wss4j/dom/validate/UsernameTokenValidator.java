@@ -25,6 +25,7 @@ import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.UnsupportedCallbackException;
 
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.common.cache.AuthenticationCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
@@ -40,6 +41,21 @@ public class UsernameTokenValidator implements Validator {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(UsernameTokenValidator.class);
 
+    private AuthenticationCache authenticationCache;
+
+    /**
+     * Set the cache of successful authentications of UsernameTokens with a plaintext password.
+     * If it is null (the default), then the CallbackHandler is queried for every UsernameToken.
+     * @param authenticationCache the cache of successful authentications
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
+    public AuthenticationCache getAuthenticationCache() {
+        return authenticationCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null UsernameToken. A
      * CallbackHandler implementation is also required to be set.
@@ -86,7 +102,15 @@ public class UsernameTokenValidator implements Validator {
             verifyDigestPassword(usernameToken, data);
         } else if (WSConstants.PASSWORD_TEXT.equals(pwType)
             || password != null && (pwType == null || "".equals(pwType.trim()))) {
-            verifyPlaintextPassword(usernameToken, data);
+            String user = usernameToken.getName();
+            if (authenticationCache != null && authenticationCache.isAuthenticated(user, password)) {
+                LOG.debug("Using the cached authentication of user {}", user);
+            } else {
+                verifyPlaintextPassword(usernameToken, data);
+                if (authenticationCache != null) {
+                    authenticationCache.add(user, password, null);
+                }
+            }
         } else if (password != null) {
             if (!handleCustomPasswordTypes) {
                 LOG.debug("Authentication failed as handleCustomUsernameTokenTypes is false");
@@ -41,5 +41,15 @@ public interface Validator {
      */
     Credential validate(Credential credential, RequestData data) throws WSSecurityException;
 
+    /**
+     * Return whether this Validator is thread-safe, and so can be instantiated once and shared
+     * across invocations when WSSConfig is configured to share thread-safe instances. The
+     * result is only taken into account for the class that declares this method, so a subclass
+     * of a thread-safe Validator is not shared unless it overrides this method itself.
+     * @return true if this Validator is thread-safe. The default is false.
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
 
 }
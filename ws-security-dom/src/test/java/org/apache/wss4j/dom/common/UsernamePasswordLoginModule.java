@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.common;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.PasswordCallback;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.FailedLoginException;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
+
+/**
+ * A JAAS LoginModule that authenticates the same users as the UsernamePasswordCallbackHandler,
+ * and which counts the number of login attempts.
+ */
+public class UsernamePasswordLoginModule implements LoginModule {
+
+    private static final AtomicInteger LOGIN_COUNT = new AtomicInteger();
+
+    private final Map<String, String> users = new HashMap<>();
+    private Subject subject;
+    private CallbackHandler callbackHandler;
+    private String username;
+
+    public UsernamePasswordLoginModule() {
+        users.put("wernerd", "verySecret");
+        users.put("bob", "security");
+        users.put("alice", "securityPassword");
+    }
+
+    /**
+     * Get a JAAS Configuration that uses this LoginModule for every context name.
+     */
+    public static Configuration getConfiguration() {
+        final AppConfigurationEntry entry =
+            new AppConfigurationEntry(
+                UsernamePasswordLoginModule.class.getName(),
+                AppConfigurationEntry.LoginModuleControlFlag.REQUIRED,
+                Collections.<String, Object>emptyMap()
+            );
+        return new Configuration() {
+            @Override
+            public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+                return new AppConfigurationEntry[] {entry};
+            }
+        };
+    }
+
+    public static int getLoginCount() {
+        return LOGIN_COUNT.get();
+    }
+
+    public static void resetLoginCount() {
+        LOGIN_COUNT.set(0);
+    }
+
+    @Override
+    public void initialize(Subject subject, CallbackHandler callbackHandler,
+                           Map<String, ?> sharedState, Map<String, ?> options) {
+        this.subject = subject;
+        this.callbackHandler = callbackHandler;
+    }
+
+    @Override
+    public boolean login() throws LoginException {
+        LOGIN_COUNT.incrementAndGet();
+
+        NameCallback nameCallback = new NameCallback("Username: ");
+        PasswordCallback passwordCallback = new PasswordCallback("Password: ", false);
+        try {
+            callbackHandler.handle(new Callback[] {nameCallback, passwordCallback});
+        } catch (IOException | UnsupportedCallbackException ex) {
+            LoginException loginException = new LoginException(ex.getMessage());
+            loginException.initCause(ex);
+            throw loginException;
+        }
+
+        String name = nameCallback.getName();
+        char[] password = passwordCallback.getPassword();
+        if (name == null || password == null || !new String(password).equals(users.get(name))) {
+            throw new FailedLoginException("Authentication failed for user " + name);
+        }
+        username = name;
+        return true;
+    }
+
+    @Override
+    public boolean commit() throws LoginException {
+        if (username == null) {
+            return false;
+        }
+        subject.getPrincipals().add(new CustomTokenPrincipal(username));
+        return true;
+    }
+
+    @Override
+    public boolean abort() throws LoginException {
+        username = null;
+        return true;
+    }
+
+    @Override
+    public boolean logout() throws LoginException {
+        subject.getPrincipals().clear();
+        username = null;
+        return true;
+    }
+}
@@ -22,11 +22,17 @@ package org.apache.wss4j.dom.components.crypto;
 import java.security.Security;
 
 import org.apache.wss4j.common.crypto.WSProviderConfig;
+import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.validate.KerberosTokenValidator;
+import org.apache.wss4j.dom.validate.SamlAssertionValidator;
+import org.apache.wss4j.dom.validate.TimestampValidator;
 import org.junit.Test;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * Test loading and removing security providers via WSSConfig
@@ -78,4 +84,60 @@ public class WSSConfigTest {
 
     }
 
+    @Test
+    public void testShareThreadSafeInstances() throws Exception {
+        WSSConfig config = WSSConfig.getNewInstance();
+        assertNotSame(config.getProcessor(WSConstants.SIGNATURE), config.getProcessor(WSConstants.SIGNATURE));
+
+        WSSConfig.setShareThreadSafeInstances(true);
+        try {
+            assertSame(config.getProcessor(WSConstants.SIGNATURE), config.getProcessor(WSConstants.SIGNATURE));
+            assertSame(config.getProcessor(WSConstants.SIGNATURE),
+                       WSSConfig.getNewInstance().getProcessor(WSConstants.SIGNATURE));
+            assertSame(config.getValidator(WSConstants.TIMESTAMP), config.getValidator(WSConstants.TIMESTAMP));
+            assertSame(config.getAction(WSConstants.SIGN), config.getAction(WSConstants.SIGN));
+
+            // Validators that are not thread-safe are still instantiated per invocation
+            config.setValidator(WSConstants.BINARY_TOKEN, KerberosTokenValidator.class);
+            assertNotSame(config.getValidator(WSConstants.BINARY_TOKEN),
+                          config.getValidator(WSConstants.BINARY_TOKEN));
+        } finally {
+            WSSConfig.setShareThreadSafeInstances(false);
+        }
+    }
+
+    @Test
+    public void testSubclassNotShared() throws Exception {
+        WSSConfig.setShareThreadSafeInstances(true);
+        try {
+            WSSConfig config = WSSConfig.getNewInstance();
+
+            // A subclass does not inherit the thread-safe flag of its superclass
+            config.setValidator(WSConstants.TIMESTAMP, CustomTimestampValidator.class);
+            assertNotSame(config.getValidator(WSConstants.TIMESTAMP), config.getValidator(WSConstants.TIMESTAMP));
+
+            // SamlAssertionValidator extends SignatureTrustValidator, but has setters
+            config.setValidator(WSConstants.SAML_TOKEN, SamlAssertionValidator.class);
+            assertNotSame(config.getValidator(WSConstants.SAML_TOKEN), config.getValidator(WSConstants.SAML_TOKEN));
+
+            // Validators with setters are not shared
+            assertNotSame(config.getValidator(WSConstants.USERNAME_TOKEN),
+                          config.getValidator(WSConstants.USERNAME_TOKEN));
+        } finally {
+            WSSConfig.setShareThreadSafeInstances(false);
+        }
+    }
+
+    public static class CustomTimestampValidator extends TimestampValidator {
+        private int futureTTL;
+
+        public void setFutureTTL(int futureTTL) {
+            this.futureTTL = futureTTL;
+        }
+
+        public int getFutureTTL() {
+            return futureTTL;
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,253 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Some tests for the precompiled HandlerConfiguration.
+ */
+public class HandlerConfigurationTest {
+
+    @Test
+    public void testPrecompiledActions() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put(WSHandlerConstants.ACTION, WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE);
+        HandlerConfiguration config = new HandlerConfiguration(options);
+
+        List<Integer> receiverActions = config.getReceiverActions();
+        assertEquals(2, receiverActions.size());
+        assertEquals(WSConstants.TS, receiverActions.get(0).intValue());
+        assertEquals(WSConstants.SIGN, receiverActions.get(1).intValue());
+
+        List<HandlerAction> senderActions = config.getSenderActions();
+        assertEquals(2, senderActions.size());
+        assertEquals(WSConstants.TS, senderActions.get(0).getAction().intValue());
+        assertNull(senderActions.get(0).getActionToken());
+
+        // Each message gets its own (mutable) HandlerActions
+        List<HandlerAction> otherSenderActions = config.getSenderActions();
+        assertFalse(senderActions == otherSenderActions);
+        assertFalse(senderActions.get(0) == otherSenderActions.get(0));
+    }
+
+    @Test
+    public void testPerRequestActions() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put(WSHandlerConstants.ACTION, WSHandlerConstants.TIMESTAMP);
+        HandlerConfiguration config =
+            new HandlerConfiguration(
+                options, Collections.singleton(WSHandlerConstants.ACTION), WSSConfig.getNewInstance()
+            );
+
+        assertNull(config.getReceiverActions());
+        assertNull(config.getSenderActions());
+    }
+
+    @Test
+    public void testSendWithPrecompiledActions() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put(WSHandlerConstants.ACTION, WSHandlerConstants.TIMESTAMP);
+        CustomHandler handler = new CustomHandler();
+        handler.setHandlerConfiguration(new HandlerConfiguration(options));
+
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(new HashMap<String, Object>());
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        handler.send(doc, reqData, null, true);
+
+        String outputString = XMLUtils.prettyDocumentToString(doc);
+        assertTrue(outputString.contains("Timestamp"));
+    }
+
+    @Test
+    public void testReceiveWithPrecompiledActions() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put(WSHandlerConstants.ACTION, WSHandlerConstants.TIMESTAMP);
+        options.put(WSHandlerConstants.TIMESTAMP_STRICT, "false");
+        options.put(WSHandlerConstants.ENABLE_SIGNATURE_CONFIRMATION, "true");
+        HandlerConfiguration config =
+            new HandlerConfiguration(
+                options, Collections.singleton(WSHandlerConstants.ENABLE_SIGNATURE_CONFIRMATION), null
+            );
+        assertEquals(Boolean.FALSE, config.getBooleanOption(WSHandlerConstants.TIMESTAMP_STRICT));
+        assertNull(config.getBooleanOption(WSHandlerConstants.ENABLE_SIGNATURE_CONFIRMATION));
+        assertNull(config.getBooleanOption(WSHandlerConstants.ACTION));
+
+        CustomHandler handler = new CustomHandler();
+        handler.setHandlerConfiguration(config);
+
+        // Static boolean options are not read from the message context
+        Map<String, Object> messageContext = new HashMap<>();
+        messageContext.put(WSHandlerConstants.TIMESTAMP_STRICT, "true");
+        messageContext.put(WSHandlerConstants.ENABLE_SIGNATURE_CONFIRMATION, "false");
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(messageContext);
+
+        handler.receive(null, reqData);
+        assertFalse(reqData.isTimeStampStrict());
+        assertFalse(reqData.isEnableSignatureConfirmation());
+    }
+
+    @Test
+    public void testNoActionDefined() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        handler.setHandlerConfiguration(new HandlerConfiguration(new HashMap<String, Object>()));
+
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(new HashMap<String, Object>());
+        try {
+            handler.receive(null, reqData);
+            fail("Failure expected on no action");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testStaticOptions() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        handler.setOption(WSHandlerConstants.USER, "wss40");
+
+        Map<String, Object> options = new HashMap<>();
+        options.put(WSHandlerConstants.USER, "alice");
+        options.put(WSHandlerConstants.PASSWORD_TYPE, WSConstants.PW_TEXT);
+        handler.setHandlerConfiguration(
+            new HandlerConfiguration(
+                options, Collections.singleton(WSHandlerConstants.PASSWORD_TYPE), null
+            )
+        );
+
+        Map<String, Object> messageContext = new HashMap<>();
+        messageContext.put(WSHandlerConstants.USER, "bob");
+
+        // Static options are only read from the configuration
+        assertEquals("alice", handler.getString(WSHandlerConstants.USER, messageContext));
+        assertEquals("alice", handler.getStringOption(WSHandlerConstants.USER));
+
+        // Per-request options can be overridden on the message context
+        assertEquals(WSConstants.PW_TEXT, handler.getString(WSHandlerConstants.PASSWORD_TYPE, messageContext));
+        messageContext.put(WSHandlerConstants.PASSWORD_TYPE, WSConstants.PW_DIGEST);
+        assertEquals(WSConstants.PW_DIGEST, handler.getString(WSHandlerConstants.PASSWORD_TYPE, messageContext));
+
+        // Removing the configuration goes back to decoding the options per message
+        handler.setHandlerConfiguration(null);
+        assertEquals("wss40", handler.getString(WSHandlerConstants.USER, messageContext));
+    }
+
+    @Test
+    public void testCallbackHandlerReference() throws Exception {
+        CallbackHandler configuredCallbackHandler = new KeystoreCallbackHandler();
+        CallbackHandler requestCallbackHandler = new KeystoreCallbackHandler();
+
+        Map<String, Object> options = new HashMap<>();
+        options.put(WSHandlerConstants.PW_CALLBACK_REF, configuredCallbackHandler);
+
+        CustomHandler handler = new CustomHandler();
+        handler.setHandlerConfiguration(new HandlerConfiguration(options));
+
+        Map<String, Object> messageContext = new HashMap<>();
+        messageContext.put(WSHandlerConstants.PW_CALLBACK_REF, requestCallbackHandler);
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(messageContext);
+
+        assertSame(
+            configuredCallbackHandler,
+            handler.getCallbackHandler(
+                WSHandlerConstants.PW_CALLBACK_CLASS, WSHandlerConstants.PW_CALLBACK_REF, reqData
+            )
+        );
+
+        handler.setHandlerConfiguration(
+            new HandlerConfiguration(
+                options, Collections.singleton(WSHandlerConstants.PW_CALLBACK_REF), null
+            )
+        );
+        assertSame(
+            requestCallbackHandler,
+            handler.getCallbackHandler(
+                WSHandlerConstants.PW_CALLBACK_CLASS, WSHandlerConstants.PW_CALLBACK_REF, reqData
+            )
+        );
+    }
+
+    @Test
+    public void testPrecompiledCertConstraints() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS, ".*CN=Colm.*;.*CN=Bob.*");
+        options.put(WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS, ".*CN=Werner.*");
+        options.put(WSHandlerConstants.SIG_CERT_CONSTRAINTS_SEPARATOR, ";");
+        HandlerConfiguration config = new HandlerConfiguration(options);
+
+        assertEquals(2, config.getSubjectCertConstraints().size());
+        assertEquals(1, config.getIssuerCertConstraints().size());
+
+        CustomHandler handler = new CustomHandler();
+        handler.setHandlerConfiguration(config);
+
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(new HashMap<String, Object>());
+        reqData.setSigVerCrypto(CryptoFactory.getInstance());
+        handler.decodeSignatureParameter2(reqData);
+
+        assertEquals(2, reqData.getSubjectCertConstraints().size());
+        Pattern issuerPattern = reqData.getIssuerDNPatterns().iterator().next();
+        assertTrue(issuerPattern.matcher("CN=Werner,O=Apache").matches());
+        assertFalse(issuerPattern.matcher("CN=Colm,O=Apache").matches());
+    }
+
+    @Test
+    public void testInvalidCertConstraint() throws Exception {
+        Map<String, Object> options = new HashMap<>();
+        options.put(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS, "[CN=Colm");
+        try {
+            new HandlerConfiguration(options);
+            fail("Failure expected on an invalid constraint");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+    }
+
+}
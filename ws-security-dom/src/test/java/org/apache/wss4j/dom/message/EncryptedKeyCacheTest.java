@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.common.SecurityTestUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test-cases for decrypting EncryptedKeys, and EncryptedKeySHA1 references, via an EncryptedKeyCache.
+ */
+public class EncryptedKeyCacheTest {
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EncryptedKeyCacheTest.class);
+
+    private Crypto crypto;
+
+    @org.junit.AfterClass
+    public static void cleanup() throws Exception {
+        SecurityTestUtil.cleanup();
+    }
+
+    public EncryptedKeyCacheTest() throws Exception {
+        crypto = CryptoFactory.getInstance("wss40.properties");
+    }
+
+    /**
+     * The first message contains an EncryptedKey, which is cached by the recipient. The second
+     * message only refers to it via an EncryptedKeySHA1 KeyIdentifier, and is decrypted with the
+     * cached key, without a CallbackHandler.
+     */
+    @Test
+    public void testEncryptedKeySHA1FromCache() throws Exception {
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+
+        Document firstDoc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(firstDoc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setSymmetricEncAlgorithm(WSConstants.AES_128);
+        builder.build(crypto, symmetricKey);
+        String encryptedKeySHA1 = builder.getEncryptedKeySHA1();
+
+        Document secondDoc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        secHeader = new WSSecHeader(secondDoc);
+        secHeader.insertSecurityHeader();
+
+        builder = new WSSecEncrypt(secHeader);
+        builder.setKeyIdentifierType(WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER);
+        builder.setEncryptSymmKey(false);
+        builder.setCustomReferenceValue(encryptedKeySHA1);
+        builder.setSymmetricEncAlgorithm(WSConstants.AES_128);
+        builder.build(crypto, symmetricKey);
+
+        String outputString = XMLUtils.prettyDocumentToString(secondDoc);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(outputString);
+        }
+        assertTrue(outputString.contains("#EncryptedKeySHA1"));
+        assertFalse(outputString.contains("EncryptedKey "));
+
+        EncryptedKeyCache cache = new EncryptedKeyCache();
+
+        // Without the cached key, the second message can't be decrypted without a CallbackHandler
+        Document copy = SOAPUtil.toSOAPPart(outputString);
+        try {
+            verify(copy, cache, null);
+            fail("Failure expected on an unknown EncryptedKeySHA1 reference");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_CHECK, ex.getErrorCode());
+        }
+
+        verify(firstDoc, cache, new KeystoreCallbackHandler());
+        assertEquals(1, cache.size());
+
+        verify(secondDoc, cache, null);
+        assertFalse(XMLUtils.prettyDocumentToString(secondDoc).contains("EncryptedData"));
+    }
+
+    /**
+     * A cached key is only used for an EncryptedKey with the same key transport algorithm, which
+     * is addressed to the same public key.
+     */
+    @Test
+    public void testCachedKeyForDifferentAlgorithmOrPublicKey() throws Exception {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        PublicKey publicKey = crypto.getX509Certificates(cryptoType)[0].getPublicKey();
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        PublicKey otherPublicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        byte[] otherKey = KeyUtils.getKeyGenerator(WSConstants.AES_128).generateKey().getEncoded();
+
+        // A key cached for a different algorithm is not used
+        Document doc = encryptRSA15();
+        EncryptedKeyCache cache = new EncryptedKeyCache();
+        cache.add(getEncryptedKeyBytes(doc), WSConstants.KEYTRANSPORT_RSAOAEP, publicKey, otherKey);
+        verify(doc, cache, new KeystoreCallbackHandler());
+        assertFalse(XMLUtils.prettyDocumentToString(doc).contains("EncryptedData"));
+
+        // A key cached for a different public key is not used
+        doc = encryptRSA15();
+        cache = new EncryptedKeyCache();
+        cache.add(getEncryptedKeyBytes(doc), WSConstants.KEYTRANSPORT_RSA15, otherPublicKey, otherKey);
+        verify(doc, cache, new KeystoreCallbackHandler());
+        assertFalse(XMLUtils.prettyDocumentToString(doc).contains("EncryptedData"));
+
+        // Whereas a key cached for the same algorithm and public key is used
+        doc = encryptRSA15();
+        cache = new EncryptedKeyCache();
+        cache.add(getEncryptedKeyBytes(doc), WSConstants.KEYTRANSPORT_RSA15, publicKey, otherKey);
+        try {
+            verify(doc, cache, new KeystoreCallbackHandler());
+            fail("Failure expected on decrypting with the wrong cached key");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_CHECK, ex.getErrorCode());
+        }
+    }
+
+    private Document encryptRSA15() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setSymmetricEncAlgorithm(WSConstants.AES_128);
+        builder.setKeyEncAlgo(WSConstants.KEYTRANSPORT_RSA15);
+
+        SecretKey symmetricKey = KeyUtils.getKeyGenerator(WSConstants.AES_128).generateKey();
+        return builder.build(crypto, symmetricKey);
+    }
+
+    private byte[] getEncryptedKeyBytes(Document doc) {
+        Element encryptedKey =
+            XMLUtils.findElement(doc.getDocumentElement(), WSConstants.ENC_KEY_LN, WSConstants.ENC_NS);
+        assertNotNull(encryptedKey);
+        Element cipherValue = XMLUtils.findElement(encryptedKey, "CipherValue", WSConstants.ENC_NS);
+        assertNotNull(cipherValue);
+        return org.apache.xml.security.utils.XMLUtils.decode(XMLUtils.getElementText(cipherValue));
+    }
+
+    private void verify(
+        Document doc, EncryptedKeyCache cache, KeystoreCallbackHandler callbackHandler
+    ) throws Exception {
+        RequestData data = new RequestData();
+        data.setWssConfig(WSSConfig.getNewInstance());
+        data.setDecCrypto(crypto);
+        data.setCallbackHandler(callbackHandler);
+        data.setAllowRSA15KeyTransportAlgorithm(true);
+        data.setEncryptedKeyCache(cache);
+
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.processSecurityHeader(doc, data);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(XMLUtils.prettyDocumentToString(doc));
+        }
+    }
+}
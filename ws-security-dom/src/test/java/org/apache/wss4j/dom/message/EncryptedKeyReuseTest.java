@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.message;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.common.SecurityTestUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test-cases for reusing an EncryptedKey for several messages via an OutboundEncryptedKeyCache.
+ */
+public class EncryptedKeyReuseTest {
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EncryptedKeyReuseTest.class);
+
+    private CallbackHandler keystoreCallbackHandler = new KeystoreCallbackHandler();
+    private Crypto crypto;
+
+    @org.junit.AfterClass
+    public static void cleanup() throws Exception {
+        SecurityTestUtil.cleanup();
+    }
+
+    public EncryptedKeyReuseTest() throws Exception {
+        crypto = CryptoFactory.getInstance("wss40.properties");
+    }
+
+    /**
+     * Send two messages with an OutboundEncryptedKeyCache, and check that the second message
+     * reuses the EncryptedKey of the first one, and that both messages can be decrypted.
+     */
+    @Test
+    public void testReuseEncryptedKey() throws Exception {
+        OutboundEncryptedKeyCache cache = new OutboundEncryptedKeyCache();
+
+        Document firstDoc = encrypt(cache, WSConstants.AES_128, false);
+        assertEquals(1, cache.size());
+        Document secondDoc = encrypt(cache, WSConstants.AES_128, true);
+        assertEquals(1, cache.size());
+
+        assertEquals(getCipherValue(firstDoc), getCipherValue(secondDoc));
+
+        verify(firstDoc);
+        verify(secondDoc);
+    }
+
+    /**
+     * A cached EncryptedKey must not be reused for a different symmetric encryption algorithm.
+     */
+    @Test
+    public void testNoReuseForDifferentAlgorithm() throws Exception {
+        OutboundEncryptedKeyCache cache = new OutboundEncryptedKeyCache();
+
+        Document firstDoc = encrypt(cache, WSConstants.AES_128, false);
+        Document secondDoc = encrypt(cache, WSConstants.AES_256, false);
+        assertEquals(2, cache.size());
+
+        assertNotEquals(getCipherValue(firstDoc), getCipherValue(secondDoc));
+
+        verify(firstDoc);
+        verify(secondDoc);
+    }
+
+    private Document encrypt(
+        OutboundEncryptedKeyCache cache, String symEncAlgo, boolean expectCachedKey
+    ) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+        builder.setSymmetricEncAlgorithm(symEncAlgo);
+        builder.setEncryptedKeyCache(cache);
+
+        SecretKey symmetricKey = builder.getCachedSymmetricKey(crypto);
+        if (expectCachedKey) {
+            assertNotNull(symmetricKey);
+        } else {
+            assertNull(symmetricKey);
+            KeyGenerator keyGen = KeyUtils.getKeyGenerator(symEncAlgo);
+            symmetricKey = keyGen.generateKey();
+        }
+        Document encryptedDoc = builder.build(crypto, symmetricKey);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(XMLUtils.prettyDocumentToString(encryptedDoc));
+        }
+        return encryptedDoc;
+    }
+
+    private String getCipherValue(Document doc) {
+        Element encryptedKey =
+            XMLUtils.findElement(doc.getDocumentElement(), WSConstants.ENC_KEY_LN, WSConstants.ENC_NS);
+        assertNotNull(encryptedKey);
+        Element cipherValue = XMLUtils.findElement(encryptedKey, "CipherValue", WSConstants.ENC_NS);
+        assertNotNull(cipherValue);
+        return XMLUtils.getElementText(cipherValue);
+    }
+
+    private void verify(Document doc) throws Exception {
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(WSSConfig.getNewInstance());
+        WSHandlerResult results =
+            secEngine.processSecurityHeader(doc, null, keystoreCallbackHandler, crypto);
+        assertNotNull(results.getActionResults().get(WSConstants.ENCR));
+        WSSecurityEngineResult result = results.getActionResults().get(WSConstants.ENCR).get(0);
+        assertNotNull(result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS));
+
+        String outputString = XMLUtils.prettyDocumentToString(doc);
+        assertFalse(outputString.contains("EncryptedData"));
+    }
+}
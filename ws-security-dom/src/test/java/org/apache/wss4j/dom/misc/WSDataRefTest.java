@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.misc;
+
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Some tests for the xpath of a WSDataRef, which is built on first access.
+ */
+public class WSDataRefTest {
+    private static final String SOAP_MSG =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+        + "<SOAP-ENV:Body>"
+        + "<ns:add xmlns:ns=\"http://ws.apache.org/counter/counter_port_type\" Id=\"add\">"
+        + "<value xmlns=\"\">15</value>"
+        + "</ns:add>"
+        + "</SOAP-ENV:Body>"
+        + "</SOAP-ENV:Envelope>";
+
+    @Test
+    public void testXpath() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        Element add = (Element)doc.getDocumentElement().getFirstChild().getFirstChild();
+
+        WSDataRef dataRef = new WSDataRef();
+        dataRef.setXpathNode(add);
+        assertEquals("/SOAP-ENV:Envelope/SOAP-ENV:Body/ns:add", dataRef.getXpath());
+
+        dataRef.setXpathNode(add.getFirstChild());
+        assertEquals("/SOAP-ENV:Envelope/SOAP-ENV:Body/ns:add/value", dataRef.getXpath());
+
+        dataRef.setXpathNode(add.getAttributeNode("Id"));
+        assertEquals("/SOAP-ENV:Envelope/SOAP-ENV:Body/ns:add/@Id", dataRef.getXpath());
+
+        dataRef.setXpath("/explicit");
+        assertEquals("/explicit", dataRef.getXpath());
+    }
+
+    @Test
+    public void testXpathOfMovedNode() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        Element add = (Element)doc.getDocumentElement().getFirstChild().getFirstChild();
+
+        // The path is captured when the node is set, not when the xpath is first requested
+        WSDataRef dataRef = new WSDataRef();
+        dataRef.setXpathNode(add);
+        add.getParentNode().removeChild(add);
+        assertEquals("/SOAP-ENV:Envelope/SOAP-ENV:Body/ns:add", dataRef.getXpath());
+
+        // A node that is already detached has no xpath
+        dataRef.setXpathNode(add);
+        assertNull(dataRef.getXpath());
+    }
+}
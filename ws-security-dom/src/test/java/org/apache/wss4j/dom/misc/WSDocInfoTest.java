@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.misc;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Some tests for looking up elements by Id via the index of a WSDocInfo.
+ */
+public class WSDocInfoTest {
+    private static final String SOAP_MSG =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+        + "xmlns:wsu=\"" + WSConstants.WSU_NS + "\">"
+        + "<SOAP-ENV:Header>"
+        + "<Assertion ID=\"_saml2\"/>"
+        + "<Assertion AssertionID=\"_saml1\"/>"
+        + "</SOAP-ENV:Header>"
+        + "<SOAP-ENV:Body wsu:Id=\"body\">"
+        + "<add xmlns=\"http://ws.apache.org/counter/counter_port_type\" Id=\"add\">"
+        + "<value xmlns=\"\" Id=\"duplicate\">15</value>"
+        + "<value xmlns=\"\" wsu:Id=\"duplicate\">16</value>"
+        + "</add>"
+        + "</SOAP-ENV:Body>"
+        + "</SOAP-ENV:Envelope>";
+
+    @Test
+    public void testFindElementById() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        WSDocInfo wsDocInfo = new WSDocInfo(doc);
+
+        assertEquals("Body", wsDocInfo.findElementById("#body", true).getLocalName());
+        assertEquals("add", wsDocInfo.findElementById("add", true).getLocalName());
+        assertNull(wsDocInfo.findElementById("#unknown", true));
+
+        assertEquals("_saml2", wsDocInfo.findSAMLAssertionElementById("#_saml2").getAttributeNS(null, "ID"));
+        assertEquals("_saml1", wsDocInfo.findSAMLAssertionElementById("_saml1").getAttributeNS(null, "AssertionID"));
+        assertNull(wsDocInfo.findSAMLAssertionElementById("#body"));
+    }
+
+    @Test
+    public void testMultipleElements() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        WSDocInfo wsDocInfo = new WSDocInfo(doc);
+
+        assertNull(wsDocInfo.findElementById("#duplicate", true));
+        Element first = wsDocInfo.findElementById("#duplicate", false);
+        assertEquals("15", first.getTextContent());
+
+        // Once one of the duplicates is removed from the document, the Id is unique again
+        first.getParentNode().removeChild(first);
+        assertEquals("16", wsDocInfo.findElementById("#duplicate", true).getTextContent());
+    }
+
+    @Test
+    public void testUpdateIdIndex() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAP_MSG);
+        WSDocInfo wsDocInfo = new WSDocInfo(doc);
+        Element add = wsDocInfo.findElementById("#add", true);
+
+        Element inserted = doc.createElementNS(null, "inserted");
+        Element child = doc.createElementNS(null, "child");
+        child.setAttributeNS(WSConstants.WSU_NS, "wsu:Id", "child");
+        inserted.appendChild(child);
+        add.appendChild(inserted);
+
+        // Inserted nodes are only found once they have been added to the index
+        assertNull(wsDocInfo.findElementById("#child", true));
+        wsDocInfo.updateIdIndex(inserted);
+        assertEquals(child, wsDocInfo.findElementById("#child", true));
+
+        // An element whose Id has changed is no longer found under its old Id
+        add.setAttributeNS(null, "Id", "changed");
+        assertNull(wsDocInfo.findElementById("#add", true));
+    }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.validate;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.login.Configuration;
+
+import org.apache.wss4j.common.cache.AuthenticationCache;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.common.UsernamePasswordCallbackHandler;
+import org.apache.wss4j.dom.common.UsernamePasswordLoginModule;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.message.token.UsernameToken;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Test that the UsernameToken Validators only skip authentication for a cached successful
+ * authentication of the same username and password.
+ */
+public class AuthenticationCacheValidatorTest {
+
+    private Configuration jaasConfiguration;
+
+    @Before
+    public void setUp() {
+        jaasConfiguration = Configuration.getConfiguration();
+        Configuration.setConfiguration(UsernamePasswordLoginModule.getConfiguration());
+        UsernamePasswordLoginModule.resetLoginCount();
+    }
+
+    @After
+    public void tearDown() {
+        Configuration.setConfiguration(jaasConfiguration);
+    }
+
+    @Test
+    public void testUsernameTokenValidatorCache() throws Exception {
+        AuthenticationCache cache = new AuthenticationCache();
+        UsernameTokenValidator validator = new UsernameTokenValidator();
+        validator.setAuthenticationCache(cache);
+
+        final AtomicInteger handled = new AtomicInteger();
+        final CallbackHandler delegate = new UsernamePasswordCallbackHandler();
+        RequestData data = new RequestData();
+        data.setCallbackHandler(new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                handled.incrementAndGet();
+                delegate.handle(callbacks);
+            }
+        });
+
+        validator.validate(createCredential("bob", "security"), data);
+        assertEquals(1, handled.get());
+
+        // The same token is authenticated from the cache
+        validator.validate(createCredential("bob", "security"), data);
+        assertEquals(1, handled.get());
+
+        // A wrong password is not served from the cache
+        try {
+            validator.validate(createCredential("bob", "wrongPassword"), data);
+            fail("Failure expected on a wrong password");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+        assertEquals(2, handled.get());
+
+        // Invalidating the user forces the CallbackHandler to be queried again
+        cache.invalidate("bob");
+        validator.validate(createCredential("bob", "security"), data);
+        assertEquals(3, handled.get());
+    }
+
+    @Test
+    public void testJAASUsernameTokenValidatorCache() throws Exception {
+        AuthenticationCache cache = new AuthenticationCache();
+        JAASUsernameTokenValidator validator = new JAASUsernameTokenValidator();
+        validator.setContextName("UsernameTokenCache");
+        validator.setAuthenticationCache(cache);
+        RequestData data = new RequestData();
+
+        Credential credential = validator.validate(createCredential("alice", "securityPassword"), data);
+        Subject subject = credential.getSubject();
+        assertNotNull(subject);
+        assertEquals(1, UsernamePasswordLoginModule.getLoginCount());
+
+        // The same token is authenticated from the cache
+        credential = validator.validate(createCredential("alice", "securityPassword"), data);
+        assertSame(subject, credential.getSubject());
+        assertEquals(1, UsernamePasswordLoginModule.getLoginCount());
+
+        // A wrong password is not served from the cache
+        try {
+            validator.validate(createCredential("alice", "wrongPassword"), data);
+            fail("Failure expected on a wrong password");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+        assertEquals(2, UsernamePasswordLoginModule.getLoginCount());
+
+        // Invalidating the user forces a new JAAS login
+        cache.invalidate("alice");
+        credential = validator.validate(createCredential("alice", "securityPassword"), data);
+        assertNotNull(credential.getSubject());
+        assertEquals(3, UsernamePasswordLoginModule.getLoginCount());
+    }
+
+    private static Credential createCredential(String user, String password) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        UsernameToken usernameToken = new UsernameToken(false, doc, WSConstants.PASSWORD_TEXT);
+        usernameToken.setName(user);
+        usernameToken.setPassword(password);
+
+        Credential credential = new Credential();
+        credential.setUsernametoken(usernameToken);
+        return credential;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax.enforcer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.neethi.ExactlyOne;
+import org.apache.neethi.Policy;
+import org.apache.neethi.PolicyComponent;
+import org.apache.neethi.PolicyContainingAssertion;
+import org.apache.neethi.PolicyOperator;
+import org.apache.neethi.builders.PrimitiveAssertion;
+import org.apache.wss4j.common.WSSPolicyException;
+import org.apache.wss4j.policy.model.AbstractSecurityAssertion;
+
+/**
+ * A compiled representation of a (normalized) Policy. The Policy tree is walked once, and the
+ * security assertions of each alternative are recorded in the order in which they were
+ * encountered, so that a PolicyEnforcer can create the assertion states of an alternative
+ * without walking the Policy tree again for every message.
+ *
+ * A CompiledPolicy is immutable and can be shared by the PolicyEnforcers of concurrent messages.
+ */
+final class CompiledPolicy {
+
+    private final Policy policy;
+    private final List<List<AbstractSecurityAssertion>> alternatives = new ArrayList<>();
+
+    /**
+     * Precondition: Policy _must_ be normalized!
+     */
+    CompiledPolicy(Policy policy) throws WSSPolicyException {
+        this.policy = policy;
+        compile(policy);
+    }
+
+    private void compile(PolicyComponent policyComponent) throws WSSPolicyException {
+        if (policyComponent instanceof PolicyOperator) {
+            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
+            for (PolicyComponent curPolicyComponent : policyOperator.getPolicyComponents()) {
+                if (policyOperator instanceof ExactlyOne) {
+                    List<AbstractSecurityAssertion> alternative = new ArrayList<>();
+                    compile(curPolicyComponent, alternative);
+                    alternatives.add(Collections.unmodifiableList(alternative));
+                } else {
+                    compile(curPolicyComponent);
+                }
+            }
+        } else {
+            throw new WSSPolicyException("Invalid PolicyComponent: " + policyComponent
+                                         + " " + policyComponent.getType());
+        }
+    }
+
+    private void compile(
+        PolicyComponent policyComponent, List<AbstractSecurityAssertion> alternative
+    ) throws WSSPolicyException {
+        if (policyComponent instanceof PolicyOperator) {
+            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
+            for (PolicyComponent curPolicyComponent : policyOperator.getPolicyComponents()) {
+                compile(curPolicyComponent, alternative);
+            }
+        } else if (policyComponent instanceof AbstractSecurityAssertion) {
+            AbstractSecurityAssertion abstractSecurityAssertion = (AbstractSecurityAssertion) policyComponent;
+            alternative.add(abstractSecurityAssertion);
+            if (abstractSecurityAssertion instanceof PolicyContainingAssertion) {
+                compile(((PolicyContainingAssertion) abstractSecurityAssertion).getPolicy(), alternative);
+            }
+        } else if (!(policyComponent instanceof PrimitiveAssertion)) {
+            throw new WSSPolicyException("Unsupported PolicyComponent: " + policyComponent
+                                         + " type: " + policyComponent.getType());
+        }
+    }
+
+    /**
+     * @return the Policy this CompiledPolicy was compiled from
+     */
+    Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the security assertions of each alternative of the Policy
+     */
+    List<List<AbstractSecurityAssertion>> getAlternatives() {
+        return alternatives;
+    }
+}
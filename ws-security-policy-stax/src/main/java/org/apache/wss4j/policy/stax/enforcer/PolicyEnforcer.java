@@ -29,12 +29,7 @@ import java.util.Set;
 import javax.xml.namespace.QName;
 
 import org.apache.neethi.Assertion;
-import org.apache.neethi.ExactlyOne;
 import org.apache.neethi.Policy;
-import org.apache.neethi.PolicyComponent;
-import org.apache.neethi.PolicyContainingAssertion;
-import org.apache.neethi.PolicyOperator;
-import org.apache.neethi.builders.PrimitiveAssertion;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.policy.SPConstants;
 import org.apache.wss4j.common.WSSPolicyException;
@@ -144,11 +139,25 @@ public class PolicyEnforcer implements SecurityEventListener {
     private boolean faultOccurred;
     private final PolicyAsserter policyAsserter;
     private boolean soap12;
+    private final Map<OperationPolicy, CompiledPolicy> compiledPolicies;
 
     public PolicyEnforcer(List<OperationPolicy> operationPolicies, String soapAction, boolean initiator,
                           String actorOrRole, int attachmentCount, PolicyAsserter policyAsserter, boolean soap12
+    ) throws WSSPolicyException {
+        this(operationPolicies, soapAction, initiator, actorOrRole, attachmentCount, policyAsserter, soap12, null);
+    }
+
+    /**
+     * @param compiledPolicies a (thread-safe) cache of the compiled representations of the
+     *                         OperationPolicies, which is shared between PolicyEnforcer instances.
+     *                         May be null, in which case the Policy is compiled per instance.
+     */
+    PolicyEnforcer(List<OperationPolicy> operationPolicies, String soapAction, boolean initiator,
+                   String actorOrRole, int attachmentCount, PolicyAsserter policyAsserter, boolean soap12,
+                   Map<OperationPolicy, CompiledPolicy> compiledPolicies
     ) throws WSSPolicyException {
         this.operationPolicies = operationPolicies;
+        this.compiledPolicies = compiledPolicies;
         this.initiator = initiator;
         this.actorOrRole = actorOrRole;
         this.attachmentCount = attachmentCount;
@@ -165,7 +174,7 @@ public class PolicyEnforcer implements SecurityEventListener {
         if (soapAction != null && !soapAction.isEmpty()) {
             effectivePolicy = findPolicyBySOAPAction(operationPolicies, soapAction);
             if (effectivePolicy != null) {
-                buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                buildAssertionStateMap(getCompiledPolicy(effectivePolicy), assertionStateMap);
             }
         }
     }
@@ -202,75 +211,42 @@ public class PolicyEnforcer implements SecurityEventListener {
         return noNamespaceOperation;
     }
 
-    /**
-     * Precondition: Policy _must_ be normalized!
-     */
-    private void buildAssertionStateMap(
-            PolicyComponent policyComponent,
-            List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMap
-    ) throws WSSPolicyException {
-        if (policyComponent instanceof PolicyOperator) {
-            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
-            List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
-            int alternative = 0;
-            Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
-            while (policyComponentIterator.hasNext()) {
-                PolicyComponent curPolicyComponent = policyComponentIterator.next();
-                if (policyOperator instanceof ExactlyOne) {
-                    assertionStateMap.add(new HashMap<SecurityEventConstants.Event,
-                                          Map<Assertion, List<Assertable>>>());
-                    buildAssertionStateMap(curPolicyComponent, assertionStateMap, alternative++);
-                } else {
-                    buildAssertionStateMap(curPolicyComponent, assertionStateMap);
-                }
-            }
-        } else {
-            throw new WSSPolicyException("Invalid PolicyComponent: " + policyComponent
-                                         + " " + policyComponent.getType());
+    private CompiledPolicy getCompiledPolicy(OperationPolicy operationPolicy) throws WSSPolicyException {
+        if (compiledPolicies == null) {
+            return new CompiledPolicy(operationPolicy.getPolicy());
         }
+        CompiledPolicy compiledPolicy = compiledPolicies.get(operationPolicy);
+        // Recompile if the Policy of the OperationPolicy was replaced
+        if (compiledPolicy == null || compiledPolicy.getPolicy() != operationPolicy.getPolicy()) {
+            compiledPolicy = new CompiledPolicy(operationPolicy.getPolicy());
+            compiledPolicies.put(operationPolicy, compiledPolicy);
+        }
+        return compiledPolicy;
     }
 
     private void buildAssertionStateMap(
-            PolicyComponent policyComponent,
-            List<Map<SecurityEventConstants.Event,
-            Map<Assertion, List<Assertable>>>> assertionStateMap,
-            int alternative
+            CompiledPolicy compiledPolicy,
+            List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMap
     ) throws WSSPolicyException {
-        if (policyComponent instanceof PolicyOperator) {
-            PolicyOperator policyOperator = (PolicyOperator) policyComponent;
-            List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
-            Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
-            while (policyComponentIterator.hasNext()) {
-                PolicyComponent curPolicyComponent = policyComponentIterator.next();
-                buildAssertionStateMap(curPolicyComponent, assertionStateMap, alternative);
-            }
-        } else if (policyComponent instanceof AbstractSecurityAssertion) {
-            AbstractSecurityAssertion abstractSecurityAssertion = (AbstractSecurityAssertion) policyComponent;
-
-            List<Assertable> assertablesList = getAssertableForAssertion(abstractSecurityAssertion);
-            Iterator<Assertable> assertableIterator = assertablesList.iterator();
-            while (assertableIterator.hasNext()) {
-                Assertable assertable = assertableIterator.next();
-                final Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map =
-                    assertionStateMap.get(alternative);
-                final SecurityEventConstants.Event[] securityEventType = assertable.getSecurityEventType();
-                for (int j = 0; j < securityEventType.length; j++) {
-                    SecurityEventConstants.Event event = securityEventType[j];
-                    Map<Assertion, List<Assertable>> assertables = map.get(event);
-                    if (assertables == null) {
-                        assertables = new HashMap<>();
-                        map.put(event, assertables);
+        for (List<AbstractSecurityAssertion> alternative : compiledPolicy.getAlternatives()) {
+            final Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = new HashMap<>();
+            assertionStateMap.add(map);
+
+            for (AbstractSecurityAssertion abstractSecurityAssertion : alternative) {
+                List<Assertable> assertablesList = getAssertableForAssertion(abstractSecurityAssertion);
+                for (Assertable assertable : assertablesList) {
+                    final SecurityEventConstants.Event[] securityEventType = assertable.getSecurityEventType();
+                    for (int j = 0; j < securityEventType.length; j++) {
+                        SecurityEventConstants.Event event = securityEventType[j];
+                        Map<Assertion, List<Assertable>> assertables = map.get(event);
+                        if (assertables == null) {
+                            assertables = new HashMap<>();
+                            map.put(event, assertables);
+                        }
+                        addAssertionState(assertables, abstractSecurityAssertion, assertable);
                     }
-                    addAssertionState(assertables, abstractSecurityAssertion, assertable);
                 }
             }
-            if (abstractSecurityAssertion instanceof PolicyContainingAssertion) {
-                buildAssertionStateMap(((PolicyContainingAssertion) abstractSecurityAssertion).getPolicy(),
-                                       assertionStateMap, alternative);
-            }
-        } else if (!(policyComponent instanceof PrimitiveAssertion)) {
-            throw new WSSPolicyException("Unsupported PolicyComponent: " + policyComponent
-                                         + " type: " + policyComponent.getType());
         }
     }
 
@@ -752,13 +728,15 @@ public class PolicyEnforcer implements SecurityEventListener {
             if (effectivePolicy == null) {
                 effectivePolicy = findPolicyBySOAPOperationName(operationPolicies,
                                                                 operationSecurityEvent.getOperation());
-                if (effectivePolicy == null) {
-                    //no policy to the operation given
-                    effectivePolicy = new OperationPolicy(new QName(null, "NoPolicyFoundForOperation"));
-                    effectivePolicy.setPolicy(new Policy());
-                }
                 try {
-                    buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                    if (effectivePolicy == null) {
+                        //no policy to the operation given
+                        effectivePolicy = new OperationPolicy(new QName(null, "NoPolicyFoundForOperation"));
+                        effectivePolicy.setPolicy(new Policy());
+                        buildAssertionStateMap(new CompiledPolicy(effectivePolicy.getPolicy()), assertionStateMap);
+                    } else {
+                        buildAssertionStateMap(getCompiledPolicy(effectivePolicy), assertionStateMap);
+                    }
                 } catch (WSSPolicyException e) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
                 }
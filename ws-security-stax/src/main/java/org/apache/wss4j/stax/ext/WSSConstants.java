@@ -214,6 +214,10 @@ public class WSSConstants extends XMLSecurityConstants {
 
     public static final String PROP_ENCRYPTED_DATA_REFS = "PROP_ENCRYPTED_DATA_REFS";
 
+    public static final String PROP_CACHE_ENCRYPTED_KEY_FOR_TOKEN_ID = "PROP_CACHE_ENCRYPTED_KEY_FOR_TOKEN_ID";
+
+    public static final String PROP_CACHED_ENCRYPTED_KEY = "PROP_CACHED_ENCRYPTED_KEY";
+
     public static final Action TIMESTAMP = new Action(ConfigurationConstants.TIMESTAMP);
     public static final Action USERNAMETOKEN = new Action(ConfigurationConstants.USERNAME_TOKEN);
     public static final Action USERNAMETOKEN_SIGNED = new Action(ConfigurationConstants.USERNAME_TOKEN_SIGNATURE);
@@ -38,11 +38,15 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.kerberos.KerberosServiceSubjectCache;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.validate.Validator;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -108,11 +112,17 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private KerberosServiceSubjectCache kerberosServiceSubjectCache;
+    private EncryptedKeyCache encryptedKeyCache;
+    private OutboundEncryptedKeyCache outboundEncryptedKeyCache;
+    private SamlAssertionCache samlAssertionCache;
+    private int outboundEventBufferThreshold;
     private boolean validateSamlSubjectConfirmation = true;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
     private List<String> audienceRestrictions = new ArrayList<>();
     private boolean requireTimestampExpires;
+    private boolean synchronousDecryption;
 
     private CallbackHandler attachmentCallbackHandler;
     private Object msgContext;
@@ -163,6 +173,11 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.timestampReplayCache = wssSecurityProperties.timestampReplayCache;
         this.nonceReplayCache = wssSecurityProperties.nonceReplayCache;
         this.samlOneTimeUseReplayCache = wssSecurityProperties.samlOneTimeUseReplayCache;
+        this.kerberosServiceSubjectCache = wssSecurityProperties.kerberosServiceSubjectCache;
+        this.encryptedKeyCache = wssSecurityProperties.encryptedKeyCache;
+        this.outboundEncryptedKeyCache = wssSecurityProperties.outboundEncryptedKeyCache;
+        this.samlAssertionCache = wssSecurityProperties.samlAssertionCache;
+        this.outboundEventBufferThreshold = wssSecurityProperties.outboundEventBufferThreshold;
         this.allowRSA15KeyTransportAlgorithm = wssSecurityProperties.allowRSA15KeyTransportAlgorithm;
         this.derivedKeyIterations = wssSecurityProperties.derivedKeyIterations;
         this.useDerivedKeyForMAC = wssSecurityProperties.useDerivedKeyForMAC;
@@ -176,6 +191,7 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.msgContext = wssSecurityProperties.msgContext;
         this.audienceRestrictions = wssSecurityProperties.audienceRestrictions;
         this.requireTimestampExpires = wssSecurityProperties.requireTimestampExpires;
+        this.synchronousDecryption = wssSecurityProperties.synchronousDecryption;
         this.soap12 = wssSecurityProperties.soap12;
     }
 
@@ -762,6 +778,90 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the cache of the service Subjects used to validate received Kerberos tokens. If it is
+     * null (the default), then a JAAS login is performed for every Kerberos token.
+     */
+    public void setKerberosServiceSubjectCache(KerberosServiceSubjectCache kerberosServiceSubjectCache) {
+        this.kerberosServiceSubjectCache = kerberosServiceSubjectCache;
+    }
+
+    /**
+     * Get the cache of the service Subjects used to validate received Kerberos tokens
+     */
+    public KerberosServiceSubjectCache getKerberosServiceSubjectCache() {
+        return kerberosServiceSubjectCache;
+    }
+
+    /**
+     * Set the cache for the symmetric keys of decrypted EncryptedKeys. If it is set, then the key
+     * of an EncryptedKey that was decrypted in an earlier message can be referred to via an
+     * EncryptedKeySHA1 KeyIdentifier. It is null by default.
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache encryptedKeyCache) {
+        this.encryptedKeyCache = encryptedKeyCache;
+    }
+
+    /**
+     * Get the cache for the symmetric keys of decrypted EncryptedKeys
+     */
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
+    /**
+     * Set the cache for the EncryptedKeys of outbound messages. If it is set, then a generated
+     * symmetric key, and the EncryptedKey that wraps it, is reused for subsequent messages to the
+     * same recipient, for a bounded lifetime and number of messages. It is null by default.
+     */
+    public void setOutboundEncryptedKeyCache(OutboundEncryptedKeyCache outboundEncryptedKeyCache) {
+        this.outboundEncryptedKeyCache = outboundEncryptedKeyCache;
+    }
+
+    /**
+     * Get the cache for the EncryptedKeys of outbound messages
+     */
+    public OutboundEncryptedKeyCache getOutboundEncryptedKeyCache() {
+        return outboundEncryptedKeyCache;
+    }
+
+    /**
+     * Set the cache for signed SAML Assertions whose signature and signing key have been verified.
+     * If it is set, then the signature and trust validation is skipped for an Assertion that is
+     * identical to one that was verified in an earlier message. It is null by default.
+     */
+    public void setSamlAssertionCache(SamlAssertionCache samlAssertionCache) {
+        this.samlAssertionCache = samlAssertionCache;
+    }
+
+    /**
+     * Get the cache for signed SAML Assertions whose signature and signing key have been verified
+     */
+    public SamlAssertionCache getSamlAssertionCache() {
+        return samlAssertionCache;
+    }
+
+    /**
+     * Set the number of events that the outbound signature and encryption processors buffer in
+     * memory until the security header is complete. Any further events are spilled to a compact
+     * serialized form (and a temporary file for large messages), which keeps the heap bounded for
+     * large messages. The default of 0 means that all events are buffered in memory.
+     *
+     * Note that the events are spilled before they are encrypted, so that the temporary file (in the
+     * "java.io.tmpdir" directory) holds the plaintext of the message until it is deleted after the
+     * message has been written, or after the processing of the message failed.
+     */
+    public void setOutboundEventBufferThreshold(int outboundEventBufferThreshold) {
+        this.outboundEventBufferThreshold = outboundEventBufferThreshold;
+    }
+
+    /**
+     * Get the number of events that the outbound signature and encryption processors buffer in memory
+     */
+    public int getOutboundEventBufferThreshold() {
+        return outboundEventBufferThreshold;
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
@@ -952,6 +1052,18 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.requireTimestampExpires = requireTimestampExpires;
     }
 
+    public boolean isSynchronousDecryption() {
+        return synchronousDecryption;
+    }
+
+    /**
+     * Whether to decrypt EncryptedData elements on the thread which reads the message, instead of
+     * starting a separate decryption thread for each EncryptedData element. The default is false.
+     */
+    public void setSynchronousDecryption(boolean synchronousDecryption) {
+        this.synchronousDecryption = synchronousDecryption;
+    }
+
     public boolean isSoap12() {
         return soap12;
     }
@@ -18,22 +18,34 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
 
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
@@ -53,10 +65,13 @@ import org.apache.xml.security.binding.xmldsig.TransformType;
 import org.apache.xml.security.binding.xmldsig.TransformsType;
 import org.apache.xml.security.binding.xmlenc.CipherReferenceType;
 import org.apache.xml.security.binding.xmlenc.EncryptedDataType;
+import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
 import org.apache.xml.security.binding.xmlenc.ReferenceList;
 import org.apache.xml.security.binding.xmlenc.ReferenceType;
+import org.apache.xml.security.encryption.XMLCipherUtil;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.config.ConfigurationProperties;
+import org.apache.xml.security.stax.config.JCEAlgorithmMapper;
 import org.apache.xml.security.stax.config.TransformerAlgorithmMapper;
 import org.apache.xml.security.stax.ext.DocumentContext;
 import org.apache.xml.security.stax.ext.InboundSecurityContext;
@@ -65,14 +80,24 @@ import org.apache.xml.security.stax.ext.SecurePart;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.ext.XMLSecurityUtils;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecNamespace;
 import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.apache.xml.security.stax.impl.XMLSecurityEventReader;
 import org.apache.xml.security.stax.impl.processor.input.AbstractDecryptInputProcessor;
+import org.apache.xml.security.stax.impl.processor.input.XMLEncryptedKeyInputHandler;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.stax.impl.util.LimitingInputStream;
+import org.apache.xml.security.stax.impl.util.MultiInputStream;
 import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.TokenSecurityEvent;
 import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
+import org.apache.xml.security.stax.securityToken.SecurityTokenFactory;
+import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 
 /**
  * Processor for decryption of EncryptedData XML structures
@@ -85,13 +110,24 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
     private static final Long MAX_ALLOWED_DECOMPRESSED_BYTES =
             Long.valueOf(ConfigurationProperties.getProperty("MaximumAllowedDecompressedBytes"));
 
+    //the decrypted event reader of the super class recognizes the end of the decrypted content by
+    //this name. QName.equals() ignores the prefix, so a wrapper element with our own prefix matches it
+    private static final QName WRAPPER_ELEMENT_NAME = new QName("http://dummy", "dummy");
+
     private List<DeferredAttachment> attachmentReferences = new ArrayList<>();
 
+    private final KeyInfoType keyInfoType;
+    private final boolean synchronousDecryption;
+    private final String wrapperElementPrefix = IDGenerator.generateID(null);
+    private final Deque<XMLSecEvent> encryptedHeaderEvents = new ArrayDeque<>();
+
     public DecryptInputProcessor(KeyInfoType keyInfoType, ReferenceList referenceList,
                                  WSSSecurityProperties securityProperties, WSInboundSecurityContext securityContext)
             throws XMLSecurityException {
 
         super(keyInfoType, referenceList, securityProperties);
+        this.keyInfoType = keyInfoType;
+        this.synchronousDecryption = securityProperties.isSynchronousDecryption();
         checkBSPCompliance(keyInfoType, referenceList, securityContext, BSPRule.R3006);
     }
 
@@ -120,6 +156,336 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         }
     }
 
+    @Override
+    public XMLSecEvent processNextHeaderEvent(InputProcessorChain inputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+        if (synchronousDecryption) {
+            return processEventSynchronously(inputProcessorChain, true);
+        }
+        return super.processNextHeaderEvent(inputProcessorChain);
+    }
+
+    @Override
+    public XMLSecEvent processNextEvent(InputProcessorChain inputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+        if (synchronousDecryption) {
+            return processEventSynchronously(inputProcessorChain, false);
+        }
+        return super.processNextEvent(inputProcessorChain);
+    }
+
+    /**
+     * Decrypts the EncryptedData structures on the calling thread. The EncryptedData handling is
+     * the same as in AbstractDecryptInputProcessor, but the CipherValue is not written to a pipe by
+     * a decryption thread. Instead the decrypted stream pulls the CipherValue events from the
+     * processor chain whenever the StAX reader of the decrypted content needs more data.
+     */
+    private XMLSecEvent processEventSynchronously(InputProcessorChain inputProcessorChain, boolean isSecurityHeaderEvent)
+            throws XMLStreamException, XMLSecurityException {
+
+        if (!encryptedHeaderEvents.isEmpty()) {
+            return encryptedHeaderEvents.pollLast();
+        }
+
+        XMLSecEvent xmlSecEvent = isSecurityHeaderEvent
+            ? inputProcessorChain.processHeaderEvent()
+            : inputProcessorChain.processEvent();
+
+        if (xmlSecEvent.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            return xmlSecEvent;
+        }
+
+        XMLSecStartElement xmlSecStartElement = xmlSecEvent.asStartElement();
+        boolean encryptedHeader = false;
+
+        //buffer the events until the EncryptedData Element appears and discard it if we found the reference inside it
+        //otherwise replay it
+        if (xmlSecStartElement.getName().equals(XMLSecurityConstants.TAG_wsse11_EncryptedHeader)) {
+            xmlSecEvent = readAndBufferEncryptedHeader(inputProcessorChain, isSecurityHeaderEvent, xmlSecEvent);
+            xmlSecStartElement = xmlSecEvent.asStartElement();
+            encryptedHeader = true;
+        }
+
+        if (!xmlSecStartElement.getName().equals(XMLSecurityConstants.TAG_xenc_EncryptedData)) {
+            return xmlSecEvent;
+        }
+
+        ReferenceType referenceType = null;
+        if (getReferences() != null) {
+            referenceType = matchesReferenceId(xmlSecStartElement);
+            if (referenceType == null) {
+                //the EncryptedData is not for us, replay the EncryptedHeader events (if any)
+                if (!encryptedHeaderEvents.isEmpty()) {
+                    return encryptedHeaderEvents.pollLast();
+                }
+                return xmlSecEvent;
+            }
+            //duplicate id's are forbidden
+            if (getProcessedReferences().contains(referenceType)) {
+                throw new XMLSecurityException("signature.Verification.MultipleIDs");
+            }
+            getProcessedReferences().add(referenceType);
+        }
+        encryptedHeaderEvents.clear();
+
+        //the EncryptedData structure is read here and not passed further through the chain
+        InputProcessorChain subInputProcessorChain = inputProcessorChain.createSubChain(this);
+
+        EncryptedDataType encryptedDataType =
+            parseEncryptedDataStructure(subInputProcessorChain, isSecurityHeaderEvent, xmlSecEvent);
+        if (encryptedDataType.getId() == null) {
+            encryptedDataType.setId(IDGenerator.generateID(null));
+        }
+
+        InboundSecurityToken inboundSecurityToken =
+            getSecurityToken(inputProcessorChain, xmlSecStartElement, encryptedDataType);
+        handleSecurityToken(inboundSecurityToken, inputProcessorChain.getSecurityContext(), encryptedDataType);
+
+        final String algorithmURI = encryptedDataType.getEncryptionMethod().getAlgorithm();
+        Cipher symCipher = getCipher(algorithmURI);
+
+        if (encryptedDataType.getCipherData().getCipherReference() != null) {
+            handleCipherReference(inputProcessorChain, encryptedDataType, symCipher, inboundSecurityToken);
+            return readNextEvent(subInputProcessorChain, isSecurityHeaderEvent);
+        }
+
+        XMLSecStartElement parentXMLSecStartElement = xmlSecStartElement.getParentXMLSecStartElement();
+        if (encryptedHeader) {
+            parentXMLSecStartElement = parentXMLSecStartElement.getParentXMLSecStartElement();
+        }
+        AbstractDecryptedEventReaderInputProcessor decryptedEventReaderInputProcessor =
+            newDecryptedEventReaderInputProcessor(
+                encryptedHeader, parentXMLSecStartElement, encryptedDataType, inboundSecurityToken,
+                inputProcessorChain.getSecurityContext()
+            );
+
+        inputProcessorChain.addProcessor(decryptedEventReaderInputProcessor);
+        inputProcessorChain.getDocumentContext().setIsInEncryptedContent(
+            inputProcessorChain.getProcessors().indexOf(decryptedEventReaderInputProcessor),
+            decryptedEventReaderInputProcessor);
+
+        //fire here only ContentEncryptedElementEvents, this must occur after setIsInEncryptedContent
+        if (SecurePart.Modifier.Content.getModifier().equals(encryptedDataType.getType())) {
+            handleEncryptedContent(inputProcessorChain, xmlSecStartElement.getParentXMLSecStartElement(),
+                                   inboundSecurityToken, encryptedDataType);
+        }
+
+        XMLSecEvent nextEvent = readNextEvent(subInputProcessorChain, isSecurityHeaderEvent);
+
+        InputStream decryptInputStream;
+        if (nextEvent.isStartElement() && nextEvent.asStartElement().getName().equals(XMLSecurityConstants.TAG_XOP_INCLUDE)) {
+            Attribute href = nextEvent.asStartElement().getAttributeByName(new QName("href"));
+            decryptInputStream =
+                handleXOPInclude(inputProcessorChain, encryptedDataType, href == null ? null : href.getValue(),
+                                 symCipher, inboundSecurityToken);
+        } else {
+            Key decryptionKey =
+                inboundSecurityToken.getSecretKey(algorithmURI, XMLSecurityConstants.Enc, encryptedDataType.getId());
+            decryptionKey = XMLSecurityUtils.prepareSecretKey(algorithmURI, decryptionKey.getEncoded());
+            InputStream cipherValueInputStream = Base64.getMimeDecoder().wrap(
+                new CipherValueInputStream(subInputProcessorChain, isSecurityHeaderEvent, nextEvent));
+            decryptInputStream = createDecryptionStream(algorithmURI, symCipher, decryptionKey, cipherValueInputStream);
+        }
+
+        decryptInputStream = applyTransforms(referenceType, decryptInputStream);
+
+        //spec says (4.2): "The cleartext octet sequence obtained in step 3 is
+        //interpreted as UTF-8 encoded character data."
+        XMLStreamReader xmlStreamReader =
+            inputProcessorChain.getSecurityContext().<XMLInputFactory>get(
+                XMLSecurityConstants.XMLINPUTFACTORY).createXMLStreamReader(
+                    new MultiInputStream(writeWrapperStartElement(xmlSecStartElement), decryptInputStream,
+                                         writeWrapperEndElement()),
+                    StandardCharsets.UTF_8.name());
+
+        //forward to wrapper element
+        do {
+            if (xmlStreamReader.getEventType() == XMLStreamConstants.START_ELEMENT
+                && xmlStreamReader.getName().equals(WRAPPER_ELEMENT_NAME)) {
+                xmlStreamReader.next();
+                break;
+            }
+            xmlStreamReader.next();
+        } while (xmlStreamReader.hasNext());
+
+        decryptedEventReaderInputProcessor.setXmlStreamReader(xmlStreamReader);
+
+        if (isSecurityHeaderEvent) {
+            return decryptedEventReaderInputProcessor.processNextHeaderEvent(inputProcessorChain);
+        }
+        return decryptedEventReaderInputProcessor.processNextEvent(inputProcessorChain);
+    }
+
+    private static XMLSecEvent readNextEvent(InputProcessorChain subInputProcessorChain, boolean isSecurityHeaderEvent)
+            throws XMLStreamException, XMLSecurityException {
+        subInputProcessorChain.reset();
+        if (isSecurityHeaderEvent) {
+            return subInputProcessorChain.processHeaderEvent();
+        }
+        return subInputProcessorChain.processEvent();
+    }
+
+    private XMLSecEvent readAndBufferEncryptedHeader(InputProcessorChain inputProcessorChain, boolean isSecurityHeaderEvent,
+                                                     XMLSecEvent xmlSecEvent) throws XMLStreamException, XMLSecurityException {
+        InputProcessorChain subInputProcessorChain = inputProcessorChain.createSubChain(this);
+        do {
+            encryptedHeaderEvents.push(xmlSecEvent);
+            xmlSecEvent = readNextEvent(subInputProcessorChain, isSecurityHeaderEvent);
+        }
+        while (!(xmlSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT
+            && xmlSecEvent.asStartElement().getName().equals(XMLSecurityConstants.TAG_xenc_EncryptedData)));
+
+        encryptedHeaderEvents.push(xmlSecEvent);
+        return xmlSecEvent;
+    }
+
+    private EncryptedDataType parseEncryptedDataStructure(
+            InputProcessorChain subInputProcessorChain, boolean isSecurityHeaderEvent, XMLSecEvent xmlSecEvent)
+            throws XMLStreamException, XMLSecurityException {
+
+        Deque<XMLSecEvent> xmlSecEvents = new ArrayDeque<>();
+        xmlSecEvents.push(xmlSecEvent);
+        XMLSecEvent encryptedDataXMLSecEvent;
+        int count = 0;
+        int keyInfoCount = 0;
+        do {
+            encryptedDataXMLSecEvent = readNextEvent(subInputProcessorChain, isSecurityHeaderEvent);
+
+            xmlSecEvents.push(encryptedDataXMLSecEvent);
+            if (++count >= maximumAllowedEncryptedDataEvents) {
+                throw new XMLSecurityException("stax.xmlStructureSizeExceeded",
+                                               new Object[] {maximumAllowedEncryptedDataEvents});
+            }
+
+            //the keyInfoCount is necessary to prevent early while-loop abort when the KeyInfo also contains a CipherValue.
+            if (encryptedDataXMLSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT
+                && encryptedDataXMLSecEvent.asStartElement().getName().equals(XMLSecurityConstants.TAG_dsig_KeyInfo)) {
+                keyInfoCount++;
+            } else if (encryptedDataXMLSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT
+                && encryptedDataXMLSecEvent.asEndElement().getName().equals(XMLSecurityConstants.TAG_dsig_KeyInfo)) {
+                keyInfoCount--;
+            }
+        }
+        while (!((encryptedDataXMLSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT
+            && encryptedDataXMLSecEvent.asStartElement().getName().equals(XMLSecurityConstants.TAG_xenc_CipherValue)
+            || encryptedDataXMLSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT
+            && encryptedDataXMLSecEvent.asEndElement().getName().equals(XMLSecurityConstants.TAG_xenc_EncryptedData))
+            && keyInfoCount == 0));
+
+        xmlSecEvents.push(XMLSecEventFactory.createXmlSecEndElement(XMLSecurityConstants.TAG_xenc_CipherValue));
+        xmlSecEvents.push(XMLSecEventFactory.createXmlSecEndElement(XMLSecurityConstants.TAG_xenc_CipherData));
+        xmlSecEvents.push(XMLSecEventFactory.createXmlSecEndElement(XMLSecurityConstants.TAG_xenc_EncryptedData));
+
+        try {
+            @SuppressWarnings("unchecked")
+            JAXBElement<EncryptedDataType> encryptedDataTypeJAXBElement =
+                (JAXBElement<EncryptedDataType>) JaxbUnmarshallerPool.unmarshal(
+                    new XMLSecurityEventReader(xmlSecEvents, 0), getSecurityProperties().isDisableSchemaValidation());
+            return encryptedDataTypeJAXBElement.getValue();
+        } catch (JAXBException e) {
+            throw new XMLSecurityException(e);
+        }
+    }
+
+    private InboundSecurityToken getSecurityToken(InputProcessorChain inputProcessorChain,
+                                                  XMLSecStartElement xmlSecStartElement,
+                                                  EncryptedDataType encryptedDataType) throws XMLSecurityException {
+
+        KeyInfoType keyInfoType = this.keyInfoType;
+        if (keyInfoType == null) {
+            keyInfoType = encryptedDataType.getKeyInfo();
+        }
+
+        if (keyInfoType != null) {
+            final EncryptedKeyType encryptedKeyType =
+                XMLSecurityUtils.getQNameType(keyInfoType.getContent(), XMLSecurityConstants.TAG_xenc_EncryptedKey);
+            if (encryptedKeyType != null) {
+                XMLEncryptedKeyInputHandler handler = new XMLEncryptedKeyInputHandler();
+                handler.handle(inputProcessorChain, encryptedKeyType, xmlSecStartElement, getSecurityProperties());
+
+                SecurityTokenProvider<? extends InboundSecurityToken> securityTokenProvider =
+                    inputProcessorChain.getSecurityContext().getSecurityTokenProvider(encryptedKeyType.getId());
+                return securityTokenProvider.getSecurityToken();
+            }
+        }
+
+        //retrieve the securityToken which must be used for decryption
+        return SecurityTokenFactory.getInstance().getSecurityToken(
+            keyInfoType, SecurityTokenConstants.KeyUsage_Decryption,
+            getSecurityProperties(), inputProcessorChain.getSecurityContext());
+    }
+
+    private static Cipher getCipher(String algorithmURI) throws XMLSecurityException {
+        String jceName = JCEAlgorithmMapper.translateURItoJCEID(algorithmURI);
+        if (jceName == null) {
+            throw new XMLSecurityException("algorithms.NoSuchMap", new Object[] {algorithmURI});
+        }
+        String jceProvider = JCEAlgorithmMapper.getJCEProviderFromURI(algorithmURI);
+        try {
+            //the initialization of the cipher is deferred until we can extract the IV...
+            if (jceProvider != null) {
+                return Cipher.getInstance(jceName, jceProvider);
+            }
+            return Cipher.getInstance(jceName);
+        } catch (GeneralSecurityException e) {
+            throw new XMLSecurityException(e);
+        }
+    }
+
+    private static InputStream createDecryptionStream(String algorithmURI, Cipher cipher, Key key, InputStream inputStream)
+            throws XMLSecurityException {
+        int ivLength = JCEAlgorithmMapper.getIVLengthFromURI(algorithmURI) / 8;
+        byte[] iv = new byte[ivLength];
+        try {
+            int read = 0;
+            while (read < ivLength) {
+                int count = inputStream.read(iv, read, ivLength - read);
+                if (count == -1) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
+                }
+                read += count;
+            }
+            cipher.init(Cipher.DECRYPT_MODE, key,
+                        XMLCipherUtil.constructBlockCipherParameters(algorithmURI, iv, DecryptInputProcessor.class));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new XMLSecurityException(e);
+        }
+        return new CipherInputStream(inputStream, cipher);
+    }
+
+    private InputStream writeWrapperStartElement(XMLSecStartElement xmlSecStartElement) {
+        //the dummy wrapper element declares all namespaces of the current scope to get a valid document fragment
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append('<').append(wrapperElementPrefix).append(':').append(WRAPPER_ELEMENT_NAME.getLocalPart());
+        stringBuilder.append(" xmlns:").append(wrapperElementPrefix).append("=\"");
+        stringBuilder.append(WRAPPER_ELEMENT_NAME.getNamespaceURI()).append('\"');
+
+        List<XMLSecNamespace> namespacesToApply = new ArrayList<>();
+        List<XMLSecNamespace> namespaces = new ArrayList<>();
+        xmlSecStartElement.getNamespacesFromCurrentScope(namespaces);
+        //reverse iteration -> From current element namespaces to parent namespaces
+        for (int i = namespaces.size() - 1; i >= 0; i--) {
+            XMLSecNamespace namespace = namespaces.get(i);
+            if (!namespacesToApply.contains(namespace)) {
+                namespacesToApply.add(namespace);
+                String prefix = namespace.getPrefix();
+                if (prefix == null || prefix.isEmpty()) {
+                    stringBuilder.append(" xmlns=\"");
+                } else {
+                    stringBuilder.append(" xmlns:").append(prefix).append("=\"");
+                }
+                stringBuilder.append(namespace.getNamespaceURI()).append('\"');
+            }
+        }
+        stringBuilder.append('>');
+        return new ByteArrayInputStream(stringBuilder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private InputStream writeWrapperEndElement() {
+        String endElement = "</" + wrapperElementPrefix + ":" + WRAPPER_ELEMENT_NAME.getLocalPart() + ">";
+        return new ByteArrayInputStream(endElement.getBytes(StandardCharsets.UTF_8));
+    }
+
     @Override
     protected InputStream applyTransforms(ReferenceType referenceType, InputStream inputStream) throws XMLSecurityException {
         if (referenceType != null) {
@@ -419,6 +785,83 @@ public class DecryptInputProcessor extends AbstractDecryptInputProcessor {
         }
     }
 
+    /**
+     * Supplies the (base64 encoded) content of the CipherValue element. The character events are
+     * pulled from the processor chain when more data is requested, up to the CipherValue end element.
+     */
+    private static final class CipherValueInputStream extends InputStream {
+
+        private final InputProcessorChain inputProcessorChain;
+        private final boolean header;
+        private XMLSecEvent firstEvent;
+        private char[] chars;
+        private int position;
+        private boolean finished;
+
+        private CipherValueInputStream(InputProcessorChain inputProcessorChain, boolean header, XMLSecEvent firstEvent) {
+            this.inputProcessorChain = inputProcessorChain;
+            this.header = header;
+            this.firstEvent = firstEvent;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chars[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, chars.length - position);
+            for (int i = 0; i < count; i++) {
+                //the base64 alphabet is ASCII, other characters are skipped by the decoder anyway
+                b[off + i] = (byte) chars[position++];
+            }
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            while (chars == null || position == chars.length) {
+                if (finished) {
+                    return false;
+                }
+                XMLSecEvent xmlSecEvent = firstEvent;
+                firstEvent = null;
+                try {
+                    if (xmlSecEvent == null) {
+                        xmlSecEvent = readNextEvent(inputProcessorChain, header);
+                    }
+                    switch (xmlSecEvent.getEventType()) {
+                        case XMLStreamConstants.END_ELEMENT:
+                            //this must be the CipherValue EndElement.
+                            finished = true;
+                            break;
+                        case XMLStreamConstants.CHARACTERS:
+                            chars = xmlSecEvent.asCharacters().getText();
+                            position = 0;
+                            break;
+                        default:
+                            throw new XMLSecurityException(
+                                "stax.unexpectedXMLEvent",
+                                new Object[] {XMLSecurityUtils.getXMLEventAsString(xmlSecEvent)}
+                            );
+                    }
+                } catch (XMLStreamException | XMLSecurityException e) {
+                    throw new IOException(e);
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * The DecryptedEventReaderInputProcessor reads the decrypted stream with a StAX reader and
      * forwards the generated XMLEvents
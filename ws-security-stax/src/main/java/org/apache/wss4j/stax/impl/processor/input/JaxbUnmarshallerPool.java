@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.processor.input;
+
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.XMLSecurityProperties;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.impl.XMLSecurityEventReader;
+
+/**
+ * A pool of JAXB Unmarshallers for the security header handlers. Creating an Unmarshaller (and
+ * attaching the WS-Security schemas to it) for every token in the security header is a
+ * noticeable share of the processing time of small messages, so the Unmarshallers are reused.
+ * An Unmarshaller is only returned to the pool if it completed successfully.
+ */
+final class JaxbUnmarshallerPool {
+
+    private static final int MAX_POOL_SIZE = 32;
+
+    private static final BlockingQueue<Unmarshaller> VALIDATING_UNMARSHALLERS =
+        new ArrayBlockingQueue<>(MAX_POOL_SIZE);
+    private static final BlockingQueue<Unmarshaller> NON_VALIDATING_UNMARSHALLERS =
+        new ArrayBlockingQueue<>(MAX_POOL_SIZE);
+
+    private JaxbUnmarshallerPool() {
+        // complete
+    }
+
+    /**
+     * Unmarshal the structure which starts at the given index of the event Deque
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
+            throws XMLSecurityException {
+        try {
+            return (T) unmarshal(new XMLSecurityEventReader(eventDeque, index),
+                                 securityProperties.isDisableSchemaValidation());
+        } catch (JAXBException e) {
+            throw new XMLSecurityException(e);
+        }
+    }
+
+    static Object unmarshal(XMLSecurityEventReader xmlSecurityEventReader, boolean disableSchemaValidation)
+            throws JAXBException {
+        BlockingQueue<Unmarshaller> pool = getPool(disableSchemaValidation);
+        Unmarshaller unmarshaller = pool.poll();
+        if (unmarshaller == null) {
+            unmarshaller = WSSConstants.getJaxbUnmarshaller(disableSchemaValidation);
+        }
+        Object object = unmarshaller.unmarshal(xmlSecurityEventReader);
+        pool.offer(unmarshaller);
+        return object;
+    }
+
+    /**
+     * Return the pooled Unmarshallers for the given schema validation setting
+     */
+    static BlockingQueue<Unmarshaller> getPool(boolean disableSchemaValidation) {
+        return disableSchemaValidation ? NON_VALIDATING_UNMARSHALLERS : VALIDATING_UNMARSHALLERS;
+    }
+}
@@ -30,7 +30,6 @@ import java.util.Map;
 import javax.crypto.spec.SecretKeySpec;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamConstants;
@@ -42,8 +41,10 @@ import javax.xml.stream.events.ProcessingInstruction;
 
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -128,30 +129,50 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             if (sigKeyInfoIdx < 0) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, "noKeyInSAMLToken");
             }
-            InboundSecurityToken sigSecurityToken = parseKeyInfo(inputProcessorChain, securityProperties, eventQueue, sigKeyInfoIdx);
 
-            if (sigSecurityToken == null) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, "noKeyInSAMLToken");
+            // See if an identical Assertion was already verified in an earlier request
+            SamlAssertionCache samlAssertionCache = wssSecurityProperties.getSamlAssertionCache();
+            SAMLKeyInfo cachedKeyInfo = null;
+            if (samlAssertionCache != null) {
+                cachedKeyInfo = samlAssertionCache.get(samlAssertionWrapper);
             }
 
-            samlTokenValidator.validate(sigSecurityToken, wssSecurityProperties);
-
-            BasicCredential credential = null;
-            if (sigSecurityToken.getX509Certificates() != null) {
-                credential = new BasicX509Credential(sigSecurityToken.getX509Certificates()[0]);
-            } else if (sigSecurityToken.getPublicKey() != null) {
-                credential = new BasicCredential(sigSecurityToken.getPublicKey());
+            if (cachedKeyInfo != null) {
+                samlAssertionWrapper.setCachedSignatureKeyInfo(cachedKeyInfo);
             } else {
-                throw new WSSecurityException(
-                        WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity",
-                        new Object[] {"cannot get certificate or key"}
-                );
-            }
-            try {
-                SignatureValidator.validate(signature, credential);
-            } catch (SignatureException ex) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
-                        ex, "empty", new Object[] {"SAML signature validation failed"});
+                InboundSecurityToken sigSecurityToken =
+                    parseKeyInfo(inputProcessorChain, securityProperties, eventQueue, sigKeyInfoIdx);
+
+                if (sigSecurityToken == null) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, "noKeyInSAMLToken");
+                }
+
+                samlTokenValidator.validate(sigSecurityToken, wssSecurityProperties);
+
+                BasicCredential credential = null;
+                SAMLKeyInfo samlKeyInfo = null;
+                if (sigSecurityToken.getX509Certificates() != null) {
+                    credential = new BasicX509Credential(sigSecurityToken.getX509Certificates()[0]);
+                    samlKeyInfo = new SAMLKeyInfo(sigSecurityToken.getX509Certificates());
+                } else if (sigSecurityToken.getPublicKey() != null) {
+                    credential = new BasicCredential(sigSecurityToken.getPublicKey());
+                    samlKeyInfo = new SAMLKeyInfo(sigSecurityToken.getPublicKey());
+                } else {
+                    throw new WSSecurityException(
+                            WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity",
+                            new Object[] {"cannot get certificate or key"}
+                    );
+                }
+                try {
+                    SignatureValidator.validate(signature, credential);
+                } catch (SignatureException ex) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                            ex, "empty", new Object[] {"SAML signature validation failed"});
+                }
+
+                if (samlAssertionCache != null) {
+                    samlAssertionCache.add(samlAssertionWrapper, samlKeyInfo);
+                }
             }
         }
 
@@ -348,8 +369,8 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
         } else {
             Object object = null;
             try {
-                Unmarshaller unmarshaller = WSSConstants.getJaxbUnmarshaller(securityProperties.isDisableSchemaValidation());
-                object = unmarshaller.unmarshal(new XMLSecurityEventReader(eventQueue, idx));
+                object = JaxbUnmarshallerPool.unmarshal(new XMLSecurityEventReader(eventQueue, idx),
+                                                        securityProperties.isDisableSchemaValidation());
             } catch (JAXBException e) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.UNSUPPORTED_SECURITY_TOKEN, e);
             }
@@ -487,9 +508,11 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
                 attributeNode.setValue(xmlSecAttribute.getValue());
                 ((Element) currentNode).setAttributeNodeNS(attributeNode);
 
-                //add namespace which is not declared on current element but must be on a parent element:
-                String attrNs = document.lookupNamespaceURI(xmlSecAttribute.getName().getPrefix());
-                if (attrNs == null) {
+                //add namespace which is not declared on current element but must be on a parent element.
+                //Unprefixed attributes are never in a namespace, so there is nothing to declare for them
+                //(declaring xmlns="" would also override a default namespace declared on this element)
+                String attrPrefix = xmlSecAttribute.getName().getPrefix();
+                if (attrPrefix != null && !attrPrefix.isEmpty() && currentNode.lookupNamespaceURI(attrPrefix) == null) {
                     parseXMLEvent(xmlSecAttribute.getAttributeNamespace(), currentNode, document);
                 }
                 break;
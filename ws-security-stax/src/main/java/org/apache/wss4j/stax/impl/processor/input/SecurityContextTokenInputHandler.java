@@ -41,7 +41,7 @@ import java.util.List;
 /**
  * Processor for the SecurityContextToken XML Structure
  */
-public class SecurityContextTokenInputHandler extends AbstractInputSecurityHeaderHandler {
+public class SecurityContextTokenInputHandler extends AbstractWSSInputSecurityHeaderHandler {
 
     @Override
     public void handle(InputProcessorChain inputProcessorChain, final XMLSecurityProperties securityProperties,
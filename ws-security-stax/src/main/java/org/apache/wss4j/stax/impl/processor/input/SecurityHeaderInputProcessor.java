@@ -20,6 +20,8 @@ package org.apache.wss4j.stax.impl.processor.input;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
@@ -53,6 +55,15 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
     protected static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SecurityHeaderInputProcessor.class);
 
+    /**
+     * A single instance per handler class is shared by all messages and threads. Every handler
+     * configured in the SecurityHeaderHandlers section of the configuration must therefore be
+     * stateless: anything which belongs to a message has to be kept in local variables, the
+     * InputProcessorChain or its security context, and not in fields of the handler.
+     */
+    private static final Map<Class<?>, XMLSecurityHeaderHandler> SECURITY_HEADER_HANDLERS =
+        new ConcurrentHashMap<>();
+
     private final ArrayDeque<XMLSecEvent> xmlSecEventList = new ArrayDeque<>();
     private int startIndexForProcessor;
 
@@ -199,7 +210,6 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
         return xmlSecEventList.pollLast();
     }
 
-    @SuppressWarnings("unchecked")
     private void engageSecurityHeaderHandler(InputProcessorChain inputProcessorChain,
                                              XMLSecurityProperties securityProperties,
                                              Deque<XMLSecEvent> eventQueue,
@@ -207,14 +217,13 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
                                              QName elementName)
             throws WSSecurityException, XMLStreamException {
 
-        Class<XMLSecurityHeaderHandler> clazz =
-            (Class<XMLSecurityHeaderHandler>)SecurityHeaderHandlerMapper.getSecurityHeaderHandler(elementName);
+        Class<?> clazz = SecurityHeaderHandlerMapper.getSecurityHeaderHandler(elementName);
         if (clazz == null) {
             LOG.warn("No matching handler found for " + elementName);
             return;
         }
         try {
-            XMLSecurityHeaderHandler xmlSecurityHeaderHandler = clazz.newInstance();
+            XMLSecurityHeaderHandler xmlSecurityHeaderHandler = getSecurityHeaderHandler(clazz);
             xmlSecurityHeaderHandler.handle(inputProcessorChain, securityProperties, eventQueue, index);
         } catch (InstantiationException | IllegalAccessException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
@@ -225,6 +234,20 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
         }
     }
 
+    static XMLSecurityHeaderHandler getSecurityHeaderHandler(Class<?> clazz)
+            throws InstantiationException, IllegalAccessException {
+        XMLSecurityHeaderHandler xmlSecurityHeaderHandler = SECURITY_HEADER_HANDLERS.get(clazz);
+        if (xmlSecurityHeaderHandler == null) {
+            xmlSecurityHeaderHandler = (XMLSecurityHeaderHandler) clazz.newInstance();
+            XMLSecurityHeaderHandler existingHandler =
+                SECURITY_HEADER_HANDLERS.putIfAbsent(clazz, xmlSecurityHeaderHandler);
+            if (existingHandler != null) {
+                xmlSecurityHeaderHandler = existingHandler;
+            }
+        }
+        return xmlSecurityHeaderHandler;
+    }
+
     /**
      * Temporary Processor to buffer all events until the end of the security header
      */
@@ -18,10 +18,17 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
+import java.security.Key;
+import java.util.Deque;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.ReferenceType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
@@ -29,10 +36,13 @@ import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
 import org.apache.xml.security.binding.xmlenc.EncryptionMethodType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.AbstractInputProcessor;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.XMLEncryptedKeyInputHandler;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 
@@ -44,6 +54,12 @@ public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
     private static final transient org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSSEncryptedKeyInputHandler.class);
 
+    @Override
+    protected <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
+            throws XMLSecurityException {
+        return JaxbUnmarshallerPool.parseStructure(eventDeque, index, securityProperties);
+    }
+
     @Override
     public void handle(InputProcessorChain inputProcessorChain, EncryptedKeyType encryptedKeyType,
                        XMLSecEvent responsibleXMLSecStartXMLEvent, XMLSecurityProperties securityProperties)
@@ -64,6 +80,15 @@ public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
         }
 
         super.handle(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent, securityProperties);
+
+        // Cache the decrypted key once the message has been processed, so that it can be
+        // referred to via an EncryptedKeySHA1 KeyIdentifier in subsequent messages
+        EncryptedKeyCache encryptedKeyCache = ((WSSSecurityProperties) securityProperties).getEncryptedKeyCache();
+        if (encryptedKeyCache != null && encryptedKeyType.getId() != null) {
+            inputProcessorChain.addProcessor(
+                new EncryptedKeyCacheInputProcessor(securityProperties, encryptedKeyType.getId(), encryptedKeyCache)
+            );
+        }
     }
 
     //if this EncryptedKey structure contains a reference list, instantiate a new DecryptInputProcessor
@@ -120,4 +145,48 @@ public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
         return AttachmentUtils.getBytesFromAttachment(xopUri, securityProps.getAttachmentCallbackHandler(), true);
     }
 
+    /**
+     * Adds the decrypted key of an EncryptedKey to the EncryptedKeyCache at the end of the
+     * document. The key is only available if it was actually used (and so decrypted) while
+     * processing the message.
+     */
+    private static class EncryptedKeyCacheInputProcessor extends AbstractInputProcessor {
+
+        private final String encryptedKeyId;
+        private final EncryptedKeyCache encryptedKeyCache;
+
+        EncryptedKeyCacheInputProcessor(XMLSecurityProperties securityProperties, String encryptedKeyId,
+                                        EncryptedKeyCache encryptedKeyCache) {
+            super(securityProperties);
+            this.encryptedKeyId = encryptedKeyId;
+            this.encryptedKeyCache = encryptedKeyCache;
+        }
+
+        @Override
+        public XMLSecEvent processNextHeaderEvent(InputProcessorChain inputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+            return inputProcessorChain.processHeaderEvent();
+        }
+
+        @Override
+        public XMLSecEvent processNextEvent(InputProcessorChain inputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+            return inputProcessorChain.processEvent();
+        }
+
+        @Override
+        public void doFinal(InputProcessorChain inputProcessorChain) throws XMLStreamException, XMLSecurityException {
+            SecurityTokenProvider<? extends InboundSecurityToken> securityTokenProvider =
+                inputProcessorChain.getSecurityContext().getSecurityTokenProvider(encryptedKeyId);
+            if (securityTokenProvider != null) {
+                InboundSecurityToken securityToken = securityTokenProvider.getSecurityToken();
+                Map<String, Key> secretKeys = securityToken.getSecretKey();
+                if (securityToken.getSha1Identifier() != null && secretKeys != null && !secretKeys.isEmpty()) {
+                    encryptedKeyCache.add(securityToken.getSha1Identifier(),
+                                          secretKeys.values().iterator().next().getEncoded());
+                }
+            }
+            super.doFinal(inputProcessorChain);
+        }
+    }
 }
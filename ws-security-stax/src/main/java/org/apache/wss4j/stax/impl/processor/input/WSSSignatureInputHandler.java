@@ -19,6 +19,7 @@
 package org.apache.wss4j.stax.impl.processor.input;
 
 import java.math.BigInteger;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 
@@ -42,6 +43,7 @@ import org.apache.xml.security.stax.ext.InboundSecurityContext;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.ext.XMLSecurityUtils;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.AbstractSignatureInputHandler;
 import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SignatureValueSecurityEvent;
@@ -55,6 +57,12 @@ public class WSSSignatureInputHandler extends AbstractSignatureInputHandler {
     private static final transient org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSSSignatureInputHandler.class);
 
+    @Override
+    protected <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
+            throws XMLSecurityException {
+        return JaxbUnmarshallerPool.parseStructure(eventDeque, index, securityProperties);
+    }
+
     @Override
     protected SignatureVerifier newSignatureVerifier(
             final InputProcessorChain inputProcessorChain, final XMLSecurityProperties securityProperties,
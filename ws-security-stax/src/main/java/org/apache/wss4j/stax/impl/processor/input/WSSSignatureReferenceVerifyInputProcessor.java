@@ -18,7 +18,6 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -42,6 +41,7 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.ReplayableInputStream;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -123,12 +123,11 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
 
             final Attachment attachment = attachments.get(0);
 
-            InputStream attachmentInputStream = attachment.getSourceStream();
-            if (!attachmentInputStream.markSupported()) {
-                attachmentInputStream = new BufferedInputStream(attachmentInputStream);
-            }
-            //todo workaround 2GB limit somehow?
-            attachmentInputStream.mark(Integer.MAX_VALUE); //we can process at maximum 2G with the standard jdk streams
+            //the attachment content is cached with bounded memory while it is digested, so that
+            //it can be passed on in the result callback
+            ReplayableInputStream replayableInputStream = new ReplayableInputStream(attachment.getSourceStream());
+            InputStream attachmentInputStream = replayableInputStream;
+            boolean handedOver = false;
 
             try {
                 DigestOutputStream digestOutputStream =
@@ -160,28 +159,34 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
                 }
                 compareDigest(digestOutputStream.getDigestValue(), referenceType);
 
-                //reset the inputStream to be able to reuse it
-                attachmentInputStream.reset();
+                //replay the inputStream to be able to reuse it
+                attachmentInputStream = replayableInputStream.replay();
+
+                //create a new attachment and do the result callback
+                final Attachment resultAttachment = new Attachment();
+                resultAttachment.setId(attachmentId);
+                resultAttachment.setMimeType(attachment.getMimeType());
+                resultAttachment.addHeaders(attachment.getHeaders());
+                resultAttachment.setSourceStream(attachmentInputStream);
+
+                AttachmentResultCallback attachmentResultCallback = new AttachmentResultCallback();
+                attachmentResultCallback.setAttachmentId(attachmentId);
+                attachmentResultCallback.setAttachment(resultAttachment);
+                try {
+                    attachmentCallbackHandler.handle(new Callback[]{attachmentResultCallback});
+                } catch (Exception e) {
+                    throw new WSSecurityException(
+                            WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+                }
+                //the result attachment owns the cached content from now on
+                handedOver = true;
 
             } catch (IOException e) {
                 throw new XMLSecurityException(e);
-            }
-
-            //create a new attachment and do the result callback
-            final Attachment resultAttachment = new Attachment();
-            resultAttachment.setId(attachmentId);
-            resultAttachment.setMimeType(attachment.getMimeType());
-            resultAttachment.addHeaders(attachment.getHeaders());
-            resultAttachment.setSourceStream(attachmentInputStream);
-
-            AttachmentResultCallback attachmentResultCallback = new AttachmentResultCallback();
-            attachmentResultCallback.setAttachmentId(attachmentId);
-            attachmentResultCallback.setAttachment(resultAttachment);
-            try {
-                attachmentCallbackHandler.handle(new Callback[]{attachmentResultCallback});
-            } catch (Exception e) {
-                throw new WSSecurityException(
-                        WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+            } finally {
+                if (!handedOver) {
+                    replayableInputStream.destroy();
+                }
             }
 
             // Create a security event for this signed Attachment
@@ -315,16 +320,11 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
             final String cacheKey =
                     timestampSecurityEvent.getCreated().get(ChronoField.MILLI_OF_SECOND)
                     + "" + Arrays.hashCode(getSignatureType().getSignatureValue().getValue());
-            if (replayCache.contains(cacheKey)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
-            }
-
-            // Store the Timestamp/SignatureValue combination in the cache
+            // Store the Timestamp/SignatureValue combination in the cache, unless it is
+            // already contained in it
             Instant expires = timestampSecurityEvent.getExpires();
-            if (expires != null) {
-                replayCache.add(cacheKey, expires);
-            } else {
-                replayCache.add(cacheKey);
+            if (!replayCache.addIfAbsent(cacheKey, expires)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
             }
         }
     }
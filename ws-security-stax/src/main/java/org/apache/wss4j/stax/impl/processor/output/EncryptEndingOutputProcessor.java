@@ -41,6 +41,8 @@ import org.apache.xml.security.stax.impl.processor.output.AbstractEncryptEndingO
  */
 public class EncryptEndingOutputProcessor extends AbstractEncryptEndingOutputProcessor {
 
+    private SpillableXMLSecEventDeque xmlSecEventBuffer;
+
     public EncryptEndingOutputProcessor() throws XMLSecurityException {
         super();
         this.addAfterProcessor(EncryptOutputProcessor.class.getName());
@@ -55,10 +57,59 @@ public class EncryptEndingOutputProcessor extends AbstractEncryptEndingOutputPro
         }
     }
 
+    @Override
+    public void processEvent(XMLSecEvent xmlSecEvent, OutputProcessorChain outputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+        int threshold = ((WSSSecurityProperties) getSecurityProperties()).getOutboundEventBufferThreshold();
+        if (threshold <= 0) {
+            super.processEvent(xmlSecEvent, outputProcessorChain);
+            return;
+        }
+        if (xmlSecEventBuffer == null) {
+            xmlSecEventBuffer = new SpillableXMLSecEventDeque(threshold);
+        }
+        try {
+            xmlSecEventBuffer.append(xmlSecEvent);
+        } catch (XMLStreamException | RuntimeException e) {
+            clearBuffer();
+            throw e;
+        }
+    }
+
+    @Override
+    public void doFinal(OutputProcessorChain outputProcessorChain) throws XMLStreamException, XMLSecurityException {
+        try {
+            super.doFinal(outputProcessorChain);
+        } finally {
+            // Make sure that spilled events are removed if the security header could not be written
+            clearBuffer();
+        }
+    }
+
     @Override
     public void flushBufferAndCallbackAfterHeader(OutputProcessorChain outputProcessorChain,
                                                    Deque<XMLSecEvent> xmlSecEventDeque)
             throws XMLStreamException, XMLSecurityException {
+        if (xmlSecEventBuffer == null) {
+            flushBufferAndCallbackAfterHeaderInternal(outputProcessorChain, xmlSecEventDeque);
+            return;
+        }
+        try {
+            flushBufferAndCallbackAfterHeaderInternal(outputProcessorChain, xmlSecEventBuffer);
+        } finally {
+            clearBuffer();
+        }
+    }
+
+    private void clearBuffer() {
+        if (xmlSecEventBuffer != null) {
+            xmlSecEventBuffer.clear();
+        }
+    }
+
+    private void flushBufferAndCallbackAfterHeaderInternal(OutputProcessorChain outputProcessorChain,
+                                                           Deque<XMLSecEvent> xmlSecEventDeque)
+            throws XMLStreamException, XMLSecurityException {
 
         final String actor = ((WSSSecurityProperties) getSecurityProperties()).getActor();
 
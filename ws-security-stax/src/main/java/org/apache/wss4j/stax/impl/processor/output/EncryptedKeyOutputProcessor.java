@@ -40,6 +40,7 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -275,48 +276,32 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
                 createStartElementAndOutputAsEvent(subOutputProcessorChain, WSSConstants.TAG_xenc_CipherValue, false, null);
 
                 try {
-                    //encrypt the symmetric session key with the public key from the receiver:
-                    String jceid = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportAlgorithm);
-                    Cipher cipher = Cipher.getInstance(jceid);
-
-                    AlgorithmParameterSpec algorithmParameterSpec = null;
-                    if (XMLSecurityConstants.NS_XENC11_RSAOAEP.equals(encryptionKeyTransportAlgorithm)
-                        || XMLSecurityConstants.NS_XENC_RSAOAEPMGF1P.equals(encryptionKeyTransportAlgorithm)) {
-
-                        String jceDigestAlgorithm = "SHA-1";
-                        String encryptionKeyTransportDigestAlgorithm =
-                            getSecurityProperties().getEncryptionKeyTransportDigestAlgorithm();
-                        if (encryptionKeyTransportDigestAlgorithm != null) {
-                            jceDigestAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportDigestAlgorithm);
-                        }
-
-                        PSource.PSpecified pSource = PSource.PSpecified.DEFAULT;
-                        byte[] oaepParams = getSecurityProperties().getEncryptionKeyTransportOAEPParams();
-                        if (oaepParams != null) {
-                            pSource = new PSource.PSpecified(oaepParams);
-                        }
+                    Key secretKey = securityToken.getSecretKey("");
 
-                        MGF1ParameterSpec mgfParameterSpec = new MGF1ParameterSpec("SHA-1");
-                        if (encryptionKeyTransportMGFAlgorithm != null) {
-                            String jceMGFAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportMGFAlgorithm);
-                            mgfParameterSpec = new MGF1ParameterSpec(jceMGFAlgorithm);
+                    // Reuse the cached EncryptedKey if the symmetric key was taken from the cache, or
+                    // cache a newly generated symmetric key
+                    OutboundEncryptedKeyCache encryptedKeyCache = null;
+                    byte[] encryptedEphemeralKey = null;
+                    if (securityToken.getId().equals(
+                        outputProcessorChain.getSecurityContext().get(WSSConstants.PROP_CACHE_ENCRYPTED_KEY_FOR_TOKEN_ID))) {
+                        encryptedKeyCache = ((WSSSecurityProperties) getSecurityProperties()).getOutboundEncryptedKeyCache();
+                        OutboundEncryptedKeyCache.CachedKey cachedKey =
+                            outputProcessorChain.getSecurityContext().get(WSSConstants.PROP_CACHED_ENCRYPTED_KEY);
+                        if (cachedKey != null && cachedKey.isKeyOf(secretKey.getEncoded())) {
+                            encryptedEphemeralKey = cachedKey.getEncryptedKey();
+                            encryptedKeyCache = null;
                         }
-                        algorithmParameterSpec = new OAEPParameterSpec(jceDigestAlgorithm, "MGF1", mgfParameterSpec, pSource);
                     }
 
-                    cipher.init(Cipher.WRAP_MODE, publicKey, algorithmParameterSpec);
-
-                    Key secretKey = securityToken.getSecretKey("");
-
-                    int blockSize = cipher.getBlockSize();
-                    if (blockSize > 0 && blockSize < secretKey.getEncoded().length) {
-                        throw new WSSecurityException(
-                                WSSecurityException.ErrorCode.FAILURE,
-                                "unsupportedKeyTransp",
-                                new Object[] {"public key algorithm too weak to encrypt symmetric key"}
-                        );
+                    if (encryptedEphemeralKey == null) {
+                        encryptedEphemeralKey =
+                            wrapSymmetricKey(publicKey, secretKey, encryptionKeyTransportAlgorithm, encryptionKeyTransportMGFAlgorithm);
+                        if (encryptedKeyCache != null) {
+                            String encryptedKeyCacheAlgorithms =
+                                WSSUtils.getEncryptedKeyCacheAlgorithms((WSSSecurityProperties) getSecurityProperties());
+                            encryptedKeyCache.add(publicKey, encryptedKeyCacheAlgorithms, secretKey.getEncoded(), encryptedEphemeralKey);
+                        }
                     }
-                    byte[] encryptedEphemeralKey = cipher.wrap(secretKey);
 
                     if (((WSSSecurityProperties)getSecurityProperties()).getCallbackHandler() != null) {
                         // Store the Encrypted Key in the CallbackHandler for processing on the inbound side
@@ -350,6 +335,52 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
             }
         }
 
+        private byte[] wrapSymmetricKey(PublicKey publicKey, Key secretKey, String encryptionKeyTransportAlgorithm,
+                                        String encryptionKeyTransportMGFAlgorithm)
+            throws XMLSecurityException, NoSuchPaddingException, NoSuchAlgorithmException,
+            InvalidKeyException, IllegalBlockSizeException, InvalidAlgorithmParameterException {
+            //encrypt the symmetric session key with the public key from the receiver:
+            String jceid = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportAlgorithm);
+            Cipher cipher = Cipher.getInstance(jceid);
+
+            AlgorithmParameterSpec algorithmParameterSpec = null;
+            if (XMLSecurityConstants.NS_XENC11_RSAOAEP.equals(encryptionKeyTransportAlgorithm)
+                || XMLSecurityConstants.NS_XENC_RSAOAEPMGF1P.equals(encryptionKeyTransportAlgorithm)) {
+
+                String jceDigestAlgorithm = "SHA-1";
+                String encryptionKeyTransportDigestAlgorithm =
+                    getSecurityProperties().getEncryptionKeyTransportDigestAlgorithm();
+                if (encryptionKeyTransportDigestAlgorithm != null) {
+                    jceDigestAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportDigestAlgorithm);
+                }
+
+                PSource.PSpecified pSource = PSource.PSpecified.DEFAULT;
+                byte[] oaepParams = getSecurityProperties().getEncryptionKeyTransportOAEPParams();
+                if (oaepParams != null) {
+                    pSource = new PSource.PSpecified(oaepParams);
+                }
+
+                MGF1ParameterSpec mgfParameterSpec = new MGF1ParameterSpec("SHA-1");
+                if (encryptionKeyTransportMGFAlgorithm != null) {
+                    String jceMGFAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportMGFAlgorithm);
+                    mgfParameterSpec = new MGF1ParameterSpec(jceMGFAlgorithm);
+                }
+                algorithmParameterSpec = new OAEPParameterSpec(jceDigestAlgorithm, "MGF1", mgfParameterSpec, pSource);
+            }
+
+            cipher.init(Cipher.WRAP_MODE, publicKey, algorithmParameterSpec);
+
+            int blockSize = cipher.getBlockSize();
+            if (blockSize > 0 && blockSize < secretKey.getEncoded().length) {
+                throw new WSSecurityException(
+                        WSSecurityException.ErrorCode.FAILURE,
+                        "unsupportedKeyTransp",
+                        new Object[] {"public key algorithm too weak to encrypt symmetric key"}
+                );
+            }
+            return cipher.wrap(secretKey);
+        }
+
         protected void createSecurityTokenReferenceStructureForEncryptedKey(
                 OutputProcessorChain outputProcessorChain,
                 OutboundSecurityToken securityToken,
@@ -0,0 +1,971 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.processor.output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+
+import org.apache.wss4j.common.util.CachedOutputStream;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+
+/**
+ * A FIFO Deque of XMLSecEvents which keeps at most "threshold" events on the heap. Once the
+ * threshold is exceeded, the following events are serialized into a compact binary form in a
+ * CachedOutputStream (which itself spills to a temporary file) and are read back one by one when
+ * the Deque is drained from its head. Events added to the tail while the spilled events are read
+ * back are kept in memory.
+ *
+ * While spilled events are pending, only the operations which work on the head of the Deque
+ * (offer/add/push/peek/poll/pop and size) are supported, all others throw an
+ * UnsupportedOperationException. The Deque must be cleared when it is no longer needed, so that
+ * a temporary file is removed.
+ */
+public class SpillableXMLSecEventDeque extends AbstractCollection<XMLSecEvent> implements Deque<XMLSecEvent> {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SpillableXMLSecEventDeque.class);
+
+    private static final int RETAINED_EVENT = -1;
+
+    private final int threshold;
+    private final ArrayDeque<XMLSecEvent> head = new ArrayDeque<>();
+    private final ArrayDeque<XMLSecEvent> tail = new ArrayDeque<>();
+    private final Deque<XMLSecStartElement> openElements = new ArrayDeque<>();
+    private boolean spillable = true;
+    private boolean spilled;
+    private Spill spill;
+
+    /**
+     * @param threshold the number of events which are kept in memory before further events are spilled
+     */
+    public SpillableXMLSecEventDeque(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Add the given event to the tail of this Deque. This is the same as addLast, except that
+     * a failure to spill the event is reported as XMLStreamException.
+     */
+    public void append(XMLSecEvent xmlSecEvent) throws XMLStreamException {
+        if (xmlSecEvent == null) {
+            throw new NullPointerException();
+        }
+        if (spill != null) {
+            if (spill.isReading()) {
+                tail.addLast(xmlSecEvent);
+            } else {
+                spill.write(xmlSecEvent);
+            }
+            return;
+        }
+        if (spillable && head.size() >= threshold) {
+            LOG.debug("Buffered more than {} events, spilling the following events", threshold);
+            spill = new Spill(openElements.peek());
+            spillable = false;
+            spilled = true;
+            openElements.clear();
+            spill.write(xmlSecEvent);
+            return;
+        }
+        if (spillable) {
+            trackOpenElements(xmlSecEvent);
+        }
+        head.addLast(xmlSecEvent);
+    }
+
+    /**
+     * Returns true if events have been written to the spill storage
+     */
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    private void trackOpenElements(XMLSecEvent xmlSecEvent) {
+        switch (xmlSecEvent.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT:
+                openElements.push(xmlSecEvent.asStartElement());
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (openElements.isEmpty()) {
+                    // unbalanced events: the parent of spilled events could not be restored
+                    spillable = false;
+                } else {
+                    openElements.pop();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void checkNotSpilled() {
+        if (spill != null) {
+            throw new UnsupportedOperationException("Spilled events can only be read from the head of the Deque");
+        }
+    }
+
+    @Override
+    public void addFirst(XMLSecEvent xmlSecEvent) {
+        head.addFirst(xmlSecEvent);
+    }
+
+    @Override
+    public void addLast(XMLSecEvent xmlSecEvent) {
+        try {
+            append(xmlSecEvent);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean offerFirst(XMLSecEvent xmlSecEvent) {
+        addFirst(xmlSecEvent);
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(XMLSecEvent xmlSecEvent) {
+        addLast(xmlSecEvent);
+        return true;
+    }
+
+    @Override
+    public XMLSecEvent removeFirst() {
+        XMLSecEvent xmlSecEvent = pollFirst();
+        if (xmlSecEvent == null) {
+            throw new NoSuchElementException();
+        }
+        return xmlSecEvent;
+    }
+
+    @Override
+    public XMLSecEvent removeLast() {
+        checkNotSpilled();
+        return head.removeLast();
+    }
+
+    @Override
+    public XMLSecEvent pollFirst() {
+        XMLSecEvent xmlSecEvent = head.pollFirst();
+        if (xmlSecEvent == null && spill != null) {
+            try {
+                xmlSecEvent = spill.read();
+            } catch (IOException | XMLStreamException e) {
+                throw new IllegalStateException(e);
+            }
+            if (spill.getPendingEvents() == 0) {
+                // all spilled events are consumed, continue with the events added in the meantime.
+                // The spill is released right away, as isEmpty() may already be true now
+                spill.destroy();
+                spill = null;
+                head.addAll(tail);
+                tail.clear();
+                if (xmlSecEvent == null) {
+                    xmlSecEvent = head.pollFirst();
+                }
+            }
+        }
+        return xmlSecEvent;
+    }
+
+    @Override
+    public XMLSecEvent pollLast() {
+        checkNotSpilled();
+        return head.pollLast();
+    }
+
+    @Override
+    public XMLSecEvent getFirst() {
+        XMLSecEvent xmlSecEvent = peekFirst();
+        if (xmlSecEvent == null) {
+            throw new NoSuchElementException();
+        }
+        return xmlSecEvent;
+    }
+
+    @Override
+    public XMLSecEvent getLast() {
+        checkNotSpilled();
+        return head.getLast();
+    }
+
+    @Override
+    public XMLSecEvent peekFirst() {
+        XMLSecEvent xmlSecEvent = head.peekFirst();
+        if (xmlSecEvent == null && spill != null) {
+            xmlSecEvent = pollFirst();
+            if (xmlSecEvent != null) {
+                head.addFirst(xmlSecEvent);
+            }
+        }
+        return xmlSecEvent;
+    }
+
+    @Override
+    public XMLSecEvent peekLast() {
+        checkNotSpilled();
+        return head.peekLast();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        checkNotSpilled();
+        return head.removeFirstOccurrence(o);
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        checkNotSpilled();
+        return head.removeLastOccurrence(o);
+    }
+
+    @Override
+    public boolean add(XMLSecEvent xmlSecEvent) {
+        addLast(xmlSecEvent);
+        return true;
+    }
+
+    @Override
+    public boolean offer(XMLSecEvent xmlSecEvent) {
+        return offerLast(xmlSecEvent);
+    }
+
+    @Override
+    public XMLSecEvent remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public XMLSecEvent poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public XMLSecEvent element() {
+        return getFirst();
+    }
+
+    @Override
+    public XMLSecEvent peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public void push(XMLSecEvent xmlSecEvent) {
+        addFirst(xmlSecEvent);
+    }
+
+    @Override
+    public XMLSecEvent pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        checkNotSpilled();
+        return head.contains(o);
+    }
+
+    @Override
+    public int size() {
+        if (spill == null) {
+            return head.size();
+        }
+        return head.size() + spill.getPendingEvents() + tail.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Iterator<XMLSecEvent> iterator() {
+        checkNotSpilled();
+        return head.iterator();
+    }
+
+    @Override
+    public Iterator<XMLSecEvent> descendingIterator() {
+        checkNotSpilled();
+        return head.descendingIterator();
+    }
+
+    /**
+     * Removes all events and deletes the spill storage
+     */
+    @Override
+    public void clear() {
+        head.clear();
+        tail.clear();
+        openElements.clear();
+        if (spill != null) {
+            spill.destroy();
+            spill = null;
+        }
+    }
+
+    /**
+     * The spilled events. XMLSecEvents are (re)created from the serialized form with the
+     * XMLSecEventFactory, which reads the event data from a minimal XMLStreamReader.
+     */
+    private static final class Spill {
+
+        private final CachedOutputStream cachedOutputStream = new CachedOutputStream();
+        private DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(cachedOutputStream));
+        private DataInputStream dataInputStream;
+        private final List<XMLSecEvent> retainedEvents = new ArrayList<>();
+        private final SpilledEventReader reader = new SpilledEventReader();
+        private XMLSecStartElement parentXMLSecStartElement;
+        private int pendingEvents;
+
+        Spill(XMLSecStartElement parentXMLSecStartElement) {
+            this.parentXMLSecStartElement = parentXMLSecStartElement;
+        }
+
+        boolean isReading() {
+            return dataOutputStream == null;
+        }
+
+        int getPendingEvents() {
+            return pendingEvents;
+        }
+
+        void write(XMLSecEvent xmlSecEvent) throws XMLStreamException {
+            try {
+                writeEvent(xmlSecEvent);
+            } catch (IOException e) {
+                throw new XMLStreamException(e);
+            }
+            pendingEvents++;
+        }
+
+        private void writeEvent(XMLSecEvent xmlSecEvent) throws IOException {
+            final DataOutputStream out = dataOutputStream;
+            final int eventType = xmlSecEvent.getEventType();
+            switch (eventType) {
+                case XMLStreamConstants.START_ELEMENT:
+                    StartElement startElement = xmlSecEvent.asStartElement();
+                    List<Namespace> namespaces = toList(startElement.getNamespaces(), Namespace.class);
+                    List<Attribute> attributes = toList(startElement.getAttributes(), Attribute.class);
+                    out.writeByte(eventType);
+                    writeQName(out, startElement.getName());
+                    out.writeInt(namespaces.size());
+                    for (Namespace namespace : namespaces) {
+                        writeString(out, namespace.getPrefix());
+                        writeString(out, namespace.getNamespaceURI());
+                    }
+                    out.writeInt(attributes.size());
+                    for (Attribute attribute : attributes) {
+                        writeQName(out, attribute.getName());
+                        writeString(out, attribute.getDTDType());
+                        writeString(out, attribute.getValue());
+                    }
+                    return;
+                case XMLStreamConstants.END_ELEMENT:
+                    EndElement endElement = xmlSecEvent.asEndElement();
+                    out.writeByte(eventType);
+                    writeQName(out, endElement.getName());
+                    return;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CDATA:
+                    Characters characters = xmlSecEvent.asCharacters();
+                    out.writeByte(eventType);
+                    writeString(out, characters.getData());
+                    out.writeBoolean(characters.isWhiteSpace());
+                    return;
+                case XMLStreamConstants.COMMENT:
+                    if (xmlSecEvent instanceof Comment) {
+                        out.writeByte(eventType);
+                        writeString(out, ((Comment) xmlSecEvent).getText());
+                        return;
+                    }
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if (xmlSecEvent instanceof ProcessingInstruction) {
+                        ProcessingInstruction processingInstruction = (ProcessingInstruction) xmlSecEvent;
+                        out.writeByte(eventType);
+                        writeString(out, processingInstruction.getTarget());
+                        writeString(out, processingInstruction.getData());
+                        return;
+                    }
+                    break;
+                case XMLStreamConstants.START_DOCUMENT:
+                    if (xmlSecEvent instanceof StartDocument) {
+                        StartDocument startDocument = (StartDocument) xmlSecEvent;
+                        out.writeByte(eventType);
+                        writeString(out, startDocument.getSystemId());
+                        writeString(out, startDocument.encodingSet() ? startDocument.getCharacterEncodingScheme() : null);
+                        writeString(out, startDocument.getVersion());
+                        out.writeBoolean(startDocument.isStandalone());
+                        out.writeBoolean(startDocument.standaloneSet());
+                        return;
+                    }
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    out.writeByte(eventType);
+                    return;
+                default:
+                    break;
+            }
+            // rare event types (DTD, entity references...) are kept as they are
+            out.writeByte(RETAINED_EVENT);
+            out.writeInt(retainedEvents.size());
+            retainedEvents.add(xmlSecEvent);
+        }
+
+        XMLSecEvent read() throws IOException, XMLStreamException {
+            if (dataOutputStream != null) {
+                dataOutputStream.close();
+                dataOutputStream = null;
+                dataInputStream = new DataInputStream(new BufferedInputStream(cachedOutputStream.getInputStream()));
+            }
+            if (pendingEvents == 0) {
+                return null;
+            }
+            pendingEvents--;
+
+            final DataInputStream in = dataInputStream;
+            final int eventType = in.readByte();
+            if (eventType == RETAINED_EVENT) {
+                XMLSecEvent xmlSecEvent = retainedEvents.set(in.readInt(), null);
+                return xmlSecEvent;
+            }
+            reader.read(eventType, in, parentXMLSecStartElement);
+            XMLSecEvent xmlSecEvent = XMLSecEventFactory.allocate(reader, parentXMLSecStartElement);
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                parentXMLSecStartElement = xmlSecEvent.asStartElement();
+            } else if (eventType == XMLStreamConstants.END_ELEMENT && parentXMLSecStartElement != null) {
+                parentXMLSecStartElement = parentXMLSecStartElement.getParentXMLSecStartElement();
+            }
+            return xmlSecEvent;
+        }
+
+        void destroy() {
+            retainedEvents.clear();
+            pendingEvents = 0;
+            try {
+                if (dataInputStream != null) {
+                    dataInputStream.close();
+                } else if (dataOutputStream != null) {
+                    dataOutputStream.close();
+                }
+            } catch (IOException e) {
+                LOG.debug(e.getMessage(), e);
+            }
+            cachedOutputStream.destroy();
+        }
+
+        private static <T> List<T> toList(Iterator<?> iterator, Class<T> type) {
+            if (iterator == null || !iterator.hasNext()) {
+                return Collections.emptyList();
+            }
+            List<T> list = new ArrayList<>();
+            while (iterator.hasNext()) {
+                list.add(type.cast(iterator.next()));
+            }
+            return list;
+        }
+
+        private static void writeQName(DataOutputStream out, QName qName) throws IOException {
+            writeString(out, qName.getNamespaceURI());
+            writeString(out, qName.getLocalPart());
+            writeString(out, qName.getPrefix());
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * An XMLStreamReader which is positioned on a single deserialized event. It provides the data
+     * the XMLSecEventFactory needs to allocate the corresponding XMLSecEvent.
+     */
+    private static final class SpilledEventReader implements XMLStreamReader, NamespaceContext, Location {
+
+        private static final String[] EMPTY_STRINGS = new String[0];
+        private static final QName[] EMPTY_QNAMES = new QName[0];
+
+        private int eventType;
+        private QName name;
+        private String[] namespacePrefixes = EMPTY_STRINGS;
+        private String[] namespaceURIs = EMPTY_STRINGS;
+        private QName[] attributeNames = EMPTY_QNAMES;
+        private String[] attributeTypes = EMPTY_STRINGS;
+        private String[] attributeValues = EMPTY_STRINGS;
+        private String text;
+        private boolean whiteSpace;
+        private String piTarget;
+        private String piData;
+        private String systemId;
+        private String encoding;
+        private String version;
+        private boolean standalone;
+        private boolean standaloneSet;
+        private XMLSecStartElement parentXMLSecStartElement;
+
+        void read(int eventType, DataInputStream in, XMLSecStartElement parentXMLSecStartElement) throws IOException {
+            this.eventType = eventType;
+            this.parentXMLSecStartElement = parentXMLSecStartElement;
+            name = null;
+            namespacePrefixes = EMPTY_STRINGS;
+            namespaceURIs = EMPTY_STRINGS;
+            attributeNames = EMPTY_QNAMES;
+            attributeTypes = EMPTY_STRINGS;
+            attributeValues = EMPTY_STRINGS;
+            text = null;
+            whiteSpace = false;
+            piTarget = null;
+            piData = null;
+            systemId = null;
+            encoding = null;
+            version = null;
+            standalone = false;
+            standaloneSet = false;
+
+            switch (eventType) {
+                case XMLStreamConstants.START_ELEMENT:
+                    name = readQName(in);
+                    int namespaceCount = in.readInt();
+                    if (namespaceCount > 0) {
+                        namespacePrefixes = new String[namespaceCount];
+                        namespaceURIs = new String[namespaceCount];
+                        for (int i = 0; i < namespaceCount; i++) {
+                            namespacePrefixes[i] = readString(in);
+                            namespaceURIs[i] = readString(in);
+                        }
+                    }
+                    int attributeCount = in.readInt();
+                    if (attributeCount > 0) {
+                        attributeNames = new QName[attributeCount];
+                        attributeTypes = new String[attributeCount];
+                        attributeValues = new String[attributeCount];
+                        for (int i = 0; i < attributeCount; i++) {
+                            attributeNames[i] = readQName(in);
+                            attributeTypes[i] = readString(in);
+                            attributeValues[i] = readString(in);
+                        }
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    name = readQName(in);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.CDATA:
+                    text = readString(in);
+                    whiteSpace = in.readBoolean();
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    text = readString(in);
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    piTarget = readString(in);
+                    piData = readString(in);
+                    break;
+                case XMLStreamConstants.START_DOCUMENT:
+                    systemId = readString(in);
+                    encoding = readString(in);
+                    version = readString(in);
+                    standalone = in.readBoolean();
+                    standaloneSet = in.readBoolean();
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    break;
+                default:
+                    throw new IOException("Unexpected event type " + eventType + " in spilled events");
+            }
+        }
+
+        private static QName readQName(DataInputStream in) throws IOException {
+            String namespaceURI = readString(in);
+            String localPart = readString(in);
+            String prefix = readString(in);
+            return new QName(namespaceURI, localPart, prefix);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return null;
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            throw new XMLStreamException("Not supported");
+        }
+
+        @Override
+        public void require(int type, String namespaceURI, String localName) throws XMLStreamException {
+            if (type != eventType
+                || namespaceURI != null && !namespaceURI.equals(getNamespaceURI())
+                || localName != null && !localName.equals(getLocalName())) {
+                throw new XMLStreamException("Requirement not met");
+            }
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            throw new XMLStreamException("Not supported");
+        }
+
+        @Override
+        public int nextTag() throws XMLStreamException {
+            throw new XMLStreamException("Not supported");
+        }
+
+        @Override
+        public boolean hasNext() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            if (prefix == null) {
+                throw new IllegalArgumentException("prefix must not be null");
+            }
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                for (int i = 0; i < namespacePrefixes.length; i++) {
+                    String namespacePrefix = namespacePrefixes[i] == null ? XMLConstants.DEFAULT_NS_PREFIX : namespacePrefixes[i];
+                    if (namespacePrefix.equals(prefix)) {
+                        return namespaceURIs[i];
+                    }
+                }
+            }
+            if (parentXMLSecStartElement != null) {
+                return parentXMLSecStartElement.getNamespaceContext().getNamespaceURI(prefix);
+            }
+            if (XMLConstants.XML_NS_PREFIX.equals(prefix)) {
+                return XMLConstants.XML_NS_URI;
+            }
+            if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+                return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            }
+            return null;
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            Iterator<String> prefixes = getPrefixes(namespaceURI);
+            return prefixes.hasNext() ? prefixes.next() : null;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            List<String> prefixes = new ArrayList<>();
+            for (int i = 0; i < namespaceURIs.length; i++) {
+                if (namespaceURIs[i] != null && namespaceURIs[i].equals(namespaceURI)) {
+                    prefixes.add(namespacePrefixes[i] == null ? XMLConstants.DEFAULT_NS_PREFIX : namespacePrefixes[i]);
+                }
+            }
+            if (parentXMLSecStartElement != null) {
+                @SuppressWarnings("unchecked")
+                Iterator<String> parentPrefixes =
+                    parentXMLSecStartElement.getNamespaceContext().getPrefixes(namespaceURI);
+                while (parentPrefixes.hasNext()) {
+                    String prefix = parentPrefixes.next();
+                    if (!prefixes.contains(prefix) && namespaceURI.equals(getNamespaceURI(prefix))) {
+                        prefixes.add(prefix);
+                    }
+                }
+            }
+            return prefixes.iterator();
+        }
+
+        @Override
+        public boolean isStartElement() {
+            return eventType == XMLStreamConstants.START_ELEMENT;
+        }
+
+        @Override
+        public boolean isEndElement() {
+            return eventType == XMLStreamConstants.END_ELEMENT;
+        }
+
+        @Override
+        public boolean isCharacters() {
+            return eventType == XMLStreamConstants.CHARACTERS;
+        }
+
+        @Override
+        public boolean isWhiteSpace() {
+            return whiteSpace;
+        }
+
+        @Override
+        public String getAttributeValue(String namespaceURI, String localName) {
+            for (int i = 0; i < attributeNames.length; i++) {
+                QName attributeName = attributeNames[i];
+                if (attributeName.getLocalPart().equals(localName)
+                    && (namespaceURI == null || namespaceURI.equals(attributeName.getNamespaceURI()))) {
+                    return attributeValues[i];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public int getAttributeCount() {
+            return attributeNames.length;
+        }
+
+        @Override
+        public QName getAttributeName(int index) {
+            return attributeNames[index];
+        }
+
+        @Override
+        public String getAttributeNamespace(int index) {
+            return attributeNames[index].getNamespaceURI();
+        }
+
+        @Override
+        public String getAttributeLocalName(int index) {
+            return attributeNames[index].getLocalPart();
+        }
+
+        @Override
+        public String getAttributePrefix(int index) {
+            return attributeNames[index].getPrefix();
+        }
+
+        @Override
+        public String getAttributeType(int index) {
+            return attributeTypes[index] == null ? "CDATA" : attributeTypes[index];
+        }
+
+        @Override
+        public String getAttributeValue(int index) {
+            return attributeValues[index];
+        }
+
+        @Override
+        public boolean isAttributeSpecified(int index) {
+            return true;
+        }
+
+        @Override
+        public int getNamespaceCount() {
+            return namespacePrefixes.length;
+        }
+
+        @Override
+        public String getNamespacePrefix(int index) {
+            return namespacePrefixes[index];
+        }
+
+        @Override
+        public String getNamespaceURI(int index) {
+            return namespaceURIs[index];
+        }
+
+        @Override
+        public NamespaceContext getNamespaceContext() {
+            return this;
+        }
+
+        @Override
+        public int getEventType() {
+            return eventType;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public char[] getTextCharacters() {
+            return text == null ? null : text.toCharArray();
+        }
+
+        @Override
+        public int getTextCharacters(int sourceStart, char[] target, int targetStart, int length) {
+            int count = Math.min(length, text.length() - sourceStart);
+            text.getChars(sourceStart, sourceStart + count, target, targetStart);
+            return count;
+        }
+
+        @Override
+        public int getTextStart() {
+            return 0;
+        }
+
+        @Override
+        public int getTextLength() {
+            return text == null ? 0 : text.length();
+        }
+
+        @Override
+        public String getEncoding() {
+            return encoding;
+        }
+
+        @Override
+        public boolean hasText() {
+            return text != null;
+        }
+
+        @Override
+        public Location getLocation() {
+            return this;
+        }
+
+        @Override
+        public QName getName() {
+            return name;
+        }
+
+        @Override
+        public String getLocalName() {
+            return name == null ? null : name.getLocalPart();
+        }
+
+        @Override
+        public boolean hasName() {
+            return name != null;
+        }
+
+        @Override
+        public String getNamespaceURI() {
+            return name == null ? null : name.getNamespaceURI();
+        }
+
+        @Override
+        public String getPrefix() {
+            return name == null ? null : name.getPrefix();
+        }
+
+        @Override
+        public String getVersion() {
+            return version;
+        }
+
+        @Override
+        public boolean isStandalone() {
+            return standalone;
+        }
+
+        @Override
+        public boolean standaloneSet() {
+            return standaloneSet;
+        }
+
+        @Override
+        public String getCharacterEncodingScheme() {
+            return encoding;
+        }
+
+        @Override
+        public String getPITarget() {
+            return piTarget;
+        }
+
+        @Override
+        public String getPIData() {
+            return piData;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return -1;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return -1;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return -1;
+        }
+
+        @Override
+        public String getPublicId() {
+            return null;
+        }
+
+        @Override
+        public String getSystemId() {
+            return systemId;
+        }
+    }
+}
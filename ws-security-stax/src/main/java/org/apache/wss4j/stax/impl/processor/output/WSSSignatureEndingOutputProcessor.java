@@ -47,6 +47,7 @@ import java.util.*;
 public class WSSSignatureEndingOutputProcessor extends AbstractSignatureEndingOutputProcessor {
 
     private SignedInfoProcessor signedInfoProcessor;
+    private SpillableXMLSecEventDeque xmlSecEventBuffer;
 
     public WSSSignatureEndingOutputProcessor(WSSSignatureOutputProcessor signatureOutputProcessor) throws XMLSecurityException {
         super(signatureOutputProcessor);
@@ -246,10 +247,59 @@ public class WSSSignatureEndingOutputProcessor extends AbstractSignatureEndingOu
         }
     }
 
+    @Override
+    public void processEvent(XMLSecEvent xmlSecEvent, OutputProcessorChain outputProcessorChain)
+            throws XMLStreamException, XMLSecurityException {
+        int threshold = ((WSSSecurityProperties) getSecurityProperties()).getOutboundEventBufferThreshold();
+        if (threshold <= 0) {
+            super.processEvent(xmlSecEvent, outputProcessorChain);
+            return;
+        }
+        if (xmlSecEventBuffer == null) {
+            xmlSecEventBuffer = new SpillableXMLSecEventDeque(threshold);
+        }
+        try {
+            xmlSecEventBuffer.append(xmlSecEvent);
+        } catch (XMLStreamException | RuntimeException e) {
+            clearBuffer();
+            throw e;
+        }
+    }
+
+    @Override
+    public void doFinal(OutputProcessorChain outputProcessorChain) throws XMLStreamException, XMLSecurityException {
+        try {
+            super.doFinal(outputProcessorChain);
+        } finally {
+            // Make sure that spilled events are removed if the security header could not be written
+            clearBuffer();
+        }
+    }
+
     @Override
     public void flushBufferAndCallbackAfterHeader(OutputProcessorChain outputProcessorChain,
                                                    Deque<XMLSecEvent> xmlSecEventDeque)
             throws XMLStreamException, XMLSecurityException {
+        if (xmlSecEventBuffer == null) {
+            flushBufferAndCallbackAfterHeaderInternal(outputProcessorChain, xmlSecEventDeque);
+            return;
+        }
+        try {
+            flushBufferAndCallbackAfterHeaderInternal(outputProcessorChain, xmlSecEventBuffer);
+        } finally {
+            clearBuffer();
+        }
+    }
+
+    private void clearBuffer() {
+        if (xmlSecEventBuffer != null) {
+            xmlSecEventBuffer.clear();
+        }
+    }
+
+    private void flushBufferAndCallbackAfterHeaderInternal(OutputProcessorChain outputProcessorChain,
+                                                           Deque<XMLSecEvent> xmlSecEventDeque)
+            throws XMLStreamException, XMLSecurityException {
 
         final String actor = ((WSSSecurityProperties) getSecurityProperties()).getActor();
 
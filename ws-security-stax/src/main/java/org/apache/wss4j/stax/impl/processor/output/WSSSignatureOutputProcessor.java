@@ -18,7 +18,6 @@
  */
 package org.apache.wss4j.stax.impl.processor.output;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -36,6 +35,7 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.ReplayableInputStream;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.impl.transformer.AttachmentContentSignatureTransform;
@@ -195,11 +195,12 @@ public class WSSSignatureOutputProcessor extends AbstractSignatureOutputProcesso
                     }
 
                     DigestOutputStream digestOutputStream = createMessageDigestOutputStream(signaturePartDef.getDigestAlgo());
-                    InputStream inputStream = attachment.getSourceStream();
-                    if (!inputStream.markSupported()) {
-                        inputStream = new BufferedInputStream(inputStream);
-                    }
-                    inputStream.mark(Integer.MAX_VALUE); //we can process at maximum 2G with the standard jdk streams
+                    //the attachment content is cached with bounded memory while it is digested, so that
+                    //it can be passed on in the result callback
+                    ReplayableInputStream replayableInputStream =
+                        new ReplayableInputStream(attachment.getSourceStream());
+                    InputStream inputStream = replayableInputStream;
+                    boolean handedOver = false;
 
                     try {
                         Transformer transformer = buildTransformerChain(digestOutputStream, signaturePartDef, null);
@@ -213,31 +214,37 @@ public class WSSSignatureOutputProcessor extends AbstractSignatureOutputProcesso
 
                         digestOutputStream.close();
 
-                        //reset the inputStream to be able to reuse it
-                        inputStream.reset();
-                    } catch (IOException | XMLStreamException e) {
-                        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_SIGNATURE, e);
-                    }
+                        //replay the inputStream to be able to reuse it
+                        inputStream = replayableInputStream.replay();
 
-                    String calculatedDigest = XMLUtils.encodeToString(digestOutputStream.getDigestValue());
-                    LOG.debug("Calculated Digest: {}", calculatedDigest);
+                        String calculatedDigest = XMLUtils.encodeToString(digestOutputStream.getDigestValue());
+                        LOG.debug("Calculated Digest: {}", calculatedDigest);
 
-                    signaturePartDef.setDigestValue(calculatedDigest);
+                        signaturePartDef.setDigestValue(calculatedDigest);
 
-                    //create a new attachment and do the result callback
-                    Attachment resultAttachment = new Attachment();
-                    resultAttachment.setId(attachment.getId());
-                    resultAttachment.setMimeType(attachment.getMimeType());
-                    resultAttachment.addHeaders(attachment.getHeaders());
-                    resultAttachment.setSourceStream(inputStream);
+                        //create a new attachment and do the result callback
+                        Attachment resultAttachment = new Attachment();
+                        resultAttachment.setId(attachment.getId());
+                        resultAttachment.setMimeType(attachment.getMimeType());
+                        resultAttachment.addHeaders(attachment.getHeaders());
+                        resultAttachment.setSourceStream(inputStream);
 
-                    AttachmentResultCallback attachmentResultCallback = new AttachmentResultCallback();
-                    attachmentResultCallback.setAttachmentId(resultAttachment.getId());
-                    attachmentResultCallback.setAttachment(resultAttachment);
-                    try {
-                        attachmentCallbackHandler.handle(new Callback[]{attachmentResultCallback});
-                    } catch (Exception e) {
+                        AttachmentResultCallback attachmentResultCallback = new AttachmentResultCallback();
+                        attachmentResultCallback.setAttachmentId(resultAttachment.getId());
+                        attachmentResultCallback.setAttachment(resultAttachment);
+                        try {
+                            attachmentCallbackHandler.handle(new Callback[]{attachmentResultCallback});
+                        } catch (Exception e) {
+                            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_SIGNATURE, e);
+                        }
+                        //the result attachment owns the cached content from now on
+                        handedOver = true;
+                    } catch (IOException | XMLStreamException e) {
                         throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_SIGNATURE, e);
+                    } finally {
+                        if (!handedOver) {
+                            replayableInputStream.destroy();
+                        }
                     }
 
                     getSignaturePartDefList().add(signaturePartDef);
@@ -23,6 +23,7 @@ import java.security.Key;
 import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.callback.CallbackHandler;
 
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
@@ -40,6 +41,7 @@ public class EncryptedKeySha1SecurityTokenImpl
         extends AbstractInboundSecurityToken implements EncryptedKeySha1SecurityToken {
 
     private CallbackHandler callbackHandler;
+    private EncryptedKeyCache encryptedKeyCache;
 
     public EncryptedKeySha1SecurityTokenImpl(
             WSInboundSecurityContext inboundSecurityContext, CallbackHandler callbackHandler,
@@ -64,17 +66,24 @@ public class EncryptedKeySha1SecurityTokenImpl
             return key;
         }
 
-        WSPasswordCallback secretKeyCallback =
-                new WSPasswordCallback(getSha1Identifier(), null,
-                        WSSConstants.NS_ENCRYPTED_KEY_SHA1, WSPasswordCallback.SECRET_KEY);
-        WSSUtils.doSecretKeyCallback(callbackHandler, secretKeyCallback, getSha1Identifier());
-        if (secretKeyCallback.getKey() == null) {
+        byte[] secret = null;
+        if (encryptedKeyCache != null) {
+            secret = encryptedKeyCache.getSecretKey(getSha1Identifier());
+        }
+        if (secret == null) {
+            WSPasswordCallback secretKeyCallback =
+                    new WSPasswordCallback(getSha1Identifier(), null,
+                            WSSConstants.NS_ENCRYPTED_KEY_SHA1, WSPasswordCallback.SECRET_KEY);
+            WSSUtils.doSecretKeyCallback(callbackHandler, secretKeyCallback, getSha1Identifier());
+            secret = secretKeyCallback.getKey();
+        }
+        if (secret == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noKey",
                                           new Object[] {getSha1Identifier()});
         }
 
         String keyAlgorithm = JCEMapper.getJCEKeyAlgorithmFromURI(algorithmURI);
-        key = new SecretKeySpec(secretKeyCallback.getKey(), keyAlgorithm);
+        key = new SecretKeySpec(secret, keyAlgorithm);
         setSecretKey(algorithmURI, key);
         return key;
     }
@@ -83,4 +92,16 @@ public class EncryptedKeySha1SecurityTokenImpl
     public SecurityTokenConstants.TokenType getTokenType() {
         return WSSecurityTokenConstants.EncryptedKeyToken;
     }
+
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
+    /**
+     * Set the cache of decrypted EncryptedKeys. If the key is cached, then the CallbackHandler
+     * is not called.
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache encryptedKeyCache) {
+        this.encryptedKeyCache = encryptedKeyCache;
+    }
 }
@@ -36,6 +36,7 @@ import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
+import org.apache.wss4j.common.kerberos.KerberosServiceSubjectCache;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -56,6 +57,7 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     private Subject subject;
     private Principal principal;
     private byte[] sessionKey;
+    private KerberosServiceSubjectCache subjectCache;
 
     public KerberosServiceSecurityTokenImpl(WSInboundSecurityContext wsInboundSecurityContext, CallbackHandler callbackHandler,
                                             byte[] binaryContent, String kerberosTokenValueType, String id,
@@ -91,42 +93,30 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "kerberosCallbackServiceNameNotSupplied");
             }
 
-            LoginContext loginContext = new LoginContext(contextAndServiceNameCallback.getContextName(), callbackHandler);
-            loginContext.login();
-
-            // Get the service name to use - fall back on the principal
-            this.subject = loginContext.getSubject();
-
-            String service = contextAndServiceNameCallback.getServiceName();
-            if (service == null) {
-                Set<Principal> principals = subject.getPrincipals();
-                if (principals.isEmpty()) {
-                    throw new WSSecurityException(
-                        WSSecurityException.ErrorCode.FAILURE,
-                        "kerberosLoginError",
-                        new Object[] {"No Client principals found after login"}
-                    );
-                }
-                service = principals.iterator().next().getName();
+            String contextName = contextAndServiceNameCallback.getContextName();
+            String serviceName = contextAndServiceNameCallback.getServiceName();
+            if (subjectCache != null) {
+                this.subject = subjectCache.getSubject(contextName, serviceName, callbackHandler);
+            } else {
+                LoginContext loginContext = new LoginContext(contextName, callbackHandler);
+                loginContext.login();
+                this.subject = loginContext.getSubject();
             }
 
-            KerberosServiceExceptionAction action =
-                new KerberosServiceExceptionAction(binaryContent,
-                                                   service,
-                                                   contextAndServiceNameCallback.isUsernameServiceNameForm(),
-                                                   false);
             KerberosServiceContext krbServiceCtx = null;
             try {
-                krbServiceCtx = Subject.doAs(subject, action);
-            } catch (PrivilegedActionException e) {
-                Throwable cause = e.getCause();
-                if (cause instanceof WSSecurityException) {
-                    throw (WSSecurityException) cause;
-                } else {
-                    throw new WSSecurityException(
-                        ErrorCode.FAILURE, new Exception(cause), "kerberosTicketValidationError"
-                    );
+                krbServiceCtx = acceptToken(serviceName, contextAndServiceNameCallback.isUsernameServiceNameForm());
+            } catch (WSSecurityException ex) {
+                if (subjectCache == null) {
+                    throw ex;
+                }
+                // The credentials of the cached Subject might be stale, e.g. if the keytab has changed
+                Subject newSubject = subjectCache.relogin(contextName, serviceName, callbackHandler, subject);
+                if (newSubject == null) {
+                    throw ex;
                 }
+                this.subject = newSubject;
+                krbServiceCtx = acceptToken(serviceName, contextAndServiceNameCallback.isUsernameServiceNameForm());
             }
 
             this.principal = krbServiceCtx.getPrincipal();
@@ -149,6 +139,41 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
         }
     }
 
+    private KerberosServiceContext acceptToken(String serviceName, boolean isUsernameServiceNameForm)
+        throws WSSecurityException {
+        // Get the service name to use - fall back on the principal
+        String service = serviceName;
+        if (service == null) {
+            Set<Principal> principals = subject.getPrincipals();
+            if (principals.isEmpty()) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE,
+                    "kerberosLoginError",
+                    new Object[] {"No Client principals found after login"}
+                );
+            }
+            service = principals.iterator().next().getName();
+        }
+
+        KerberosServiceExceptionAction action =
+            new KerberosServiceExceptionAction(binaryContent,
+                                               service,
+                                               isUsernameServiceNameForm,
+                                               false);
+        try {
+            return Subject.doAs(subject, action);
+        } catch (PrivilegedActionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WSSecurityException) {
+                throw (WSSecurityException) cause;
+            } else {
+                throw new WSSecurityException(
+                    ErrorCode.FAILURE, new Exception(cause), "kerberosTicketValidationError"
+                );
+            }
+        }
+    }
+
     @Override
     protected Key getKey(String algorithmURI, XMLSecurityConstants.AlgorithmUsage algorithmUsage,
                          String correlationID) throws XMLSecurityException {
@@ -200,4 +225,21 @@ public class KerberosServiceSecurityTokenImpl extends AbstractInboundSecurityTok
     public void setKerberosTokenDecoder(KerberosTokenDecoder kerberosTokenDecoder) {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
+
+    /**
+     * Get the cache of service Subjects, which is used instead of logging in for every token
+     * @return the cache of service Subjects (can be null)
+     */
+    public KerberosServiceSubjectCache getSubjectCache() {
+        return subjectCache;
+    }
+
+    /**
+     * Set the cache of service Subjects. If it is null (the default), then a JAAS login is
+     * performed for every token.
+     * @param subjectCache the cache of service Subjects
+     */
+    public void setSubjectCache(KerberosServiceSubjectCache subjectCache) {
+        this.subjectCache = subjectCache;
+    }
 }
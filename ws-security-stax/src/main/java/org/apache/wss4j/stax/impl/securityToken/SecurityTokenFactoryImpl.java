@@ -18,6 +18,7 @@
  */
 package org.apache.wss4j.stax.impl.securityToken;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -73,6 +74,24 @@ import org.apache.xml.security.utils.XMLUtils;
  */
 public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
 
+    /**
+     * The proxy class constructor for each token class, so that the implemented interfaces are only
+     * discovered once and not for every referenced token
+     */
+    private static final ClassValue<Constructor<?>> PROXY_CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            List<Class<?>> implementedInterfaces = new ArrayList<>();
+            getImplementedInterfaces(type, implementedInterfaces);
+            Class<?>[] interfaces = implementedInterfaces.toArray(new Class<?>[implementedInterfaces.size()]);
+            try {
+                return Proxy.getProxyClass(type.getClassLoader(), interfaces).getConstructor(InvocationHandler.class);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
     public SecurityTokenFactoryImpl() {
     }
 
@@ -303,9 +322,9 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                     (WSInboundSecurityContext) inboundSecurityContext, crypto, callbackHandler, binaryContent,
                     securityTokenReferenceId, securityProperties);
         } else if (WSSConstants.NS_ENCRYPTED_KEY_SHA1.equals(valueType)) {
-            return new EncryptedKeySha1SecurityTokenImpl(
-                    (WSInboundSecurityContext) inboundSecurityContext, callbackHandler, keyIdentifierType.getValue(),
-                    securityTokenReferenceId);
+            return createEncryptedKeySha1SecurityToken(
+                    keyIdentifierType, securityTokenReferenceId, callbackHandler, inboundSecurityContext,
+                    securityProperties);
         } else if (WSSConstants.NS_SAML10_TYPE.equals(valueType) || WSSConstants.NS_SAML20_TYPE.equals(valueType)) {
             if (WSSConstants.NS_SAML20_TYPE.equals(valueType) && !WSSConstants.NS_SAML20_TOKEN_PROFILE_TYPE.equals(tokenType)) {
                 ((WSInboundSecurityContext) inboundSecurityContext).handleBSPRule(BSPRule.R6617);
@@ -356,9 +375,9 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
             }
 
             // Finally, just delegate to a Callback as per EncryptedKeySHA1
-            return new EncryptedKeySha1SecurityTokenImpl(
-                    (WSInboundSecurityContext) inboundSecurityContext, callbackHandler,
-                    keyIdentifierType.getValue(), securityTokenReferenceId);
+            return createEncryptedKeySha1SecurityToken(
+                    keyIdentifierType, securityTokenReferenceId, callbackHandler, inboundSecurityContext,
+                    securityProperties);
         } else {
             //we do enforce BSP compliance here but will fail anyway since we cannot identify the referenced token
             ((WSInboundSecurityContext) inboundSecurityContext).handleBSPRule(BSPRule.R3063);
@@ -367,6 +386,18 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         return null;
     }
 
+    private static InboundSecurityToken createEncryptedKeySha1SecurityToken(KeyIdentifierType keyIdentifierType,
+                                                                            String securityTokenReferenceId,
+                                                                            CallbackHandler callbackHandler,
+                                                                            InboundSecurityContext inboundSecurityContext,
+                                                                            WSSSecurityProperties securityProperties) {
+        EncryptedKeySha1SecurityTokenImpl securityToken = new EncryptedKeySha1SecurityTokenImpl(
+                (WSInboundSecurityContext) inboundSecurityContext, callbackHandler,
+                keyIdentifierType.getValue(), securityTokenReferenceId);
+        securityToken.setEncryptedKeyCache(securityProperties.getEncryptedKeyCache());
+        return securityToken;
+    }
+
     private static InboundSecurityToken getSecurityToken(org.apache.wss4j.binding.wss10.ReferenceType referenceType,
                                                          String tokenType,
                                                          InboundSecurityContext inboundSecurityContext,
@@ -486,32 +517,38 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
         throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, "unsupportedKeyInfo");
     }
 
-    private static InboundSecurityToken createSecurityTokenProxy(
+    static InboundSecurityToken createSecurityTokenProxy(
             final InboundSecurityToken inboundSecurityToken,
-            final WSSecurityTokenConstants.KeyIdentifier keyIdentifier) {
-
-        List<Class<?>> implementedInterfaces = new ArrayList<>();
-        getImplementedInterfaces(inboundSecurityToken.getClass(), implementedInterfaces);
-        Class<?>[] interfaces = implementedInterfaces.toArray(new Class<?>[implementedInterfaces.size()]);
+            final WSSecurityTokenConstants.KeyIdentifier keyIdentifier) throws XMLSecurityException {
 
-        return (InboundSecurityToken) Proxy.newProxyInstance(
-                inboundSecurityToken.getClass().getClassLoader(),
-                interfaces,
-                new InvocationHandler() {
+        InvocationHandler invocationHandler = new InvocationHandler() {
 
-                    @Override
-                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-                        if (method.getName().equals("getKeyIdentifier")) {
-                            return keyIdentifier;
-                        }
-                        try {
-                            return method.invoke(inboundSecurityToken, args);
-                        } catch (InvocationTargetException e) {
-                            throw e.getTargetException();
-                        }
-                    }
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getKeyIdentifier")) {
+                    return keyIdentifier;
+                }
+                try {
+                    return method.invoke(inboundSecurityToken, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
                 }
-        );
+            }
+        };
+
+        try {
+            return (InboundSecurityToken) getProxyConstructor(inboundSecurityToken.getClass())
+                .newInstance(invocationHandler);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+    }
+
+    /**
+     * Return the (cached) constructor of the proxy class for the given token class
+     */
+    static Constructor<?> getProxyConstructor(Class<?> tokenClass) {
+        return PROXY_CONSTRUCTORS.get(tokenClass);
     }
 
     private static void getImplementedInterfaces(Class<?> clazz, List<Class<?>> interfaceList) {
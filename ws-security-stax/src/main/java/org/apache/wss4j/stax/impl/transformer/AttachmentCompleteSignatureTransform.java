@@ -37,14 +37,16 @@ public class AttachmentCompleteSignatureTransform extends AttachmentContentSigna
         try {
             OutputStream outputStream = getOutputStream();
             if (outputStream == null) {
-                outputStream = new ByteArrayOutputStream();
+                //only the (small) MIME headers are buffered, the content is streamed after them
+                ByteArrayOutputStream headerOutputStream = new ByteArrayOutputStream();
+                AttachmentUtils.canonizeMimeHeaders(headerOutputStream, getAttachment().getHeaders());
                 is = new MultiInputStream(
-                        new ByteArrayInputStream(
-                                ((ByteArrayOutputStream) outputStream).toByteArray()),
+                        new ByteArrayInputStream(headerOutputStream.toByteArray()),
                         inputStream
                 );
+            } else {
+                AttachmentUtils.canonizeMimeHeaders(outputStream, getAttachment().getHeaders());
             }
-            AttachmentUtils.canonizeMimeHeaders(outputStream, getAttachment().getHeaders());
         } catch (IOException e) {
             throw new XMLStreamException(e);
         }
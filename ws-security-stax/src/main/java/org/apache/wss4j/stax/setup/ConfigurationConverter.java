@@ -31,6 +31,9 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
@@ -464,6 +467,10 @@ public final class ConfigurationConverter {
         boolean requireTimestampExpires =
             decodeBooleanConfigValue(ConfigurationConstants.REQUIRE_TIMESTAMP_EXPIRES, false, config);
         properties.setRequireTimestampExpires(requireTimestampExpires);
+
+        boolean synchronousDecryption =
+            decodeBooleanConfigValue(ConfigurationConstants.SYNCHRONOUS_DECRYPTION, false, config);
+        properties.setSynchronousDecryption(synchronousDecryption);
     }
 
     public static void parseNonBooleanProperties(
@@ -591,6 +598,24 @@ public final class ConfigurationConverter {
             properties.setSamlOneTimeUseReplayCache(samlOneTimeUseCache);
         }
 
+        EncryptedKeyCache encryptedKeyCache =
+            (EncryptedKeyCache)config.get(ConfigurationConstants.ENCRYPTED_KEY_CACHE_INSTANCE);
+        if (encryptedKeyCache != null) {
+            properties.setEncryptedKeyCache(encryptedKeyCache);
+        }
+
+        OutboundEncryptedKeyCache outboundEncryptedKeyCache =
+            (OutboundEncryptedKeyCache)config.get(ConfigurationConstants.OUTBOUND_ENCRYPTED_KEY_CACHE_INSTANCE);
+        if (outboundEncryptedKeyCache != null) {
+            properties.setOutboundEncryptedKeyCache(outboundEncryptedKeyCache);
+        }
+
+        SamlAssertionCache samlAssertionCache =
+            (SamlAssertionCache)config.get(ConfigurationConstants.SAML_ASSERTION_CACHE_INSTANCE);
+        if (samlAssertionCache != null) {
+            properties.setSamlAssertionCache(samlAssertionCache);
+        }
+
         String derivedSignatureKeyLength = getString(ConfigurationConstants.DERIVED_SIGNATURE_KEY_LENGTH, config);
         if (derivedSignatureKeyLength != null) {
             int sigLength = Integer.parseInt(derivedSignatureKeyLength);
@@ -603,6 +628,12 @@ public final class ConfigurationConverter {
             properties.setDerivedEncryptionKeyLength(encLength);
         }
 
+        String outboundEventBufferThreshold =
+            getString(ConfigurationConstants.OUTBOUND_EVENT_BUFFER_THRESHOLD, config);
+        if (outboundEventBufferThreshold != null) {
+            properties.setOutboundEventBufferThreshold(Integer.parseInt(outboundEventBufferThreshold));
+        }
+
         String derivedTokenReference = getString(ConfigurationConstants.DERIVED_TOKEN_REFERENCE, config);
         WSSConstants.DerivedKeyTokenReference convertedDerivedTokenReference =
             convertDerivedReference(derivedTokenReference);
@@ -29,6 +29,7 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.spec.SecretKeySpec;
 import javax.xml.stream.XMLStreamWriter;
 
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
@@ -326,47 +327,20 @@ public class OutboundWSSec {
     ) throws XMLSecurityException {
         final String symmetricEncryptionAlgorithm = securityProperties.getEncryptionSymAlgorithm();
 
+        // The cache of outbound EncryptedKeys is only used when an EncryptedKey is required
+        OutboundEncryptedKeyCache encryptedKeyCache = null;
+        if (securityProperties.isEncryptSymmetricEncryptionKey()) {
+            encryptedKeyCache = securityProperties.getOutboundEncryptedKeyCache();
+        }
+
         // First check to see if a Symmetric key is available
         GenericOutboundSecurityToken securityToken =
             getOutboundSecurityToken(outputProcessorChain, WSSConstants.PROP_USE_THIS_TOKEN_ID_FOR_ENCRYPTION);
-        if (securityToken == null || securityToken.getSecretKey(symmetricEncryptionAlgorithm) == null) {
+        boolean generateSymmetricKey =
+            securityToken == null || securityToken.getSecretKey(symmetricEncryptionAlgorithm) == null;
+        if (generateSymmetricKey && encryptedKeyCache == null) {
             //prepare the symmetric session key for all encryption parts
-            String keyAlgorithm = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(securityProperties.getEncryptionSymAlgorithm());
-            KeyGenerator keyGen;
-            try {
-                keyGen = KeyGenerator.getInstance(keyAlgorithm);
-            } catch (NoSuchAlgorithmException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
-            }
-            //the sun JCE provider expects the real key size for 3DES (112 or 168 bit)
-            //whereas bouncy castle expects the block size of 128 or 192 bits
-            if (keyAlgorithm.contains("AES")) {
-                int keyLength = JCEAlgorithmMapper.getKeyLengthFromURI(securityProperties.getEncryptionSymAlgorithm());
-                keyGen.init(keyLength);
-            }
-
-            final Key symmetricKey = keyGen.generateKey();
-            final String symmId = IDGenerator.generateID(null);
-
-            final GenericOutboundSecurityToken symmetricSecurityToken =
-                new GenericOutboundSecurityToken(symmId, WSSecurityTokenConstants.EncryptedKeyToken, symmetricKey);
-            securityToken = symmetricSecurityToken;
-            final SecurityTokenProvider<OutboundSecurityToken> securityTokenProvider =
-                new SecurityTokenProvider<OutboundSecurityToken>() {
-
-                @Override
-                public OutboundSecurityToken getSecurityToken() throws XMLSecurityException {
-                    return symmetricSecurityToken;
-                }
-
-                @Override
-                public String getId() {
-                    return symmId;
-                }
-            };
-
-            outputProcessorChain.getSecurityContext().registerSecurityTokenProvider(symmId, securityTokenProvider);
-            outputProcessorChain.getSecurityContext().put(WSSConstants.PROP_USE_THIS_TOKEN_ID_FOR_ENCRYPTION, symmId);
+            securityToken = createSymmetricKeyToken(outputProcessorChain, generateSymmetricKey(securityProperties));
         }
 
         if (!securityProperties.isEncryptSymmetricEncryptionKey()) {
@@ -408,6 +382,25 @@ public class OutboundWSSec {
             crypto.verifyTrust(x509Certificates, true, null, null);
         }
 
+        if (generateSymmetricKey && encryptedKeyCache != null) {
+            // Reuse a cached symmetric key (and EncryptedKey) for the recipient if one is available
+            PublicKey recipientKey = x509Certificates != null ? x509Certificates[0].getPublicKey() : publicKey;
+            OutboundEncryptedKeyCache.CachedKey cachedKey =
+                encryptedKeyCache.get(recipientKey, WSSUtils.getEncryptedKeyCacheAlgorithms(securityProperties));
+            Key symmetricKey;
+            if (cachedKey != null) {
+                String keyAlgorithm = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(symmetricEncryptionAlgorithm);
+                symmetricKey = new SecretKeySpec(cachedKey.getSymmetricKey(), keyAlgorithm);
+                // The EncryptedKeyOutputProcessor reuses the wrapped key bytes of the cached key
+                outputProcessorChain.getSecurityContext().put(WSSConstants.PROP_CACHED_ENCRYPTED_KEY, cachedKey);
+            } else {
+                symmetricKey = generateSymmetricKey(securityProperties);
+            }
+            securityToken = createSymmetricKeyToken(outputProcessorChain, symmetricKey);
+            outputProcessorChain.getSecurityContext().put(WSSConstants.PROP_CACHE_ENCRYPTED_KEY_FOR_TOKEN_ID,
+                                                          securityToken.getId());
+        }
+
         // Create a new outbound EncryptedKey token for the cert
         final String id = IDGenerator.generateID(null);
         final GenericOutboundSecurityToken encryptedKeyToken =
@@ -435,6 +428,50 @@ public class OutboundWSSec {
         outputProcessorChain.getSecurityContext().put(WSSConstants.PROP_USE_THIS_TOKEN_ID_FOR_ENCRYPTED_KEY, id);
     }
 
+    private Key generateSymmetricKey(WSSSecurityProperties securityProperties) throws XMLSecurityException {
+        String keyAlgorithm = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(securityProperties.getEncryptionSymAlgorithm());
+        KeyGenerator keyGen;
+        try {
+            keyGen = KeyGenerator.getInstance(keyAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+        //the sun JCE provider expects the real key size for 3DES (112 or 168 bit)
+        //whereas bouncy castle expects the block size of 128 or 192 bits
+        if (keyAlgorithm.contains("AES")) {
+            int keyLength = JCEAlgorithmMapper.getKeyLengthFromURI(securityProperties.getEncryptionSymAlgorithm());
+            keyGen.init(keyLength);
+        }
+
+        return keyGen.generateKey();
+    }
+
+    private GenericOutboundSecurityToken createSymmetricKeyToken(
+        OutputProcessorChainImpl outputProcessorChain, Key symmetricKey
+    ) throws XMLSecurityException {
+        final String symmId = IDGenerator.generateID(null);
+
+        final GenericOutboundSecurityToken symmetricSecurityToken =
+            new GenericOutboundSecurityToken(symmId, WSSecurityTokenConstants.EncryptedKeyToken, symmetricKey);
+        final SecurityTokenProvider<OutboundSecurityToken> securityTokenProvider =
+            new SecurityTokenProvider<OutboundSecurityToken>() {
+
+            @Override
+            public OutboundSecurityToken getSecurityToken() throws XMLSecurityException {
+                return symmetricSecurityToken;
+            }
+
+            @Override
+            public String getId() {
+                return symmId;
+            }
+        };
+
+        outputProcessorChain.getSecurityContext().registerSecurityTokenProvider(symmId, securityTokenProvider);
+        outputProcessorChain.getSecurityContext().put(WSSConstants.PROP_USE_THIS_TOKEN_ID_FOR_ENCRYPTION, symmId);
+        return symmetricSecurityToken;
+    }
+
     private void setupKerberosKey(
         OutputProcessorChainImpl outputProcessorChain,
         WSSSecurityProperties securityProperties,
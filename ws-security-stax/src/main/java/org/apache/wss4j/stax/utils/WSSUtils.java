@@ -39,6 +39,7 @@ import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Attribute;
 
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -674,4 +675,18 @@ public class WSSUtils extends XMLSecurityUtils {
         return tmp;
     }
 
+    /**
+     * Get an identifier of the symmetric and the key transport algorithms (and parameters) of the
+     * given security properties, under which an outbound EncryptedKey is cached
+     */
+    public static String getEncryptedKeyCacheAlgorithms(WSSSecurityProperties securityProperties) {
+        return OutboundEncryptedKeyCache.getAlgorithms(
+            securityProperties.getEncryptionSymAlgorithm(),
+            securityProperties.getEncryptionKeyTransportAlgorithm(),
+            securityProperties.getEncryptionKeyTransportDigestAlgorithm(),
+            securityProperties.getEncryptionKeyTransportMGFAlgorithm(),
+            securityProperties.getEncryptionKeyTransportOAEPParams()
+        );
+    }
+
 }
@@ -28,6 +28,7 @@ import org.apache.wss4j.binding.wss10.PasswordString;
 import org.apache.wss4j.binding.wss10.UsernameTokenType;
 import org.apache.wss4j.binding.wsu10.AttributedDateTime;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.AuthenticationCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.securityToken.UsernameSecurityToken;
@@ -47,6 +48,7 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
             org.slf4j.LoggerFactory.getLogger(JAASUsernameTokenValidatorImpl.class);
 
     private String contextName;
+    private AuthenticationCache authenticationCache;
 
     public void setContextName(String name) {
         contextName = name;
@@ -56,6 +58,19 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
         return contextName;
     }
 
+    /**
+     * Set the cache of successful authentications. If it is null (the default), then a JAAS
+     * login is performed for every UsernameToken.
+     * @param authenticationCache the cache of successful authentications
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
+    public AuthenticationCache getAuthenticationCache() {
+        return authenticationCache;
+    }
+
     @Override
     public <T extends UsernameSecurityToken & InboundSecurityToken> T validate(
             UsernameTokenType usernameTokenType, TokenContext tokenContext) throws WSSecurityException {
@@ -86,17 +101,27 @@ public class JAASUsernameTokenValidatorImpl implements UsernameTokenValidator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
-        Subject subject;
-        try {
-            CallbackHandler handler = getCallbackHandler(username, password);
-            LoginContext ctx = new LoginContext(getContextName(), handler);
-            ctx.login();
-            subject = ctx.getSubject();
-        } catch (LoginException ex) {
-            LOG.info("Authentication failed", ex);
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
-            );
+        Subject subject = null;
+        if (authenticationCache != null) {
+            subject = authenticationCache.getSubject(username, password);
+        }
+        if (subject == null) {
+            try {
+                CallbackHandler handler = getCallbackHandler(username, password);
+                LoginContext ctx = new LoginContext(getContextName(), handler);
+                ctx.login();
+                subject = ctx.getSubject();
+            } catch (LoginException ex) {
+                LOG.info("Authentication failed", ex);
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex
+                );
+            }
+            if (authenticationCache != null) {
+                authenticationCache.add(username, password, subject);
+            }
+        } else {
+            LOG.debug("Using the cached authentication of user {}", username);
         }
 
         final EncodedString encodedNonce =
@@ -23,6 +23,7 @@ import org.apache.wss4j.binding.wss10.EncodedString;
 import org.apache.wss4j.binding.wss10.PasswordString;
 import org.apache.wss4j.binding.wss10.UsernameTokenType;
 import org.apache.wss4j.binding.wsu10.AttributedDateTime;
+import org.apache.wss4j.common.cache.AuthenticationCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -38,6 +39,21 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
 
     private static final transient org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(UsernameTokenValidatorImpl.class);
 
+    private AuthenticationCache authenticationCache;
+
+    /**
+     * Set the cache of successful authentications of UsernameTokens with a plaintext password.
+     * If it is null (the default), then the CallbackHandler is queried for every UsernameToken.
+     * @param authenticationCache the cache of successful authentications
+     */
+    public void setAuthenticationCache(AuthenticationCache authenticationCache) {
+        this.authenticationCache = authenticationCache;
+    }
+
+    public AuthenticationCache getAuthenticationCache() {
+        return authenticationCache;
+    }
+
     @Override
     public <T extends UsernameSecurityToken & InboundSecurityToken> T validate(
             UsernameTokenType usernameTokenType, TokenContext tokenContext) throws WSSecurityException {
@@ -114,7 +130,15 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
                 || passwordType != null && passwordType.getValue() != null
                 && usernameTokenPasswordType == WSSConstants.UsernameTokenPasswordType.PASSWORD_NONE) {
 
-            verifyPlaintextPassword(username.getValue(), passwordType, tokenContext);
+            if (authenticationCache != null
+                && authenticationCache.isAuthenticated(username.getValue(), passwordType.getValue())) {
+                LOG.debug("Using the cached authentication of user {}", username.getValue());
+            } else {
+                verifyPlaintextPassword(username.getValue(), passwordType, tokenContext);
+                if (authenticationCache != null) {
+                    authenticationCache.add(username.getValue(), passwordType.getValue(), null);
+                }
+            }
         } else if (passwordType != null && passwordType.getValue() != null) {
             if (!handleCustomPasswordTypes) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
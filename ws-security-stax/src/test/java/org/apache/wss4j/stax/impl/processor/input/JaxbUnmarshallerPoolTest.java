@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.processor.input;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.events.XMLEvent;
+
+import org.apache.wss4j.binding.wss10.UsernameTokenType;
+import org.apache.wss4j.binding.wsu10.TimestampType;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.wss4j.stax.test.utils.XMLSecEventAllocator;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Some tests for the JaxbUnmarshallerPool, which is shared by the security header handlers.
+ */
+public class JaxbUnmarshallerPoolTest {
+
+    private static final String WSSE_NS =
+        "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd";
+    private static final String WSU_NS =
+        "http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-utility-1.0.xsd";
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        WSSec.init();
+    }
+
+    @Test
+    public void testUnmarshalTokens() throws Exception {
+        unmarshalTokens(false);
+    }
+
+    @Test
+    public void testUnmarshalTokensWithoutSchemaValidation() throws Exception {
+        unmarshalTokens(true);
+    }
+
+    @Test
+    public void testFailedUnmarshallerIsNotReused() throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        JaxbUnmarshallerPool.getPool(false).clear();
+        Unmarshaller unmarshaller = unmarshalUsernameToken("alice", securityProperties);
+
+        // The UsernameToken has no Username child, which the schema requires
+        Deque<XMLSecEvent> eventDeque = parse(
+            "<wsse:UsernameToken xmlns:wsse=\"" + WSSE_NS + "\"><wsse:Password>secret</wsse:Password>"
+            + "</wsse:UsernameToken>");
+        try {
+            JaxbUnmarshallerPool.parseStructure(eventDeque, 0, securityProperties);
+            fail("Failure expected on an invalid UsernameToken");
+        } catch (XMLSecurityException ex) {
+            assertNotNull(ex.getCause());
+        }
+        assertTrue(JaxbUnmarshallerPool.getPool(false).isEmpty());
+
+        // The next token gets a new Unmarshaller, rather than the one which failed
+        assertNotSame(unmarshaller, unmarshalUsernameToken("bob", securityProperties));
+    }
+
+    private void unmarshalTokens(boolean disableSchemaValidation) throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.setDisableSchemaValidation(disableSchemaValidation);
+        JaxbUnmarshallerPool.getPool(disableSchemaValidation).clear();
+
+        Unmarshaller unmarshaller = unmarshalUsernameToken("alice", securityProperties);
+        assertSame(unmarshaller, unmarshalUsernameToken("bob", securityProperties));
+
+        // Unmarshal a Timestamp out of the middle of a security header
+        Deque<XMLSecEvent> eventDeque = parse(
+            "<wsse:Security xmlns:wsse=\"" + WSSE_NS + "\" xmlns:wsu=\"" + WSU_NS + "\">"
+            + "<wsu:Timestamp wsu:Id=\"TS-1\"><wsu:Created>2018-01-01T00:00:00Z</wsu:Created>"
+            + "<wsu:Expires>2018-01-01T00:05:00Z</wsu:Expires></wsu:Timestamp>"
+            + "</wsse:Security>");
+        JAXBElement<TimestampType> timestamp =
+            JaxbUnmarshallerPool.parseStructure(eventDeque, 1, securityProperties);
+        assertEquals("TS-1", timestamp.getValue().getId());
+        assertEquals("2018-01-01T00:00:00Z", timestamp.getValue().getCreated().getValue());
+        assertSame(unmarshaller, JaxbUnmarshallerPool.getPool(disableSchemaValidation).peek());
+
+        assertSame(unmarshaller, unmarshalUsernameToken("carol", securityProperties));
+    }
+
+    /**
+     * Unmarshal a UsernameToken through the pool, and return the single Unmarshaller in the pool
+     * afterwards
+     */
+    private Unmarshaller unmarshalUsernameToken(String username, WSSSecurityProperties securityProperties)
+            throws Exception {
+        Deque<XMLSecEvent> eventDeque = parse(
+            "<wsse:UsernameToken xmlns:wsse=\"" + WSSE_NS + "\"><wsse:Username>" + username
+            + "</wsse:Username><wsse:Password>secret</wsse:Password></wsse:UsernameToken>");
+        JAXBElement<UsernameTokenType> usernameToken =
+            JaxbUnmarshallerPool.parseStructure(eventDeque, 0, securityProperties);
+        assertEquals(username, usernameToken.getValue().getUsername().getValue());
+
+        boolean disableSchemaValidation = securityProperties.isDisableSchemaValidation();
+        assertEquals(1, JaxbUnmarshallerPool.getPool(disableSchemaValidation).size());
+        return JaxbUnmarshallerPool.getPool(disableSchemaValidation).peek();
+    }
+
+    /**
+     * Parse the given XML into an event Deque, in the (reverse) order the security header
+     * handlers buffer it
+     */
+    private static Deque<XMLSecEvent> parse(String xml) throws Exception {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setEventAllocator(new XMLSecEventAllocator());
+        XMLEventReader xmlEventReader = xmlInputFactory.createXMLEventReader(new StringReader(xml));
+        Deque<XMLSecEvent> eventDeque = new ArrayDeque<>();
+        while (xmlEventReader.hasNext()) {
+            XMLEvent xmlEvent = xmlEventReader.nextEvent();
+            if (!xmlEvent.isStartDocument() && !xmlEvent.isEndDocument()) {
+                eventDeque.push((XMLSecEvent) xmlEvent);
+            }
+        }
+        xmlEventReader.close();
+        return eventDeque;
+    }
+}
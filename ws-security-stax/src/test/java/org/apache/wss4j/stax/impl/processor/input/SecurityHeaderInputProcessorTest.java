@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.processor.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
+import org.apache.wss4j.stax.test.AbstractTestBase;
+import org.apache.wss4j.stax.test.CallbackHandlerImpl;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.XMLSecurityHeaderHandler;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The security header handlers are shared between messages, so no state of one message may leak
+ * into the next one.
+ */
+public class SecurityHeaderInputProcessorTest extends AbstractTestBase {
+
+    @Test
+    public void testHandlersAreReusedAcrossMessages() throws Exception {
+        ByteArrayOutputStream usernameTokenMessage =
+            secureMessage(WSSConstants.TIMESTAMP, WSSConstants.USERNAMETOKEN);
+        ByteArrayOutputStream timestampMessage = secureMessage(WSSConstants.TIMESTAMP);
+
+        List<SecurityEvent> securityEvents = processMessage(usernameTokenMessage);
+        assertEquals(1, count(securityEvents, WSSecurityEventConstants.TIMESTAMP));
+        assertEquals(1, count(securityEvents, WSSecurityEventConstants.USERNAME_TOKEN));
+
+        XMLSecurityHeaderHandler timestampHandler =
+            SecurityHeaderInputProcessor.getSecurityHeaderHandler(TimestampInputHandler.class);
+        XMLSecurityHeaderHandler usernameTokenHandler =
+            SecurityHeaderInputProcessor.getSecurityHeaderHandler(UsernameTokenInputHandler.class);
+
+        // The second message uses the same handler instances, and only sees its own tokens
+        securityEvents = processMessage(timestampMessage);
+        assertEquals(1, count(securityEvents, WSSecurityEventConstants.TIMESTAMP));
+        assertEquals(0, count(securityEvents, WSSecurityEventConstants.USERNAME_TOKEN));
+        assertSame(timestampHandler, SecurityHeaderInputProcessor.getSecurityHeaderHandler(TimestampInputHandler.class));
+
+        securityEvents = processMessage(usernameTokenMessage);
+        assertEquals(1, count(securityEvents, WSSecurityEventConstants.TIMESTAMP));
+        assertEquals(1, count(securityEvents, WSSecurityEventConstants.USERNAME_TOKEN));
+        assertSame(timestampHandler, SecurityHeaderInputProcessor.getSecurityHeaderHandler(TimestampInputHandler.class));
+        assertSame(
+            usernameTokenHandler, SecurityHeaderInputProcessor.getSecurityHeaderHandler(UsernameTokenInputHandler.class)
+        );
+    }
+
+    private ByteArrayOutputStream secureMessage(WSSConstants.Action... actions) throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        List<WSSConstants.Action> actionList = new ArrayList<>();
+        for (WSSConstants.Action action : actions) {
+            actionList.add(action);
+        }
+        securityProperties.setActions(actionList);
+        securityProperties.setTokenUser("transmitter");
+        securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+        return doOutboundSecurity(
+            securityProperties, this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml")
+        );
+    }
+
+    private List<SecurityEvent> processMessage(ByteArrayOutputStream message) throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+
+        final List<SecurityEvent> securityEvents = new ArrayList<>();
+        SecurityEventListener securityEventListener = new SecurityEventListener() {
+            @Override
+            public void registerSecurityEvent(SecurityEvent securityEvent) throws XMLSecurityException {
+                securityEvents.add(securityEvent);
+            }
+        };
+        doInboundSecurity(securityProperties, new ByteArrayInputStream(message.toByteArray()), securityEventListener);
+        return securityEvents;
+    }
+
+    private static int count(List<SecurityEvent> securityEvents, SecurityEventConstants.Event event) {
+        int count = 0;
+        for (SecurityEvent securityEvent : securityEvents) {
+            if (event == securityEvent.getSecurityEventType()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
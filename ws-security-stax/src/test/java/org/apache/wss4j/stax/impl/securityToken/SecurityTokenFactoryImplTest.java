@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.securityToken;
+
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.securityToken.UsernameSecurityToken;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Some tests for the proxies which SecurityTokenFactoryImpl creates for referenced tokens.
+ */
+public class SecurityTokenFactoryImplTest {
+
+    @Test
+    public void testProxyConstructorIsCached() throws Exception {
+        assertSame(
+            SecurityTokenFactoryImpl.getProxyConstructor(UsernameSecurityTokenImpl.class),
+            SecurityTokenFactoryImpl.getProxyConstructor(UsernameSecurityTokenImpl.class)
+        );
+
+        InboundSecurityToken aliceProxy = SecurityTokenFactoryImpl.createSecurityTokenProxy(
+            createUsernameToken("alice"), WSSecurityTokenConstants.KEYIDENTIFIER_USERNAME_TOKEN_REFERENCE);
+        InboundSecurityToken bobProxy = SecurityTokenFactoryImpl.createSecurityTokenProxy(
+            createUsernameToken("bob"), WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE);
+        assertSame(aliceProxy.getClass(), bobProxy.getClass());
+
+        // Each proxy still exposes the interfaces of, and delegates to, its own token
+        assertTrue(aliceProxy instanceof UsernameSecurityToken);
+        assertEquals("alice", ((UsernameSecurityToken) aliceProxy).getUsername());
+        assertEquals(WSSecurityTokenConstants.KEYIDENTIFIER_USERNAME_TOKEN_REFERENCE, aliceProxy.getKeyIdentifier());
+        assertEquals("bob", ((UsernameSecurityToken) bobProxy).getUsername());
+        assertEquals(WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE, bobProxy.getKeyIdentifier());
+    }
+
+    private static UsernameSecurityTokenImpl createUsernameToken(String username) {
+        return new UsernameSecurityTokenImpl(
+            WSSConstants.UsernameTokenPasswordType.PASSWORD_TEXT, username, "password", null, null, null, null,
+            null, IDGenerator.generateID(null), WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE);
+    }
+}
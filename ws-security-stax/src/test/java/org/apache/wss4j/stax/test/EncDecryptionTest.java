@@ -32,12 +32,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.util.StreamReaderDelegate;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
@@ -50,6 +53,8 @@ import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.wss4j.common.ConfigurationConstants;
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.OutboundEncryptedKeyCache;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
@@ -88,6 +93,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -953,6 +959,125 @@ public class EncDecryptionTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testSynchronousDecryptionInbound() throws Exception {
+
+        String[] algorithms = new String[]{
+            WSSConstants.NS_XENC_AES128,
+            WSSConstants.NS_XENC_AES256,
+            WSSConstants.NS_XENC_TRIPLE_DES,
+            WSSConstants.NS_XENC11_AES128_GCM,
+            WSSConstants.NS_XENC11_AES256_GCM,
+        };
+
+        for (String algorithm : algorithms) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            {
+                InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-encryptedHeader.xml");
+                String action = WSHandlerConstants.ENCRYPT;
+                Properties properties = new Properties();
+                properties.put(WSHandlerConstants.ENC_SYM_ALGO, algorithm);
+                properties.setProperty(WSHandlerConstants.ENCRYPTION_PARTS,
+                    "{Header}{http://www.example.com}testEncryptedHeader;{Content}{http://schemas.xmlsoap.org/soap/envelope/}Body;");
+                Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, properties);
+
+                Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+                transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+            }
+
+            Document expectedDocument;
+            {
+                WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+                securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+                securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+
+                expectedDocument = doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+            }
+
+            //now decrypt on the calling thread:
+            {
+                Map<String, Object> config = new HashMap<>();
+                config.put(ConfigurationConstants.ACTION, ConfigurationConstants.ENCRYPT);
+                config.put(ConfigurationConstants.DEC_PROP_FILE, "receiver-crypto.properties");
+                config.put(ConfigurationConstants.PW_CALLBACK_REF, new CallbackHandlerImpl());
+                config.put(ConfigurationConstants.SYNCHRONOUS_DECRYPTION, "true");
+
+                WSSSecurityProperties securityProperties = ConfigurationConverter.convert(config);
+                assertTrue(securityProperties.isSynchronousDecryption());
+
+                InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+                XMLStreamReader outXmlStreamReader =
+                    wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+                XMLStreamReader checkingXmlStreamReader = new StreamReaderDelegate(outXmlStreamReader) {
+                    @Override
+                    public int next() throws XMLStreamException {
+                        int eventType = super.next();
+                        if (eventType == XMLStreamConstants.START_ELEMENT) {
+                            //a decryption thread would be started in the thread group of the calling thread
+                            Thread[] threads = new Thread[Thread.activeCount() + 16];
+                            int count = Thread.enumerate(threads);
+                            for (int i = 0; i < count; i++) {
+                                assertNotEquals("decryption thread", threads[i].getName());
+                            }
+                        }
+                        return eventType;
+                    }
+                };
+                Document document = StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), checkingXmlStreamReader);
+
+                //only the EncryptedData of the EncryptedHeader of the test document, which is not for us, is left
+                NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedData.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedData.getLocalPart());
+                assertEquals(1, nodeList.getLength());
+                assertEquals(WSSConstants.TAG_wsse11_EncryptedHeader.getLocalPart(), nodeList.item(0).getParentNode().getLocalName());
+
+                nodeList = document.getElementsByTagNameNS("http://www.example.com", "testEncryptedHeader");
+                assertEquals(1, nodeList.getLength());
+
+                assertTrue(expectedDocument.isEqualNode(document));
+            }
+        }
+    }
+
+    @Test
+    public void testSynchronousDecryptionModifiedCipherValue() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.ENCRYPT;
+            Properties properties = new Properties();
+            properties.put(WSHandlerConstants.ENC_SYM_ALGO, WSSConstants.NS_XENC11_AES128_GCM);
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, properties);
+
+            //modify the encrypted body content, the authentication of the GCM cipher must fail
+            XPathExpression xPathExpression = getXPath("/soap:Envelope/soap:Body/xenc:EncryptedData/xenc:CipherData/xenc:CipherValue");
+            Element cipherValue = (Element) xPathExpression.evaluate(securedDocument, XPathConstants.NODE);
+            String text = cipherValue.getTextContent();
+            int index = text.length() / 2;
+            char replacement = text.charAt(index) == 'A' ? 'B' : 'A';
+            cipherValue.setTextContent(text.substring(0, index) + replacement + text.substring(index + 1));
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+        securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+        securityProperties.setSynchronousDecryption(true);
+
+        try {
+            doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+            fail("Expected XMLStreamException");
+        } catch (XMLStreamException e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof AEADBadTagException)) {
+                cause = cause.getCause();
+            }
+            assertNotNull(cause);
+        }
+    }
+
     @Test
     public void testExceptionOnElementToEncryptNotFound() throws Exception {
 
@@ -2693,4 +2818,146 @@ public class EncDecryptionTest extends AbstractTestBase {
             assertEquals(nodeList.getLength(), 0);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testEncryptedKeySHA1FromEncryptedKeyCacheInbound() throws Exception {
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+
+        //the first message contains the EncryptedKey
+        ByteArrayOutputStream firstBaos = new ByteArrayOutputStream();
+        String encryptedKeySHA1;
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            Document doc = documentBuilderFactory.newDocumentBuilder().parse(sourceDocument);
+
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+            builder.setUserInfo("receiver");
+            Crypto crypto = CryptoFactory.getInstance("transmitter-crypto.properties");
+            Document securedDocument = builder.build(crypto, symmetricKey);
+            encryptedKeySHA1 = builder.getEncryptedKeySHA1();
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(firstBaos));
+        }
+
+        //the second message refers to it via an EncryptedKeySHA1 KeyIdentifier
+        ByteArrayOutputStream secondBaos = new ByteArrayOutputStream();
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            Document doc = documentBuilderFactory.newDocumentBuilder().parse(sourceDocument);
+
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+            builder.setKeyIdentifierType(WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER);
+            builder.setEncryptSymmKey(false);
+            builder.setCustomReferenceValue(encryptedKeySHA1);
+            Document securedDocument = builder.build(null, symmetricKey);
+
+            NodeList nodeList = securedDocument.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedKey.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedKey.getLocalPart());
+            assertEquals(nodeList.getLength(), 0);
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(secondBaos));
+        }
+
+        EncryptedKeyCache encryptedKeyCache = new EncryptedKeyCache();
+
+        //the key of the second message is unknown before the first message is processed
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            securityProperties.setEncryptedKeyCache(encryptedKeyCache);
+            try {
+                doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(secondBaos.toByteArray())));
+                fail("Expected failure on an unknown EncryptedKeySHA1 reference");
+            } catch (XMLStreamException e) {
+                assertTrue(e.getCause() instanceof WSSecurityException);
+            }
+        }
+
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            securityProperties.setEncryptedKeyCache(encryptedKeyCache);
+            Document document = doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(firstBaos.toByteArray())));
+
+            NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedData.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedData.getLocalPart());
+            assertEquals(nodeList.getLength(), 0);
+            assertEquals(encryptedKeyCache.size(), 1);
+        }
+
+        //the CallbackHandler does not know the key, so it must be taken from the cache
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            securityProperties.setEncryptedKeyCache(encryptedKeyCache);
+            Document document = doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(secondBaos.toByteArray())));
+
+            NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedData.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedData.getLocalPart());
+            assertEquals(nodeList.getLength(), 0);
+        }
+    }
+
+    @Test
+    public void testReuseCachedEncryptedKey() throws Exception {
+        OutboundEncryptedKeyCache encryptedKeyCache = new OutboundEncryptedKeyCache();
+
+        Document firstDocument = encryptWithKeyCache(encryptedKeyCache, null);
+        assertEquals(encryptedKeyCache.size(), 1);
+        Document secondDocument = encryptWithKeyCache(encryptedKeyCache, null);
+        assertEquals(encryptedKeyCache.size(), 1);
+
+        //the second message must reuse the EncryptedKey of the first message
+        assertEquals(getEncryptedKeyCipherValue(firstDocument), getEncryptedKeyCipherValue(secondDocument));
+
+        //done encryption; now test decryption of both messages:
+        String action = WSHandlerConstants.ENCRYPT;
+        doInboundSecurityWithWSS4J(firstDocument, action);
+        doInboundSecurityWithWSS4J(secondDocument, action);
+    }
+
+    @Test
+    public void testNoReuseOfCachedEncryptedKeyForDifferentOAEPParams() throws Exception {
+        OutboundEncryptedKeyCache encryptedKeyCache = new OutboundEncryptedKeyCache();
+
+        Document firstDocument = encryptWithKeyCache(encryptedKeyCache, null);
+        Document secondDocument =
+            encryptWithKeyCache(encryptedKeyCache, XMLUtils.decode("ZHVtbXkxMjM=".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(encryptedKeyCache.size(), 2);
+
+        assertNotEquals(getEncryptedKeyCipherValue(firstDocument), getEncryptedKeyCipherValue(secondDocument));
+    }
+
+    private Document encryptWithKeyCache(OutboundEncryptedKeyCache encryptedKeyCache, byte[] oaepParams) throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        List<WSSConstants.Action> actions = new ArrayList<>();
+        actions.add(WSSConstants.ENCRYPT);
+        securityProperties.setActions(actions);
+        securityProperties.loadEncryptionKeystore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+        securityProperties.setEncryptionUser("receiver");
+        securityProperties.setEncryptionKeyTransportOAEPParams(oaepParams);
+        securityProperties.setOutboundEncryptedKeyCache(encryptedKeyCache);
+
+        InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+        ByteArrayOutputStream baos = doOutboundSecurity(securityProperties, sourceDocument);
+
+        Document document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray()));
+        NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedData.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedData.getLocalPart());
+        assertEquals(nodeList.getLength(), 1);
+        return document;
+    }
+
+    private String getEncryptedKeyCipherValue(Document document) throws Exception {
+        XPathExpression xPathExpression = getXPath("/soap:Envelope/soap:Header/wsse:Security/xenc:EncryptedKey/xenc:CipherData/xenc:CipherValue");
+        Node node = (Node) xPathExpression.evaluate(document, XPathConstants.NODE);
+        assertNotNull(node);
+        return node.getTextContent().trim();
+    }
+}
@@ -22,10 +22,12 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -66,6 +68,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class SignatureEncryptionTest extends AbstractTestBase {
 
@@ -106,6 +109,99 @@ public class SignatureEncryptionTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testSignatureEncryptionOutboundSpilledEvents() throws Exception {
+
+        ByteArrayOutputStream baos;
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            List<WSSConstants.Action> actions = new ArrayList<>();
+            actions.add(WSSConstants.SIGNATURE);
+            actions.add(WSSConstants.ENCRYPT);
+            actions.add(WSSConstants.TIMESTAMP);
+            securityProperties.setActions(actions);
+            securityProperties.loadEncryptionKeystore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+            securityProperties.setEncryptionUser("receiver");
+            securityProperties.loadSignatureKeyStore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+            securityProperties.setSignatureUser("transmitter");
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            // only buffer a few events in memory, the rest of the message is spilled
+            securityProperties.setOutboundEventBufferThreshold(5);
+
+            securityProperties.addSignaturePart(
+                new SecurePart(new QName(WSSConstants.NS_WSU10, "Timestamp"), SecurePart.Modifier.Element)
+            );
+            securityProperties.addSignaturePart(
+                new SecurePart(new QName(WSSConstants.NS_SOAP11, "Body"), SecurePart.Modifier.Element)
+            );
+
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            baos = doOutboundSecurity(securityProperties, sourceDocument);
+
+            Document document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray()));
+            NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_dsig_Signature.getNamespaceURI(),
+                                                                WSSConstants.TAG_dsig_Signature.getLocalPart());
+            assertEquals(1, nodeList.getLength());
+        }
+
+        {
+            String action = WSHandlerConstants.SIGNATURE + " " + WSHandlerConstants.ENCRYPT + " " + WSHandlerConstants.TIMESTAMP;
+            doInboundSecurityWithWSS4J(documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray())), action);
+        }
+    }
+
+    @Test
+    public void testSignatureEncryptionOutboundSpilledLargeMessage() throws Exception {
+
+        // A message that is larger than the in-memory cache of the spilled events (128 KiB)
+        StringBuilder message = new StringBuilder();
+        message.append("<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">");
+        message.append("<soap:Header/><soap:Body><ns:payload xmlns:ns=\"urn:test\">");
+        for (int i = 0; i < 5000; i++) {
+            message.append("<ns:item id=\"").append(i).append("\">Some content of item ").append(i).append("</ns:item>");
+        }
+        message.append("</ns:payload></soap:Body></soap:Envelope>");
+        byte[] messageBytes = message.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(messageBytes.length > 128 * 1024);
+
+        Set<Path> tempFiles = SpillableXMLSecEventDequeTest.getTempFiles();
+        ByteArrayOutputStream baos;
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            List<WSSConstants.Action> actions = new ArrayList<>();
+            actions.add(WSSConstants.SIGNATURE);
+            actions.add(WSSConstants.ENCRYPT);
+            actions.add(WSSConstants.TIMESTAMP);
+            securityProperties.setActions(actions);
+            securityProperties.loadEncryptionKeystore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+            securityProperties.setEncryptionUser("receiver");
+            securityProperties.loadSignatureKeyStore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+            securityProperties.setSignatureUser("transmitter");
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            securityProperties.setOutboundEventBufferThreshold(100);
+
+            securityProperties.addSignaturePart(
+                new SecurePart(new QName(WSSConstants.NS_WSU10, "Timestamp"), SecurePart.Modifier.Element)
+            );
+            securityProperties.addSignaturePart(
+                new SecurePart(new QName(WSSConstants.NS_SOAP11, "Body"), SecurePart.Modifier.Element)
+            );
+
+            baos = doOutboundSecurity(securityProperties, new ByteArrayInputStream(messageBytes));
+        }
+
+        // The spilled events are removed once the message is written
+        assertTrue(tempFiles.containsAll(SpillableXMLSecEventDequeTest.getTempFiles()));
+
+        {
+            String action = WSHandlerConstants.SIGNATURE + " " + WSHandlerConstants.ENCRYPT + " " + WSHandlerConstants.TIMESTAMP;
+            Document document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray()));
+            doInboundSecurityWithWSS4J(document, action);
+            NodeList nodeList = document.getElementsByTagNameNS("urn:test", "item");
+            assertEquals(5000, nodeList.getLength());
+        }
+    }
+
     @Test
     public void testEncryptionSymmetricOutbound() throws Exception {
 
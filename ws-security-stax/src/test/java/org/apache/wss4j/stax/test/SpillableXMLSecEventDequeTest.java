@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+
+import org.apache.wss4j.stax.impl.processor.output.SpillableXMLSecEventDeque;
+import org.apache.wss4j.stax.test.utils.XMLSecEventAllocator;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SpillableXMLSecEventDequeTest {
+
+    @Test
+    public void testInMemory() throws Exception {
+        List<XMLSecEvent> events = parse(createDocument(10));
+        SpillableXMLSecEventDeque deque = fill(events, events.size());
+
+        assertFalse(deque.isSpilled());
+        assertEquals(events.size(), deque.size());
+        assertEquals(serialize(events), serialize(drain(deque)));
+    }
+
+    @Test
+    public void testSpilled() throws Exception {
+        List<XMLSecEvent> events = parse(createDocument(1000));
+        SpillableXMLSecEventDeque deque = fill(events, 10);
+
+        assertTrue(deque.isSpilled());
+        assertEquals(events.size(), deque.size());
+
+        List<XMLSecEvent> replayed = drain(deque);
+        assertEquals(serialize(events), serialize(replayed));
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(parentName(events.get(i)), parentName(replayed.get(i)));
+        }
+        assertTrue(deque.isEmpty());
+        assertNull(deque.poll());
+    }
+
+    @Test
+    public void testSpilledToFile() throws Exception {
+        // More events than fit into the memory of the CachedOutputStream (128 KiB)
+        List<XMLSecEvent> events = parse(createDocument(20000));
+        Set<Path> tempFiles = getTempFiles();
+        SpillableXMLSecEventDeque deque = fill(events, 10);
+
+        Set<Path> spillFiles = getTempFiles();
+        spillFiles.removeAll(tempFiles);
+        assertFalse(spillFiles.isEmpty());
+
+        assertEquals(serialize(events), serialize(drain(deque)));
+        for (Path spillFile : spillFiles) {
+            assertFalse(Files.exists(spillFile));
+        }
+    }
+
+    @Test
+    public void testClearDeletesSpillFile() throws Exception {
+        List<XMLSecEvent> events = parse(createDocument(20000));
+        Set<Path> tempFiles = getTempFiles();
+        SpillableXMLSecEventDeque deque = fill(events, 10);
+
+        Set<Path> spillFiles = getTempFiles();
+        spillFiles.removeAll(tempFiles);
+        assertFalse(spillFiles.isEmpty());
+
+        // e.g. the processing of the message failed before the events were drained
+        deque.clear();
+        assertTrue(deque.isEmpty());
+        for (Path spillFile : spillFiles) {
+            assertFalse(Files.exists(spillFile));
+        }
+    }
+
+    @Test
+    public void testAppendWhileReading() throws Exception {
+        List<XMLSecEvent> events = parse(createDocument(100));
+        SpillableXMLSecEventDeque deque = fill(events.subList(0, 50), 10);
+
+        List<XMLSecEvent> replayed = new ArrayList<>();
+        int index = 50;
+        while (!deque.isEmpty()) {
+            XMLSecEvent xmlSecEvent = deque.pop();
+            // push back and peek must not change the order
+            deque.push(xmlSecEvent);
+            assertSame(xmlSecEvent, deque.peek());
+            replayed.add(deque.pop());
+            if (index < events.size()) {
+                deque.offer(events.get(index++));
+            }
+        }
+        assertEquals(serialize(events), serialize(replayed));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorNotSupportedWhenSpilled() throws Exception {
+        List<XMLSecEvent> events = parse(createDocument(10));
+        fill(events, 5).iterator();
+    }
+
+    private static String createDocument(int elements) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        stringBuilder.append("<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">");
+        stringBuilder.append("<soap:Body><!-- comment --><?pi data?>");
+        stringBuilder.append("<ns:value xmlns:ns=\"urn:test\" ns:attr=\"a&#10;b&#13;c\">text&#13;\n&lt;</ns:value>");
+        stringBuilder.append("<![CDATA[<cdata>]]>");
+        for (int i = 0; i < elements; i++) {
+            stringBuilder.append("<element xmlns=\"urn:test\" id=\"").append(i).append("\">");
+            stringBuilder.append("\u00e9\u4e2d").append(i).append("</element>\n");
+        }
+        stringBuilder.append("</soap:Body></soap:Envelope>");
+        return stringBuilder.toString();
+    }
+
+    private static List<XMLSecEvent> parse(String xml) throws Exception {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setEventAllocator(new XMLSecEventAllocator());
+        XMLEventReader xmlEventReader = xmlInputFactory.createXMLEventReader(new StringReader(xml));
+        List<XMLSecEvent> events = new ArrayList<>();
+        while (xmlEventReader.hasNext()) {
+            events.add((XMLSecEvent) xmlEventReader.nextEvent());
+        }
+        return events;
+    }
+
+    static Set<Path> getTempFiles() throws Exception {
+        Set<Path> tempFiles = new HashSet<>();
+        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(tempDir, "wss4j*.tmp")) {
+            for (Path path : directoryStream) {
+                tempFiles.add(path);
+            }
+        }
+        return tempFiles;
+    }
+
+    private static SpillableXMLSecEventDeque fill(List<XMLSecEvent> events, int threshold) throws Exception {
+        SpillableXMLSecEventDeque deque = new SpillableXMLSecEventDeque(threshold);
+        for (XMLSecEvent xmlSecEvent : events) {
+            deque.append(xmlSecEvent);
+        }
+        return deque;
+    }
+
+    private static List<XMLSecEvent> drain(SpillableXMLSecEventDeque deque) {
+        List<XMLSecEvent> events = new ArrayList<>();
+        while (!deque.isEmpty()) {
+            events.add(deque.pop());
+        }
+        return events;
+    }
+
+    private static String parentName(XMLSecEvent xmlSecEvent) {
+        XMLSecStartElement parent = xmlSecEvent.getParentXMLSecStartElement();
+        return parent == null ? null : parent.getName().toString();
+    }
+
+    private static String serialize(List<XMLSecEvent> events) throws Exception {
+        StringWriter stringWriter = new StringWriter();
+        XMLEventWriter xmlEventWriter = XMLOutputFactory.newInstance().createXMLEventWriter(stringWriter);
+        StringBuilder eventTypes = new StringBuilder();
+        for (XMLSecEvent xmlSecEvent : events) {
+            xmlEventWriter.add(xmlSecEvent);
+            eventTypes.append(xmlSecEvent.getEventType()).append(',');
+        }
+        xmlEventWriter.close();
+        return eventTypes.append(stringWriter).toString();
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.wss4j.stax.test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.ZoneOffset;
@@ -29,7 +30,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.login.Configuration;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -37,12 +43,17 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.cache.AuthenticationCache;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.cache.ReplayCacheFactory;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.DateUtil;
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.UsernamePasswordCallbackHandler;
+import org.apache.wss4j.dom.common.UsernamePasswordLoginModule;
 import org.apache.wss4j.dom.handler.WSHandlerConstants;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecUsernameToken;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.securityEvent.UsernameTokenSecurityEvent;
@@ -53,6 +64,8 @@ import org.apache.wss4j.stax.setup.OutboundWSSec;
 import org.apache.wss4j.stax.setup.WSSec;
 import org.apache.wss4j.stax.test.utils.StAX2DOM;
 import org.apache.wss4j.stax.test.utils.XmlReaderToWriter;
+import org.apache.wss4j.stax.validate.JAASUsernameTokenValidatorImpl;
+import org.apache.wss4j.stax.validate.UsernameTokenValidatorImpl;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
@@ -831,6 +844,103 @@ public class UsernameTokenTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testAuthenticationCacheInbound() throws Exception {
+        AuthenticationCache authenticationCache = new AuthenticationCache();
+        UsernameTokenValidatorImpl validator = new UsernameTokenValidatorImpl();
+        validator.setAuthenticationCache(authenticationCache);
+
+        final AtomicInteger handled = new AtomicInteger();
+        final CallbackHandler delegate = new UsernamePasswordCallbackHandler();
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.setCallbackHandler(new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                handled.incrementAndGet();
+                delegate.handle(callbacks);
+            }
+        });
+        securityProperties.addValidator(WSSConstants.TAG_WSSE_USERNAME_TOKEN, validator);
+
+        doInboundSecurity(securityProperties, createUsernameTokenMessage("bob", "security"));
+        assertEquals(1, handled.get());
+
+        // The same token is authenticated from the cache
+        doInboundSecurity(securityProperties, createUsernameTokenMessage("bob", "security"));
+        assertEquals(1, handled.get());
+
+        // A wrong password is not served from the cache
+        try {
+            doInboundSecurity(securityProperties, createUsernameTokenMessage("bob", "wrongPassword"));
+            fail("Expected XMLStreamException");
+        } catch (XMLStreamException e) {
+            assertEquals(((WSSecurityException) e.getCause()).getFaultCode(), WSSecurityException.FAILED_AUTHENTICATION);
+        }
+        assertEquals(2, handled.get());
+
+        // Invalidating the user forces the CallbackHandler to be queried again
+        authenticationCache.invalidate("bob");
+        doInboundSecurity(securityProperties, createUsernameTokenMessage("bob", "security"));
+        assertEquals(3, handled.get());
+    }
+
+    @Test
+    public void testJAASAuthenticationCacheInbound() throws Exception {
+        Configuration jaasConfiguration = Configuration.getConfiguration();
+        Configuration.setConfiguration(UsernamePasswordLoginModule.getConfiguration());
+        UsernamePasswordLoginModule.resetLoginCount();
+        try {
+            AuthenticationCache authenticationCache = new AuthenticationCache();
+            JAASUsernameTokenValidatorImpl validator = new JAASUsernameTokenValidatorImpl();
+            validator.setContextName("UsernameTokenCache");
+            validator.setAuthenticationCache(authenticationCache);
+
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.addValidator(WSSConstants.TAG_WSSE_USERNAME_TOKEN, validator);
+
+            doInboundSecurity(securityProperties, createUsernameTokenMessage("alice", "securityPassword"));
+            assertEquals(1, UsernamePasswordLoginModule.getLoginCount());
+
+            // The same token is authenticated from the cache
+            doInboundSecurity(securityProperties, createUsernameTokenMessage("alice", "securityPassword"));
+            assertEquals(1, UsernamePasswordLoginModule.getLoginCount());
+
+            // A wrong password is not served from the cache
+            try {
+                doInboundSecurity(securityProperties, createUsernameTokenMessage("alice", "wrongPassword"));
+                fail("Expected XMLStreamException");
+            } catch (XMLStreamException e) {
+                assertEquals(((WSSecurityException) e.getCause()).getFaultCode(), WSSecurityException.FAILED_AUTHENTICATION);
+            }
+            assertEquals(2, UsernamePasswordLoginModule.getLoginCount());
+
+            // Invalidating the user forces a new JAAS login
+            authenticationCache.invalidate("alice");
+            doInboundSecurity(securityProperties, createUsernameTokenMessage("alice", "securityPassword"));
+            assertEquals(3, UsernamePasswordLoginModule.getLoginCount());
+        } finally {
+            Configuration.setConfiguration(jaasConfiguration);
+        }
+    }
+
+    private InputStream createUsernameTokenMessage(String username, String password) throws Exception {
+        InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+        Document doc = documentBuilderFactory.newDocumentBuilder().parse(sourceDocument);
+
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecUsernameToken builder = new WSSecUsernameToken(secHeader);
+        builder.setPasswordType(WSConstants.PASSWORD_TEXT);
+        builder.setUserInfo(username, password);
+        Document securedDocument = builder.build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+        transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        return new ByteArrayInputStream(baos.toByteArray());
+    }
+
     private ReplayCache createCache(String key) throws WSSecurityException {
         ReplayCacheFactory replayCacheFactory = ReplayCacheFactory.newInstance();
         byte[] nonceValue;
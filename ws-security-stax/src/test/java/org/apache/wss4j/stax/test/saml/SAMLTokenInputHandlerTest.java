@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.test.saml;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+
+import org.apache.wss4j.stax.impl.processor.input.SAMLTokenInputHandler;
+import org.apache.wss4j.stax.test.utils.XMLSecEventAllocator;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.utils.XMLUtils;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Some tests for building the DOM of a SAML Assertion from the buffered XMLSecEvents.
+ */
+public class SAMLTokenInputHandlerTest {
+
+    private static final String ASSERTION =
+        "<saml2:Assertion xmlns:saml2=\"urn:oasis:names:tc:SAML:2.0:assertion\" ID=\"_1\" Version=\"2.0\">"
+        + "<saml2:AttributeStatement>"
+        + "<saml2:Attribute xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" Name=\"role\">"
+        + "<saml2:AttributeValue xsi:type=\"xs:anyType\">"
+        + "<custom xmlns=\"urn:custom\" id=\"1\"><child/></custom>"
+        + "</saml2:AttributeValue>"
+        + "</saml2:Attribute>"
+        + "</saml2:AttributeStatement>"
+        + "</saml2:Assertion>";
+
+    @Test
+    public void testNamespaceDeclarations() throws Exception {
+        Document document = parse(ASSERTION);
+
+        Element attribute = (Element) document.getElementsByTagNameNS("*", "Attribute").item(0);
+        Element attributeValue = (Element) document.getElementsByTagNameNS("*", "AttributeValue").item(0);
+        Element custom = (Element) document.getElementsByTagNameNS("urn:custom", "custom").item(0);
+        Element child = (Element) document.getElementsByTagNameNS("urn:custom", "child").item(0);
+
+        // Unprefixed attributes don't result in a (default) namespace declaration
+        assertFalse(attribute.hasAttribute("xmlns"));
+        assertEquals("urn:custom", custom.getAttribute("xmlns"));
+        assertEquals("urn:custom", child.lookupNamespaceURI(null));
+
+        // A prefix that is declared on an ancestor is not declared again
+        assertFalse(attributeValue.hasAttribute("xmlns:xsi"));
+        assertEquals("xs:anyType",
+                     attributeValue.getAttributeNS("http://www.w3.org/2001/XMLSchema-instance", "type"));
+    }
+
+    private static Document parse(String xml) throws Exception {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setEventAllocator(new XMLSecEventAllocator());
+        XMLEventReader xmlEventReader = xmlInputFactory.createXMLEventReader(new StringReader(xml));
+
+        SAMLTokenInputHandler samlTokenInputHandler = new SAMLTokenInputHandler();
+        Document document = XMLUtils.newDocument();
+        Node currentNode = document;
+        while (xmlEventReader.hasNext()) {
+            XMLSecEvent xmlSecEvent = (XMLSecEvent) xmlEventReader.nextEvent();
+            currentNode = samlTokenInputHandler.parseXMLEvent(xmlSecEvent, currentNode, document);
+        }
+        return document;
+    }
+}